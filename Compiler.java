@@ -1,57 +1,88 @@
+import ir.IRGenerator;
+import ir.IRInterpreter;
+import ir.Module;
 import lexer.Lexer;
 import lexer.Token;
+import mips.CostTable;
+import mips.MipsGenerator;
+import mips.MipsSimulator;
+import mips.Peephole;
+import mips.RegisterAllocator;
+import opt.Optimizer;
 import parser.Parser;
+import pipeline.CompilationPipeline;
 import semantic.SemanticAnalyzer;
+import utils.CompilerOptions;
 import utils.FileHandler;
 import utils.SimpleErrorHandler;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class Compiler {
+    private static final int SIMULATION_REPORT_BLOCKS = 10; // 模拟报告中列出的基本块数
+
     public static void main(String[] args) {
-        // 从命令行获取输入文件名，默认为 testfile.txt
-        String sourceFile = "testfile.txt"; 
-        if (args.length > 0) {
-            sourceFile = args[0];
-        }
+        // 从命令行获取输入文件名和编译选项，默认为 testfile.txt
+        CompilerOptions options = CompilerOptions.parse(args);
+        String sourceFile = options.getSourceFile();
 
         String outputFileLexer = "lexer.txt";
         String outputFileParser = "parser.txt";
         String outputFileSymbol = "symbol.txt";
+        String outputFileIR = "llvm_ir.txt";
+        String outputFileMips = "mips.txt";
+        String outputFileRun = "mips_output.txt";
+        String outputFileInterpret = "ir_output.txt";
         String outputFileError = "error.txt"; // 统一的错误输出文件
 
         // 清空之前的错误记录 (如果SimpleErrorHandler是静态累积的)
         SimpleErrorHandler.clearErrors();
 
+        // 并行阶段共用的线程池
+        ForkJoinPool pool = options.needsForkJoinPool() ? new ForkJoinPool(options.getThreads()) : null;
+
         List<Token> tokens = null;
         try {
-            // 1. 词法分析
-            System.out.println("Starting Lexical Analysis...");
             String sourceCode = FileHandler.readFile(sourceFile);
-            Lexer lexer = new Lexer(sourceCode);
-            tokens = lexer.tokenize();
-            System.out.println("Lexical Analysis Completed. Tokens: " + (tokens != null ? tokens.size() : 0));
+            if (options.isPipeline()) {
+                // 1-2. 词法分析和语法分析流水线执行，输出文件由独立线程写出
+                System.out.println("Starting Pipelined Lexical and Syntax Analysis...");
+                tokens = new CompilationPipeline(sourceCode).run(outputFileLexer, outputFileParser);
+                System.out.println("Pipelined Analysis Completed. Tokens: " + tokens.size());
+            } else {
+                // 1. 词法分析
+                System.out.println("Starting Lexical Analysis...");
+                Lexer lexer = new Lexer(sourceCode);
+                tokens = options.isParallelLex() ? lexer.tokenizeParallel(pool) : lexer.tokenize();
+                System.out.println("Lexical Analysis Completed. Tokens: " + (tokens != null ? tokens.size() : 0));
 
-            // 只有在没有词法错误时才输出lexer.txt (或根据你的评测要求)
-            if (!SimpleErrorHandler.hasErrors()) {
-                 FileHandler.writeTokensToFile(tokens, outputFileLexer);
-                 System.out.println("Lexer output written to " + outputFileLexer);
-            }
+                // 只有在没有词法错误时才输出lexer.txt (或根据你的评测要求)
+                if (!SimpleErrorHandler.hasErrors()) {
+                     FileHandler.writeTokensToFile(tokens, outputFileLexer);
+                     System.out.println("Lexer output written to " + outputFileLexer);
+                }
+
+                // 2. 语法分析
+                System.out.println("Starting Syntax Analysis...");
+                // 创建Token列表的副本，以防Parser修改原始列表
+                List<Token> tokensForParser = (tokens != null) ? new ArrayList<>(tokens) : new ArrayList<>();
+                Parser parser = new Parser(tokensForParser);
+                if (options.isParallelParse()) {
+                    parser.parseParallel(pool);
+                } else {
+                    parser.parse();
+                }
+                System.out.println("Syntax Analysis Completed.");
 
-            // 2. 语法分析
-            System.out.println("Starting Syntax Analysis...");
-            // 创建Token列表的副本，以防Parser修改原始列表
-            List<Token> tokensForParser = (tokens != null) ? new ArrayList<>(tokens) : new ArrayList<>();
-            Parser parser = new Parser(tokensForParser);
-            parser.parse();
-            System.out.println("Syntax Analysis Completed.");
-
-            // 只有在没有累积错误时才输出parser.txt (或根据你的评测要求)
-            if (!SimpleErrorHandler.hasErrors() && parser.getOutput() != null) {
-                 FileHandler.writeToFile(parser.getOutput(), outputFileParser);
-                 System.out.println("Parser output written to " + outputFileParser);
+                // 只有在没有累积错误时才输出parser.txt (或根据你的评测要求)
+                if (!SimpleErrorHandler.hasErrors() && parser.getOutput() != null) {
+                     FileHandler.writeToFile(parser.getOutput(), outputFileParser);
+                     System.out.println("Parser output written to " + outputFileParser);
+                }
             }
 
 //            // 3. 语义分析
@@ -59,11 +90,82 @@ public class Compiler {
             // 创建Token列表的副本给SemanticAnalyzer
             List<Token> tokensForSemantic = (tokens != null) ? new ArrayList<>(tokens) : new ArrayList<>();
             SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(tokensForSemantic);
-            semanticAnalyzer.analyze();
+            if (options.isParallelSemantic()) {
+                semanticAnalyzer.analyzeParallel(pool);
+            } else {
+                semanticAnalyzer.analyze();
+            }
             System.out.println("Semantic Analysis Completed.");
             // symbol.txt 的写入由SemanticAnalyzer内部完成
 
-            // 4. 统一错误处理
+            // 4. 中间代码生成，只在没有错误时进行
+            // 前端未能发现的非法输入只导致不生成llvm_ir.txt，不影响已有的输出
+            if (!SimpleErrorHandler.hasErrors()) {
+                System.out.println("Starting IR Generation...");
+                Module module = null;
+                try {
+                    IRGenerator irGenerator = new IRGenerator(tokensForSemantic);
+                    irGenerator.setDefinitions(semanticAnalyzer.getDefinitions());
+                    module = irGenerator.generate();
+                    Optimizer optimizer = Optimizer.forLevel(options.getOptLevel(), options.getInlineBudget(),
+                            options.isMemoize(), options.getUnrollFactor());
+                    if (options.getInterpretInput() != null) {
+                        interpretPasses(module, optimizer, options.getInterpretInput(), outputFileInterpret);
+                    } else {
+                        optimizer.run(module);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("IR generation failed: " + e.getMessage());
+                }
+                if (module != null) {
+                    FileHandler.writeTextToFile(module.toString(), outputFileIR);
+                    System.out.println("IR output written to " + outputFileIR);
+
+                    // 5. 目标代码生成
+                    System.out.println("Starting MIPS Generation...");
+                    String mips = null;
+                    CostTable costs = CostTable.defaultTable();
+                    try {
+                        costs = CostTable.parse(options.getMipsCost());
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Invalid --mips-cost ignored: " + e.getMessage());
+                    }
+                    try {
+                        Peephole peephole = Peephole.forLevel(options.getOptLevel());
+                        MipsGenerator generator = new MipsGenerator(module,
+                                RegisterAllocator.forLevel(options.getOptLevel()), peephole);
+                        generator.setCostTable(costs);
+                        mips = generator.generate().toString();
+                        if (options.isPeepholeStats()) {
+                            for (Map.Entry<String, Integer> entry : peephole.getHits().entrySet()) {
+                                System.out.println("Peephole " + entry.getKey() + ": " + entry.getValue());
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        System.err.println("MIPS generation failed: " + e.getMessage());
+                    }
+                    if (mips != null) {
+                        FileHandler.writeTextToFile(mips, outputFileMips);
+                        System.out.println("MIPS output written to " + outputFileMips);
+                    }
+
+                    // 6. 用内置模拟器运行目标代码，统计加权代价
+                    if (mips != null && options.getSimulateInput() != null) {
+                        System.out.println("Starting MIPS Simulation...");
+                        try {
+                            MipsSimulator simulator = new MipsSimulator(mips, costs);
+                            String output = simulator.run(FileHandler.readFile(options.getSimulateInput()));
+                            FileHandler.writeTextToFile(output, outputFileRun);
+                            System.out.println("Program output written to " + outputFileRun);
+                            System.out.print(simulator.report(SIMULATION_REPORT_BLOCKS));
+                        } catch (IOException | RuntimeException e) {
+                            System.err.println("MIPS simulation failed: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+
+            // 7. 统一错误处理
             // 在所有阶段完成后，检查是否有错误，并写入error.txt
             if (SimpleErrorHandler.hasErrors()) {
                 System.out.println("Errors found during compilation. Check " + outputFileError);
@@ -101,6 +203,45 @@ public class Compiler {
             } catch (IOException ex) {
                 System.err.println("Could not write to error file after runtime exception: " + ex.getMessage());
             }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 优化前和每个优化遍之后解释执行一次，输出动态指令数的变化，最后输出优化结果的运行统计
+     */
+    private static void interpretPasses(Module module, Optimizer optimizer, String inputFile, String outputFile) {
+        String input;
+        try {
+            input = FileHandler.readFile(inputFile);
+        } catch (IOException e) {
+            System.err.println("IR interpretation skipped: " + e.getMessage());
+            optimizer.run(module);
+            return;
+        }
+        System.out.println("IR instructions before optimization: " + interpret(module, input));
+        optimizer.run(module, pass -> System.out.println(
+                "IR instructions after " + pass.getClass().getSimpleName() + ": " + interpret(module, input)));
+        try {
+            IRInterpreter interpreter = new IRInterpreter(module);
+            FileHandler.writeTextToFile(interpreter.run(input), outputFile);
+            System.out.println("IR program output written to " + outputFile);
+            System.out.print(interpreter.report());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("IR interpretation failed: " + e.getMessage());
+        }
+    }
+
+    private static String interpret(Module module, String input) {
+        try {
+            IRInterpreter interpreter = new IRInterpreter(module);
+            interpreter.run(input);
+            return String.valueOf(interpreter.getInstructionCount());
+        } catch (RuntimeException e) {
+            return "failed (" + e.getMessage() + ")";
         }
     }
-} 
\ No newline at end of file
+}
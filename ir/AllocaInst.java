@@ -0,0 +1,22 @@
+package ir;
+
+/**
+ * 在栈上分配局部变量的存储
+ */
+public class AllocaInst extends Instruction {
+    private final IRType allocatedType;
+
+    public AllocaInst(IRType allocatedType) {
+        super(Opcode.ALLOCA, IRType.pointerTo(allocatedType));
+        this.allocatedType = allocatedType;
+    }
+
+    public IRType getAllocatedType() {
+        return allocatedType;
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return resultPrefix(slots) + "alloca " + allocatedType;
+    }
+}
@@ -0,0 +1,23 @@
+package ir;
+
+/**
+ * 函数形参
+ */
+public class Argument extends Value {
+    private final Function parent;
+    private final int index;
+
+    public Argument(IRType type, Function parent, int index) {
+        super(type);
+        this.parent = parent;
+        this.index = index;
+    }
+
+    public Function getParent() {
+        return parent;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,153 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基本块，以一条终结指令结束
+ * 前驱由使用该块的终结指令得到，因此修改跳转指令后无需另外维护
+ */
+public class BasicBlock extends Value {
+    private final List<Instruction> instructions = new ArrayList<>();
+    private Function parent;
+
+    public BasicBlock(Function parent) {
+        super(IRType.LABEL);
+        this.parent = parent;
+    }
+
+    public Function getParent() {
+        return parent;
+    }
+
+    void setParent(Function parent) {
+        this.parent = parent;
+    }
+
+    public List<Instruction> getInstructions() {
+        return Collections.unmodifiableList(instructions);
+    }
+
+    public boolean isEmpty() {
+        return instructions.isEmpty();
+    }
+
+    public int size() {
+        return instructions.size();
+    }
+
+    public Instruction get(int index) {
+        return instructions.get(index);
+    }
+
+    public int indexOf(Instruction inst) {
+        return instructions.indexOf(inst);
+    }
+
+    public void add(Instruction inst) {
+        insert(instructions.size(), inst);
+    }
+
+    public void insert(int index, Instruction inst) {
+        instructions.add(index, inst);
+        inst.setParent(this);
+    }
+
+    public void insertBefore(Instruction inst, Instruction before) {
+        insert(instructions.indexOf(before), inst);
+    }
+
+    /**
+     * 在终结指令之前插入
+     */
+    public void insertBeforeTerminator(Instruction inst) {
+        if (getTerminator() != null) {
+            insert(instructions.size() - 1, inst);
+        } else {
+            add(inst);
+        }
+    }
+
+    /**
+     * 从块中移出指令但保留其操作数，用于移动指令
+     */
+    public void remove(Instruction inst) {
+        instructions.remove(inst);
+        inst.setParent(null);
+    }
+
+    public Instruction getTerminator() {
+        if (instructions.isEmpty()) {
+            return null;
+        }
+        Instruction last = instructions.get(instructions.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    public List<PhiInst> getPhis() {
+        List<PhiInst> phis = new ArrayList<>();
+        for (Instruction inst : instructions) {
+            if (!(inst instanceof PhiInst)) {
+                break;
+            }
+            phis.add((PhiInst) inst);
+        }
+        return phis;
+    }
+
+    /**
+     * 第一条非phi指令的位置
+     */
+    public int getFirstNonPhiIndex() {
+        int index = 0;
+        while (index < instructions.size() && instructions.get(index) instanceof PhiInst) {
+            index++;
+        }
+        return index;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        List<BasicBlock> successors = new ArrayList<>(2);
+        Instruction terminator = getTerminator();
+        if (terminator instanceof BranchInst) {
+            BranchInst br = (BranchInst) terminator;
+            successors.add(br.getTrueBlock());
+            if (br.getFalseBlock() != br.getTrueBlock()) {
+                successors.add(br.getFalseBlock());
+            }
+        } else if (terminator instanceof JumpInst) {
+            successors.add(((JumpInst) terminator).getTarget());
+        }
+        return successors;
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        List<BasicBlock> predecessors = new ArrayList<>();
+        for (Use use : getUses()) {
+            User user = use.getUser();
+            if (user instanceof Instruction && ((Instruction) user).isTerminator()) {
+                BasicBlock pred = ((Instruction) user).getParent();
+                if (pred != null && !predecessors.contains(pred)) {
+                    predecessors.add(pred);
+                }
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * 把本块终结指令中对oldSucc的跳转改为newSucc
+     */
+    public void replaceSuccessor(BasicBlock oldSucc, BasicBlock newSucc) {
+        Instruction terminator = getTerminator();
+        if (terminator == null) {
+            return;
+        }
+        for (int i = 0; i < terminator.getNumOperands(); i++) {
+            if (terminator.getOperand(i) == oldSucc) {
+                terminator.setOperand(i, newSucc);
+            }
+        }
+    }
+}
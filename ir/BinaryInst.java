@@ -0,0 +1,54 @@
+package ir;
+
+/**
+ * 二元算术/位运算指令
+ */
+public class BinaryInst extends Instruction {
+    public BinaryInst(Opcode opcode, Value lhs, Value rhs) {
+        super(opcode, lhs.getType());
+        addOperand(lhs);
+        addOperand(rhs);
+    }
+
+    public Value getLhs() {
+        return getOperand(0);
+    }
+
+    public Value getRhs() {
+        return getOperand(1);
+    }
+
+    /**
+     * 运算是否满足交换律
+     */
+    public boolean isCommutative() {
+        Opcode op = getOpcode();
+        return op == Opcode.ADD || op == Opcode.MUL || op == Opcode.AND || op == Opcode.OR || op == Opcode.XOR;
+    }
+
+    /**
+     * 按LLVM语义计算两个常量的运算结果；除数为0等未定义情况返回null
+     */
+    public static Integer evaluate(Opcode opcode, int a, int b) {
+        switch (opcode) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case SDIV: return b == 0 ? null : a / b;
+            case SREM: return b == 0 ? null : a % b;
+            case SHL: return a << (b & 31);
+            case ASHR: return a >> (b & 31);
+            case LSHR: return a >>> (b & 31);
+            case AND: return a & b;
+            case OR: return a | b;
+            case XOR: return a ^ b;
+            default: return null;
+        }
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return resultPrefix(slots) + getOpcode().name().toLowerCase() + " " + getType() + " "
+                + slots.ref(getLhs()) + ", " + slots.ref(getRhs());
+    }
+}
@@ -0,0 +1,31 @@
+package ir;
+
+/**
+ * 条件跳转
+ */
+public class BranchInst extends Instruction {
+    public BranchInst(Value condition, BasicBlock trueBlock, BasicBlock falseBlock) {
+        super(Opcode.BR, IRType.VOID);
+        addOperand(condition);
+        addOperand(trueBlock);
+        addOperand(falseBlock);
+    }
+
+    public Value getCondition() {
+        return getOperand(0);
+    }
+
+    public BasicBlock getTrueBlock() {
+        return (BasicBlock) getOperand(1);
+    }
+
+    public BasicBlock getFalseBlock() {
+        return (BasicBlock) getOperand(2);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return "br " + slots.typed(getCondition()) + ", label " + slots.ref(getTrueBlock())
+                + ", label " + slots.ref(getFalseBlock());
+    }
+}
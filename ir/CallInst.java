@@ -0,0 +1,50 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 函数调用，操作数0为被调函数，其余为实参
+ */
+public class CallInst extends Instruction {
+    public CallInst(Function callee, List<Value> args) {
+        super(Opcode.CALL, callee.getReturnType());
+        addOperand(callee);
+        for (Value arg : args) {
+            addOperand(arg);
+        }
+    }
+
+    public Function getCallee() {
+        return (Function) getOperand(0);
+    }
+
+    public int getNumArgs() {
+        return getNumOperands() - 1;
+    }
+
+    public Value getArg(int i) {
+        return getOperand(i + 1);
+    }
+
+    public List<Value> getArgs() {
+        return new ArrayList<>(getOperands().subList(1, getNumOperands()));
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        StringBuilder sb = new StringBuilder();
+        if (!getType().isVoid()) {
+            sb.append(resultPrefix(slots));
+        }
+        sb.append("call ").append(getType()).append(' ').append(slots.ref(getCallee())).append('(');
+        for (int i = 0; i < getNumArgs(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(slots.typed(getArg(i)));
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package ir;
+
+/**
+ * 整数类型转换指令：zext或trunc
+ */
+public class CastInst extends Instruction {
+    public CastInst(Opcode opcode, Value value, IRType targetType) {
+        super(opcode, targetType);
+        addOperand(value);
+    }
+
+    public Value getValue() {
+        return getOperand(0);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return resultPrefix(slots) + getOpcode().name().toLowerCase() + " " + slots.typed(getValue())
+                + " to " + getType();
+    }
+}
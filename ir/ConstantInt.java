@@ -0,0 +1,30 @@
+package ir;
+
+/**
+ * 整数常量
+ */
+public class ConstantInt extends Value {
+    private final int value;
+
+    public ConstantInt(IRType type, int value) {
+        super(type);
+        this.value = value;
+    }
+
+    public static ConstantInt i32(int value) {
+        return new ConstantInt(IRType.I32, value);
+    }
+
+    public static ConstantInt i1(boolean value) {
+        return new ConstantInt(IRType.I1, value ? 1 : 0);
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,115 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 函数，值的类型为返回类型
+ * 运行库函数（getint、putint等）只有声明，没有基本块
+ */
+public class Function extends Value {
+    private final String name;
+    private final List<Argument> arguments = new ArrayList<>();
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private final boolean builtin;
+
+    public Function(String name, IRType returnType, List<IRType> paramTypes, boolean builtin) {
+        super(returnType);
+        this.name = name;
+        this.builtin = builtin;
+        for (int i = 0; i < paramTypes.size(); i++) {
+            arguments.add(new Argument(paramTypes.get(i), this, i));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IRType getReturnType() {
+        return getType();
+    }
+
+    public List<Argument> getArguments() {
+        return Collections.unmodifiableList(arguments);
+    }
+
+    public boolean isBuiltin() {
+        return builtin;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    public BasicBlock getEntryBlock() {
+        return blocks.get(0);
+    }
+
+    public void addBlock(BasicBlock block) {
+        blocks.add(block);
+        block.setParent(this);
+    }
+
+    public void insertBlockAfter(BasicBlock block, BasicBlock after) {
+        blocks.add(blocks.indexOf(after) + 1, block);
+        block.setParent(this);
+    }
+
+    /**
+     * 从函数中删除基本块及其全部指令
+     */
+    public void removeBlock(BasicBlock block) {
+        blocks.remove(block);
+        for (Instruction inst : new ArrayList<>(block.getInstructions())) {
+            inst.eraseFromParent();
+        }
+        block.setParent(null);
+    }
+
+    /**
+     * 按新顺序排列基本块，入口块必须仍在第一个
+     */
+    public void reorderBlocks(List<BasicBlock> order) {
+        blocks.clear();
+        blocks.addAll(order);
+    }
+
+    /**
+     * 函数中的指令总数
+     */
+    public int instructionCount() {
+        int count = 0;
+        for (BasicBlock block : blocks) {
+            count += block.size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        SlotTracker slots = new SlotTracker(this);
+        sb.append(builtin ? "declare " : "define dso_local ").append(getReturnType()).append(" @").append(name).append('(');
+        for (int i = 0; i < arguments.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(builtin ? arguments.get(i).getType().toString() : slots.typed(arguments.get(i)));
+        }
+        sb.append(')');
+        if (builtin) {
+            return sb.append('\n').toString();
+        }
+        sb.append(" {\n");
+        for (BasicBlock block : blocks) {
+            sb.append(slots.label(block)).append(":\n");
+            for (Instruction inst : block.getInstructions()) {
+                sb.append("    ").append(inst.toIR(slots)).append('\n');
+            }
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
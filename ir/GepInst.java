@@ -0,0 +1,48 @@
+package ir;
+
+import java.util.List;
+
+/**
+ * 地址计算指令getelementptr
+ * 第一个下标按指针指向的类型整体偏移，之后的下标依次进入数组元素
+ */
+public class GepInst extends Instruction {
+    public GepInst(Value pointer, List<Value> indices) {
+        super(Opcode.GEP, resultType(pointer.getType(), indices.size()));
+        addOperand(pointer);
+        for (Value index : indices) {
+            addOperand(index);
+        }
+    }
+
+    private static IRType resultType(IRType pointerType, int indexCount) {
+        IRType type = pointerType.getElementType();
+        for (int i = 1; i < indexCount; i++) {
+            type = type.getElementType();
+        }
+        return IRType.pointerTo(type);
+    }
+
+    public Value getPointer() {
+        return getOperand(0);
+    }
+
+    public int getNumIndices() {
+        return getNumOperands() - 1;
+    }
+
+    public Value getIndex(int i) {
+        return getOperand(i + 1);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        StringBuilder sb = new StringBuilder(resultPrefix(slots));
+        sb.append("getelementptr ").append(getPointer().getType().getElementType()).append(", ");
+        sb.append(slots.typed(getPointer()));
+        for (int i = 0; i < getNumIndices(); i++) {
+            sb.append(", ").append(slots.typed(getIndex(i)));
+        }
+        return sb.toString();
+    }
+}
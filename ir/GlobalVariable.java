@@ -0,0 +1,98 @@
+package ir;
+
+/**
+ * 全局变量或全局常量，值为指向其存储的指针
+ * 初始值按元素保存，标量的初始值数组长度为1；initializer为null表示全零
+ */
+public class GlobalVariable extends Value {
+    private final String name;
+    private final IRType valueType;
+    private final boolean constant;
+    private int[] initializer;
+
+    public GlobalVariable(String name, IRType valueType, boolean constant, int[] initializer) {
+        super(IRType.pointerTo(valueType));
+        this.name = name;
+        this.valueType = valueType;
+        this.constant = constant;
+        this.initializer = initializer;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IRType getValueType() {
+        return valueType;
+    }
+
+    public boolean isConstant() {
+        return constant;
+    }
+
+    public int[] getInitializer() {
+        return initializer;
+    }
+
+    public void setInitializer(int[] initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * 第index个元素的初始值
+     */
+    public int getInitialElement(int index) {
+        return initializer == null || index >= initializer.length ? 0 : initializer[index];
+    }
+
+    private boolean isZeroInitialized() {
+        if (initializer == null) {
+            return true;
+        }
+        for (int v : initializer) {
+            if (v != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('@').append(name).append(" = ");
+        if (name.startsWith(".")) {
+            // 字符串字面量、局部常量数组和编译器生成的表
+            sb.append(constant ? "private unnamed_addr constant " : "internal global ");
+        } else {
+            sb.append(constant ? "dso_local constant " : "dso_local global ");
+        }
+        sb.append(valueType).append(' ');
+        if (!valueType.isArray()) {
+            sb.append(getInitialElement(0));
+        } else if (isZeroInitialized()) {
+            sb.append("zeroinitializer");
+        } else if (valueType.getElementType().equals(IRType.I8)) {
+            sb.append("c\"");
+            for (int i = 0; i < valueType.getLength(); i++) {
+                int c = getInitialElement(i) & 0xFF;
+                if (c >= 32 && c < 127 && c != '"' && c != '\\') {
+                    sb.append((char) c);
+                } else {
+                    sb.append(String.format("\\%02X", c));
+                }
+            }
+            sb.append('"');
+        } else {
+            sb.append('[');
+            for (int i = 0; i < valueType.getLength(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(valueType.getElementType()).append(' ').append(getInitialElement(i));
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,940 @@
+package ir;
+
+import lexer.Escapes;
+import lexer.Token;
+import semantic.VariableSymbol;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 中间代码生成：在通过语义检查的Token流上再做一次递归下降，生成LLVM IR
+ * 局部变量一律分配在入口块的alloca中，由后续的优化提升为寄存器；
+ * 常量表达式在生成时直接折叠，全局变量和常量的初始值因此都是整数。
+ */
+public class IRGenerator {
+    private final List<Token> tokens;
+    private int position;
+
+    private final Module module = new Module();
+    private final Function getintFunc;
+    private final Function getcharFunc;
+    private final Function putintFunc;
+    private final Function putchFunc;
+    private final Function putstrFunc;
+    private final Map<String, Function> functions = new HashMap<>();
+    private final Map<String, GlobalVariable> stringLiterals = new HashMap<>();
+    private final Map<String, Integer> localConstantNames = new HashMap<>(); // 局部常量数组的全局名及重名次数
+    private Map<Token, VariableSymbol> definitions = new HashMap<>();
+
+    private Function currentFunction;
+    private BasicBlock currentBlock;
+    private int allocaCount; // 入口块中已插入的alloca数量
+    private final Deque<Map<String, Binding>> scopes = new ArrayDeque<>();
+    private final Deque<BasicBlock> breakTargets = new ArrayDeque<>();
+    private final Deque<BasicBlock> continueTargets = new ArrayDeque<>();
+
+    /**
+     * 名字对应的变量或常量
+     */
+    private static class Binding {
+        final IRType elementType; // 标量的类型或数组元素类型：i32或i8
+        final boolean array;
+        final int length;         // 数组长度，数组形参为-1
+        final Value address;      // 存储位置；数组形参为指向首元素的指针；局部标量常量为null
+        final int[] constValues;  // 常量的值，变量为null
+
+        Binding(IRType elementType, boolean array, int length, Value address, int[] constValues) {
+            this.elementType = elementType;
+            this.array = array;
+            this.length = length;
+            this.address = address;
+            this.constValues = constValues;
+        }
+    }
+
+    public IRGenerator(List<Token> tokens) {
+        this.tokens = tokens;
+        this.getintFunc = declareBuiltin("getint", IRType.I32);
+        this.getcharFunc = declareBuiltin("getchar", IRType.I32);
+        this.putintFunc = declareBuiltin("putint", IRType.VOID, IRType.I32);
+        this.putchFunc = declareBuiltin("putch", IRType.VOID, IRType.I32);
+        this.putstrFunc = declareBuiltin("putstr", IRType.VOID, IRType.pointerTo(IRType.I8));
+    }
+
+    /**
+     * 使用语义分析得到的定义表：常量的值和数组长度直接取自符号，不再从IR中折叠
+     * @param definitions 定义处的标识符Token到符号的映射
+     */
+    public void setDefinitions(Map<Token, VariableSymbol> definitions) {
+        this.definitions = definitions;
+    }
+
+    private Function declareBuiltin(String name, IRType returnType, IRType... paramTypes) {
+        Function function = new Function(name, returnType, Arrays.asList(paramTypes), true);
+        module.addFunction(function);
+        return function;
+    }
+
+    /**
+     * 生成整个编译单元的IR
+     * @return 生成的模块
+     */
+    public Module generate() {
+        position = 0;
+        scopes.push(new HashMap<>());
+        while (position < tokens.size()) {
+            if (check(Token.Type.CONSTTK)) {
+                parseConstDecl();
+            } else if (peekType(1) == Token.Type.MAINTK) {
+                parseFuncDef(true);
+            } else if (peekType(2) == Token.Type.LPARENT) {
+                parseFuncDef(false);
+            } else {
+                parseVarDecl();
+            }
+        }
+        scopes.pop();
+        return module;
+    }
+
+    // ==================== Token辅助方法 ====================
+
+    private Token current() {
+        return tokens.get(position);
+    }
+
+    private Token.Type peekType(int offset) {
+        int index = position + offset;
+        return index < tokens.size() ? tokens.get(index).getType() : null;
+    }
+
+    private boolean check(Token.Type type) {
+        return position < tokens.size() && tokens.get(position).getType() == type;
+    }
+
+    private boolean accept(Token.Type type) {
+        if (check(type)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(Token.Type type) {
+        if (!check(type)) {
+            int line = position < tokens.size() ? current().getLineNumber() : -1;
+            throw new IllegalStateException("IR generation expected " + type + " at line " + line);
+        }
+        return tokens.get(position++);
+    }
+
+    // ==================== 作用域 ====================
+
+    private void define(String name, Binding binding) {
+        scopes.peek().put(name, binding);
+    }
+
+    private Binding lookup(String name) {
+        for (Map<String, Binding> scope : scopes) {
+            Binding binding = scope.get(name);
+            if (binding != null) {
+                return binding;
+            }
+        }
+        throw new IllegalStateException("IR generation: undefined identifier " + name);
+    }
+
+    // ==================== 指令插入 ====================
+
+    private BasicBlock newBlock() {
+        return new BasicBlock(null);
+    }
+
+    /**
+     * 开始向block中生成代码，block在此时按顺序加入当前函数
+     */
+    private void startBlock(BasicBlock block) {
+        if (block.getParent() == null) {
+            currentFunction.addBlock(block);
+        }
+        currentBlock = block;
+    }
+
+    private <T extends Instruction> T insert(T inst) {
+        if (currentBlock == null) {
+            throw new IllegalStateException("IR generation: non-constant expression outside a function");
+        }
+        if (currentBlock.getTerminator() != null) {
+            // return/break/continue之后的代码不可达，放入单独的块中
+            startBlock(newBlock());
+        }
+        currentBlock.add(inst);
+        return inst;
+    }
+
+    private AllocaInst createAlloca(IRType type) {
+        AllocaInst alloca = new AllocaInst(type);
+        currentFunction.getEntryBlock().insert(allocaCount++, alloca);
+        return alloca;
+    }
+
+    private void jump(BasicBlock target) {
+        insert(new JumpInst(target));
+    }
+
+    private void branch(Value condition, BasicBlock trueBlock, BasicBlock falseBlock) {
+        if (condition instanceof ConstantInt) {
+            jump(((ConstantInt) condition).getValue() != 0 ? trueBlock : falseBlock);
+        } else {
+            insert(new BranchInst(condition, trueBlock, falseBlock));
+        }
+    }
+
+    private Value binary(Instruction.Opcode opcode, Value lhs, Value rhs) {
+        if (lhs instanceof ConstantInt && rhs instanceof ConstantInt) {
+            Integer result = BinaryInst.evaluate(opcode, ((ConstantInt) lhs).getValue(), ((ConstantInt) rhs).getValue());
+            if (result != null) {
+                return ConstantInt.i32(result);
+            }
+        }
+        return insert(new BinaryInst(opcode, lhs, rhs));
+    }
+
+    private Value compare(IcmpInst.Predicate predicate, Value lhs, Value rhs) {
+        if (lhs instanceof ConstantInt && rhs instanceof ConstantInt) {
+            return ConstantInt.i1(predicate.evaluate(((ConstantInt) lhs).getValue(), ((ConstantInt) rhs).getValue()));
+        }
+        return insert(new IcmpInst(predicate, lhs, rhs));
+    }
+
+    /**
+     * 把i1或i8的值零扩展为i32
+     */
+    private Value toI32(Value value) {
+        if (value.getType().equals(IRType.I32)) {
+            return value;
+        }
+        if (value instanceof ConstantInt) {
+            return ConstantInt.i32(((ConstantInt) value).getValue());
+        }
+        return insert(new CastInst(Instruction.Opcode.ZEXT, value, IRType.I32));
+    }
+
+    /**
+     * 把整数值转为i1条件
+     */
+    private Value toI1(Value value) {
+        if (value.getType().equals(IRType.I1)) {
+            return value;
+        }
+        return compare(IcmpInst.Predicate.NE, toI32(value), ConstantInt.i32(0));
+    }
+
+    /**
+     * 把i32的值转为要存储或传递的类型，char截断为i8
+     */
+    private Value convert(Value value, IRType type) {
+        if (type.equals(IRType.I8)) {
+            if (value instanceof ConstantInt) {
+                return new ConstantInt(IRType.I8, ((ConstantInt) value).getValue() & 0xFF);
+            }
+            return insert(new CastInst(Instruction.Opcode.TRUNC, value, IRType.I8));
+        }
+        return value;
+    }
+
+    private Value gep(Value pointer, Value... indices) {
+        return insert(new GepInst(pointer, Arrays.asList(indices)));
+    }
+
+    private Value call(Function callee, Value... args) {
+        return insert(new CallInst(callee, Arrays.asList(args)));
+    }
+
+    // ==================== 声明 ====================
+
+    private IRType parseBType() {
+        if (accept(Token.Type.CHARTK)) {
+            return IRType.I8;
+        }
+        expect(Token.Type.INTTK);
+        return IRType.I32;
+    }
+
+    private void parseConstDecl() {
+        // ConstDecl -> 'const' BType ConstDef { ',' ConstDef } ';'
+        expect(Token.Type.CONSTTK);
+        IRType elementType = parseBType();
+        do {
+            parseDef(elementType, true);
+        } while (accept(Token.Type.COMMA));
+        expect(Token.Type.SEMICN);
+    }
+
+    private void parseVarDecl() {
+        // VarDecl -> BType VarDef { ',' VarDef } ';'
+        IRType elementType = parseBType();
+        do {
+            parseDef(elementType, false);
+        } while (accept(Token.Type.COMMA));
+        expect(Token.Type.SEMICN);
+    }
+
+    /**
+     * ConstDef -> Ident [ '[' ConstExp ']' ] '=' ConstInitVal
+     * VarDef -> Ident [ '[' ConstExp ']' ] [ '=' InitVal ]
+     */
+    private void parseDef(IRType elementType, boolean isConst) {
+        Token ident = expect(Token.Type.IDENFR);
+        String name = ident.getValue();
+        VariableSymbol symbol = definitions.get(ident);
+        boolean isArray = false;
+        int length = 0;
+        if (accept(Token.Type.LBRACK)) {
+            isArray = true;
+            Value dimension = parseAddExp();
+            length = symbol != null && symbol.getArrayLength() >= 0 ? symbol.getArrayLength() : evaluateConstant(dimension);
+            expect(Token.Type.RBRACK);
+        }
+        IRType storageType = isArray ? IRType.arrayOf(elementType, length) : elementType;
+        boolean global = currentFunction == null;
+
+        List<Value> initValues = null;
+        if (accept(Token.Type.ASSIGN)) {
+            initValues = parseInitVal(elementType);
+        }
+
+        int[] constValues = null;
+        if (isConst && symbol != null && symbol.hasConstValue()) {
+            constValues = symbol.getConstValues();
+        } else if (isConst || global) {
+            constValues = new int[isArray ? length : 1];
+            if (initValues != null) {
+                for (int i = 0; i < initValues.size() && i < constValues.length; i++) {
+                    constValues[i] = truncate(evaluateConstant(initValues.get(i)), elementType);
+                }
+            }
+        }
+
+        if (global) {
+            if (isConst && !isArray) {
+                define(name, new Binding(elementType, false, 0, null, constValues));
+                return;
+            }
+            GlobalVariable variable = new GlobalVariable(name, storageType, isConst, constValues);
+            module.addGlobal(variable);
+            define(name, new Binding(elementType, isArray, length, variable, isConst ? constValues : null));
+            return;
+        }
+
+        if (isConst && !isArray) {
+            define(name, new Binding(elementType, false, 0, null, constValues));
+            return;
+        }
+        if (isConst) {
+            // 局部常量数组放到只读的全局数据中，不必每次进入函数都逐个存入初值
+            GlobalVariable variable = new GlobalVariable(localConstantName(name), storageType, true, constValues);
+            module.addGlobal(variable);
+            define(name, new Binding(elementType, true, length, variable, constValues));
+            return;
+        }
+        AllocaInst alloca = createAlloca(storageType);
+        define(name, new Binding(elementType, isArray, length, alloca, null));
+        if (initValues == null) {
+            return;
+        }
+        if (!isArray) {
+            insert(new StoreInst(convert(initValues.get(0), elementType), alloca));
+            return;
+        }
+        // 局部数组：给出初值时未列出的元素补0
+        for (int i = 0; i < length; i++) {
+            Value value = i < initValues.size() ? initValues.get(i) : ConstantInt.i32(0);
+            Value address = gep(alloca, ConstantInt.i32(0), ConstantInt.i32(i));
+            insert(new StoreInst(convert(value, elementType), address));
+        }
+    }
+
+    /**
+     * InitVal -> Exp | '{' [ Exp { ',' Exp } ] '}' | StringConst
+     * @return 按元素顺序的初值（i32）
+     */
+    private List<Value> parseInitVal(IRType elementType) {
+        List<Value> values = new ArrayList<>();
+        if (check(Token.Type.STRCON)) {
+            for (int c : Escapes.unescape(expect(Token.Type.STRCON).getValue())) {
+                values.add(ConstantInt.i32(c));
+            }
+        } else if (accept(Token.Type.LBRACE)) {
+            if (!check(Token.Type.RBRACE)) {
+                do {
+                    values.add(parseAddExp());
+                } while (accept(Token.Type.COMMA));
+            }
+            expect(Token.Type.RBRACE);
+        } else {
+            values.add(parseAddExp());
+        }
+        return values;
+    }
+
+    /**
+     * 局部常量数组对应的全局名，形如.const.main.a，同一函数中重名时再加序号
+     */
+    private String localConstantName(String name) {
+        String base = ".const." + currentFunction.getName() + "." + name;
+        int count = localConstantNames.merge(base, 1, Integer::sum);
+        return count == 1 ? base : base + "." + (count - 1);
+    }
+
+    private int evaluateConstant(Value value) {
+        if (!(value instanceof ConstantInt)) {
+            throw new IllegalStateException("IR generation: expression is not a compile-time constant");
+        }
+        return ((ConstantInt) value).getValue();
+    }
+
+    /**
+     * 存入char时只保留低8位
+     */
+    private static int truncate(int value, IRType elementType) {
+        return elementType.equals(IRType.I8) ? value & 0xFF : value;
+    }
+
+    // ==================== 函数 ====================
+
+    /**
+     * FuncDef -> FuncType Ident '(' [ FuncFParams ] ')' Block
+     * MainFuncDef -> 'int' 'main' '(' ')' Block
+     */
+    private void parseFuncDef(boolean isMain) {
+        IRType returnType;
+        if (accept(Token.Type.VOIDTK)) {
+            returnType = IRType.VOID;
+        } else {
+            returnType = parseBType();
+        }
+        String name = isMain ? expect(Token.Type.MAINTK).getValue() : expect(Token.Type.IDENFR).getValue();
+        expect(Token.Type.LPARENT);
+
+        // FuncFParam -> BType Ident [ '[' ']' ]
+        List<IRType> paramTypes = new ArrayList<>();
+        List<String> paramNames = new ArrayList<>();
+        List<IRType> paramElementTypes = new ArrayList<>();
+        while (!check(Token.Type.RPARENT)) {
+            IRType elementType = parseBType();
+            paramNames.add(expect(Token.Type.IDENFR).getValue());
+            paramElementTypes.add(elementType);
+            if (accept(Token.Type.LBRACK)) {
+                expect(Token.Type.RBRACK);
+                paramTypes.add(IRType.pointerTo(elementType));
+            } else {
+                paramTypes.add(elementType);
+            }
+            if (!accept(Token.Type.COMMA)) {
+                break;
+            }
+        }
+        expect(Token.Type.RPARENT);
+
+        Function function = new Function(name, returnType, paramTypes, false);
+        module.addFunction(function);
+        functions.put(name, function);
+
+        currentFunction = function;
+        allocaCount = 0;
+        startBlock(newBlock());
+        scopes.push(new HashMap<>());
+        for (int i = 0; i < paramTypes.size(); i++) {
+            Argument argument = function.getArguments().get(i);
+            if (paramTypes.get(i).isPointer()) {
+                define(paramNames.get(i), new Binding(paramElementTypes.get(i), true, -1, argument, null));
+            } else {
+                AllocaInst alloca = createAlloca(paramTypes.get(i));
+                insert(new StoreInst(argument, alloca));
+                define(paramNames.get(i), new Binding(paramElementTypes.get(i), false, 0, alloca, null));
+            }
+        }
+
+        // 函数体与形参在同一作用域
+        expect(Token.Type.LBRACE);
+        while (!check(Token.Type.RBRACE)) {
+            parseBlockItem();
+        }
+        expect(Token.Type.RBRACE);
+        scopes.pop();
+
+        if (currentBlock.getTerminator() == null) {
+            insert(new ReturnInst(returnType.isVoid() ? null : new ConstantInt(returnType, 0)));
+        }
+        currentFunction = null;
+        currentBlock = null;
+    }
+
+    // ==================== 语句 ====================
+
+    private void parseBlock() {
+        expect(Token.Type.LBRACE);
+        scopes.push(new HashMap<>());
+        while (!check(Token.Type.RBRACE)) {
+            parseBlockItem();
+        }
+        scopes.pop();
+        expect(Token.Type.RBRACE);
+    }
+
+    private void parseBlockItem() {
+        if (check(Token.Type.CONSTTK)) {
+            parseConstDecl();
+        } else if (check(Token.Type.INTTK) || check(Token.Type.CHARTK)) {
+            parseVarDecl();
+        } else {
+            parseStmt();
+        }
+    }
+
+    private void parseStmt() {
+        Token.Type type = current().getType();
+        switch (type) {
+            case LBRACE:
+                parseBlock();
+                break;
+            case SEMICN:
+                position++;
+                break;
+            case IFTK:
+                parseIfStmt();
+                break;
+            case FORTK:
+                parseForStmt();
+                break;
+            case BREAKTK:
+                position++;
+                expect(Token.Type.SEMICN);
+                jump(breakTargets.peek());
+                break;
+            case CONTINUETK:
+                position++;
+                expect(Token.Type.SEMICN);
+                jump(continueTargets.peek());
+                break;
+            case RETURNTK:
+                parseReturnStmt();
+                break;
+            case PRINTFTK:
+                parsePrintfStmt();
+                break;
+            default:
+                if (isAssignment()) {
+                    parseAssignment();
+                } else {
+                    parseAddExp();
+                }
+                expect(Token.Type.SEMICN);
+                break;
+        }
+    }
+
+    /**
+     * 当前语句在分号之前是否有赋值号
+     */
+    private boolean isAssignment() {
+        for (int i = position; i < tokens.size(); i++) {
+            Token.Type type = tokens.get(i).getType();
+            if (type == Token.Type.ASSIGN) {
+                return true;
+            }
+            if (type == Token.Type.SEMICN) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * LVal '=' Exp，getint()和getchar()作为表达式处理
+     */
+    private void parseAssignment() {
+        Binding binding = lookup(expect(Token.Type.IDENFR).getValue());
+        Value address = binding.address;
+        if (accept(Token.Type.LBRACK)) {
+            Value index = parseAddExp();
+            expect(Token.Type.RBRACK);
+            address = elementAddress(binding, index);
+        }
+        expect(Token.Type.ASSIGN);
+        Value value = parseAddExp();
+        insert(new StoreInst(convert(value, binding.elementType), address));
+    }
+
+    private void parseIfStmt() {
+        // 'if' '(' Cond ')' Stmt [ 'else' Stmt ]
+        expect(Token.Type.IFTK);
+        expect(Token.Type.LPARENT);
+        BasicBlock thenBlock = newBlock();
+        BasicBlock elseBlock = newBlock();
+        parseCond(thenBlock, elseBlock);
+        expect(Token.Type.RPARENT);
+
+        startBlock(thenBlock);
+        parseStmt();
+        if (accept(Token.Type.ELSETK)) {
+            BasicBlock mergeBlock = newBlock();
+            jump(mergeBlock);
+            startBlock(elseBlock);
+            parseStmt();
+            jump(mergeBlock);
+            startBlock(mergeBlock);
+        } else {
+            jump(elseBlock);
+            startBlock(elseBlock);
+        }
+    }
+
+    private void parseForStmt() {
+        // 'for' '(' [ForStmt] ';' [Cond] ';' [ForStmt] ')' Stmt
+        expect(Token.Type.FORTK);
+        expect(Token.Type.LPARENT);
+        if (!check(Token.Type.SEMICN)) {
+            parseAssignment();
+        }
+        expect(Token.Type.SEMICN);
+
+        BasicBlock condBlock = newBlock();
+        BasicBlock bodyBlock = newBlock();
+        BasicBlock stepBlock = newBlock();
+        BasicBlock exitBlock = newBlock();
+
+        jump(condBlock);
+        startBlock(condBlock);
+        if (!check(Token.Type.SEMICN)) {
+            parseCond(bodyBlock, exitBlock);
+        } else {
+            jump(bodyBlock);
+        }
+        expect(Token.Type.SEMICN);
+
+        // 步进语句在循环体之后生成，先记下位置跳过
+        int stepStart = position;
+        skipToClosingParen();
+        int bodyStart = position;
+
+        startBlock(bodyBlock);
+        breakTargets.push(exitBlock);
+        continueTargets.push(stepBlock);
+        position = bodyStart;
+        parseStmt();
+        int afterBody = position;
+        breakTargets.pop();
+        continueTargets.pop();
+        jump(stepBlock);
+
+        startBlock(stepBlock);
+        position = stepStart;
+        if (!check(Token.Type.RPARENT)) {
+            parseAssignment();
+        }
+        expect(Token.Type.RPARENT);
+        jump(condBlock);
+
+        position = afterBody;
+        startBlock(exitBlock);
+    }
+
+    /**
+     * 跳过for语句头中剩余的部分，停在右括号之后
+     */
+    private void skipToClosingParen() {
+        int depth = 0;
+        while (true) {
+            Token.Type type = current().getType();
+            position++;
+            if (type == Token.Type.LPARENT) {
+                depth++;
+            } else if (type == Token.Type.RPARENT) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            }
+        }
+    }
+
+    private void parseReturnStmt() {
+        expect(Token.Type.RETURNTK);
+        Value value = null;
+        if (!check(Token.Type.SEMICN)) {
+            value = parseAddExp();
+        }
+        expect(Token.Type.SEMICN);
+        IRType returnType = currentFunction.getReturnType();
+        if (returnType.isVoid()) {
+            insert(new ReturnInst(null));
+        } else {
+            insert(new ReturnInst(convert(value != null ? value : ConstantInt.i32(0), returnType)));
+        }
+    }
+
+    /**
+     * printf：先按顺序求出所有参数，再把格式串拆成putstr/putch/putint调用
+     */
+    private void parsePrintfStmt() {
+        expect(Token.Type.PRINTFTK);
+        expect(Token.Type.LPARENT);
+        int[] format = Escapes.unescape(expect(Token.Type.STRCON).getValue());
+        List<Value> args = new ArrayList<>();
+        while (accept(Token.Type.COMMA)) {
+            args.add(parseAddExp());
+        }
+        expect(Token.Type.RPARENT);
+        expect(Token.Type.SEMICN);
+
+        StringBuilder text = new StringBuilder();
+        int argIndex = 0;
+        for (int i = 0; i < format.length; i++) {
+            if (format[i] == '%' && i + 1 < format.length && (format[i + 1] == 'd' || format[i + 1] == 'c')
+                    && argIndex < args.size()) {
+                flushText(text);
+                call(format[i + 1] == 'd' ? putintFunc : putchFunc, args.get(argIndex++));
+                i++;
+            } else {
+                text.append((char) format[i]);
+            }
+        }
+        flushText(text);
+    }
+
+    private void flushText(StringBuilder text) {
+        if (text.length() == 0) {
+            return;
+        }
+        if (text.length() == 1) {
+            call(putchFunc, ConstantInt.i32(text.charAt(0)));
+        } else {
+            GlobalVariable literal = getStringLiteral(text.toString());
+            call(putstrFunc, gep(literal, ConstantInt.i32(0), ConstantInt.i32(0)));
+        }
+        text.setLength(0);
+    }
+
+    private GlobalVariable getStringLiteral(String text) {
+        GlobalVariable literal = stringLiterals.get(text);
+        if (literal == null) {
+            int[] chars = new int[text.length() + 1];
+            for (int i = 0; i < text.length(); i++) {
+                chars[i] = text.charAt(i);
+            }
+            String name = stringLiterals.isEmpty() ? ".str" : ".str." + stringLiterals.size();
+            literal = new GlobalVariable(name, IRType.arrayOf(IRType.I8, chars.length), true, chars);
+            module.addGlobal(literal);
+            stringLiterals.put(text, literal);
+        }
+        return literal;
+    }
+
+    // ==================== 条件 ====================
+
+    /**
+     * Cond -> LOrExp，短路求值：为真跳到trueBlock，为假跳到falseBlock
+     */
+    private void parseCond(BasicBlock trueBlock, BasicBlock falseBlock) {
+        // LOrExp -> LAndExp { '||' LAndExp }
+        while (true) {
+            BasicBlock nextBlock = newBlock();
+            parseLAndExp(trueBlock, nextBlock);
+            if (!accept(Token.Type.OR)) {
+                nextBlock.replaceAllUsesWith(falseBlock);
+                return;
+            }
+            startBlock(nextBlock);
+        }
+    }
+
+    private void parseLAndExp(BasicBlock trueBlock, BasicBlock falseBlock) {
+        // LAndExp -> EqExp { '&&' EqExp }
+        while (true) {
+            BasicBlock nextBlock = newBlock();
+            branch(toI1(parseEqExp()), nextBlock, falseBlock);
+            if (!accept(Token.Type.AND)) {
+                nextBlock.replaceAllUsesWith(trueBlock);
+                return;
+            }
+            startBlock(nextBlock);
+        }
+    }
+
+    private Value parseEqExp() {
+        // EqExp -> RelExp { ('==' | '!=') RelExp }
+        Value value = parseRelExp();
+        while (check(Token.Type.EQL) || check(Token.Type.NEQ)) {
+            IcmpInst.Predicate predicate = current().getType() == Token.Type.EQL
+                    ? IcmpInst.Predicate.EQ : IcmpInst.Predicate.NE;
+            position++;
+            Value rhs = parseRelExp();
+            value = compare(predicate, toI32(value), toI32(rhs));
+        }
+        return value;
+    }
+
+    private Value parseRelExp() {
+        // RelExp -> AddExp { ('<' | '>' | '<=' | '>=') AddExp }
+        Value value = parseAddExp();
+        while (true) {
+            IcmpInst.Predicate predicate;
+            if (check(Token.Type.LSS)) {
+                predicate = IcmpInst.Predicate.SLT;
+            } else if (check(Token.Type.GRE)) {
+                predicate = IcmpInst.Predicate.SGT;
+            } else if (check(Token.Type.LEQ)) {
+                predicate = IcmpInst.Predicate.SLE;
+            } else if (check(Token.Type.GEQ)) {
+                predicate = IcmpInst.Predicate.SGE;
+            } else {
+                return value;
+            }
+            position++;
+            Value rhs = parseAddExp();
+            value = compare(predicate, toI32(value), rhs);
+        }
+    }
+
+    // ==================== 表达式（结果均为i32） ====================
+
+    private Value parseAddExp() {
+        // AddExp -> MulExp { ('+' | '-') MulExp }
+        Value value = parseMulExp();
+        while (check(Token.Type.PLUS) || check(Token.Type.MINU)) {
+            Instruction.Opcode opcode = current().getType() == Token.Type.PLUS
+                    ? Instruction.Opcode.ADD : Instruction.Opcode.SUB;
+            position++;
+            value = binary(opcode, value, parseMulExp());
+        }
+        return value;
+    }
+
+    private Value parseMulExp() {
+        // MulExp -> UnaryExp { ('*' | '/' | '%') UnaryExp }
+        Value value = parseUnaryExp();
+        while (true) {
+            Instruction.Opcode opcode;
+            if (check(Token.Type.MULT)) {
+                opcode = Instruction.Opcode.MUL;
+            } else if (check(Token.Type.DIV)) {
+                opcode = Instruction.Opcode.SDIV;
+            } else if (check(Token.Type.MOD)) {
+                opcode = Instruction.Opcode.SREM;
+            } else {
+                return value;
+            }
+            position++;
+            value = binary(opcode, value, parseUnaryExp());
+        }
+    }
+
+    private Value parseUnaryExp() {
+        // UnaryExp -> PrimaryExp | Ident '(' [FuncRParams] ')' | UnaryOp UnaryExp
+        if (accept(Token.Type.PLUS)) {
+            return parseUnaryExp();
+        }
+        if (accept(Token.Type.MINU)) {
+            return binary(Instruction.Opcode.SUB, ConstantInt.i32(0), parseUnaryExp());
+        }
+        if (accept(Token.Type.NOT)) {
+            return toI32(compare(IcmpInst.Predicate.EQ, parseUnaryExp(), ConstantInt.i32(0)));
+        }
+        if (check(Token.Type.GETINTTK) || check(Token.Type.GETCHARTK)) {
+            Function callee = current().getType() == Token.Type.GETINTTK ? getintFunc : getcharFunc;
+            position++;
+            expect(Token.Type.LPARENT);
+            expect(Token.Type.RPARENT);
+            return call(callee);
+        }
+        if (check(Token.Type.IDENFR) && peekType(1) == Token.Type.LPARENT) {
+            return parseCall();
+        }
+        return parsePrimaryExp();
+    }
+
+    private Value parseCall() {
+        Function callee = functions.get(expect(Token.Type.IDENFR).getValue());
+        expect(Token.Type.LPARENT);
+        List<Value> args = new ArrayList<>();
+        for (Argument param : callee.getArguments()) {
+            if (!args.isEmpty()) {
+                expect(Token.Type.COMMA);
+            }
+            if (param.getType().isPointer()) {
+                args.add(parseArrayArgument());
+            } else {
+                args.add(convert(parseAddExp(), param.getType()));
+            }
+        }
+        expect(Token.Type.RPARENT);
+        Value result = insert(new CallInst(callee, args));
+        return result.getType().isVoid() ? result : toI32(result);
+    }
+
+    /**
+     * 以数组名作实参时传递首元素的地址
+     */
+    private Value parseArrayArgument() {
+        Binding binding = lookup(expect(Token.Type.IDENFR).getValue());
+        if (binding.length < 0) {
+            return binding.address;
+        }
+        return gep(binding.address, ConstantInt.i32(0), ConstantInt.i32(0));
+    }
+
+    private Value parsePrimaryExp() {
+        // PrimaryExp -> '(' Exp ')' | LVal | Number | Character
+        if (accept(Token.Type.LPARENT)) {
+            Value value = parseAddExp();
+            expect(Token.Type.RPARENT);
+            return value;
+        }
+        if (check(Token.Type.INTCON)) {
+            return ConstantInt.i32(new BigInteger(expect(Token.Type.INTCON).getValue()).intValue());
+        }
+        if (check(Token.Type.CHRCON)) {
+            int[] chars = Escapes.unescape(expect(Token.Type.CHRCON).getValue());
+            return ConstantInt.i32(chars.length > 0 ? chars[0] : 0);
+        }
+        return parseLValValue();
+    }
+
+    /**
+     * 读取LVal的值：常量直接得到整数，其余从内存加载
+     */
+    private Value parseLValValue() {
+        Binding binding = lookup(expect(Token.Type.IDENFR).getValue());
+        if (!accept(Token.Type.LBRACK)) {
+            if (binding.constValues != null && !binding.array) {
+                return ConstantInt.i32(binding.constValues[0]);
+            }
+            return toI32(insert(new LoadInst(binding.address)));
+        }
+        Value index = parseAddExp();
+        expect(Token.Type.RBRACK);
+        if (binding.constValues != null && index instanceof ConstantInt) {
+            int i = ((ConstantInt) index).getValue();
+            if (i >= 0 && i < binding.constValues.length) {
+                return ConstantInt.i32(binding.constValues[i]);
+            }
+        }
+        return toI32(insert(new LoadInst(elementAddress(binding, index))));
+    }
+
+    private Value elementAddress(Binding binding, Value index) {
+        if (binding.length < 0) {
+            return gep(binding.address, index);
+        }
+        return gep(binding.address, ConstantInt.i32(0), index);
+    }
+}
@@ -0,0 +1,638 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 中间代码解释器，用于在指令选择之前运行程序、对照后端的结果和统计动态指令数
+ *
+ * 每个函数先译码成紧凑的int数组：操作码后跟定长或带长度的操作数，操作数是帧中的槽号。
+ * 常量和全局变量的地址也占用槽，调用时从模板复制进帧，执行时不再区分值的种类。
+ * phi不生成指令，而是译成控制流边上的并行复制。内存是按字节编址、按字存储的int数组，
+ * 全局变量从低地址开始，局部数组在其后按调用栈分配。
+ * 统计按基本块进行：执行中只记录每个块的进入次数，结束后乘以块中的指令数和访存数汇总到函数。
+ */
+public class IRInterpreter {
+    public static final long DEFAULT_STEP_LIMIT = 2_000_000_000L;
+
+    private static final long THREAD_STACK_SIZE = 1L << 30; // 递归很深的程序需要较大的Java栈
+    private static final int MEMORY_LIMIT = 1 << 28;        // 字节
+    private static final int GLOBAL_BASE = 16;               // 0附近的地址保留，便于发现空指针
+
+    // 译码后的操作码，二元运算与Instruction.Opcode的顺序一致
+    private static final int ADD = 0, SUB = 1, MUL = 2, SDIV = 3, SREM = 4, SHL = 5, ASHR = 6, LSHR = 7,
+            AND = 8, OR = 9, XOR = 10;
+    private static final int EQ = 11, NE = 12, SGT = 13, SGE = 14, SLT = 15, SLE = 16;
+    private static final int MOVE = 17, TRUNC = 18, ALLOCA = 19, LOAD32 = 20, LOAD8 = 21, STORE32 = 22,
+            STORE8 = 23, GEP = 24, CALL = 25, GETINT = 26, GETCHAR = 27, PUTINT = 28, PUTCH = 29, PUTSTR = 30,
+            BR = 31, JUMP = 32, RET = 33, RET_VOID = 34;
+
+    /**
+     * 一个函数的执行统计
+     */
+    public static final class FunctionProfile {
+        private final String name;
+        private long calls;
+        private long instructions;
+        private long loads;
+        private long stores;
+
+        FunctionProfile(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getInstructions() {
+            return instructions;
+        }
+
+        public long getLoads() {
+            return loads;
+        }
+
+        public long getStores() {
+            return stores;
+        }
+
+        public long getMemoryOperations() {
+            return loads + stores;
+        }
+    }
+
+    /**
+     * 译码后的函数
+     */
+    private static final class Code {
+        final String name;
+        int[] code;
+        int[] template;      // 帧的初值：常量和全局变量地址
+        int argumentBase;    // 第一个形参的槽号
+        // 控制流边：目标指令位置、目标块以及phi的并行复制（目标槽、源槽）
+        int[] edgeTarget;
+        int[] edgeBlock;
+        int[][] edgeDestinations;
+        int[][] edgeSources;
+        // 每个基本块的指令数、load数和store数，以及本次运行的进入次数
+        int[] blockSize;
+        int[] blockLoads;
+        int[] blockStores;
+        long[] blockHits;
+
+        Code(String name) {
+            this.name = name;
+        }
+    }
+
+    private final List<Code> functions = new ArrayList<>();
+    private final Map<Function, Integer> functionIndex = new HashMap<>();
+    private final Map<GlobalVariable, Integer> globalAddress = new HashMap<>();
+    private final int[] initialMemory;
+    private final int globalEnd;
+    private final int mainIndex;
+
+    private long stepLimit = DEFAULT_STEP_LIMIT;
+
+    // 一次运行的状态
+    private int[] memory;
+    private int stackPointer;
+    private long steps;
+    private String input;
+    private int inputPosition;
+    private StringBuilder output;
+    private int[] scratch = new int[16]; // phi并行复制的暂存
+
+    /**
+     * 译码模块中定义的所有函数
+     * @throws IllegalArgumentException 模块没有main函数或者含有无法解释的指令
+     */
+    public IRInterpreter(Module module) {
+        int address = GLOBAL_BASE;
+        for (GlobalVariable global : module.getGlobals()) {
+            address = (address + 3) & ~3;
+            globalAddress.put(global, address);
+            address += global.getValueType().getSize();
+        }
+        globalEnd = (address + 3) & ~3;
+        initialMemory = new int[globalEnd / 4];
+        for (GlobalVariable global : module.getGlobals()) {
+            IRType type = global.getValueType();
+            IRType elementType = type.isArray() ? type.getElementType() : type;
+            int length = type.isArray() ? type.getLength() : 1;
+            for (int i = 0; i < length; i++) {
+                int element = globalAddress.get(global) + i * elementType.getSize();
+                if (elementType.getSize() == 1) {
+                    storeByte(initialMemory, element, global.getInitialElement(i));
+                } else {
+                    initialMemory[element >> 2] = global.getInitialElement(i);
+                }
+            }
+        }
+
+        for (Function function : module.getDefinedFunctions()) {
+            functionIndex.put(function, functions.size());
+            functions.add(new Code(function.getName()));
+        }
+        Function main = module.getFunction("main");
+        if (main == null || !functionIndex.containsKey(main)) {
+            throw new IllegalArgumentException("No main function");
+        }
+        mainIndex = functionIndex.get(main);
+        for (Function function : module.getDefinedFunctions()) {
+            new Decoder(function, functions.get(functionIndex.get(function))).decode();
+        }
+    }
+
+    // ==================== 译码 ====================
+
+    /**
+     * 把一个函数译成Code：先给值分配槽，再按块的顺序生成指令，跳转目标最后回填
+     */
+    private final class Decoder {
+        private final Function function;
+        private final Code target;
+        private final Map<Value, Integer> slots = new HashMap<>();
+        private final List<Integer> constants = new ArrayList<>();
+        private final Map<BasicBlock, Integer> blockIds = new HashMap<>();
+        private final Map<BasicBlock, Integer> blockStart = new HashMap<>();
+        private final List<int[]> edges = new ArrayList<>(); // {来源块, 目标块}
+        private int[] code = new int[64];
+        private int length;
+
+        Decoder(Function function, Code target) {
+            this.function = function;
+            this.target = target;
+        }
+
+        void decode() {
+            List<BasicBlock> blocks = function.getBlocks();
+            for (BasicBlock block : blocks) {
+                blockIds.put(block, blockIds.size());
+                for (Instruction inst : block.getInstructions()) {
+                    for (Value operand : inst.getOperands()) {
+                        if (operand instanceof ConstantInt || operand instanceof GlobalVariable) {
+                            slotOf(operand);
+                        }
+                    }
+                }
+            }
+            target.argumentBase = constants.size();
+            for (Argument arg : function.getArguments()) {
+                slots.put(arg, slots.size());
+            }
+            for (BasicBlock block : blocks) {
+                for (Instruction inst : block.getInstructions()) {
+                    slots.put(inst, slots.size()); // 没有结果的指令也占一个槽，省去判断
+                }
+            }
+            target.template = new int[slots.size()];
+            for (int i = 0; i < constants.size(); i++) {
+                target.template[i] = constants.get(i);
+            }
+
+            int n = blocks.size();
+            target.blockSize = new int[n];
+            target.blockLoads = new int[n];
+            target.blockStores = new int[n];
+            target.blockHits = new long[n];
+            for (BasicBlock block : blocks) {
+                int id = blockIds.get(block);
+                blockStart.put(block, length);
+                target.blockSize[id] = block.size();
+                for (Instruction inst : block.getInstructions()) {
+                    target.blockLoads[id] += inst instanceof LoadInst ? 1 : 0;
+                    target.blockStores[id] += inst instanceof StoreInst ? 1 : 0;
+                    emit(inst);
+                }
+            }
+            target.code = Arrays.copyOf(code, length);
+
+            int edgeCount = edges.size();
+            target.edgeTarget = new int[edgeCount];
+            target.edgeBlock = new int[edgeCount];
+            target.edgeDestinations = new int[edgeCount][];
+            target.edgeSources = new int[edgeCount][];
+            for (int e = 0; e < edgeCount; e++) {
+                BasicBlock from = blocks.get(edges.get(e)[0]);
+                BasicBlock to = blocks.get(edges.get(e)[1]);
+                target.edgeTarget[e] = blockStart.get(to);
+                target.edgeBlock[e] = blockIds.get(to);
+                List<PhiInst> phis = to.getPhis();
+                target.edgeDestinations[e] = new int[phis.size()];
+                target.edgeSources[e] = new int[phis.size()];
+                for (int i = 0; i < phis.size(); i++) {
+                    Value incoming = phis.get(i).getIncomingValueFor(from);
+                    if (incoming == null) {
+                        throw new IllegalArgumentException("Phi without incoming value in " + function.getName());
+                    }
+                    target.edgeDestinations[e][i] = slots.get(phis.get(i));
+                    target.edgeSources[e][i] = slotOf(incoming);
+                }
+            }
+        }
+
+        private int slotOf(Value value) {
+            Integer slot = slots.get(value);
+            if (slot != null) {
+                return slot;
+            }
+            int content;
+            if (value instanceof ConstantInt) {
+                content = ((ConstantInt) value).getValue();
+                if (value.getType().equals(IRType.I8)) {
+                    content &= 0xFF;
+                }
+            } else if (value instanceof GlobalVariable) {
+                content = globalAddress.get(value);
+            } else {
+                throw new IllegalArgumentException("Undefined value in " + function.getName());
+            }
+            if (slots.size() != constants.size()) {
+                throw new IllegalStateException("Constant slot after value slots");
+            }
+            slots.put(value, constants.size());
+            constants.add(content);
+            return constants.size() - 1;
+        }
+
+        private int edge(BasicBlock from, BasicBlock to) {
+            edges.add(new int[]{blockIds.get(from), blockIds.get(to)});
+            return edges.size() - 1;
+        }
+
+        private void put(int... words) {
+            while (length + words.length > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            System.arraycopy(words, 0, code, length, words.length);
+            length += words.length;
+        }
+
+        private void emit(Instruction inst) {
+            int d = slots.get(inst);
+            if (inst instanceof BinaryInst) {
+                BinaryInst bin = (BinaryInst) inst;
+                put(bin.getOpcode().ordinal() - Instruction.Opcode.ADD.ordinal(), d,
+                        slotOf(bin.getLhs()), slotOf(bin.getRhs()));
+            } else if (inst instanceof IcmpInst) {
+                IcmpInst cmp = (IcmpInst) inst;
+                put(EQ + cmp.getPredicate().ordinal(), d, slotOf(cmp.getLhs()), slotOf(cmp.getRhs()));
+            } else if (inst instanceof CastInst) {
+                put(inst.getOpcode() == Instruction.Opcode.TRUNC ? TRUNC : MOVE, d, slotOf(inst.getOperand(0)));
+            } else if (inst instanceof AllocaInst) {
+                put(ALLOCA, d, (((AllocaInst) inst).getAllocatedType().getSize() + 3) & ~3);
+            } else if (inst instanceof LoadInst) {
+                put(inst.getType().getSize() == 1 ? LOAD8 : LOAD32, d, slotOf(((LoadInst) inst).getPointer()));
+            } else if (inst instanceof StoreInst) {
+                StoreInst store = (StoreInst) inst;
+                put(store.getValue().getType().getSize() == 1 ? STORE8 : STORE32,
+                        slotOf(store.getValue()), slotOf(store.getPointer()));
+            } else if (inst instanceof GepInst) {
+                emitGep((GepInst) inst, d);
+            } else if (inst instanceof CallInst) {
+                emitCall((CallInst) inst, d);
+            } else if (inst instanceof BranchInst) {
+                BranchInst br = (BranchInst) inst;
+                put(BR, slotOf(br.getCondition()), edge(inst.getParent(), br.getTrueBlock()),
+                        edge(inst.getParent(), br.getFalseBlock()));
+            } else if (inst instanceof JumpInst) {
+                put(JUMP, edge(inst.getParent(), ((JumpInst) inst).getTarget()));
+            } else if (inst instanceof ReturnInst) {
+                Value value = ((ReturnInst) inst).getValue();
+                if (value == null) {
+                    put(RET_VOID);
+                } else {
+                    put(RET, slotOf(value));
+                }
+            } else if (!(inst instanceof PhiInst)) {
+                throw new IllegalArgumentException("Cannot interpret " + inst.getOpcode());
+            }
+        }
+
+        /**
+         * GEP d base offset k (index scale)*k：常量下标并入字节偏移，其余下标带上元素大小
+         */
+        private void emitGep(GepInst gep, int d) {
+            int offset = 0;
+            List<Integer> variable = new ArrayList<>();
+            IRType type = gep.getPointer().getType().getElementType();
+            for (int i = 0; i < gep.getNumIndices(); i++) {
+                Value index = gep.getIndex(i);
+                if (index instanceof ConstantInt) {
+                    offset += ((ConstantInt) index).getValue() * type.getSize();
+                } else {
+                    variable.add(slotOf(index));
+                    variable.add(type.getSize());
+                }
+                type = type.getElementType();
+            }
+            put(GEP, d, slotOf(gep.getPointer()), offset, variable.size() / 2);
+            for (int word : variable) {
+                put(word);
+            }
+        }
+
+        private void emitCall(CallInst call, int d) {
+            Function callee = call.getCallee();
+            if (callee.isBuiltin()) {
+                switch (callee.getName()) {
+                    case "getint": put(GETINT, d); return;
+                    case "getchar": put(GETCHAR, d); return;
+                    case "putint": put(PUTINT, slotOf(call.getArg(0))); return;
+                    case "putch": put(PUTCH, slotOf(call.getArg(0))); return;
+                    case "putstr": put(PUTSTR, slotOf(call.getArg(0))); return;
+                    default: throw new IllegalArgumentException("Unknown runtime function " + callee.getName());
+                }
+            }
+            Integer index = functionIndex.get(callee);
+            if (index == null) {
+                throw new IllegalArgumentException("Call to undefined function " + callee.getName());
+            }
+            put(CALL, d, index, call.getNumArgs());
+            for (Value arg : call.getArgs()) {
+                put(slotOf(arg));
+            }
+        }
+    }
+
+    // ==================== 执行 ====================
+
+    /**
+     * 执行超过该数目的中间代码指令时终止运行
+     */
+    public void setStepLimit(long stepLimit) {
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * 从main开始执行到main返回
+     * @param input 标准输入的内容
+     * @return 程序的输出
+     * @throws IllegalStateException 访存越界、除以零、调用过深或超过指令数上限
+     */
+    public String run(String input) {
+        this.input = input;
+        inputPosition = 0;
+        output = new StringBuilder();
+        memory = Arrays.copyOf(initialMemory, Math.max(initialMemory.length * 2, 1 << 16));
+        stackPointer = globalEnd;
+        steps = 0;
+        for (Code function : functions) {
+            Arrays.fill(function.blockHits, 0);
+        }
+
+        RuntimeException[] failure = new RuntimeException[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                call(functions.get(mainIndex), null, null, 0, 0);
+            } catch (RuntimeException e) {
+                failure[0] = e;
+            } catch (StackOverflowError e) {
+                failure[0] = new IllegalStateException("Call stack overflow");
+            }
+        }, "ir-interpreter", THREAD_STACK_SIZE);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted");
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return output.toString();
+    }
+
+    /**
+     * 调用函数，实参是调用者帧中由callerCode[argStart...]给出的count个槽
+     */
+    private int call(Code f, int[] caller, int[] callerCode, int argStart, int count) {
+        int[] r = f.template.clone();
+        for (int i = 0; i < count; i++) {
+            r[f.argumentBase + i] = caller[callerCode[argStart + i]];
+        }
+        int savedStack = stackPointer;
+        int[] code = f.code;
+        enter(f, 0);
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case ADD: r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]]; pc += 4; break;
+                case SUB: r[code[pc + 1]] = r[code[pc + 2]] - r[code[pc + 3]]; pc += 4; break;
+                case MUL: r[code[pc + 1]] = r[code[pc + 2]] * r[code[pc + 3]]; pc += 4; break;
+                case SDIV: r[code[pc + 1]] = r[code[pc + 2]] / divisor(r[code[pc + 3]], f); pc += 4; break;
+                case SREM: r[code[pc + 1]] = r[code[pc + 2]] % divisor(r[code[pc + 3]], f); pc += 4; break;
+                case SHL: r[code[pc + 1]] = r[code[pc + 2]] << r[code[pc + 3]]; pc += 4; break;
+                case ASHR: r[code[pc + 1]] = r[code[pc + 2]] >> r[code[pc + 3]]; pc += 4; break;
+                case LSHR: r[code[pc + 1]] = r[code[pc + 2]] >>> r[code[pc + 3]]; pc += 4; break;
+                case AND: r[code[pc + 1]] = r[code[pc + 2]] & r[code[pc + 3]]; pc += 4; break;
+                case OR: r[code[pc + 1]] = r[code[pc + 2]] | r[code[pc + 3]]; pc += 4; break;
+                case XOR: r[code[pc + 1]] = r[code[pc + 2]] ^ r[code[pc + 3]]; pc += 4; break;
+                case EQ: r[code[pc + 1]] = r[code[pc + 2]] == r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case NE: r[code[pc + 1]] = r[code[pc + 2]] != r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case SGT: r[code[pc + 1]] = r[code[pc + 2]] > r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case SGE: r[code[pc + 1]] = r[code[pc + 2]] >= r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case SLT: r[code[pc + 1]] = r[code[pc + 2]] < r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case SLE: r[code[pc + 1]] = r[code[pc + 2]] <= r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case MOVE: r[code[pc + 1]] = r[code[pc + 2]]; pc += 3; break;
+                case TRUNC: r[code[pc + 1]] = r[code[pc + 2]] & 0xFF; pc += 3; break;
+                case ALLOCA: r[code[pc + 1]] = allocate(code[pc + 2]); pc += 3; break;
+                case LOAD32: r[code[pc + 1]] = memory[wordIndex(r[code[pc + 2]])]; pc += 3; break;
+                case LOAD8: r[code[pc + 1]] = loadByte(r[code[pc + 2]]); pc += 3; break;
+                case STORE32: memory[wordIndex(r[code[pc + 2]])] = r[code[pc + 1]]; pc += 3; break;
+                case STORE8: storeByte(memory, checked(r[code[pc + 2]]), r[code[pc + 1]]); pc += 3; break;
+                case GEP: {
+                    int d = code[pc + 1];
+                    int address = r[code[pc + 2]] + code[pc + 3];
+                    int end = pc + 5 + 2 * code[pc + 4];
+                    for (pc += 5; pc < end; pc += 2) {
+                        address += r[code[pc]] * code[pc + 1];
+                    }
+                    r[d] = address;
+                    break;
+                }
+                case CALL: {
+                    int args = code[pc + 3];
+                    r[code[pc + 1]] = call(functions.get(code[pc + 2]), r, code, pc + 4, args);
+                    pc += 4 + args;
+                    break;
+                }
+                case GETINT: r[code[pc + 1]] = readInt(); pc += 2; break;
+                case GETCHAR:
+                    r[code[pc + 1]] = inputPosition < input.length() ? input.charAt(inputPosition++) : -1;
+                    pc += 2;
+                    break;
+                case PUTINT: output.append(r[code[pc + 1]]); pc += 2; break;
+                case PUTCH: output.append((char) (r[code[pc + 1]] & 0xFF)); pc += 2; break;
+                case PUTSTR:
+                    for (int address = r[code[pc + 1]]; loadByte(address) != 0; address++) {
+                        output.append((char) loadByte(address));
+                    }
+                    pc += 2;
+                    break;
+                case BR: pc = take(f, r[code[pc + 1]] != 0 ? code[pc + 2] : code[pc + 3], r); break;
+                case JUMP: pc = take(f, code[pc + 1], r); break;
+                case RET: stackPointer = savedStack; return r[code[pc + 1]];
+                case RET_VOID: stackPointer = savedStack; return 0;
+                default: throw new IllegalStateException("Bad opcode " + code[pc] + " in " + f.name);
+            }
+        }
+    }
+
+    /**
+     * 沿控制流边进入后继块：并行复制phi的值，返回后继块的第一条指令
+     */
+    private int take(Code f, int edge, int[] r) {
+        int[] destinations = f.edgeDestinations[edge];
+        if (destinations.length == 1) {
+            r[destinations[0]] = r[f.edgeSources[edge][0]];
+        } else if (destinations.length > 1) {
+            int[] sources = f.edgeSources[edge];
+            if (scratch.length < sources.length) {
+                scratch = new int[sources.length];
+            }
+            for (int i = 0; i < sources.length; i++) {
+                scratch[i] = r[sources[i]];
+            }
+            for (int i = 0; i < destinations.length; i++) {
+                r[destinations[i]] = scratch[i];
+            }
+        }
+        enter(f, f.edgeBlock[edge]);
+        return f.edgeTarget[edge];
+    }
+
+    private void enter(Code f, int block) {
+        f.blockHits[block]++;
+        steps += f.blockSize[block];
+        if (steps > stepLimit) {
+            throw new IllegalStateException("Step limit exceeded in " + f.name);
+        }
+    }
+
+    private static int divisor(int value, Code f) {
+        if (value == 0) {
+            throw new IllegalStateException("Division by zero in " + f.name);
+        }
+        return value;
+    }
+
+    private int allocate(int size) {
+        int address = stackPointer;
+        stackPointer += size;
+        if (stackPointer > MEMORY_LIMIT || stackPointer < 0) {
+            throw new IllegalStateException("Stack overflow");
+        }
+        if (stackPointer / 4 > memory.length) {
+            memory = Arrays.copyOf(memory, Math.min(Math.max(memory.length * 2, stackPointer / 4), MEMORY_LIMIT / 4));
+        }
+        Arrays.fill(memory, address / 4, stackPointer / 4, 0);
+        return address;
+    }
+
+    private int checked(int address) {
+        if (address < GLOBAL_BASE || address >= stackPointer) {
+            throw new IllegalStateException(String.format(Locale.ROOT, "Bad address %d", address));
+        }
+        return address;
+    }
+
+    private int wordIndex(int address) {
+        if ((address & 3) != 0) {
+            throw new IllegalStateException(String.format(Locale.ROOT, "Unaligned word access %d", address));
+        }
+        return checked(address) >> 2;
+    }
+
+    private int loadByte(int address) {
+        return memory[checked(address) >> 2] >>> ((address & 3) * 8) & 0xFF;
+    }
+
+    private static void storeByte(int[] memory, int address, int value) {
+        int shift = (address & 3) * 8;
+        memory[address >> 2] = memory[address >> 2] & ~(0xFF << shift) | (value & 0xFF) << shift;
+    }
+
+    private int readInt() {
+        while (inputPosition < input.length() && Character.isWhitespace(input.charAt(inputPosition))) {
+            inputPosition++;
+        }
+        int start = inputPosition;
+        if (inputPosition < input.length() && "+-".indexOf(input.charAt(inputPosition)) >= 0) {
+            inputPosition++;
+        }
+        while (inputPosition < input.length() && Character.isDigit(input.charAt(inputPosition))) {
+            inputPosition++;
+        }
+        try {
+            return (int) Long.parseLong(input.substring(start, inputPosition));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid integer input at offset " + start);
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    /**
+     * 上一次运行执行的中间代码指令数（phi计入所在块）
+     */
+    public long getInstructionCount() {
+        return steps;
+    }
+
+    /**
+     * 按动态指令数从高到低排列的各函数统计，没有被调用的函数不列出
+     */
+    public List<FunctionProfile> getProfile() {
+        List<FunctionProfile> profile = new ArrayList<>();
+        for (Code f : functions) {
+            FunctionProfile entry = new FunctionProfile(f.name);
+            entry.calls = f.blockHits[0];
+            for (int b = 0; b < f.blockHits.length; b++) {
+                entry.instructions += f.blockHits[b] * f.blockSize[b];
+                entry.loads += f.blockHits[b] * f.blockLoads[b];
+                entry.stores += f.blockHits[b] * f.blockStores[b];
+            }
+            if (entry.calls > 0) {
+                profile.add(entry);
+            }
+        }
+        profile.sort((x, y) -> Long.compare(y.instructions, x.instructions));
+        return Collections.unmodifiableList(profile);
+    }
+
+    /**
+     * 上一次运行的统计报告
+     */
+    public String report() {
+        List<FunctionProfile> profile = getProfile();
+        long loads = 0;
+        long stores = 0;
+        for (FunctionProfile entry : profile) {
+            loads += entry.loads;
+            stores += entry.stores;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "IR instructions: %d%nMemory operations: %d (%d loads, %d stores)%n",
+                steps, loads + stores, loads, stores));
+        sb.append(String.format(Locale.ROOT, "  %-24s %10s %14s %12s %12s%n",
+                "function", "calls", "instructions", "loads", "stores"));
+        for (FunctionProfile entry : profile) {
+            sb.append(String.format(Locale.ROOT, "  %-24s %10d %14d %12d %12d%n", entry.name, entry.calls,
+                    entry.instructions, entry.loads, entry.stores));
+        }
+        return sb.toString();
+    }
+}
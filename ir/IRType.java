@@ -0,0 +1,109 @@
+package ir;
+
+import java.util.Objects;
+
+/**
+ * LLVM IR中的类型：void、i1、i8、i32、label、指针和一维数组
+ */
+public class IRType {
+    public enum Kind {
+        VOID, I1, I8, I32, LABEL, POINTER, ARRAY
+    }
+
+    public static final IRType VOID = new IRType(Kind.VOID, null, 0);
+    public static final IRType I1 = new IRType(Kind.I1, null, 0);
+    public static final IRType I8 = new IRType(Kind.I8, null, 0);
+    public static final IRType I32 = new IRType(Kind.I32, null, 0);
+    public static final IRType LABEL = new IRType(Kind.LABEL, null, 0);
+
+    private final Kind kind;
+    private final IRType elementType; // 指针指向的类型或数组元素类型
+    private final int length;         // 数组长度
+
+    private IRType(Kind kind, IRType elementType, int length) {
+        this.kind = kind;
+        this.elementType = elementType;
+        this.length = length;
+    }
+
+    public static IRType pointerTo(IRType elementType) {
+        return new IRType(Kind.POINTER, elementType, 0);
+    }
+
+    public static IRType arrayOf(IRType elementType, int length) {
+        return new IRType(Kind.ARRAY, elementType, length);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public IRType getElementType() {
+        return elementType;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isInteger() {
+        return kind == Kind.I1 || kind == Kind.I8 || kind == Kind.I32;
+    }
+
+    public boolean isPointer() {
+        return kind == Kind.POINTER;
+    }
+
+    public boolean isArray() {
+        return kind == Kind.ARRAY;
+    }
+
+    public boolean isVoid() {
+        return kind == Kind.VOID;
+    }
+
+    /**
+     * 该类型的值在内存中占用的字节数
+     */
+    public int getSize() {
+        switch (kind) {
+            case I1:
+            case I8:
+                return 1;
+            case I32:
+            case POINTER:
+                return 4;
+            case ARRAY:
+                return length * elementType.getSize();
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IRType)) return false;
+        IRType other = (IRType) o;
+        return kind == other.kind && length == other.length && Objects.equals(elementType, other.elementType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, elementType, length);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case VOID: return "void";
+            case I1: return "i1";
+            case I8: return "i8";
+            case I32: return "i32";
+            case LABEL: return "label";
+            case POINTER: return elementType + "*";
+            case ARRAY: return "[" + length + " x " + elementType + "]";
+            default: return "?";
+        }
+    }
+}
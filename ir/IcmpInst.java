@@ -0,0 +1,79 @@
+package ir;
+
+/**
+ * 整数比较指令，结果为i1
+ */
+public class IcmpInst extends Instruction {
+    public enum Predicate {
+        EQ, NE, SGT, SGE, SLT, SLE;
+
+        /**
+         * 交换两个操作数后等价的比较
+         */
+        public Predicate swapped() {
+            switch (this) {
+                case SGT: return SLT;
+                case SGE: return SLE;
+                case SLT: return SGT;
+                case SLE: return SGE;
+                default: return this;
+            }
+        }
+
+        /**
+         * 结果取反后等价的比较
+         */
+        public Predicate inverse() {
+            switch (this) {
+                case EQ: return NE;
+                case NE: return EQ;
+                case SGT: return SLE;
+                case SGE: return SLT;
+                case SLT: return SGE;
+                default: return SGT;
+            }
+        }
+
+        public boolean evaluate(int a, int b) {
+            switch (this) {
+                case EQ: return a == b;
+                case NE: return a != b;
+                case SGT: return a > b;
+                case SGE: return a >= b;
+                case SLT: return a < b;
+                default: return a <= b;
+            }
+        }
+    }
+
+    private Predicate predicate;
+
+    public IcmpInst(Predicate predicate, Value lhs, Value rhs) {
+        super(Opcode.ICMP, IRType.I1);
+        this.predicate = predicate;
+        addOperand(lhs);
+        addOperand(rhs);
+    }
+
+    public Predicate getPredicate() {
+        return predicate;
+    }
+
+    public void setPredicate(Predicate predicate) {
+        this.predicate = predicate;
+    }
+
+    public Value getLhs() {
+        return getOperand(0);
+    }
+
+    public Value getRhs() {
+        return getOperand(1);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return resultPrefix(slots) + "icmp " + predicate.name().toLowerCase() + " " + getLhs().getType() + " "
+                + slots.ref(getLhs()) + ", " + slots.ref(getRhs());
+    }
+}
@@ -0,0 +1,67 @@
+package ir;
+
+/**
+ * 指令基类
+ */
+public abstract class Instruction extends User {
+    public enum Opcode {
+        ADD, SUB, MUL, SDIV, SREM, SHL, ASHR, LSHR, AND, OR, XOR,
+        ICMP, ZEXT, TRUNC,
+        ALLOCA, LOAD, STORE, GEP,
+        CALL, PHI,
+        BR, JUMP, RET
+    }
+
+    private final Opcode opcode;
+    private BasicBlock parent;
+
+    protected Instruction(Opcode opcode, IRType type) {
+        super(type);
+        this.opcode = opcode;
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    public BasicBlock getParent() {
+        return parent;
+    }
+
+    void setParent(BasicBlock parent) {
+        this.parent = parent;
+    }
+
+    public boolean isTerminator() {
+        return opcode == Opcode.BR || opcode == Opcode.JUMP || opcode == Opcode.RET;
+    }
+
+    /**
+     * 指令是否有结果以外的作用（写内存、调用、控制流），这类指令不能因为结果无用而删除
+     */
+    public boolean hasSideEffects() {
+        return opcode == Opcode.STORE || opcode == Opcode.CALL || isTerminator();
+    }
+
+    /**
+     * 从所在基本块中删除该指令并解除它对操作数的使用
+     */
+    public void eraseFromParent() {
+        if (parent != null) {
+            parent.remove(this);
+        }
+        dropOperands();
+    }
+
+    /**
+     * 指令的IR文本
+     */
+    public abstract String toIR(SlotTracker slots);
+
+    /**
+     * 有结果的指令的"%vN = "前缀
+     */
+    protected String resultPrefix(SlotTracker slots) {
+        return slots.ref(this) + " = ";
+    }
+}
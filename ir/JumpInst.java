@@ -0,0 +1,20 @@
+package ir;
+
+/**
+ * 无条件跳转
+ */
+public class JumpInst extends Instruction {
+    public JumpInst(BasicBlock target) {
+        super(Opcode.JUMP, IRType.VOID);
+        addOperand(target);
+    }
+
+    public BasicBlock getTarget() {
+        return (BasicBlock) getOperand(0);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return "br label " + slots.ref(getTarget());
+    }
+}
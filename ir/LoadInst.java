@@ -0,0 +1,20 @@
+package ir;
+
+/**
+ * 从内存读取
+ */
+public class LoadInst extends Instruction {
+    public LoadInst(Value pointer) {
+        super(Opcode.LOAD, pointer.getType().getElementType());
+        addOperand(pointer);
+    }
+
+    public Value getPointer() {
+        return getOperand(0);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return resultPrefix(slots) + "load " + getType() + ", " + slots.typed(getPointer());
+    }
+}
@@ -0,0 +1,79 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个编译单元的IR：全局变量和函数
+ */
+public class Module {
+    private final List<GlobalVariable> globals = new ArrayList<>();
+    private final List<Function> functions = new ArrayList<>();
+
+    public List<GlobalVariable> getGlobals() {
+        return Collections.unmodifiableList(globals);
+    }
+
+    public List<Function> getFunctions() {
+        return Collections.unmodifiableList(functions);
+    }
+
+    public void addGlobal(GlobalVariable global) {
+        globals.add(global);
+    }
+
+    public void removeGlobal(GlobalVariable global) {
+        globals.remove(global);
+    }
+
+    public void addFunction(Function function) {
+        functions.add(function);
+    }
+
+    public void removeFunction(Function function) {
+        functions.remove(function);
+    }
+
+    public Function getFunction(String name) {
+        for (Function function : functions) {
+            if (function.getName().equals(name)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 有函数体的函数（不含运行库声明）
+     */
+    public List<Function> getDefinedFunctions() {
+        List<Function> defined = new ArrayList<>();
+        for (Function function : functions) {
+            if (!function.isBuiltin()) {
+                defined.add(function);
+            }
+        }
+        return defined;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Function function : functions) {
+            if (function.isBuiltin()) {
+                sb.append(function);
+            }
+        }
+        sb.append('\n');
+        for (GlobalVariable global : globals) {
+            sb.append(global).append('\n');
+        }
+        for (Function function : functions) {
+            if (!function.isBuiltin()) {
+                sb.append('\n').append(function);
+            }
+        }
+        return sb.toString();
+    }
+}
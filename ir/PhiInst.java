@@ -0,0 +1,77 @@
+package ir;
+
+/**
+ * phi指令，操作数依次为(值, 前驱基本块)对
+ */
+public class PhiInst extends Instruction {
+    public PhiInst(IRType type) {
+        super(Opcode.PHI, type);
+    }
+
+    public void addIncoming(Value value, BasicBlock block) {
+        addOperand(value);
+        addOperand(block);
+    }
+
+    public int getNumIncoming() {
+        return getNumOperands() / 2;
+    }
+
+    public Value getIncomingValue(int i) {
+        return getOperand(2 * i);
+    }
+
+    public BasicBlock getIncomingBlock(int i) {
+        return (BasicBlock) getOperand(2 * i + 1);
+    }
+
+    public void setIncomingValue(int i, Value value) {
+        setOperand(2 * i, value);
+    }
+
+    public void setIncomingBlock(int i, BasicBlock block) {
+        setOperand(2 * i + 1, block);
+    }
+
+    /**
+     * 来自block的值，没有该前驱时返回null
+     */
+    public Value getIncomingValueFor(BasicBlock block) {
+        for (int i = 0; i < getNumIncoming(); i++) {
+            if (getIncomingBlock(i) == block) {
+                return getIncomingValue(i);
+            }
+        }
+        return null;
+    }
+
+    public void removeIncoming(int i) {
+        removeOperand(2 * i + 1);
+        removeOperand(2 * i);
+    }
+
+    /**
+     * 删除来自block的所有入边
+     */
+    public void removeIncomingBlock(BasicBlock block) {
+        for (int i = getNumIncoming() - 1; i >= 0; i--) {
+            if (getIncomingBlock(i) == block) {
+                removeIncoming(i);
+            }
+        }
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        StringBuilder sb = new StringBuilder(resultPrefix(slots));
+        sb.append("phi ").append(getType()).append(' ');
+        for (int i = 0; i < getNumIncoming(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("[ ").append(slots.ref(getIncomingValue(i))).append(", ")
+                    .append(slots.ref(getIncomingBlock(i))).append(" ]");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package ir;
+
+/**
+ * 函数返回，无返回值时没有操作数
+ */
+public class ReturnInst extends Instruction {
+    public ReturnInst(Value value) {
+        super(Opcode.RET, IRType.VOID);
+        if (value != null) {
+            addOperand(value);
+        }
+    }
+
+    public Value getValue() {
+        return getNumOperands() > 0 ? getOperand(0) : null;
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return getValue() == null ? "ret void" : "ret " + slots.typed(getValue());
+    }
+}
@@ -0,0 +1,58 @@
+package ir;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 输出IR文本时为函数内的形参、基本块和指令结果编号
+ */
+public class SlotTracker {
+    private final Map<Value, String> names = new HashMap<>();
+
+    public SlotTracker(Function function) {
+        for (Argument argument : function.getArguments()) {
+            names.put(argument, "%a" + argument.getIndex());
+        }
+        int blockCount = 0;
+        int valueCount = 0;
+        for (BasicBlock block : function.getBlocks()) {
+            names.put(block, "%b" + blockCount++);
+            for (Instruction inst : block.getInstructions()) {
+                if (!inst.getType().isVoid()) {
+                    names.put(inst, "%v" + valueCount++);
+                }
+            }
+        }
+    }
+
+    /**
+     * 值在IR文本中的引用形式
+     */
+    public String ref(Value value) {
+        if (value instanceof ConstantInt) {
+            return value.toString();
+        }
+        if (value instanceof GlobalVariable) {
+            return "@" + ((GlobalVariable) value).getName();
+        }
+        if (value instanceof Function) {
+            return "@" + ((Function) value).getName();
+        }
+        String name = names.get(value);
+        return name != null ? name : "%undef";
+    }
+
+    /**
+     * 带类型的引用，如"i32 %v1"
+     */
+    public String typed(Value value) {
+        return value.getType() + " " + ref(value);
+    }
+
+    /**
+     * 基本块的标签名（不带%）
+     */
+    public String label(BasicBlock block) {
+        return ref(block).substring(1);
+    }
+}
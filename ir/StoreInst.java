@@ -0,0 +1,25 @@
+package ir;
+
+/**
+ * 写入内存
+ */
+public class StoreInst extends Instruction {
+    public StoreInst(Value value, Value pointer) {
+        super(Opcode.STORE, IRType.VOID);
+        addOperand(value);
+        addOperand(pointer);
+    }
+
+    public Value getValue() {
+        return getOperand(0);
+    }
+
+    public Value getPointer() {
+        return getOperand(1);
+    }
+
+    @Override
+    public String toIR(SlotTracker slots) {
+        return "store " + slots.typed(getValue()) + ", " + slots.typed(getPointer());
+    }
+}
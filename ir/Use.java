@@ -0,0 +1,26 @@
+package ir;
+
+/**
+ * 一次使用：user的第index个操作数是某个Value
+ */
+public class Use {
+    private final User user;
+    private int index;
+
+    Use(User user, int index) {
+        this.user = user;
+        this.index = index;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+}
@@ -0,0 +1,65 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 有操作数的值，维护操作数与被使用值之间的use关系
+ */
+public abstract class User extends Value {
+    private final List<Value> operands = new ArrayList<>();
+    private final List<Use> operandUses = new ArrayList<>();
+
+    protected User(IRType type) {
+        super(type);
+    }
+
+    public List<Value> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    public int getNumOperands() {
+        return operands.size();
+    }
+
+    public Value getOperand(int index) {
+        return operands.get(index);
+    }
+
+    public void addOperand(Value value) {
+        Use use = new Use(this, operands.size());
+        operands.add(value);
+        operandUses.add(use);
+        value.addUse(use);
+    }
+
+    public void setOperand(int index, Value value) {
+        Use use = operandUses.get(index);
+        operands.get(index).removeUse(use);
+        operands.set(index, value);
+        value.addUse(use);
+    }
+
+    /**
+     * 删除第index个操作数，后面的操作数依次前移
+     */
+    public void removeOperand(int index) {
+        Use use = operandUses.remove(index);
+        operands.remove(index).removeUse(use);
+        for (int i = index; i < operandUses.size(); i++) {
+            operandUses.get(i).setIndex(i);
+        }
+    }
+
+    /**
+     * 解除所有操作数的使用关系，删除指令前调用
+     */
+    public void dropOperands() {
+        for (int i = 0; i < operands.size(); i++) {
+            operands.get(i).removeUse(operandUses.get(i));
+        }
+        operands.clear();
+        operandUses.clear();
+    }
+}
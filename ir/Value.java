@@ -0,0 +1,60 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IR中所有值的基类，记录类型和使用它的位置（use列表）
+ */
+public abstract class Value {
+    protected IRType type;
+    private final List<Use> uses = new ArrayList<>();
+
+    protected Value(IRType type) {
+        this.type = type;
+    }
+
+    public IRType getType() {
+        return type;
+    }
+
+    public List<Use> getUses() {
+        return Collections.unmodifiableList(uses);
+    }
+
+    public boolean hasUses() {
+        return !uses.isEmpty();
+    }
+
+    void addUse(Use use) {
+        uses.add(use);
+    }
+
+    void removeUse(Use use) {
+        uses.remove(use);
+    }
+
+    /**
+     * 把所有对该值的使用替换为newValue
+     */
+    public void replaceAllUsesWith(Value newValue) {
+        if (newValue == this) {
+            return;
+        }
+        for (Use use : new ArrayList<>(uses)) {
+            use.getUser().setOperand(use.getIndex(), newValue);
+        }
+    }
+
+    /**
+     * 所有使用该值的User（可能重复）
+     */
+    public List<User> getUsers() {
+        List<User> users = new ArrayList<>(uses.size());
+        for (Use use : uses) {
+            users.add(use.getUser());
+        }
+        return users;
+    }
+}
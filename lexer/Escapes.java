@@ -0,0 +1,44 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 字符常量和字符串常量中转义序列的处理
+ */
+public final class Escapes {
+    private Escapes() {
+    }
+
+    /**
+     * 把去掉引号的字符（串）常量内容转换为字符值序列
+     * @param raw 常量的原始文本
+     * @return 各字符的值
+     */
+    public static int[] unescape(String raw) {
+        List<Integer> chars = new ArrayList<>();
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '\\' && i + 1 < raw.length()) {
+                char next = raw.charAt(++i);
+                switch (next) {
+                    case 'a': chars.add(7); break;
+                    case 'b': chars.add(8); break;
+                    case 't': chars.add(9); break;
+                    case 'n': chars.add(10); break;
+                    case 'v': chars.add(11); break;
+                    case 'f': chars.add(12); break;
+                    case '0': chars.add(0); break;
+                    default: chars.add((int) next); break; // \" \' \\
+                }
+            } else {
+                chars.add((int) c);
+            }
+        }
+        int[] result = new int[chars.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = chars.get(i);
+        }
+        return result;
+    }
+}
@@ -6,6 +6,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 /**
  * 词法分析器，将源代码解析为词法单元序列
@@ -31,24 +34,209 @@ public class Lexer {
         KEYWORDS.put("printf", Token.Type.PRINTFTK);
     }
     
+    // 并行词法分析时每块的最小字符数，过小的块不值得调度
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+    
     private String source;       // 源代码
     private int position;        // 当前位置
+    private int limit;           // 分析范围的结束位置（不含）
     private int line;            // 当前行号
     private char currentChar;    // 当前字符
     private List<Token> tokens;  // 识别出的词法单元列表
+    private List<SimpleErrorHandler.ErrorRecord> errorBuffer; // 错误缓冲区，为null时直接写入SimpleErrorHandler
+    private Consumer<Token> tokenListener; // 每识别出一个词法单元时通知，用于流水线方式
     
     /**
      * 创建词法分析器
      * @param source 源代码
      */
     public Lexer(String source) {
+        this(source, 0, source.length(), 1);
+    }
+    
+    /**
+     * 创建只分析源代码一段的词法分析器
+     * @param source 源代码
+     * @param begin 起始位置
+     * @param end 结束位置（不含）
+     * @param startLine 起始位置所在的行号
+     */
+    private Lexer(String source, int begin, int end, int startLine) {
         this.source = source;
-        this.position = 0;
-        this.line = 1;
+        this.position = begin;
+        this.limit = end;
+        this.line = startLine;
         this.tokens = new ArrayList<>();
-        if (!source.isEmpty()) {
-            this.currentChar = source.charAt(0);
+        if (begin < end) {
+            this.currentChar = source.charAt(begin);
+        }
+    }
+    
+    /**
+     * 设置错误缓冲区，错误不再直接写入SimpleErrorHandler
+     */
+    public void setErrorBuffer(List<SimpleErrorHandler.ErrorRecord> errorBuffer) {
+        this.errorBuffer = errorBuffer;
+    }
+    
+    /**
+     * 设置词法单元监听器，每识别出一个词法单元时调用
+     */
+    public void setTokenListener(Consumer<Token> tokenListener) {
+        this.tokenListener = tokenListener;
+    }
+    
+    /**
+     * 记录识别出的词法单元
+     */
+    private void emit(Token token) {
+        tokens.add(token);
+        if (tokenListener != null) {
+            tokenListener.accept(token);
+        }
+    }
+    
+    /**
+     * 报告一个词法错误，写入当前的错误缓冲区或全局错误表
+     */
+    private void reportError(int line, String code) {
+        if (errorBuffer != null) {
+            errorBuffer.add(new SimpleErrorHandler.ErrorRecord(line, code));
+        } else {
+            SimpleErrorHandler.addError(line, code);
+        }
+    }
+    
+    /**
+     * 并行词法分析：先用一遍只跟踪注释、字符串和字符常量状态的扫描，在不处于块注释中的换行处
+     * 切分源代码并算出每块的起始行号，然后各块并行分析，按顺序拼接Token和错误。
+     * 结果与顺序分析完全相同。
+     * @param pool 执行各块分析的线程池
+     * @return 词法单元序列
+     */
+    public List<Token> tokenizeParallel(ForkJoinPool pool) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (limit - position) / (pool.getParallelism() * 4));
+        List<int[]> splits = findSplitPoints(chunkSize);
+        if (splits.size() <= 1) {
+            return tokenize();
+        }
+        
+        List<ChunkTask> chunks = new ArrayList<>();
+        for (int i = 0; i < splits.size(); i++) {
+            int end = (i + 1 < splits.size()) ? splits.get(i + 1)[0] : limit;
+            ChunkTask chunk = new ChunkTask(new Lexer(source, splits.get(i)[0], end, splits.get(i)[1]));
+            chunks.add(chunk);
+            pool.execute(chunk);
+        }
+        for (ChunkTask chunk : chunks) {
+            chunk.join();
+            tokens.addAll(chunk.lexer.tokens);
+            if (errorBuffer != null) {
+                errorBuffer.addAll(chunk.lexer.errorBuffer);
+            } else {
+                SimpleErrorHandler.addErrors(chunk.lexer.errorBuffer);
+            }
+        }
+        position = limit;
+        return tokens;
+    }
+    
+    /**
+     * 分析一块源代码的任务
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Lexer lexer;
+        
+        ChunkTask(Lexer lexer) {
+            this.lexer = lexer;
+            this.lexer.errorBuffer = new ArrayList<>();
+        }
+        
+        @Override
+        protected void compute() {
+            lexer.tokenize();
+        }
+    }
+    
+    /**
+     * 找出并行分析的切分点。跳过注释、字符串和字符常量的规则与tokenize相同，
+     * 因此切分点处顺序分析也恰好处于两个单词之间。
+     * @param chunkSize 每块的目标大小
+     * @return 切分点列表，每项为{位置, 行号}，第一项是分析的起点
+     */
+    private List<int[]> findSplitPoints(int chunkSize) {
+        List<int[]> splits = new ArrayList<>();
+        splits.add(new int[]{position, line});
+        int i = position;
+        int currentLine = line;
+        int nextSplit = position + chunkSize;
+        while (i < limit) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                currentLine++;
+                i++;
+                if (i >= nextSplit && i < limit) {
+                    splits.add(new int[]{i, currentLine});
+                    nextSplit = i + chunkSize;
+                }
+            } else if (c == '/' && i + 1 < limit && source.charAt(i + 1) == '/') {
+                // 行注释，换行符留给上面的分支处理
+                i += 2;
+                while (i < limit && source.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < limit && source.charAt(i + 1) == '*') {
+                // 块注释，其中的换行只计行号，不作为切分点
+                i += 2;
+                while (i < limit) {
+                    if (source.charAt(i) == '*' && i + 1 < limit && source.charAt(i + 1) == '/') {
+                        i += 2;
+                        break;
+                    }
+                    if (source.charAt(i) == '\n') {
+                        currentLine++;
+                    }
+                    i++;
+                }
+            } else if (c == '"') {
+                // 字符串常量在双引号或换行处结束
+                i++;
+                while (i < limit && source.charAt(i) != '"' && source.charAt(i) != '\n') {
+                    i++;
+                }
+                if (i < limit && source.charAt(i) == '"') {
+                    i++;
+                }
+            } else if (c == '\'') {
+                i = skipCharacterLiteral(i + 1);
+            } else {
+                i++;
+            }
+        }
+        return splits;
+    }
+    
+    /**
+     * 按character()的规则跳过字符常量
+     * @param i 开始单引号之后的位置
+     * @return 字符常量之后的位置
+     */
+    private int skipCharacterLiteral(int i) {
+        if (i >= limit || source.charAt(i) == '\'' || source.charAt(i) == '\n') {
+            return i;
+        }
+        if (source.charAt(i) == '\\') {
+            i++;
+            if (i >= limit || source.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        i++;
+        if (i < limit && source.charAt(i) == '\'') {
+            i++;
         }
+        return i;
     }
     
     /**
@@ -56,7 +244,7 @@ public class Lexer {
      * @return 词法单元序列
      */
     public List<Token> tokenize() {
-        while (position < source.length()) {
+        while (position < limit) {
             // 跳过空白字符
             if (Character.isWhitespace(currentChar)) {
                 if (currentChar == '\n') {
@@ -79,147 +267,147 @@ public class Lexer {
             
             // 识别标识符和关键字
             if (Character.isLetter(currentChar) || currentChar == '_') {
-                tokens.add(identifier());
+                emit(identifier());
                 continue;
             }
             
             // 识别数字
             if (Character.isDigit(currentChar)) {
-                tokens.add(number());
+                emit(number());
                 continue;
             }
             
             // 识别字符常量
             if (currentChar == '\'') {
-                tokens.add(character());
+                emit(character());
                 continue;
             }
             
             // 识别字符串常量
             if (currentChar == '"') {
-                tokens.add(string());
+                emit(string());
                 continue;
             }
             
             // 识别操作符和分隔符
             switch (currentChar) {
                 case '+':
-                    tokens.add(new Token(Token.Type.PLUS, "+", line));
+                    emit(new Token(Token.Type.PLUS, "+", line));
                     advance();
                     break;
                 case '-':
-                    tokens.add(new Token(Token.Type.MINU, "-", line));
+                    emit(new Token(Token.Type.MINU, "-", line));
                     advance();
                     break;
                 case '*':
-                    tokens.add(new Token(Token.Type.MULT, "*", line));
+                    emit(new Token(Token.Type.MULT, "*", line));
                     advance();
                     break;
                 case '/':
-                    tokens.add(new Token(Token.Type.DIV, "/", line));
+                    emit(new Token(Token.Type.DIV, "/", line));
                     advance();
                     break;
                 case '%':
-                    tokens.add(new Token(Token.Type.MOD, "%", line));
+                    emit(new Token(Token.Type.MOD, "%", line));
                     advance();
                     break;
                 case '<':
                     if (peekNext() == '=') {
                         advance();
-                        tokens.add(new Token(Token.Type.LEQ, "<=", line));
+                        emit(new Token(Token.Type.LEQ, "<=", line));
                     } else {
-                        tokens.add(new Token(Token.Type.LSS, "<", line));
+                        emit(new Token(Token.Type.LSS, "<", line));
                     }
                     advance();
                     break;
                 case '>':
                     if (peekNext() == '=') {
                         advance();
-                        tokens.add(new Token(Token.Type.GEQ, ">=", line));
+                        emit(new Token(Token.Type.GEQ, ">=", line));
                     } else {
-                        tokens.add(new Token(Token.Type.GRE, ">", line));
+                        emit(new Token(Token.Type.GRE, ">", line));
                     }
                     advance();
                     break;
                 case '=':
                     if (peekNext() == '=') {
                         advance();
-                        tokens.add(new Token(Token.Type.EQL, "==", line));
+                        emit(new Token(Token.Type.EQL, "==", line));
                     } else {
-                        tokens.add(new Token(Token.Type.ASSIGN, "=", line));
+                        emit(new Token(Token.Type.ASSIGN, "=", line));
                     }
                     advance();
                     break;
                 case '!':
                     if (peekNext() == '=') {
                         advance();
-                        tokens.add(new Token(Token.Type.NEQ, "!=", line));
+                        emit(new Token(Token.Type.NEQ, "!=", line));
                     } else {
-                        tokens.add(new Token(Token.Type.NOT, "!", line));
+                        emit(new Token(Token.Type.NOT, "!", line));
                     }
                     advance();
                     break;
                 case '&':
                     if (peekNext() == '&') {
                         advance();
-                        tokens.add(new Token(Token.Type.AND, "&&", line));
+                        emit(new Token(Token.Type.AND, "&&", line));
                         advance();
                     } else {
                         // 错误：单个&不是有效的操作符
-                        SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+                        reportError(line, "a"); // 错误类型a - 非法符号
                         // 添加一个AND token作为替代，避免解析器陷入无限循环
-                        tokens.add(new Token(Token.Type.AND, "&&", line));
+                        emit(new Token(Token.Type.AND, "&&", line));
                         advance();
                     }
                     break;
                 case '|':
                     if (peekNext() == '|') {
                         advance();
-                        tokens.add(new Token(Token.Type.OR, "||", line));
+                        emit(new Token(Token.Type.OR, "||", line));
                         advance();
                     } else {
                         // 错误：单个|不是有效的操作符
-                        SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+                        reportError(line, "a"); // 错误类型a - 非法符号
                         // 添加一个OR token作为替代，避免解析器陷入无限循环
-                        tokens.add(new Token(Token.Type.OR, "||", line));
+                        emit(new Token(Token.Type.OR, "||", line));
                         advance();
                     }
                     break;
                 case ';':
-                    tokens.add(new Token(Token.Type.SEMICN, ";", line));
+                    emit(new Token(Token.Type.SEMICN, ";", line));
                     advance();
                     break;
                 case ',':
-                    tokens.add(new Token(Token.Type.COMMA, ",", line));
+                    emit(new Token(Token.Type.COMMA, ",", line));
                     advance();
                     break;
                 case '(':
-                    tokens.add(new Token(Token.Type.LPARENT, "(", line));
+                    emit(new Token(Token.Type.LPARENT, "(", line));
                     advance();
                     break;
                 case ')':
-                    tokens.add(new Token(Token.Type.RPARENT, ")", line));
+                    emit(new Token(Token.Type.RPARENT, ")", line));
                     advance();
                     break;
                 case '[':
-                    tokens.add(new Token(Token.Type.LBRACK, "[", line));
+                    emit(new Token(Token.Type.LBRACK, "[", line));
                     advance();
                     break;
                 case ']':
-                    tokens.add(new Token(Token.Type.RBRACK, "]", line));
+                    emit(new Token(Token.Type.RBRACK, "]", line));
                     advance();
                     break;
                 case '{':
-                    tokens.add(new Token(Token.Type.LBRACE, "{", line));
+                    emit(new Token(Token.Type.LBRACE, "{", line));
                     advance();
                     break;
                 case '}':
-                    tokens.add(new Token(Token.Type.RBRACE, "}", line));
+                    emit(new Token(Token.Type.RBRACE, "}", line));
                     advance();
                     break;
                 default:
                     // 遇到不识别的字符
-                    SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+                    reportError(line, "a"); // 错误类型a - 非法符号
                     advance();
                     break;
             }
@@ -233,7 +421,7 @@ public class Lexer {
      */
     private void advance() {
         position++;
-        if (position < source.length()) {
+        if (position < limit) {
             currentChar = source.charAt(position);
         }
     }
@@ -243,7 +431,7 @@ public class Lexer {
      * @return 下一个字符，如果已到末尾则返回'\0'
      */
     private char peekNext() {
-        if (position + 1 < source.length()) {
+        if (position + 1 < limit) {
             return source.charAt(position + 1);
         }
         return '\0';
@@ -257,7 +445,7 @@ public class Lexer {
         StringBuilder sb = new StringBuilder();
         
         // 收集标识符的所有字符
-        while (position < source.length() && 
+        while (position < limit && 
               (Character.isLetterOrDigit(currentChar) || currentChar == '_')) {
             sb.append(currentChar);
             advance();
@@ -282,7 +470,7 @@ public class Lexer {
         StringBuilder sb = new StringBuilder();
         
         // 收集数字的所有字符
-        while (position < source.length() && Character.isDigit(currentChar)) {
+        while (position < limit && Character.isDigit(currentChar)) {
             sb.append(currentChar);
             advance();
         }
@@ -298,9 +486,9 @@ public class Lexer {
         advance(); // 跳过开始的单引号
         
         // 检查字符是否有效
-        if (position >= source.length() || currentChar == '\'' || currentChar == '\n') {
+        if (position >= limit || currentChar == '\'' || currentChar == '\n') {
             // 字符常量为空或跨行
-            SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+            reportError(line, "a"); // 错误类型a - 非法符号
             return new Token(Token.Type.CHRCON, "", line);
         }
         
@@ -312,12 +500,12 @@ public class Lexer {
             advance();
             
             // 确保还有下一个字符
-            if (position < source.length() && currentChar != '\n') {
+            if (position < limit && currentChar != '\n') {
                 value.append(currentChar);
                 advance();
             } else {
                 // 转义序列不完整
-                SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+                reportError(line, "a"); // 错误类型a - 非法符号
                 return new Token(Token.Type.CHRCON, value.toString(), line);
             }
         } else {
@@ -329,7 +517,7 @@ public class Lexer {
         // 字符常量必须以单引号结束
         if (currentChar != '\'') {
             // 缺少右单引号
-            SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+            reportError(line, "a"); // 错误类型a - 非法符号
             return new Token(Token.Type.CHRCON, value.toString(), line);
         }
         
@@ -346,7 +534,7 @@ public class Lexer {
         StringBuilder sb = new StringBuilder();
         
         // 收集字符串的所有字符
-        while (position < source.length() && currentChar != '"' && currentChar != '\n') {
+        while (position < limit && currentChar != '"' && currentChar != '\n') {
             sb.append(currentChar);
             advance();
         }
@@ -354,7 +542,7 @@ public class Lexer {
         // 字符串常量必须以双引号结束
         if (currentChar != '"') {
             // 缺少右双引号或字符串跨行
-            SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+            reportError(line, "a"); // 错误类型a - 非法符号
             return new Token(Token.Type.STRCON, sb.toString(), line);
         }
         
@@ -371,7 +559,7 @@ public class Lexer {
         advance();
         
         // 跳过注释内容直到行尾
-        while (position < source.length() && currentChar != '\n') {
+        while (position < limit && currentChar != '\n') {
             advance();
         }
     }
@@ -385,7 +573,7 @@ public class Lexer {
         advance();
         
         // 跳过注释内容直到*/
-        while (position < source.length()) {
+        while (position < limit) {
             if (currentChar == '*' && peekNext() == '/') {
                 advance(); // 跳过*
                 advance(); // 跳过/
@@ -400,6 +588,6 @@ public class Lexer {
         }
         
         // 如果到达这里，意味着块注释没有正确关闭
-        SimpleErrorHandler.addError(line, "a"); // 错误类型a - 非法符号
+        reportError(line, "a"); // 错误类型a - 非法符号
     }
 } 
\ No newline at end of file
@@ -0,0 +1,82 @@
+package mips;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 每种指令的执行代价，指令选择据此在等价的指令序列之间选择
+ *
+ * 默认值：div为50，乘法为3，访存为2，跳转和分支为1.2，其余为1。
+ * li的立即数超出16位时按lui和ori两条指令计算。
+ */
+public class CostTable {
+    private final Map<MipsOpcode, Double> costs = new EnumMap<>(MipsOpcode.class);
+
+    public static CostTable defaultTable() {
+        CostTable table = new CostTable();
+        for (MipsOpcode opcode : MipsOpcode.values()) {
+            table.set(opcode, 1);
+        }
+        table.set(MipsOpcode.DIV, 50);
+        table.set(MipsOpcode.MUL, 3);
+        table.set(MipsOpcode.MULT, 3);
+        for (MipsOpcode opcode : MipsOpcode.values()) {
+            MipsOpcode.Format format = opcode.getFormat();
+            if (format == MipsOpcode.Format.LOAD || format == MipsOpcode.Format.STORE) {
+                table.set(opcode, 2);
+            } else if (opcode.isBranch() || format == MipsOpcode.Format.J || format == MipsOpcode.Format.JR) {
+                table.set(opcode, 1.2);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 在默认值的基础上解析形如"mul=4,div=40"的设置，名称为指令助记符
+     * @param spec 逗号分隔的设置，可以为空串
+     * @return 代价表
+     * @throws IllegalArgumentException 设置格式错误或指令名未知
+     */
+    public static CostTable parse(String spec) {
+        CostTable table = defaultTable();
+        for (String item : spec.split(",")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = item.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cost setting: " + item);
+            }
+            table.set(opcodeNamed(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        }
+        return table;
+    }
+
+    private static MipsOpcode opcodeNamed(String name) {
+        for (MipsOpcode opcode : MipsOpcode.values()) {
+            if (opcode.getName().equals(name)) {
+                return opcode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown instruction: " + name);
+    }
+
+    public CostTable set(MipsOpcode opcode, double cost) {
+        costs.put(opcode, cost);
+        return this;
+    }
+
+    public double get(MipsOpcode opcode) {
+        return costs.get(opcode);
+    }
+
+    /**
+     * 把常量装入寄存器的代价
+     */
+    public double loadImmediate(int value) {
+        if (Immediate.fitsSigned16(value) || Immediate.fitsUnsigned16(value) || (value & 0xFFFF) == 0) {
+            return get(MipsOpcode.LI);
+        }
+        return get(MipsOpcode.LUI) + get(MipsOpcode.ORI);
+    }
+}
@@ -0,0 +1,49 @@
+package mips;
+
+/**
+ * 有符号除以常量d的魔数（Granlund-Montgomery，按Hacker's Delight 10-1节求解）
+ *
+ * 商为 (mulhs(M, x) [+ x 或 - x]) >> s，再加上结果的符号位使其向零取整；
+ * d > 0 而 M < 0 时加x，d < 0 而 M > 0 时减x。要求 2 <= |d| 且d不是2的幂。
+ */
+final class DivisionMagic {
+    final int multiplier;
+    final int shift;
+
+    private DivisionMagic(int multiplier, int shift) {
+        this.multiplier = multiplier;
+        this.shift = shift;
+    }
+
+    static DivisionMagic of(int d) {
+        final long mask = 0xFFFFFFFFL; // 模拟32位无符号运算
+        final long two31 = 0x80000000L;
+        long ad = Math.abs((long) d);
+        long t = two31 + ((d & mask) >>> 31);
+        long anc = t - 1 - t % ad;     // |nc|
+        int p = 31;
+        long q1 = two31 / anc;         // 2^p / |nc|
+        long r1 = two31 - q1 * anc;
+        long q2 = two31 / ad;          // 2^p / |d|
+        long r2 = two31 - q2 * ad;
+        long delta;
+        do {
+            p++;
+            q1 = (2 * q1) & mask;
+            r1 = (2 * r1) & mask;
+            if (r1 >= anc) {
+                q1 = (q1 + 1) & mask;
+                r1 -= anc;
+            }
+            q2 = (2 * q2) & mask;
+            r2 = (2 * r2) & mask;
+            if (r2 >= ad) {
+                q2 = (q2 + 1) & mask;
+                r2 -= ad;
+            }
+            delta = ad - r2;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
+        int multiplier = (int) (q2 + 1);
+        return new DivisionMagic(d < 0 ? -multiplier : multiplier, p - 32);
+    }
+}
@@ -0,0 +1,105 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * 寄存器分配之后布局栈帧，插入序言和尾声，并把超出16位范围的偏移改写为经$at的计算
+ *
+ * 栈帧自底向上依次为：传出实参区、局部存储、被调用者保存寄存器和$ra。
+ * 栈上传入的实参位于调用者的传出实参区，即当前栈帧之上。
+ */
+public final class FrameBuilder {
+    private FrameBuilder() {
+    }
+
+    public static void build(MipsFunction function) {
+        int offset = function.getMaxOutgoingArgs() > 4 ? 4 * function.getMaxOutgoingArgs() : 0;
+        for (StackSlot slot : function.getLocalSlots()) {
+            slot.setOffset(offset);
+            offset += slot.getSize();
+        }
+        List<Register> saved = new ArrayList<>(function.getUsedCalleeSaved());
+        if (function.hasCalls() && !function.isMain()) {
+            saved.add(Register.RA);
+        }
+        int savedBase = offset;
+        offset += 4 * saved.size();
+        int frameSize = offset;
+        function.setFrameSize(frameSize);
+        for (StackSlot slot : function.getIncomingArgSlots()) {
+            slot.setOffset(frameSize + 4 * slot.getIncomingArgIndex());
+        }
+        if (function.isMain()) {
+            saved.clear(); // main不返回，不需要恢复任何寄存器
+        }
+
+        if (frameSize > 0) {
+            List<MipsInstruction> prologue = new ArrayList<>();
+            prologue.add(new MipsInstruction(MipsOpcode.ADDIU, Register.SP, Register.SP, new Immediate(-frameSize)));
+            for (int i = 0; i < saved.size(); i++) {
+                prologue.add(new MipsInstruction(MipsOpcode.SW, saved.get(i), new Immediate(savedBase + 4 * i), Register.SP));
+            }
+            function.getBlocks().get(0).getInstructions().addAll(0, prologue);
+
+            for (MipsBlock block : function.getBlocks()) {
+                ListIterator<MipsInstruction> it = block.getInstructions().listIterator();
+                while (it.hasNext()) {
+                    MipsInstruction inst = it.next();
+                    if (inst.getOpcode() != MipsOpcode.JR || inst.getOperand(0) != Register.RA) {
+                        continue;
+                    }
+                    it.previous();
+                    for (int i = 0; i < saved.size(); i++) {
+                        it.add(new MipsInstruction(MipsOpcode.LW, saved.get(i), new Immediate(savedBase + 4 * i), Register.SP));
+                    }
+                    it.add(new MipsInstruction(MipsOpcode.ADDIU, Register.SP, Register.SP, new Immediate(frameSize)));
+                    it.next();
+                }
+            }
+        }
+
+        for (MipsBlock block : function.getBlocks()) {
+            legalize(block);
+        }
+    }
+
+    /**
+     * 把超出16位有符号范围的偏移和立即数改写为先装入$at
+     */
+    private static void legalize(MipsBlock block) {
+        ListIterator<MipsInstruction> it = block.getInstructions().listIterator();
+        while (it.hasNext()) {
+            MipsInstruction inst = it.next();
+            MipsOpcode opcode = inst.getOpcode();
+            MipsOpcode.Format format = opcode.getFormat();
+            if (format == MipsOpcode.Format.LOAD || format == MipsOpcode.Format.STORE) {
+                int value = valueOf(inst.getOperand(1));
+                if (Immediate.fitsSigned16(value)) {
+                    continue;
+                }
+                it.remove();
+                it.add(new MipsInstruction(MipsOpcode.LI, Register.AT, new Immediate(value)));
+                it.add(new MipsInstruction(MipsOpcode.ADDU, Register.AT, Register.AT, inst.getOperand(2)));
+                inst.setOperand(1, new Immediate(0));
+                inst.setOperand(2, Register.AT);
+                it.add(inst);
+            } else if (opcode == MipsOpcode.ADDIU) {
+                int value = valueOf(inst.getOperand(2));
+                if (Immediate.fitsSigned16(value)) {
+                    continue;
+                }
+                it.remove();
+                it.add(new MipsInstruction(MipsOpcode.LI, Register.AT, new Immediate(value)));
+                it.add(new MipsInstruction(MipsOpcode.ADDU, inst.getOperand(0), inst.getOperand(1), Register.AT));
+            } else if (inst.getNumOperands() > 0 && inst.getOperand(inst.getNumOperands() - 1) instanceof StackOffset) {
+                throw new IllegalStateException("Unexpected stack offset in " + inst);
+            }
+        }
+    }
+
+    private static int valueOf(MipsOperand operand) {
+        return operand instanceof StackOffset ? ((StackOffset) operand).getValue() : ((Immediate) operand).getValue();
+    }
+}
@@ -0,0 +1,542 @@
+package mips;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 迭代合并的图着色寄存器分配（George-Appel）
+ *
+ * 可分配的寄存器是$t0-$t9和$s0-$s7，$t排在前面：不跨越调用的值优先使用$t，
+ * 跨越调用的值与jal隐式定义的调用者保存寄存器冲突，只能使用$s或者溢出，用到的$s由FrameBuilder保存恢复。
+ * 代码中出现的$v0、$a0等物理寄存器作为预着色结点参与冲突图，与它们之间的move也可以合并。
+ * 溢出代价是定义和使用的次数按所在块的循环深度加权（每层乘10）后除以度数；
+ * 溢出的虚拟寄存器在每次使用前从栈上读入、定义后写回，读写使用新的短生存期寄存器，然后重新分配。
+ * 冲突图的边数超过上限时放弃着色，改用线性扫描分配这个函数，避免个别巨大的函数拖慢编译。
+ */
+public class GraphColoringAllocator implements RegisterAllocator {
+    public static final int DEFAULT_MAX_EDGES = 50_000;
+
+    private static final int[] COLORS = colors();
+    private static final int K = COLORS.length;
+    private static final int PHYSICAL = Liveness.PHYSICAL;
+    private static final int MAX_WEIGHTED_DEPTH = 6;
+
+    // 结点状态
+    private static final byte INITIAL = 0;
+    private static final byte PRECOLORED = 1;
+    private static final byte SIMPLIFY = 2;
+    private static final byte FREEZE = 3;
+    private static final byte SPILL = 4;
+    private static final byte COALESCED = 5;
+    private static final byte SELECTED = 6;
+    private static final byte COLORED = 7;
+    private static final byte SPILLED = 8;
+
+    private final int maxEdges;
+    private final RegisterAllocator fallback = new LinearScanAllocator();
+    private MipsFunction function;
+    private final Set<Register> spillTemps = new HashSet<>(); // 溢出改写产生的寄存器，不再选作溢出
+
+    // 一轮分配的状态
+    private Register[] registers;
+    private byte[] state;
+    private int[] degree;
+    private int[] alias;
+    private int[] color;
+    private double[] spillCost;
+    private List<List<Integer>> adjList;
+    private final Set<Long> adjSet = new HashSet<>();
+    private List<List<MipsInstruction>> moveList;
+    private final Set<MipsInstruction> worklistMoves = new LinkedHashSet<>();
+    private final Set<MipsInstruction> activeMoves = new HashSet<>();
+    private final Set<Integer> simplifyWorklist = new LinkedHashSet<>();
+    private final Set<Integer> freezeWorklist = new LinkedHashSet<>();
+    private final Set<Integer> spillWorklist = new LinkedHashSet<>();
+    private final Deque<Integer> selectStack = new ArrayDeque<>();
+    private final List<Integer> coalescedNodes = new ArrayList<>();
+    private final List<Integer> spilledNodes = new ArrayList<>();
+
+    public GraphColoringAllocator() {
+        this(DEFAULT_MAX_EDGES);
+    }
+
+    /**
+     * @param maxEdges 冲突图边数的上限，超过时改用线性扫描
+     */
+    public GraphColoringAllocator(int maxEdges) {
+        this.maxEdges = maxEdges;
+    }
+
+    private static int[] colors() {
+        List<Register> allocatable = Register.allocatable();
+        int[] colors = new int[allocatable.size()];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = allocatable.get(i).getNumber();
+        }
+        return colors;
+    }
+
+    @Override
+    public void allocate(MipsFunction function) {
+        this.function = function;
+        spillTemps.clear();
+        while (true) {
+            if (!build()) {
+                fallback.allocate(function);
+                this.function = null;
+                return;
+            }
+            makeWorklist();
+            while (!simplifyWorklist.isEmpty() || !worklistMoves.isEmpty()
+                    || !freezeWorklist.isEmpty() || !spillWorklist.isEmpty()) {
+                if (!simplifyWorklist.isEmpty()) {
+                    simplify();
+                } else if (!worklistMoves.isEmpty()) {
+                    coalesce();
+                } else if (!freezeWorklist.isEmpty()) {
+                    freeze();
+                } else {
+                    selectSpill();
+                }
+            }
+            assignColors();
+            if (spilledNodes.isEmpty()) {
+                break;
+            }
+            List<Register> spilled = new ArrayList<>();
+            for (int n : spilledNodes) {
+                spilled.add(registers[n]);
+            }
+            RegisterRewriter.spill(function, spilled, spillTemps);
+        }
+        RegisterRewriter.assign(function, color);
+        this.function = null;
+    }
+
+    private static int node(Register register) {
+        return Liveness.node(register);
+    }
+
+    private static boolean isTracked(Register register) {
+        return Liveness.isTracked(register);
+    }
+
+    private static boolean isColor(int physical) {
+        return physical >= 8 && physical <= 25;
+    }
+
+    /**
+     * 与结点相邻时是否占用一种可分配的颜色
+     */
+    private static boolean occupiesColor(int node) {
+        return node >= PHYSICAL || isColor(node);
+    }
+
+    private boolean isPrecolored(int node) {
+        return node < PHYSICAL;
+    }
+
+    private boolean isCoalescable(MipsInstruction inst) {
+        return inst.isMove() && inst.getOperand(1) instanceof Register
+                && isTracked((Register) inst.getOperand(0)) && isTracked((Register) inst.getOperand(1));
+    }
+
+    private static int weight(MipsBlock block) {
+        int weight = 1;
+        for (int i = Math.min(block.getLoopDepth(), MAX_WEIGHTED_DEPTH); i > 0; i--) {
+            weight *= 10;
+        }
+        return weight;
+    }
+
+    // ==================== 活跃分析与建图 ====================
+
+    /**
+     * 建立冲突图
+     * @return 冲突图的边数是否在上限之内
+     */
+    private boolean build() {
+        Liveness liveness = new Liveness(function);
+        int n = liveness.size();
+        registers = new Register[n];
+        state = new byte[n];
+        degree = new int[n];
+        alias = new int[n];
+        color = new int[n];
+        spillCost = new double[n];
+        adjList = new ArrayList<>(n);
+        moveList = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            adjList.add(new ArrayList<>());
+            moveList.add(new ArrayList<>());
+            alias[i] = i;
+        }
+        for (int i = 0; i < PHYSICAL; i++) {
+            registers[i] = Register.physical(i);
+            state[i] = PRECOLORED;
+            color[i] = i;
+            degree[i] = isColor(i) ? Integer.MAX_VALUE / 2 : 0;
+        }
+        adjSet.clear();
+        worklistMoves.clear();
+        activeMoves.clear();
+        simplifyWorklist.clear();
+        freezeWorklist.clear();
+        spillWorklist.clear();
+        selectStack.clear();
+        coalescedNodes.clear();
+        spilledNodes.clear();
+
+        for (MipsBlock block : function.getBlocks()) {
+            int weight = weight(block);
+            BitSet live = (BitSet) liveness.getLiveOut(block).clone();
+            List<MipsInstruction> instructions = block.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                MipsInstruction inst = instructions.get(i);
+                if (isCoalescable(inst)) {
+                    int dst = node((Register) inst.getOperand(0));
+                    int src = node((Register) inst.getOperand(1));
+                    if (dst != src) {
+                        live.clear(src); // 复制的两端不因这条move本身冲突
+                        moveList.get(dst).add(inst);
+                        moveList.get(src).add(inst);
+                        worklistMoves.add(inst);
+                    }
+                }
+                List<Integer> defs = noteAll(inst.getDefs(), weight);
+                for (int d : defs) {
+                    live.set(d);
+                }
+                for (int d : defs) {
+                    for (int l = live.nextSetBit(0); l >= 0; l = live.nextSetBit(l + 1)) {
+                        addEdge(l, d);
+                    }
+                }
+                if (adjSet.size() > 2 * maxEdges) {
+                    return false;
+                }
+                for (int d : defs) {
+                    live.clear(d);
+                }
+                for (int u : noteAll(inst.getUses(), weight)) {
+                    live.set(u);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记录寄存器的出现并累计溢出代价
+     * @return 参与分配的寄存器的结点编号
+     */
+    private List<Integer> noteAll(List<Register> list, int weight) {
+        List<Integer> nodes = new ArrayList<>(list.size());
+        for (Register register : list) {
+            if (isTracked(register)) {
+                int n = node(register);
+                registers[n] = register;
+                spillCost[n] += weight;
+                nodes.add(n);
+            }
+        }
+        return nodes;
+    }
+
+    private static long key(int u, int v) {
+        return ((long) u << 32) | v;
+    }
+
+    private void addEdge(int u, int v) {
+        if (u == v || (isPrecolored(u) && isPrecolored(v)) || !adjSet.add(key(u, v))) {
+            return;
+        }
+        adjSet.add(key(v, u));
+        if (!isPrecolored(u)) {
+            adjList.get(u).add(v);
+            if (occupiesColor(v)) {
+                degree[u]++;
+            }
+        }
+        if (!isPrecolored(v)) {
+            adjList.get(v).add(u);
+            if (occupiesColor(u)) {
+                degree[v]++;
+            }
+        }
+    }
+
+    private void makeWorklist() {
+        for (int n = PHYSICAL; n < registers.length; n++) {
+            if (registers[n] == null) {
+                continue;
+            }
+            if (degree[n] >= K) {
+                spillWorklist.add(n);
+                state[n] = SPILL;
+            } else if (isMoveRelated(n)) {
+                freezeWorklist.add(n);
+                state[n] = FREEZE;
+            } else {
+                simplifyWorklist.add(n);
+                state[n] = SIMPLIFY;
+            }
+        }
+    }
+
+    // ==================== 简化、合并、冻结与溢出 ====================
+
+    private List<Integer> adjacent(int n) {
+        List<Integer> result = new ArrayList<>();
+        for (int m : adjList.get(n)) {
+            if (state[m] != SELECTED && state[m] != COALESCED) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    private List<MipsInstruction> nodeMoves(int n) {
+        List<MipsInstruction> result = new ArrayList<>();
+        for (MipsInstruction move : moveList.get(n)) {
+            if (activeMoves.contains(move) || worklistMoves.contains(move)) {
+                result.add(move);
+            }
+        }
+        return result;
+    }
+
+    private boolean isMoveRelated(int n) {
+        for (MipsInstruction move : moveList.get(n)) {
+            if (activeMoves.contains(move) || worklistMoves.contains(move)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int takeFirst(Set<Integer> set) {
+        Iterator<Integer> it = set.iterator();
+        int n = it.next();
+        it.remove();
+        return n;
+    }
+
+    private void simplify() {
+        int n = takeFirst(simplifyWorklist);
+        selectStack.push(n);
+        state[n] = SELECTED;
+        for (int m : adjacent(n)) {
+            decrementDegree(m);
+        }
+    }
+
+    private void decrementDegree(int m) {
+        if (isPrecolored(m)) {
+            return;
+        }
+        int d = degree[m]--;
+        if (d == K && state[m] == SPILL) {
+            enableMoves(m);
+            for (int n : adjacent(m)) {
+                enableMoves(n);
+            }
+            spillWorklist.remove(m);
+            if (isMoveRelated(m)) {
+                freezeWorklist.add(m);
+                state[m] = FREEZE;
+            } else {
+                simplifyWorklist.add(m);
+                state[m] = SIMPLIFY;
+            }
+        }
+    }
+
+    private void enableMoves(int n) {
+        for (MipsInstruction move : nodeMoves(n)) {
+            if (activeMoves.remove(move)) {
+                worklistMoves.add(move);
+            }
+        }
+    }
+
+    private void coalesce() {
+        Iterator<MipsInstruction> it = worklistMoves.iterator();
+        MipsInstruction move = it.next();
+        it.remove();
+        int x = getAlias(node((Register) move.getOperand(0)));
+        int y = getAlias(node((Register) move.getOperand(1)));
+        int u = isPrecolored(y) ? y : x;
+        int v = isPrecolored(y) ? x : y;
+        if (u == v) {
+            addWorkList(u);
+        } else if (isPrecolored(v) || adjSet.contains(key(u, v))) {
+            addWorkList(u);
+            addWorkList(v);
+        } else if (isPrecolored(u) ? georgeTest(u, v) : briggsTest(u, v)) {
+            combine(u, v);
+            addWorkList(u);
+        } else {
+            activeMoves.add(move);
+        }
+    }
+
+    private void addWorkList(int u) {
+        if (!isPrecolored(u) && !isMoveRelated(u) && degree[u] < K && state[u] == FREEZE) {
+            freezeWorklist.remove(u);
+            simplifyWorklist.add(u);
+            state[u] = SIMPLIFY;
+        }
+    }
+
+    /**
+     * 与预着色结点合并：v的每个邻居度数较低、是预着色结点或已经与u冲突
+     */
+    private boolean georgeTest(int u, int v) {
+        for (int t : adjacent(v)) {
+            if (degree[t] >= K && !isPrecolored(t) && !adjSet.contains(key(t, u))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并后的结点高度数的邻居少于K个
+     */
+    private boolean briggsTest(int u, int v) {
+        Set<Integer> nodes = new HashSet<>(adjacent(u));
+        nodes.addAll(adjacent(v));
+        int k = 0;
+        for (int n : nodes) {
+            if (degree[n] >= K) {
+                k++;
+            }
+        }
+        return k < K;
+    }
+
+    private int getAlias(int n) {
+        while (state[n] == COALESCED) {
+            n = alias[n];
+        }
+        return n;
+    }
+
+    private void combine(int u, int v) {
+        if (!freezeWorklist.remove(v)) {
+            spillWorklist.remove(v);
+        }
+        state[v] = COALESCED;
+        coalescedNodes.add(v);
+        alias[v] = u;
+        moveList.get(u).addAll(moveList.get(v));
+        enableMoves(v);
+        for (int t : adjacent(v)) {
+            addEdge(t, u);
+            decrementDegree(t);
+        }
+        if (degree[u] >= K && freezeWorklist.remove(u)) {
+            spillWorklist.add(u);
+            state[u] = SPILL;
+        }
+    }
+
+    private void freeze() {
+        int u = takeFirst(freezeWorklist);
+        simplifyWorklist.add(u);
+        state[u] = SIMPLIFY;
+        freezeMoves(u);
+    }
+
+    private void freezeMoves(int u) {
+        for (MipsInstruction move : nodeMoves(u)) {
+            int x = getAlias(node((Register) move.getOperand(0)));
+            int y = getAlias(node((Register) move.getOperand(1)));
+            int v = y == getAlias(u) ? x : y;
+            activeMoves.remove(move);
+            worklistMoves.remove(move);
+            if (state[v] == FREEZE && !isMoveRelated(v) && degree[v] < K) {
+                freezeWorklist.remove(v);
+                simplifyWorklist.add(v);
+                state[v] = SIMPLIFY;
+            }
+        }
+    }
+
+    /**
+     * 选择代价与度数之比最小的结点作为可能溢出的结点，溢出改写产生的寄存器最后考虑
+     */
+    private void selectSpill() {
+        int best = -1;
+        double bestPriority = 0;
+        for (int n : spillWorklist) {
+            double priority = spillCost[n] / degree[n];
+            if (spillTemps.contains(registers[n])) {
+                priority = Double.MAX_VALUE;
+            }
+            if (best < 0 || priority < bestPriority) {
+                best = n;
+                bestPriority = priority;
+            }
+        }
+        spillWorklist.remove(best);
+        simplifyWorklist.add(best);
+        state[best] = SIMPLIFY;
+        freezeMoves(best);
+    }
+
+    // ==================== 着色 ====================
+
+    private void assignColors() {
+        while (!selectStack.isEmpty()) {
+            int n = selectStack.pop();
+            boolean[] used = new boolean[PHYSICAL];
+            for (int w : adjList.get(n)) {
+                int a = getAlias(w);
+                if (state[a] == COLORED || state[a] == PRECOLORED) {
+                    used[color[a]] = true;
+                }
+            }
+            int chosen = preferredColor(n, used);
+            for (int i = 0; i < K && chosen < 0; i++) {
+                if (!used[COLORS[i]]) {
+                    chosen = COLORS[i];
+                }
+            }
+            if (chosen < 0) {
+                spilledNodes.add(n);
+                state[n] = SPILLED;
+            } else {
+                color[n] = chosen;
+                state[n] = COLORED;
+            }
+        }
+        for (int n : coalescedNodes) {
+            color[n] = color[getAlias(n)];
+        }
+    }
+
+    /**
+     * 与结点有move关系且已经着色的结点的颜色，使这条move之后可以删除
+     */
+    private int preferredColor(int n, boolean[] used) {
+        for (MipsInstruction move : moveList.get(n)) {
+            int x = getAlias(node((Register) move.getOperand(0)));
+            int y = getAlias(node((Register) move.getOperand(1)));
+            int other = x == n ? y : x;
+            if ((state[other] == COLORED || state[other] == PRECOLORED)
+                    && isColor(color[other]) && !used[color[other]]) {
+                return color[other];
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,35 @@
+package mips;
+
+/**
+ * 立即数
+ */
+public class Immediate extends MipsOperand {
+    private final int value;
+
+    public Immediate(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * 是否能作为有符号16位立即数
+     */
+    public static boolean fitsSigned16(long value) {
+        return value >= -32768 && value <= 32767;
+    }
+
+    /**
+     * 是否能作为无符号16位立即数（andi、ori、xori）
+     */
+    public static boolean fitsUnsigned16(long value) {
+        return value >= 0 && value <= 65535;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
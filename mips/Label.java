@@ -0,0 +1,21 @@
+package mips;
+
+/**
+ * 标号：函数、基本块或全局数据
+ */
+public class Label extends MipsOperand {
+    private final String name;
+
+    public Label(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,208 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 线性扫描寄存器分配（Poletto-Sarkar），编译速度优先
+ *
+ * 按布局顺序给指令编号，每个虚拟寄存器的生存期取为覆盖它所有活跃位置的一个区间，不考虑其中的空洞。
+ * 区间按起点排序依次分配：已结束的区间释放寄存器；选择的寄存器在区间内不能被物理寄存器占用，
+ * 因此跨越调用的区间只能得到$s。没有空闲寄存器时溢出终点最远的区间，
+ * 溢出改写产生的短区间总是从其他区间抢占寄存器。有溢出时改写后重新分配。
+ */
+public class LinearScanAllocator implements RegisterAllocator {
+    private static final List<Register> COLORS = Register.allocatable();
+
+    private final Set<Register> spillTemps = new HashSet<>(); // 溢出改写产生的寄存器，不再选作溢出
+
+    /**
+     * 虚拟寄存器的生存区间
+     */
+    private static class Interval {
+        final Register register;
+        int start = Integer.MAX_VALUE;
+        int end = -1;
+        int color = -1;
+
+        Interval(Register register) {
+            this.register = register;
+        }
+
+        void extend(int position) {
+            start = Math.min(start, position);
+            end = Math.max(end, position);
+        }
+    }
+
+    @Override
+    public void allocate(MipsFunction function) {
+        spillTemps.clear();
+        while (true) {
+            Liveness liveness = new Liveness(function);
+            Interval[] intervals = new Interval[liveness.size()];
+            BitSet[] occupied = new BitSet[Liveness.PHYSICAL]; // 物理寄存器被占用的位置
+            for (Register color : COLORS) {
+                occupied[color.getNumber()] = new BitSet();
+            }
+            buildIntervals(function, liveness, intervals, occupied);
+            List<Register> spilled = scan(intervals, occupied);
+            if (spilled.isEmpty()) {
+                int[] colors = new int[intervals.length];
+                for (int n = Liveness.PHYSICAL; n < intervals.length; n++) {
+                    if (intervals[n] != null) {
+                        colors[n] = intervals[n].color;
+                    }
+                }
+                RegisterRewriter.assign(function, colors);
+                return;
+            }
+            RegisterRewriter.spill(function, spilled, spillTemps);
+        }
+    }
+
+    /**
+     * 块入口和出口各占一个位置，活跃集合中的寄存器延伸到入口或出口
+     */
+    private static void buildIntervals(MipsFunction function, Liveness liveness, Interval[] intervals, BitSet[] occupied) {
+        for (MipsBlock block : function.getBlocks()) {
+            for (MipsInstruction inst : block.getInstructions()) {
+                for (Register register : inst.getDefs()) {
+                    createInterval(register, intervals);
+                }
+                for (Register register : inst.getUses()) {
+                    createInterval(register, intervals);
+                }
+            }
+        }
+        int position = 0;
+        for (MipsBlock block : function.getBlocks()) {
+            int entry = position++;
+            List<MipsInstruction> instructions = block.getInstructions();
+            int first = position;
+            position += instructions.size();
+            int exit = position++;
+            extendAll(liveness.getLiveIn(block), entry, intervals);
+            extendAll(liveness.getLiveOut(block), exit, intervals);
+
+            // 可分配的物理寄存器逆序求逐条指令的活跃情况
+            BitSet live = new BitSet();
+            BitSet out = liveness.getLiveOut(block);
+            for (Register color : COLORS) {
+                if (out.get(color.getNumber())) {
+                    live.set(color.getNumber());
+                }
+            }
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                MipsInstruction inst = instructions.get(i);
+                int at = first + i;
+                for (Register def : inst.getDefs()) {
+                    note(def, at, intervals, occupied);
+                    if (!def.isVirtual()) {
+                        live.clear(def.getNumber());
+                    }
+                }
+                for (Register use : inst.getUses()) {
+                    note(use, at, intervals, occupied);
+                    if (!use.isVirtual() && occupied[use.getNumber()] != null) {
+                        live.set(use.getNumber());
+                    }
+                }
+                for (int r = live.nextSetBit(0); r >= 0; r = live.nextSetBit(r + 1)) {
+                    occupied[r].set(at);
+                }
+            }
+        }
+    }
+
+    private static void createInterval(Register register, Interval[] intervals) {
+        if (register.isVirtual() && intervals[Liveness.node(register)] == null) {
+            intervals[Liveness.node(register)] = new Interval(register);
+        }
+    }
+
+    private static void extendAll(BitSet live, int position, Interval[] intervals) {
+        for (int n = live.nextSetBit(Liveness.PHYSICAL); n >= 0; n = live.nextSetBit(n + 1)) {
+            intervals[n].extend(position);
+        }
+    }
+
+    private static void note(Register register, int position, Interval[] intervals, BitSet[] occupied) {
+        if (register.isVirtual()) {
+            intervals[Liveness.node(register)].extend(position);
+        } else if (occupied[register.getNumber()] != null) {
+            occupied[register.getNumber()].set(position);
+        }
+    }
+
+    /**
+     * 按起点顺序分配寄存器
+     * @return 需要溢出的寄存器
+     */
+    private List<Register> scan(Interval[] intervals, BitSet[] occupied) {
+        List<Interval> order = new ArrayList<>();
+        for (Interval interval : intervals) {
+            if (interval != null) {
+                order.add(interval);
+            }
+        }
+        order.sort((a, b) -> a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(a.end, b.end));
+
+        List<Register> spilled = new ArrayList<>();
+        List<Interval> active = new ArrayList<>(); // 按终点升序
+        boolean[] free = new boolean[Liveness.PHYSICAL];
+        for (Register color : COLORS) {
+            free[color.getNumber()] = true;
+        }
+        for (Interval current : order) {
+            while (!active.isEmpty() && active.get(0).end < current.start) {
+                free[active.remove(0).color] = true;
+            }
+            for (Register color : COLORS) {
+                int r = color.getNumber();
+                if (free[r] && isAvailable(occupied[r], current)) {
+                    current.color = r;
+                    break;
+                }
+            }
+            if (current.color < 0) {
+                Interval victim = null;
+                for (Interval candidate : active) {
+                    if (!spillTemps.contains(candidate.register) && isAvailable(occupied[candidate.color], current)
+                            && (victim == null || candidate.end > victim.end)) {
+                        victim = candidate;
+                    }
+                }
+                boolean mustAllocate = spillTemps.contains(current.register);
+                if (victim == null || (!mustAllocate && victim.end <= current.end)) {
+                    if (mustAllocate) {
+                        throw new IllegalStateException("No register for spill temporary " + current.register);
+                    }
+                    spilled.add(current.register);
+                    continue;
+                }
+                active.remove(victim);
+                spilled.add(victim.register);
+                current.color = victim.color;
+            }
+            free[current.color] = false;
+            int index = 0;
+            while (index < active.size() && active.get(index).end <= current.end) {
+                index++;
+            }
+            active.add(index, current);
+        }
+        return spilled;
+    }
+
+    /**
+     * 物理寄存器在区间内没有被占用
+     */
+    private static boolean isAvailable(BitSet occupied, Interval interval) {
+        int next = occupied.nextSetBit(interval.start);
+        return next < 0 || next > interval.end;
+    }
+}
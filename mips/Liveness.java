@@ -0,0 +1,98 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 寄存器分配使用的活跃分析，求每个块入口和出口活跃的寄存器
+ *
+ * 寄存器用结点编号表示：物理寄存器为其编号，虚拟寄存器为32加序号。
+ * 只跟踪虚拟寄存器和$v0-$t9（含$s），$zero、$at、$sp、$ra等不参与分配的寄存器不跟踪。
+ */
+final class Liveness {
+    static final int PHYSICAL = 32;
+
+    private final int size;
+    private final Map<MipsBlock, BitSet> liveIn = new HashMap<>();
+    private final Map<MipsBlock, BitSet> liveOut = new HashMap<>();
+
+    Liveness(MipsFunction function) {
+        size = PHYSICAL + function.getVirtualRegisterCount();
+        List<MipsBlock> blocks = function.getBlocks();
+        Map<MipsBlock, BitSet> gen = new HashMap<>();
+        Map<MipsBlock, BitSet> kill = new HashMap<>();
+        for (MipsBlock block : blocks) {
+            BitSet g = new BitSet(size);
+            BitSet k = new BitSet(size);
+            for (MipsInstruction inst : block.getInstructions()) {
+                for (int u : trackedNodes(inst.getUses())) {
+                    if (!k.get(u)) {
+                        g.set(u);
+                    }
+                }
+                for (int d : trackedNodes(inst.getDefs())) {
+                    k.set(d);
+                }
+            }
+            gen.put(block, g);
+            kill.put(block, k);
+            liveIn.put(block, (BitSet) g.clone());
+            liveOut.put(block, new BitSet(size));
+        }
+        // 逆序迭代到不动点
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = blocks.size() - 1; b >= 0; b--) {
+                MipsBlock block = blocks.get(b);
+                BitSet out = liveOut.get(block);
+                for (MipsBlock successor : block.getSuccessors()) {
+                    out.or(liveIn.get(successor));
+                }
+                BitSet in = (BitSet) out.clone();
+                in.andNot(kill.get(block));
+                in.or(gen.get(block));
+                if (!in.equals(liveIn.get(block))) {
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    static int node(Register register) {
+        return register.isVirtual() ? PHYSICAL + register.getNumber() : register.getNumber();
+    }
+
+    static boolean isTracked(Register register) {
+        return register.isVirtual() || (register.getNumber() >= 2 && register.getNumber() <= 25);
+    }
+
+    static List<Integer> trackedNodes(List<Register> registers) {
+        List<Integer> nodes = new ArrayList<>(registers.size());
+        for (Register register : registers) {
+            if (isTracked(register)) {
+                nodes.add(node(register));
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * 结点编号的上界
+     */
+    int size() {
+        return size;
+    }
+
+    BitSet getLiveIn(MipsBlock block) {
+        return liveIn.get(block);
+    }
+
+    BitSet getLiveOut(MipsBlock block) {
+        return liveOut.get(block);
+    }
+}
@@ -0,0 +1,60 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MIPS基本块，与IR基本块一一对应
+ */
+public class MipsBlock {
+    private final Label label;
+    private final List<MipsInstruction> instructions = new ArrayList<>();
+    private final List<MipsBlock> successors = new ArrayList<>();
+    private final List<MipsBlock> predecessors = new ArrayList<>();
+    private int loopDepth;
+
+    public MipsBlock(Label label) {
+        this.label = label;
+    }
+
+    public Label getLabel() {
+        return label;
+    }
+
+    /**
+     * 指令列表，可以直接修改
+     */
+    public List<MipsInstruction> getInstructions() {
+        return instructions;
+    }
+
+    public void add(MipsInstruction inst) {
+        instructions.add(inst);
+    }
+
+    public List<MipsBlock> getSuccessors() {
+        return successors;
+    }
+
+    public List<MipsBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    public void addSuccessor(MipsBlock successor) {
+        if (!successors.contains(successor)) {
+            successors.add(successor);
+            successor.predecessors.add(this);
+        }
+    }
+
+    /**
+     * 所在循环的嵌套深度，用于估计溢出代价
+     */
+    public int getLoopDepth() {
+        return loopDepth;
+    }
+
+    public void setLoopDepth(int loopDepth) {
+        this.loopDepth = loopDepth;
+    }
+}
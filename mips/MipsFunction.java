@@ -0,0 +1,136 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MIPS函数：基本块、栈帧存储和寄存器分配需要的信息
+ *
+ * 栈帧布局（从高地址到低地址）：
+ *   调用者栈帧中的栈上实参（第5个起）
+ *   保存的$ra
+ *   保存的$s寄存器
+ *   局部存储（alloca和溢出的虚拟寄存器）
+ *   传出实参区，第i个实参位于4*i($sp)
+ */
+public class MipsFunction {
+    private final String name;
+    private final Label label;
+    private final boolean main;
+    private final List<MipsBlock> blocks = new ArrayList<>();
+    private final List<StackSlot> localSlots = new ArrayList<>();
+    private final List<StackSlot> incomingArgSlots = new ArrayList<>();
+    private final Set<Register> usedCalleeSaved = new LinkedHashSet<>();
+    private int virtualRegisterCount;
+    private int maxOutgoingArgs;
+    private boolean hasCalls;
+    private int frameSize;
+
+    public MipsFunction(String name, Label label, boolean main) {
+        this.name = name;
+        this.label = label;
+        this.main = main;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Label getLabel() {
+        return label;
+    }
+
+    public boolean isMain() {
+        return main;
+    }
+
+    public List<MipsBlock> getBlocks() {
+        return blocks;
+    }
+
+    public void addBlock(MipsBlock block) {
+        blocks.add(block);
+    }
+
+    public Register newVirtualRegister() {
+        return Register.newVirtual(virtualRegisterCount++);
+    }
+
+    public int getVirtualRegisterCount() {
+        return virtualRegisterCount;
+    }
+
+    public StackSlot newStackSlot(int size) {
+        StackSlot slot = new StackSlot(size, -1);
+        localSlots.add(slot);
+        return slot;
+    }
+
+    /**
+     * 栈上传入的第index个实参（index >= 4）
+     */
+    public StackSlot incomingArgSlot(int index) {
+        StackSlot slot = new StackSlot(4, index);
+        incomingArgSlots.add(slot);
+        return slot;
+    }
+
+    public List<StackSlot> getLocalSlots() {
+        return localSlots;
+    }
+
+    public List<StackSlot> getIncomingArgSlots() {
+        return incomingArgSlots;
+    }
+
+    public void noteCall(int argCount) {
+        hasCalls = true;
+        maxOutgoingArgs = Math.max(maxOutgoingArgs, argCount);
+    }
+
+    public boolean hasCalls() {
+        return hasCalls;
+    }
+
+    public int getMaxOutgoingArgs() {
+        return maxOutgoingArgs;
+    }
+
+    public Set<Register> getUsedCalleeSaved() {
+        return usedCalleeSaved;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * 函数中的指令总数
+     */
+    public int instructionCount() {
+        int count = 0;
+        for (MipsBlock block : blocks) {
+            count += block.getInstructions().size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(label).append(":\n");
+        for (MipsBlock block : blocks) {
+            sb.append(block.getLabel()).append(":\n");
+            for (MipsInstruction inst : block.getInstructions()) {
+                sb.append("    ").append(inst).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
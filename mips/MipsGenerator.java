@@ -0,0 +1,881 @@
+package mips;
+
+import ir.AllocaInst;
+import ir.Argument;
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.BranchInst;
+import ir.CallInst;
+import ir.CastInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.GlobalVariable;
+import ir.IRType;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.LoadInst;
+import ir.Module;
+import ir.PhiInst;
+import ir.ReturnInst;
+import ir.StoreInst;
+import ir.Use;
+import ir.User;
+import ir.Value;
+import opt.DominatorTree;
+import opt.LoopInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MIPS代码生成：把IR逐条翻译为使用虚拟寄存器的MIPS指令，
+ * 再经过寄存器分配、栈帧布局和窥孔优化得到可以在MARS上运行的汇编程序
+ *
+ * 调用约定：前4个实参放在$a0-$a3，其余放在调用者栈帧底部的传出实参区（第i个位于4*i($sp)），
+ * 返回值放在$v0；$s寄存器由被调用者保存，其余寄存器由调用者保存。
+ * phi在每个前驱的末尾先复制到临时虚拟寄存器，再在所在块开头复制给phi的虚拟寄存器。
+ */
+public class MipsGenerator {
+    private final Module module;
+    private final RegisterAllocator allocator;
+    private final Peephole peephole;
+    private CostTable costTable = CostTable.defaultTable();
+    private final MipsProgram program = new MipsProgram();
+    private final Map<GlobalVariable, Label> globalLabels = new HashMap<>();
+    private final Map<Function, Label> functionLabels = new HashMap<>();
+    private int blockCount;
+
+    // 当前函数的状态
+    private MipsFunction function;
+    private MipsBlock block;
+    private BasicBlock irBlock;
+    private BasicBlock nextBlock; // 布局上紧跟当前块的IR基本块
+    private final Map<Value, Register> registers = new HashMap<>();
+    private final Map<AllocaInst, StackSlot> allocaSlots = new HashMap<>();
+    private final Map<BasicBlock, MipsBlock> blocks = new HashMap<>();
+    private final Map<PhiInst, Register> phiTemps = new HashMap<>();
+    private final Set<Instruction> folded = new HashSet<>(); // 合并到使用处、不单独生成的指令
+
+    /**
+     * 访存地址：base + offset，offset为立即数或栈帧偏移
+     */
+    private static class Address {
+        final Register base;
+        final MipsOperand offset;
+
+        Address(Register base, MipsOperand offset) {
+            this.base = base;
+            this.offset = offset;
+        }
+    }
+
+    public MipsGenerator(Module module) {
+        this(module, new GraphColoringAllocator());
+    }
+
+    public MipsGenerator(Module module, RegisterAllocator allocator) {
+        this(module, allocator, Peephole.forLevel(2));
+    }
+
+    public MipsGenerator(Module module, RegisterAllocator allocator, Peephole peephole) {
+        this.module = module;
+        this.allocator = allocator;
+        this.peephole = peephole;
+    }
+
+    /**
+     * 设置指令选择使用的代价表
+     */
+    public void setCostTable(CostTable costTable) {
+        this.costTable = costTable;
+    }
+
+    /**
+     * 生成整个程序
+     * @return MIPS汇编程序
+     */
+    public MipsProgram generate() {
+        generateData();
+        for (Function f : module.getDefinedFunctions()) {
+            functionLabels.put(f, new Label(f.getName().equals("main") ? "main" : "f_" + f.getName()));
+        }
+        // MARS从.text段开头执行，main排在最前面
+        List<Function> order = new ArrayList<>(module.getDefinedFunctions());
+        order.sort((a, b) -> Boolean.compare(!a.getName().equals("main"), !b.getName().equals("main")));
+        for (Function f : order) {
+            MipsFunction mipsFunction = selectInstructions(f);
+            allocator.allocate(mipsFunction);
+            FrameBuilder.build(mipsFunction);
+            peephole.run(mipsFunction);
+            program.addFunction(mipsFunction);
+        }
+        return program;
+    }
+
+    // ==================== 数据段 ====================
+
+    private void generateData() {
+        // 字数据在前，字节数据在后，省去对齐
+        List<GlobalVariable> words = new ArrayList<>();
+        List<GlobalVariable> bytes = new ArrayList<>();
+        for (GlobalVariable global : module.getGlobals()) {
+            String name = global.getName();
+            globalLabels.put(global, new Label(name.startsWith(".") ? "s" + name.replace('.', '_') : "g_" + name));
+            IRType type = global.getValueType();
+            IRType elementType = type.isArray() ? type.getElementType() : type;
+            (elementType.getSize() == 1 ? bytes : words).add(global);
+        }
+        for (GlobalVariable global : words) {
+            emitData(global, ".word", 4);
+        }
+        for (GlobalVariable global : bytes) {
+            emitData(global, ".byte", 1);
+        }
+    }
+
+    private void emitData(GlobalVariable global, String directive, int elementSize) {
+        IRType type = global.getValueType();
+        int length = type.isArray() ? type.getLength() : 1;
+        int used = 0; // 最后一个非零元素之后的位置
+        for (int i = 0; i < length; i++) {
+            if (global.getInitialElement(i) != 0) {
+                used = i + 1;
+            }
+        }
+        StringBuilder sb = new StringBuilder(globalLabels.get(global).getName()).append(':');
+        if (used > 0) {
+            sb.append(' ').append(directive).append(' ');
+            for (int i = 0; i < used; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(global.getInitialElement(i));
+            }
+        }
+        if (used < length) {
+            if (used > 0) {
+                program.addData(sb.toString());
+                sb.setLength(0);
+                sb.append("   ");
+            }
+            sb.append(" .space ").append((length - used) * elementSize);
+        }
+        program.addData(sb.toString());
+    }
+
+    // ==================== 函数 ====================
+
+    private MipsFunction selectInstructions(Function f) {
+        function = new MipsFunction(f.getName(), functionLabels.get(f), f.getName().equals("main"));
+        registers.clear();
+        allocaSlots.clear();
+        blocks.clear();
+        phiTemps.clear();
+        folded.clear();
+
+        LoopInfo loopInfo = new LoopInfo(new DominatorTree(f));
+        for (BasicBlock basicBlock : f.getBlocks()) {
+            MipsBlock mipsBlock = new MipsBlock(new Label("_L" + blockCount++));
+            mipsBlock.setLoopDepth(loopInfo.getLoopDepth(basicBlock));
+            blocks.put(basicBlock, mipsBlock);
+            function.addBlock(mipsBlock);
+        }
+        for (BasicBlock basicBlock : f.getBlocks()) {
+            for (BasicBlock successor : basicBlock.getSuccessors()) {
+                blocks.get(basicBlock).addSuccessor(blocks.get(successor));
+            }
+            for (Instruction inst : basicBlock.getInstructions()) {
+                if (inst instanceof AllocaInst) {
+                    allocaSlots.put((AllocaInst) inst, function.newStackSlot(((AllocaInst) inst).getAllocatedType().getSize()));
+                } else if (inst instanceof PhiInst) {
+                    phiTemps.put((PhiInst) inst, function.newVirtualRegister());
+                } else if (isFusedCompare(inst) || isFoldedGep(inst)) {
+                    folded.add(inst);
+                }
+            }
+        }
+
+        List<BasicBlock> irBlocks = f.getBlocks();
+        for (int i = 0; i < irBlocks.size(); i++) {
+            irBlock = irBlocks.get(i);
+            block = blocks.get(irBlock);
+            nextBlock = i + 1 < irBlocks.size() ? irBlocks.get(i + 1) : null;
+            if (i == 0) {
+                receiveArguments(f);
+            }
+            for (Instruction inst : irBlock.getInstructions()) {
+                if (!folded.contains(inst)) {
+                    lower(inst);
+                }
+            }
+        }
+        return function;
+    }
+
+    private void receiveArguments(Function f) {
+        for (Argument argument : f.getArguments()) {
+            Register reg = reg(argument);
+            int index = argument.getIndex();
+            if (index < 4) {
+                emit(MipsOpcode.MOVE, reg, Register.argument(index));
+            } else {
+                emit(MipsOpcode.LW, reg, new StackOffset(function.incomingArgSlot(index), 0), Register.SP);
+            }
+        }
+    }
+
+    /**
+     * 只被紧随的条件跳转使用的比较，合并到跳转中生成
+     */
+    private boolean isFusedCompare(Instruction inst) {
+        if (!(inst instanceof IcmpInst) || inst.getUses().size() != 1) {
+            return false;
+        }
+        User user = inst.getUses().get(0).getUser();
+        return user instanceof BranchInst && ((BranchInst) user).getParent() == inst.getParent();
+    }
+
+    /**
+     * 偏移为常量、且只作为load/store地址使用的GEP，合并到访存指令的偏移中
+     */
+    private boolean isFoldedGep(Instruction inst) {
+        if (!(inst instanceof GepInst) || constantOffset((GepInst) inst) == null || !inst.hasUses()) {
+            return false;
+        }
+        for (Use use : inst.getUses()) {
+            User user = use.getUser();
+            boolean isAddress = user instanceof LoadInst || (user instanceof StoreInst && use.getIndex() == 1);
+            if (!isAddress) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== 指令选择 ====================
+
+    private void emit(MipsOpcode opcode, MipsOperand... operands) {
+        block.add(new MipsInstruction(opcode, operands));
+    }
+
+    private void emit(MipsInstruction inst) {
+        block.add(inst);
+    }
+
+    /**
+     * IR值对应的虚拟寄存器
+     */
+    private Register reg(Value value) {
+        return registers.computeIfAbsent(value, v -> function.newVirtualRegister());
+    }
+
+    /**
+     * 把作为操作数的值放入寄存器
+     */
+    private Register use(Value value) {
+        if (value instanceof ConstantInt) {
+            int c = ((ConstantInt) value).getValue();
+            if (c == 0) {
+                return Register.ZERO;
+            }
+            Register reg = function.newVirtualRegister();
+            emit(MipsOpcode.LI, reg, new Immediate(c));
+            return reg;
+        }
+        if (value instanceof GlobalVariable) {
+            Register reg = function.newVirtualRegister();
+            emit(MipsOpcode.LA, reg, globalLabels.get(value));
+            return reg;
+        }
+        if (value instanceof AllocaInst) {
+            Register reg = function.newVirtualRegister();
+            emit(MipsOpcode.ADDIU, reg, Register.SP, new StackOffset(allocaSlots.get(value), 0));
+            return reg;
+        }
+        return reg(value);
+    }
+
+    private static Integer constant(Value value) {
+        return value instanceof ConstantInt ? ((ConstantInt) value).getValue() : null;
+    }
+
+    private void lower(Instruction inst) {
+        if (inst instanceof PhiInst) {
+            emit(MipsOpcode.MOVE, reg(inst), phiTemps.get(inst));
+        } else if (inst instanceof BinaryInst) {
+            lowerBinary((BinaryInst) inst);
+        } else if (inst instanceof IcmpInst) {
+            lowerCompare((IcmpInst) inst, reg(inst));
+        } else if (inst instanceof CastInst) {
+            if (inst.getOpcode() == Instruction.Opcode.TRUNC) {
+                emit(MipsOpcode.ANDI, reg(inst), use(inst.getOperand(0)), new Immediate(0xFF));
+            } else {
+                emit(MipsOpcode.MOVE, reg(inst), use(inst.getOperand(0)));
+            }
+        } else if (inst instanceof LoadInst) {
+            Address address = address(((LoadInst) inst).getPointer());
+            MipsOpcode opcode = inst.getType().getSize() == 1 ? MipsOpcode.LBU : MipsOpcode.LW;
+            emit(opcode, reg(inst), address.offset, address.base);
+        } else if (inst instanceof StoreInst) {
+            StoreInst store = (StoreInst) inst;
+            Register value = use(store.getValue());
+            Address address = address(store.getPointer());
+            MipsOpcode opcode = store.getValue().getType().getSize() == 1 ? MipsOpcode.SB : MipsOpcode.SW;
+            emit(opcode, value, address.offset, address.base);
+        } else if (inst instanceof GepInst) {
+            Address address = gepAddress((GepInst) inst);
+            emit(MipsOpcode.ADDIU, reg(inst), address.base, address.offset);
+        } else if (inst instanceof CallInst) {
+            lowerCall((CallInst) inst);
+        } else if (inst instanceof BranchInst) {
+            lowerBranch((BranchInst) inst);
+        } else if (inst instanceof JumpInst) {
+            emitPhiCopies();
+            BasicBlock target = ((JumpInst) inst).getTarget();
+            if (target != nextBlock) {
+                emit(MipsOpcode.J, blocks.get(target).getLabel());
+            }
+        } else if (inst instanceof ReturnInst) {
+            lowerReturn((ReturnInst) inst);
+        }
+        // alloca不生成指令，地址在使用处计算
+    }
+
+    private void lowerBinary(BinaryInst inst) {
+        Register dest = reg(inst);
+        Value lhs = inst.getLhs();
+        Value rhs = inst.getRhs();
+        if (inst.isCommutative() && constant(lhs) != null && constant(rhs) == null) {
+            Value t = lhs;
+            lhs = rhs;
+            rhs = t;
+        }
+        Integer c = constant(rhs);
+        switch (inst.getOpcode()) {
+            case ADD:
+                if (c != null && Immediate.fitsSigned16(c)) {
+                    emit(MipsOpcode.ADDIU, dest, use(lhs), new Immediate(c));
+                } else {
+                    emit(MipsOpcode.ADDU, dest, use(lhs), use(rhs));
+                }
+                break;
+            case SUB:
+                if (c != null && Immediate.fitsSigned16(-(long) c)) {
+                    emit(MipsOpcode.ADDIU, dest, use(lhs), new Immediate(-c));
+                } else {
+                    emit(MipsOpcode.SUBU, dest, use(lhs), use(rhs));
+                }
+                break;
+            case MUL:
+                if (c != null) {
+                    emit(MipsOpcode.MOVE, dest, multiplyByConstant(use(lhs), c));
+                } else {
+                    emit(MipsOpcode.MUL, dest, use(lhs), use(rhs));
+                }
+                break;
+            case SDIV:
+                if (c != null && canDivideByConstant(c)) {
+                    emit(MipsOpcode.MOVE, dest, divideByConstant(use(lhs), c));
+                } else {
+                    emit(MipsOpcode.DIV, use(lhs), use(rhs));
+                    emit(MipsOpcode.MFLO, dest);
+                }
+                break;
+            case SREM:
+                if (c != null && canDivideByConstant(c)) {
+                    remainderByConstant(dest, use(lhs), c);
+                } else {
+                    emit(MipsOpcode.DIV, use(lhs), use(rhs));
+                    emit(MipsOpcode.MFHI, dest);
+                }
+                break;
+            case SHL:
+                emitShift(MipsOpcode.SLL, MipsOpcode.SLLV, dest, lhs, rhs);
+                break;
+            case ASHR:
+                emitShift(MipsOpcode.SRA, MipsOpcode.SRAV, dest, lhs, rhs);
+                break;
+            case LSHR:
+                emitShift(MipsOpcode.SRL, MipsOpcode.SRLV, dest, lhs, rhs);
+                break;
+            case AND:
+                emitLogical(MipsOpcode.ANDI, MipsOpcode.AND, dest, lhs, rhs);
+                break;
+            case OR:
+                emitLogical(MipsOpcode.ORI, MipsOpcode.OR, dest, lhs, rhs);
+                break;
+            case XOR:
+                emitLogical(MipsOpcode.XORI, MipsOpcode.XOR, dest, lhs, rhs);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected binary opcode " + inst.getOpcode());
+        }
+    }
+
+    /**
+     * 乘以常量c：按代价表比装入常量再mul便宜时改用移位和加减
+     * @return 积所在的寄存器
+     */
+    private Register multiplyByConstant(Register x, int c) {
+        if (c == 0) {
+            return Register.ZERO;
+        }
+        MultiplyChain chain = MultiplyChain.find(c, costTable,
+                costTable.loadImmediate(c) + costTable.get(MipsOpcode.MUL));
+        if (chain == null) {
+            Register product = function.newVirtualRegister();
+            emit(MipsOpcode.MUL, product, x, use(ConstantInt.i32(c)));
+            return product;
+        }
+        List<Register> values = new ArrayList<>();
+        values.add(x);
+        for (MultiplyChain.Step step : chain.steps) {
+            Register a = step.a < 0 ? Register.ZERO : values.get(step.a);
+            Register product = function.newVirtualRegister();
+            if (step.opcode == MipsOpcode.SLL) {
+                emit(MipsOpcode.SLL, product, a, new Immediate(step.b));
+            } else {
+                emit(step.opcode, product, a, values.get(step.b));
+            }
+            values.add(product);
+        }
+        return values.get(values.size() - 1);
+    }
+
+    private static boolean canDivideByConstant(int d) {
+        return d != 0 && d != Integer.MIN_VALUE;
+    }
+
+    /**
+     * 有符号除以常量d，商向零取整，不使用div
+     * |d|是2的幂时给负的被除数加上|d|-1再算术右移；其余情况乘以魔数取高32位
+     * @return 商所在的寄存器
+     */
+    private Register divideByConstant(Register x, int d) {
+        int ad = Math.abs(d);
+        Register q;
+        if (ad == 1) {
+            q = x;
+        } else if (Integer.bitCount(ad) == 1) {
+            q = function.newVirtualRegister();
+            emit(MipsOpcode.SRA, q, roundTowardZero(x, Integer.numberOfTrailingZeros(ad)),
+                    new Immediate(Integer.numberOfTrailingZeros(ad)));
+        } else {
+            DivisionMagic magic = DivisionMagic.of(d);
+            emit(MipsOpcode.MULT, x, use(ConstantInt.i32(magic.multiplier)));
+            q = function.newVirtualRegister();
+            emit(MipsOpcode.MFHI, q);
+            if (d > 0 && magic.multiplier < 0) {
+                Register sum = function.newVirtualRegister();
+                emit(MipsOpcode.ADDU, sum, q, x);
+                q = sum;
+            } else if (d < 0 && magic.multiplier > 0) {
+                Register diff = function.newVirtualRegister();
+                emit(MipsOpcode.SUBU, diff, q, x);
+                q = diff;
+            }
+            if (magic.shift > 0) {
+                Register shifted = function.newVirtualRegister();
+                emit(MipsOpcode.SRA, shifted, q, new Immediate(magic.shift));
+                q = shifted;
+            }
+            // 商为负时加1，使其向零取整
+            Register sign = function.newVirtualRegister();
+            emit(MipsOpcode.SRL, sign, q, new Immediate(31));
+            Register sum = function.newVirtualRegister();
+            emit(MipsOpcode.ADDU, sum, q, sign);
+            return sum;
+        }
+        if (d < 0) {
+            Register negated = function.newVirtualRegister();
+            emit(MipsOpcode.SUBU, negated, Register.ZERO, q);
+            q = negated;
+        }
+        return q;
+    }
+
+    /**
+     * x为负时加上2^k-1，之后算术右移k位即得向零取整的商
+     */
+    private Register roundTowardZero(Register x, int k) {
+        Register bias = function.newVirtualRegister();
+        if (k == 1) {
+            emit(MipsOpcode.SRL, bias, x, new Immediate(31));
+        } else {
+            Register sign = function.newVirtualRegister();
+            emit(MipsOpcode.SRA, sign, x, new Immediate(31));
+            emit(MipsOpcode.SRL, bias, sign, new Immediate(32 - k));
+        }
+        Register sum = function.newVirtualRegister();
+        emit(MipsOpcode.ADDU, sum, x, bias);
+        return sum;
+    }
+
+    /**
+     * 有符号除以常量d的余数 x - (x / d) * d，符号与被除数相同
+     */
+    private void remainderByConstant(Register dest, Register x, int d) {
+        int ad = Math.abs(d);
+        if (ad == 1) {
+            emit(MipsOpcode.MOVE, dest, Register.ZERO);
+            return;
+        }
+        Register product = function.newVirtualRegister();
+        if (Integer.bitCount(ad) == 1) {
+            // 余数只与|d|有关：x减去向零取整后的|d|的倍数
+            int k = Integer.numberOfTrailingZeros(ad);
+            Register q = function.newVirtualRegister();
+            emit(MipsOpcode.SRA, q, roundTowardZero(x, k), new Immediate(k));
+            emit(MipsOpcode.SLL, product, q, new Immediate(k));
+        } else {
+            emit(MipsOpcode.MOVE, product, multiplyByConstant(divideByConstant(x, d), d));
+        }
+        emit(MipsOpcode.SUBU, dest, x, product);
+    }
+
+    private void emitShift(MipsOpcode immediateOp, MipsOpcode registerOp, Register dest, Value lhs, Value rhs) {
+        Integer c = constant(rhs);
+        if (c != null) {
+            emit(immediateOp, dest, use(lhs), new Immediate(c & 31));
+        } else {
+            emit(registerOp, dest, use(lhs), use(rhs));
+        }
+    }
+
+    private void emitLogical(MipsOpcode immediateOp, MipsOpcode registerOp, Register dest, Value lhs, Value rhs) {
+        Integer c = constant(rhs);
+        if (c != null && Immediate.fitsUnsigned16(c)) {
+            emit(immediateOp, dest, use(lhs), new Immediate(c));
+        } else {
+            emit(registerOp, dest, use(lhs), use(rhs));
+        }
+    }
+
+    /**
+     * 把比较结果（0或1）写入dest
+     */
+    private void lowerCompare(IcmpInst inst, Register dest) {
+        Value lhs = inst.getLhs();
+        Value rhs = inst.getRhs();
+        Integer c = constant(rhs);
+        switch (inst.getPredicate()) {
+            case SLT:
+                emitSetLess(dest, lhs, rhs);
+                break;
+            case SGE:
+                emitSetLess(dest, lhs, rhs);
+                emit(MipsOpcode.XORI, dest, dest, new Immediate(1));
+                break;
+            case SGT:
+                emitSetLess(dest, rhs, lhs);
+                break;
+            case SLE:
+                emitSetLess(dest, rhs, lhs);
+                emit(MipsOpcode.XORI, dest, dest, new Immediate(1));
+                break;
+            case EQ:
+            case NE: {
+                Register diff;
+                if (c != null && c == 0) {
+                    diff = use(lhs);
+                } else if (c != null && Immediate.fitsUnsigned16(c)) {
+                    diff = function.newVirtualRegister();
+                    emit(MipsOpcode.XORI, diff, use(lhs), new Immediate(c));
+                } else {
+                    diff = function.newVirtualRegister();
+                    emit(MipsOpcode.XOR, diff, use(lhs), use(rhs));
+                }
+                if (inst.getPredicate() == IcmpInst.Predicate.EQ) {
+                    emit(MipsOpcode.SLTIU, dest, diff, new Immediate(1));
+                } else {
+                    emit(MipsOpcode.SLTU, dest, Register.ZERO, diff);
+                }
+                break;
+            }
+        }
+    }
+
+    private void emitSetLess(Register dest, Value lhs, Value rhs) {
+        Integer c = constant(rhs);
+        if (c != null && Immediate.fitsSigned16(c)) {
+            emit(MipsOpcode.SLTI, dest, use(lhs), new Immediate(c));
+        } else {
+            emit(MipsOpcode.SLT, dest, use(lhs), use(rhs));
+        }
+    }
+
+    // ==================== 地址 ====================
+
+    /**
+     * GEP相对基址的常量偏移（字节），有非常量下标时返回null
+     */
+    private static Integer constantOffset(GepInst gep) {
+        int offset = 0;
+        IRType type = gep.getPointer().getType().getElementType();
+        for (int i = 0; i < gep.getNumIndices(); i++) {
+            Integer index = constant(gep.getIndex(i));
+            if (index == null) {
+                return null;
+            }
+            offset += index * type.getSize();
+            type = type.getElementType();
+        }
+        return offset;
+    }
+
+    private Address address(Value pointer) {
+        if (pointer instanceof AllocaInst) {
+            return new Address(Register.SP, new StackOffset(allocaSlots.get(pointer), 0));
+        }
+        if (!folded.contains(pointer)) {
+            return new Address(use(pointer), new Immediate(0));
+        }
+        return gepAddress((GepInst) pointer);
+    }
+
+    private Address gepAddress(GepInst gep) {
+        Value base = gep.getPointer();
+
+        // 常量部分并入偏移，非常量下标按元素大小移位后加到基址上
+        int offset = 0;
+        Register variable = null;
+        IRType type = base.getType().getElementType();
+        for (int i = 0; i < gep.getNumIndices(); i++) {
+            Value index = gep.getIndex(i);
+            int size = type.getSize();
+            Integer c = constant(index);
+            if (c != null) {
+                offset += c * size;
+            } else {
+                Register scaled = scale(use(index), size);
+                if (variable == null) {
+                    variable = scaled;
+                } else {
+                    Register sum = function.newVirtualRegister();
+                    emit(MipsOpcode.ADDU, sum, variable, scaled);
+                    variable = sum;
+                }
+            }
+            type = type.getElementType();
+        }
+
+        if (base instanceof AllocaInst) {
+            StackOffset slotOffset = new StackOffset(allocaSlots.get(base), offset);
+            if (variable == null) {
+                return new Address(Register.SP, slotOffset);
+            }
+            Register sum = function.newVirtualRegister();
+            emit(MipsOpcode.ADDU, sum, variable, Register.SP);
+            return new Address(sum, slotOffset);
+        }
+        Register baseReg = use(base);
+        if (variable != null) {
+            Register sum = function.newVirtualRegister();
+            emit(MipsOpcode.ADDU, sum, baseReg, variable);
+            baseReg = sum;
+        }
+        if (!Immediate.fitsSigned16(offset)) {
+            Register sum = function.newVirtualRegister();
+            emit(MipsOpcode.ADDU, sum, baseReg, use(ConstantInt.i32(offset)));
+            return new Address(sum, new Immediate(0));
+        }
+        return new Address(baseReg, new Immediate(offset));
+    }
+
+    private Register scale(Register index, int size) {
+        if (size == 1) {
+            return index;
+        }
+        return multiplyByConstant(index, size);
+    }
+
+    // ==================== 调用与控制流 ====================
+
+    private void lowerCall(CallInst inst) {
+        Function callee = inst.getCallee();
+        if (callee.isBuiltin()) {
+            lowerBuiltinCall(inst);
+            return;
+        }
+        int argCount = inst.getNumArgs();
+        function.noteCall(argCount);
+        for (int i = 4; i < argCount; i++) {
+            emit(MipsOpcode.SW, use(inst.getArg(i)), new Immediate(4 * i), Register.SP);
+        }
+        List<Register> argRegs = new ArrayList<>();
+        for (int i = 0; i < Math.min(argCount, 4); i++) {
+            Value arg = inst.getArg(i);
+            Register argReg = Register.argument(i);
+            Integer c = constant(arg);
+            if (c != null) {
+                emit(MipsOpcode.LI, argReg, new Immediate(c));
+            } else {
+                emit(MipsOpcode.MOVE, argReg, use(arg));
+            }
+            argRegs.add(argReg);
+        }
+        emit(new MipsInstruction(MipsOpcode.JAL, functionLabels.get(callee))
+                .withImplicit(Register.callerSaved(), argRegs));
+        if (!inst.getType().isVoid()) {
+            emit(MipsOpcode.MOVE, reg(inst), Register.V0);
+        }
+    }
+
+    private void lowerBuiltinCall(CallInst inst) {
+        int service;
+        switch (inst.getCallee().getName()) {
+            case "getint": service = 5; break;
+            case "getchar": service = 12; break;
+            case "putint": service = 1; break;
+            case "putch": service = 11; break;
+            case "putstr": service = 4; break;
+            default: throw new IllegalStateException("Unknown runtime function " + inst.getCallee().getName());
+        }
+        List<Register> uses;
+        if (inst.getNumArgs() > 0) {
+            Value arg = inst.getArg(0);
+            Integer c = constant(arg);
+            if (c != null) {
+                emit(MipsOpcode.LI, Register.A0, new Immediate(c));
+            } else {
+                emit(MipsOpcode.MOVE, Register.A0, use(arg));
+            }
+            uses = Arrays.asList(Register.V0, Register.A0);
+        } else {
+            uses = Collections.singletonList(Register.V0);
+        }
+        emit(MipsOpcode.LI, Register.V0, new Immediate(service));
+        emit(new MipsInstruction(MipsOpcode.SYSCALL).withImplicit(Collections.singletonList(Register.V0), uses));
+        if (!inst.getType().isVoid()) {
+            emit(MipsOpcode.MOVE, reg(inst), Register.V0);
+        }
+    }
+
+    /**
+     * 在跳转之前为后继块的phi准备临时寄存器中的值
+     */
+    private void emitPhiCopies() {
+        for (BasicBlock successor : irBlock.getSuccessors()) {
+            for (PhiInst phi : successor.getPhis()) {
+                Value incoming = phi.getIncomingValueFor(irBlock);
+                if (incoming == null) {
+                    continue;
+                }
+                Register temp = phiTemps.get(phi);
+                Integer c = constant(incoming);
+                if (c != null) {
+                    emit(MipsOpcode.LI, temp, new Immediate(c));
+                } else {
+                    emit(MipsOpcode.MOVE, temp, use(incoming));
+                }
+            }
+        }
+    }
+
+    private void lowerBranch(BranchInst br) {
+        emitPhiCopies();
+        MipsBlock trueBlock = blocks.get(br.getTrueBlock());
+        MipsBlock falseBlock = blocks.get(br.getFalseBlock());
+        Value condition = br.getCondition();
+        Integer c = constant(condition);
+        if (c != null) {
+            BasicBlock target = c != 0 ? br.getTrueBlock() : br.getFalseBlock();
+            if (target != nextBlock) {
+                emit(MipsOpcode.J, blocks.get(target).getLabel());
+            }
+            return;
+        }
+
+        // 为真时跳转到trueBlock；若trueBlock紧随其后则把条件取反，跳转到falseBlock
+        boolean invert = br.getTrueBlock() == nextBlock;
+        MipsBlock target = invert ? falseBlock : trueBlock;
+        MipsBlock other = invert ? trueBlock : falseBlock;
+        if (condition instanceof IcmpInst && folded.contains(condition)) {
+            IcmpInst cmp = (IcmpInst) condition;
+            IcmpInst.Predicate predicate = invert ? cmp.getPredicate().inverse() : cmp.getPredicate();
+            emitCompareBranch(predicate, cmp.getLhs(), cmp.getRhs(), target.getLabel());
+        } else {
+            emit(invert ? MipsOpcode.BEQ : MipsOpcode.BNE, use(condition), Register.ZERO, target.getLabel());
+        }
+        if (nextBlock == null || other != blocks.get(nextBlock)) {
+            emit(MipsOpcode.J, other.getLabel());
+        }
+    }
+
+    private void emitCompareBranch(IcmpInst.Predicate predicate, Value lhs, Value rhs, Label target) {
+        Integer lc = constant(lhs);
+        Integer rc = constant(rhs);
+        if (lc != null && lc == 0 && (rc == null || rc != 0)) {
+            // 0 op x 改写为 x op' 0
+            Value t = lhs;
+            lhs = rhs;
+            rhs = t;
+            predicate = predicate.swapped();
+            rc = 0;
+        }
+        if (predicate == IcmpInst.Predicate.EQ || predicate == IcmpInst.Predicate.NE) {
+            emit(predicate == IcmpInst.Predicate.EQ ? MipsOpcode.BEQ : MipsOpcode.BNE, use(lhs), use(rhs), target);
+            return;
+        }
+        if (rc != null && rc == 0) {
+            MipsOpcode opcode;
+            switch (predicate) {
+                case SLT: opcode = MipsOpcode.BLTZ; break;
+                case SGE: opcode = MipsOpcode.BGEZ; break;
+                case SGT: opcode = MipsOpcode.BGTZ; break;
+                default: opcode = MipsOpcode.BLEZ; break;
+            }
+            emit(opcode, use(lhs), target);
+            return;
+        }
+        Register flag = function.newVirtualRegister();
+        switch (predicate) {
+            case SLT:
+                emitSetLess(flag, lhs, rhs);
+                emit(MipsOpcode.BNE, flag, Register.ZERO, target);
+                break;
+            case SGE:
+                emitSetLess(flag, lhs, rhs);
+                emit(MipsOpcode.BEQ, flag, Register.ZERO, target);
+                break;
+            case SGT:
+                emitSetLess(flag, rhs, lhs);
+                emit(MipsOpcode.BNE, flag, Register.ZERO, target);
+                break;
+            default:
+                emitSetLess(flag, rhs, lhs);
+                emit(MipsOpcode.BEQ, flag, Register.ZERO, target);
+                break;
+        }
+    }
+
+    private void lowerReturn(ReturnInst ret) {
+        if (function.isMain()) {
+            emit(MipsOpcode.LI, Register.V0, new Immediate(10));
+            emit(new MipsInstruction(MipsOpcode.SYSCALL)
+                    .withImplicit(Collections.emptyList(), Collections.singletonList(Register.V0)));
+            return;
+        }
+        List<Register> uses = new ArrayList<>();
+        uses.add(Register.RA);
+        Value value = ret.getValue();
+        if (value != null) {
+            Integer c = constant(value);
+            if (c != null) {
+                emit(MipsOpcode.LI, Register.V0, new Immediate(c));
+            } else {
+                emit(MipsOpcode.MOVE, Register.V0, use(value));
+            }
+            uses.add(Register.V0);
+        }
+        emit(new MipsInstruction(MipsOpcode.JR, Register.RA).withImplicit(Collections.emptyList(), uses));
+    }
+}
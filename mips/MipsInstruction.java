@@ -0,0 +1,170 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一条MIPS指令
+ * 除显式操作数外还可以带隐式定义和使用的寄存器，如jal和syscall
+ */
+public class MipsInstruction {
+    private final MipsOpcode opcode;
+    private final MipsOperand[] operands;
+    private List<Register> implicitDefs = Collections.emptyList();
+    private List<Register> implicitUses = Collections.emptyList();
+
+    public MipsInstruction(MipsOpcode opcode, MipsOperand... operands) {
+        this.opcode = opcode;
+        this.operands = operands;
+    }
+
+    public MipsOpcode getOpcode() {
+        return opcode;
+    }
+
+    public int getNumOperands() {
+        return operands.length;
+    }
+
+    public MipsOperand getOperand(int index) {
+        return operands[index];
+    }
+
+    public void setOperand(int index, MipsOperand operand) {
+        operands[index] = operand;
+    }
+
+    public MipsInstruction withImplicit(List<Register> defs, List<Register> uses) {
+        this.implicitDefs = defs;
+        this.implicitUses = uses;
+        return this;
+    }
+
+    public List<Register> getImplicitDefs() {
+        return implicitDefs;
+    }
+
+    public List<Register> getImplicitUses() {
+        return implicitUses;
+    }
+
+    /**
+     * 被定义的显式寄存器操作数的位置
+     */
+    public int[] defIndices() {
+        switch (opcode.getFormat()) {
+            case RRR:
+            case RRI:
+            case RI:
+            case RL:
+            case RR:
+            case MF:
+            case LOAD:
+                return new int[]{0};
+            default:
+                return new int[0];
+        }
+    }
+
+    /**
+     * 被使用的显式寄存器操作数的位置
+     */
+    public int[] useIndices() {
+        switch (opcode.getFormat()) {
+            case RRR:
+                return new int[]{1, 2};
+            case RRI:
+            case RR:
+                return new int[]{1};
+            case HILO:
+            case BR2:
+                return new int[]{0, 1};
+            case LOAD:
+                return new int[]{2};
+            case STORE:
+                return new int[]{0, 2};
+            case BR1:
+            case JR:
+                return new int[]{0};
+            default:
+                return new int[0];
+        }
+    }
+
+    public List<Register> getDefs() {
+        List<Register> defs = new ArrayList<>(implicitDefs);
+        for (int index : defIndices()) {
+            if (operands[index] instanceof Register) {
+                defs.add((Register) operands[index]);
+            }
+        }
+        return defs;
+    }
+
+    public List<Register> getUses() {
+        List<Register> uses = new ArrayList<>(implicitUses);
+        for (int index : useIndices()) {
+            if (operands[index] instanceof Register) {
+                uses.add((Register) operands[index]);
+            }
+        }
+        return uses;
+    }
+
+    /**
+     * 把作为使用出现的寄存器from替换为to
+     */
+    public void replaceUse(Register from, Register to) {
+        for (int index : useIndices()) {
+            if (operands[index] == from) {
+                operands[index] = to;
+            }
+        }
+    }
+
+    /**
+     * 把作为定义出现的寄存器from替换为to
+     */
+    public void replaceDef(Register from, Register to) {
+        for (int index : defIndices()) {
+            if (operands[index] == from) {
+                operands[index] = to;
+            }
+        }
+    }
+
+    /**
+     * 是否是寄存器之间的复制
+     */
+    public boolean isMove() {
+        return opcode == MipsOpcode.MOVE;
+    }
+
+    /**
+     * 跳转目标，非跳转指令返回null
+     */
+    public Label getTarget() {
+        if (opcode.isBranch() || opcode == MipsOpcode.J) {
+            return (Label) operands[operands.length - 1];
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        switch (opcode.getFormat()) {
+            case LOAD:
+            case STORE:
+                return opcode.getName() + " " + operands[0] + ", " + operands[1] + "(" + operands[2] + ")";
+            case NONE:
+                return opcode.getName();
+            default:
+                StringBuilder sb = new StringBuilder(opcode.getName());
+                for (int i = 0; i < operands.length; i++) {
+                    sb.append(i == 0 ? " " : ", ").append(operands[i]);
+                }
+                return sb.toString();
+        }
+    }
+}
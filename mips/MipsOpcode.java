@@ -0,0 +1,103 @@
+package mips;
+
+/**
+ * 生成代码使用的MIPS指令（含MARS支持的li、la、move伪指令）
+ */
+public enum MipsOpcode {
+    ADDU("addu", Format.RRR),
+    SUBU("subu", Format.RRR),
+    MUL("mul", Format.RRR),
+    AND("and", Format.RRR),
+    OR("or", Format.RRR),
+    XOR("xor", Format.RRR),
+    NOR("nor", Format.RRR),
+    SLT("slt", Format.RRR),
+    SLTU("sltu", Format.RRR),
+    SLLV("sllv", Format.RRR),
+    SRAV("srav", Format.RRR),
+    SRLV("srlv", Format.RRR),
+
+    ADDIU("addiu", Format.RRI),
+    ANDI("andi", Format.RRI),
+    ORI("ori", Format.RRI),
+    XORI("xori", Format.RRI),
+    SLTI("slti", Format.RRI),
+    SLTIU("sltiu", Format.RRI),
+    SLL("sll", Format.RRI),
+    SRA("sra", Format.RRI),
+    SRL("srl", Format.RRI),
+
+    LI("li", Format.RI),
+    LUI("lui", Format.RI),
+    LA("la", Format.RL),
+    MOVE("move", Format.RR),
+
+    MULT("mult", Format.HILO),
+    DIV("div", Format.HILO),
+    MFHI("mfhi", Format.MF),
+    MFLO("mflo", Format.MF),
+
+    LW("lw", Format.LOAD),
+    LBU("lbu", Format.LOAD),
+    SW("sw", Format.STORE),
+    SB("sb", Format.STORE),
+
+    BEQ("beq", Format.BR2),
+    BNE("bne", Format.BR2),
+    BLEZ("blez", Format.BR1),
+    BGTZ("bgtz", Format.BR1),
+    BLTZ("bltz", Format.BR1),
+    BGEZ("bgez", Format.BR1),
+
+    J("j", Format.J),
+    JAL("jal", Format.J),
+    JR("jr", Format.JR),
+    SYSCALL("syscall", Format.NONE);
+
+    /**
+     * 操作数的排列方式，决定哪些操作数是定义、哪些是使用
+     */
+    public enum Format {
+        RRR,   // rd, rs, rt
+        RRI,   // rt, rs, imm
+        RI,    // rt, imm
+        RL,    // rt, label
+        RR,    // rd, rs
+        HILO,  // rs, rt，结果写入HI/LO
+        MF,    // rd
+        LOAD,  // rt, offset(base)
+        STORE, // rt, offset(base)
+        BR2,   // rs, rt, label
+        BR1,   // rs, label
+        J,     // label
+        JR,    // rs
+        NONE
+    }
+
+    private final String name;
+    private final Format format;
+
+    MipsOpcode(String name, Format format) {
+        this.name = name;
+        this.format = format;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public boolean isBranch() {
+        return format == Format.BR1 || format == Format.BR2;
+    }
+
+    /**
+     * 执行后不会顺序执行下一条指令
+     */
+    public boolean isUnconditionalJump() {
+        return this == J || this == JR;
+    }
+}
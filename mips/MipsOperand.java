@@ -0,0 +1,7 @@
+package mips;
+
+/**
+ * MIPS指令的操作数：寄存器、立即数、标号或栈帧偏移
+ */
+public abstract class MipsOperand {
+}
@@ -0,0 +1,38 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 完整的MIPS汇编程序：.data段和.text段，main函数排在.text段的最前面
+ */
+public class MipsProgram {
+    private final List<String> data = new ArrayList<>();
+    private final List<MipsFunction> functions = new ArrayList<>();
+
+    public void addData(String line) {
+        data.add(line);
+    }
+
+    public List<MipsFunction> getFunctions() {
+        return functions;
+    }
+
+    public void addFunction(MipsFunction function) {
+        functions.add(function);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(".data\n");
+        for (String line : data) {
+            sb.append(line).append('\n');
+        }
+        sb.append("\n.text\n");
+        for (MipsFunction function : functions) {
+            sb.append(function).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,556 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 生成代码所用MIPS子集的模拟器，按代价表统计加权的执行代价
+ *
+ * 汇编文本先译码成按指令下标排列的数组，标号解析为下标或数据地址，执行时只记录每条指令的执行次数，
+ * 结束后再按函数和基本块汇总。函数是main和jal的目标，基本块从每个.text标号开始。
+ * 支持的系统调用：1输出整数、4输出字符串、5读入整数、11输出字符、12读入字符、10退出。
+ * 内存布局与MARS相同：.data从0x10010000开始，$sp初值为0x7fffeffc。
+ * li的立即数超过16位时按lui和ori两条指令计算代价，与指令选择使用的代价一致。
+ */
+public class MipsSimulator {
+    public static final long DEFAULT_STEP_LIMIT = 2_000_000_000L;
+
+    private static final int DATA_BASE = 0x10010000;
+    private static final int DATA_SIZE = 1 << 22;
+    private static final int STACK_TOP = 0x7fffeffc;
+    private static final int STACK_SIZE = 1 << 24;
+
+    private static final Map<String, MipsOpcode> OPCODES = new HashMap<>();
+    private static final Map<String, Integer> REGISTERS = new HashMap<>();
+
+    static {
+        for (MipsOpcode opcode : MipsOpcode.values()) {
+            OPCODES.put(opcode.getName(), opcode);
+        }
+        for (int i = 0; i < 32; i++) {
+            REGISTERS.put(Register.physical(i).toString().substring(1), i);
+        }
+    }
+
+    /**
+     * 一个函数或基本块的执行统计
+     */
+    public static final class ProfileEntry {
+        private final String name;
+        private long instructions;
+        private double cost;
+
+        ProfileEntry(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getInstructions() {
+            return instructions;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    // 译码后的指令：操作码和至多三个操作数（寄存器号、立即数、指令下标或数据地址）
+    private final MipsOpcode[] opcodes;
+    private final int[] first;
+    private final int[] second;
+    private final int[] third;
+    private final double[] weights;
+    private final int[] blockOf;            // 每条指令所在基本块
+    private final List<String> blockNames = new ArrayList<>();
+    private final List<Integer> functionOf = new ArrayList<>(); // 每个基本块所在函数
+    private final List<String> functionNames = new ArrayList<>();
+    private final int entry;
+    private final byte[] initialData = new byte[DATA_SIZE];
+
+    private long stepLimit = DEFAULT_STEP_LIMIT;
+
+    // 一次运行的状态
+    private final int[] registers = new int[32];
+    private int hi;
+    private int lo;
+    private byte[] data;
+    private byte[] stack;
+    private long[] hits;
+    private String input;
+    private int inputPosition;
+    private StringBuilder output;
+
+    public MipsSimulator(String assembly) {
+        this(assembly, CostTable.defaultTable());
+    }
+
+    /**
+     * 译码汇编程序
+     * @param assembly MipsProgram输出的汇编文本
+     * @param costs 每种指令的权重
+     * @throws IllegalArgumentException 汇编文本中有不支持的指令、伪指令或未定义的标号
+     */
+    public MipsSimulator(String assembly, CostTable costs) {
+        List<String[]> text = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        Map<String, Integer> labels = new HashMap<>();
+        Map<Integer, List<String>> textLabels = new HashMap<>();
+        boolean inData = false;
+        int dataEnd = DATA_BASE;
+        String[] source = assembly.split("\n");
+        for (int lineNo = 0; lineNo < source.length; lineNo++) {
+            String line = stripComment(source[lineNo]).trim();
+            if (line.equals(".data") || line.equals(".text")) {
+                inData = line.equals(".data");
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0 && !line.startsWith(".")) {
+                String label = line.substring(0, colon).trim();
+                if (labels.put(label, inData ? dataEnd : text.size()) != null) {
+                    throw error(lineNo, "Duplicate label " + label);
+                }
+                if (!inData) {
+                    textLabels.computeIfAbsent(text.size(), k -> new ArrayList<>()).add(label);
+                }
+                line = line.substring(colon + 1).trim();
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (inData) {
+                dataEnd = directive(line, dataEnd, lineNo);
+            } else {
+                text.add(line.split("[\\s,()]+"));
+                lines.add(lineNo);
+            }
+        }
+
+        int n = text.size();
+        opcodes = new MipsOpcode[n];
+        first = new int[n];
+        second = new int[n];
+        third = new int[n];
+        weights = new double[n];
+        Set<Integer> functionStarts = new HashSet<>();
+        if (!labels.containsKey("main")) {
+            throw new IllegalArgumentException("No main label");
+        }
+        entry = labels.get("main");
+        functionStarts.add(entry);
+        for (int pc = 0; pc < n; pc++) {
+            String[] parts = text.get(pc);
+            MipsOpcode opcode = OPCODES.get(parts[0]);
+            if (opcode == null) {
+                throw error(lines.get(pc), "Unsupported instruction " + parts[0]);
+            }
+            int[] operands = new int[3];
+            for (int i = 1; i < parts.length; i++) {
+                if (i > 3) {
+                    throw error(lines.get(pc), "Too many operands");
+                }
+                operands[i - 1] = operand(parts[i], labels, lines.get(pc));
+            }
+            opcodes[pc] = opcode;
+            first[pc] = operands[0];
+            second[pc] = operands[1];
+            third[pc] = operands[2];
+            weights[pc] = opcode == MipsOpcode.LI ? costs.loadImmediate(operands[1]) : costs.get(opcode);
+            if (opcode == MipsOpcode.JAL) {
+                functionStarts.add(operands[0]);
+            }
+        }
+
+        // 每个标号开始一个基本块，函数入口开始一个函数；同一位置的标号中函数名在前，基本块名在后
+        blockOf = new int[n];
+        String function = "";
+        for (int pc = 0; pc < n; pc++) {
+            List<String> here = textLabels.getOrDefault(pc, Collections.emptyList());
+            if (!here.isEmpty() || pc == 0) {
+                if (functionStarts.contains(pc) || pc == 0) {
+                    function = here.isEmpty() ? "" : here.get(0);
+                    functionNames.add(function);
+                }
+                String block = here.isEmpty() ? function : here.get(here.size() - 1);
+                blockNames.add(block.equals(function) ? function : function + "/" + block);
+                functionOf.add(functionNames.size() - 1);
+            }
+            blockOf[pc] = blockNames.size() - 1;
+        }
+    }
+
+    private static String stripComment(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '#' && !quoted) {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    private int directive(String line, int address, int lineNo) {
+        String[] parts = line.split("\\s+", 2);
+        String args = parts.length > 1 ? parts[1] : "";
+        switch (parts[0]) {
+            case ".word":
+                address = (address + 3) & ~3;
+                for (String value : args.split(",")) {
+                    storeInitial(address, 4, parseInt(value.trim(), lineNo), lineNo);
+                    address += 4;
+                }
+                return address;
+            case ".byte":
+                for (String value : args.split(",")) {
+                    storeInitial(address, 1, parseInt(value.trim(), lineNo), lineNo);
+                    address++;
+                }
+                return address;
+            case ".space":
+                return address + parseInt(args.trim(), lineNo);
+            case ".align":
+                int alignment = 1 << parseInt(args.trim(), lineNo);
+                return (address + alignment - 1) & -alignment;
+            default:
+                throw error(lineNo, "Unsupported directive " + parts[0]);
+        }
+    }
+
+    private void storeInitial(int address, int size, int value, int lineNo) {
+        if (address + size - DATA_BASE > DATA_SIZE) {
+            throw error(lineNo, "Data segment too large");
+        }
+        for (int i = 0; i < size; i++) {
+            initialData[address - DATA_BASE + i] = (byte) (value >> (8 * i));
+        }
+    }
+
+    private static int operand(String token, Map<String, Integer> labels, int lineNo) {
+        if (token.startsWith("$")) {
+            Integer number = REGISTERS.get(token.substring(1));
+            if (number == null) {
+                throw error(lineNo, "Unknown register " + token);
+            }
+            return number;
+        }
+        Integer address = labels.get(token);
+        if (address != null) {
+            return address;
+        }
+        if (!token.matches("-?(0x)?[0-9a-fA-F]+")) {
+            throw error(lineNo, "Undefined label " + token);
+        }
+        return parseInt(token, lineNo);
+    }
+
+    private static int parseInt(String token, int lineNo) {
+        try {
+            return (int) (long) Long.decode(token);
+        } catch (NumberFormatException e) {
+            throw error(lineNo, "Malformed number " + token);
+        }
+    }
+
+    private static IllegalArgumentException error(int lineNo, String message) {
+        return new IllegalArgumentException("Line " + (lineNo + 1) + ": " + message);
+    }
+
+    /**
+     * 执行超过该指令数时终止运行
+     */
+    public void setStepLimit(long stepLimit) {
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * 从main开始执行到退出系统调用或越过.text末尾
+     * @param input 标准输入的内容
+     * @return 程序的输出
+     * @throws IllegalStateException 访存越界或不对齐、跳转越界、超过指令数上限
+     */
+    public String run(String input) {
+        this.input = input;
+        inputPosition = 0;
+        output = new StringBuilder();
+        data = initialData.clone();
+        stack = new byte[STACK_SIZE];
+        hits = new long[opcodes.length];
+        Arrays.fill(registers, 0);
+        registers[29] = STACK_TOP;
+        hi = 0;
+        lo = 0;
+        execute();
+        return output.toString();
+    }
+
+    private void execute() {
+        int[] r = registers;
+        long steps = 0;
+        int pc = entry;
+        while (pc != opcodes.length) {
+            if (pc < 0 || pc > opcodes.length) {
+                throw new IllegalStateException("Jump out of .text: " + pc);
+            }
+            if (++steps > stepLimit) {
+                throw new IllegalStateException("Step limit exceeded in " + blockNames.get(blockOf[pc]));
+            }
+            hits[pc]++;
+            int a = first[pc];
+            int b = second[pc];
+            int c = third[pc];
+            int next = pc + 1;
+            switch (opcodes[pc]) {
+                case ADDU: r[a] = r[b] + r[c]; break;
+                case SUBU: r[a] = r[b] - r[c]; break;
+                case MUL: r[a] = r[b] * r[c]; break;
+                case AND: r[a] = r[b] & r[c]; break;
+                case OR: r[a] = r[b] | r[c]; break;
+                case XOR: r[a] = r[b] ^ r[c]; break;
+                case NOR: r[a] = ~(r[b] | r[c]); break;
+                case SLT: r[a] = r[b] < r[c] ? 1 : 0; break;
+                case SLTU: r[a] = Integer.compareUnsigned(r[b], r[c]) < 0 ? 1 : 0; break;
+                case SLLV: r[a] = r[b] << r[c]; break;
+                case SRAV: r[a] = r[b] >> r[c]; break;
+                case SRLV: r[a] = r[b] >>> r[c]; break;
+                case ADDIU: r[a] = r[b] + c; break;
+                case ANDI: r[a] = r[b] & (c & 0xFFFF); break;
+                case ORI: r[a] = r[b] | (c & 0xFFFF); break;
+                case XORI: r[a] = r[b] ^ (c & 0xFFFF); break;
+                case SLTI: r[a] = r[b] < c ? 1 : 0; break;
+                case SLTIU: r[a] = Integer.compareUnsigned(r[b], c) < 0 ? 1 : 0; break;
+                case SLL: r[a] = r[b] << c; break;
+                case SRA: r[a] = r[b] >> c; break;
+                case SRL: r[a] = r[b] >>> c; break;
+                case LI: r[a] = b; break;
+                case LUI: r[a] = b << 16; break;
+                case LA: r[a] = b; break;
+                case MOVE: r[a] = r[b]; break;
+                case MULT: {
+                    long product = (long) r[a] * r[b];
+                    lo = (int) product;
+                    hi = (int) (product >> 32);
+                    break;
+                }
+                case DIV:
+                    if (r[b] != 0) { // MARS中除以零不产生异常，HI和LO不变
+                        lo = r[a] / r[b];
+                        hi = r[a] % r[b];
+                    }
+                    break;
+                case MFHI: r[a] = hi; break;
+                case MFLO: r[a] = lo; break;
+                case LW: r[a] = loadWord(r[c] + b); break;
+                case LBU: r[a] = loadByte(r[c] + b) & 0xFF; break;
+                case SW: storeWord(r[c] + b, r[a]); break;
+                case SB: storeByte(r[c] + b, r[a]); break;
+                case BEQ: next = r[a] == r[b] ? c : next; break;
+                case BNE: next = r[a] != r[b] ? c : next; break;
+                case BLEZ: next = r[a] <= 0 ? b : next; break;
+                case BGTZ: next = r[a] > 0 ? b : next; break;
+                case BLTZ: next = r[a] < 0 ? b : next; break;
+                case BGEZ: next = r[a] >= 0 ? b : next; break;
+                case J: next = a; break;
+                case JAL: r[31] = next; next = a; break;
+                case JR: next = r[a]; break;
+                case SYSCALL:
+                    if (r[2] == 10) {
+                        return;
+                    }
+                    syscall(r[2]);
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported instruction " + opcodes[pc]);
+            }
+            r[0] = 0;
+            pc = next;
+        }
+    }
+
+    private void syscall(int service) {
+        switch (service) {
+            case 1:
+                output.append(registers[4]);
+                break;
+            case 4:
+                for (int address = registers[4]; loadByte(address) != 0; address++) {
+                    output.append((char) (loadByte(address) & 0xFF));
+                }
+                break;
+            case 5:
+                registers[2] = readInt();
+                break;
+            case 11:
+                output.append((char) (registers[4] & 0xFF));
+                break;
+            case 12:
+                registers[2] = inputPosition < input.length() ? input.charAt(inputPosition++) : -1;
+                break;
+            default:
+                throw new IllegalStateException("Unsupported syscall " + service);
+        }
+    }
+
+    private int readInt() {
+        while (inputPosition < input.length() && Character.isWhitespace(input.charAt(inputPosition))) {
+            inputPosition++;
+        }
+        int start = inputPosition;
+        if (inputPosition < input.length() && "+-".indexOf(input.charAt(inputPosition)) >= 0) {
+            inputPosition++;
+        }
+        while (inputPosition < input.length() && Character.isDigit(input.charAt(inputPosition))) {
+            inputPosition++;
+        }
+        try {
+            return (int) Long.parseLong(input.substring(start, inputPosition));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid integer input at offset " + start);
+        }
+    }
+
+    // ==================== 内存 ====================
+
+    private byte loadByte(int address) {
+        if (address - DATA_BASE >= 0 && address - DATA_BASE < DATA_SIZE) {
+            return data[address - DATA_BASE];
+        }
+        int offset = STACK_TOP + 3 - address;
+        if (offset >= 0 && offset < STACK_SIZE) {
+            return stack[offset];
+        }
+        throw new IllegalStateException(String.format("Bad address 0x%08x", address));
+    }
+
+    private void storeByte(int address, int value) {
+        if (address - DATA_BASE >= 0 && address - DATA_BASE < DATA_SIZE) {
+            data[address - DATA_BASE] = (byte) value;
+            return;
+        }
+        int offset = STACK_TOP + 3 - address;
+        if (offset >= 0 && offset < STACK_SIZE) {
+            stack[offset] = (byte) value;
+            return;
+        }
+        throw new IllegalStateException(String.format("Bad address 0x%08x", address));
+    }
+
+    private int loadWord(int address) {
+        checkAligned(address);
+        return (loadByte(address) & 0xFF) | (loadByte(address + 1) & 0xFF) << 8
+                | (loadByte(address + 2) & 0xFF) << 16 | (loadByte(address + 3) & 0xFF) << 24;
+    }
+
+    private void storeWord(int address, int value) {
+        checkAligned(address);
+        for (int i = 0; i < 4; i++) {
+            storeByte(address + i, value >> (8 * i));
+        }
+    }
+
+    private static void checkAligned(int address) {
+        if ((address & 3) != 0) {
+            throw new IllegalStateException(String.format("Unaligned word access 0x%08x", address));
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    /**
+     * 上一次运行执行的指令数
+     */
+    public long getInstructionCount() {
+        long total = 0;
+        for (long count : hits) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * 上一次运行的加权代价
+     */
+    public double getCost() {
+        double total = 0;
+        for (int pc = 0; pc < hits.length; pc++) {
+            total += hits[pc] * weights[pc];
+        }
+        return total;
+    }
+
+    /**
+     * 按代价从高到低排列的各函数统计
+     */
+    public List<ProfileEntry> getFunctionProfile() {
+        List<ProfileEntry> entries = new ArrayList<>();
+        for (String name : functionNames) {
+            entries.add(new ProfileEntry(name));
+        }
+        for (int pc = 0; pc < hits.length; pc++) {
+            accumulate(entries.get(functionOf.get(blockOf[pc])), pc);
+        }
+        return sorted(entries);
+    }
+
+    /**
+     * 按代价从高到低排列的各基本块统计，没有执行的块不列出
+     */
+    public List<ProfileEntry> getBlockProfile() {
+        List<ProfileEntry> entries = new ArrayList<>();
+        for (String name : blockNames) {
+            entries.add(new ProfileEntry(name));
+        }
+        for (int pc = 0; pc < hits.length; pc++) {
+            accumulate(entries.get(blockOf[pc]), pc);
+        }
+        entries.removeIf(e -> e.instructions == 0);
+        return sorted(entries);
+    }
+
+    private void accumulate(ProfileEntry entry, int pc) {
+        entry.instructions += hits[pc];
+        entry.cost += hits[pc] * weights[pc];
+    }
+
+    private static List<ProfileEntry> sorted(List<ProfileEntry> entries) {
+        entries.sort((x, y) -> Double.compare(y.cost, x.cost));
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * 上一次运行的统计报告：总数、各函数和代价最高的若干基本块
+     * @param maxBlocks 列出的基本块数
+     */
+    public String report(int maxBlocks) {
+        double total = getCost();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Instructions: %d%nWeighted cost: %.1f%n", getInstructionCount(), total));
+        sb.append("Functions:\n");
+        for (ProfileEntry entry : getFunctionProfile()) {
+            appendEntry(sb, entry, total);
+        }
+        sb.append("Blocks:\n");
+        List<ProfileEntry> blocks = getBlockProfile();
+        for (ProfileEntry entry : blocks.subList(0, Math.min(maxBlocks, blocks.size()))) {
+            appendEntry(sb, entry, total);
+        }
+        return sb.toString();
+    }
+
+    private static void appendEntry(StringBuilder sb, ProfileEntry entry, double total) {
+        sb.append(String.format(Locale.ROOT, "  %-24s %12d %14.1f %6.2f%%%n", entry.name, entry.instructions,
+                entry.cost, total == 0 ? 0 : 100 * entry.cost / total));
+    }
+}
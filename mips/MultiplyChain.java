@@ -0,0 +1,130 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 乘以常量的移位、加减序列
+ *
+ * 按Bernstein的方法递归搜索：偶数c = c' * 2^k；奇数c = c' ± 1，或者c = c' * (2^k ± 1)，
+ * 此时由x*c'移位后再加减自身得到。负数先求绝对值再取负，或者由 x - x*(|c|+1) 得到。
+ * 搜索受代价上限约束，只返回比上限便宜的序列。
+ */
+final class MultiplyChain {
+    private static final int MAX_STEPS = 8;
+
+    /**
+     * 一步运算，第i步的结果是第i+1个值，第0个值是x；值的序号为-1表示$zero
+     * sll时b是移位量，addu和subu时b是另一个操作数的序号
+     */
+    static final class Step {
+        final MipsOpcode opcode;
+        final int a;
+        final int b;
+
+        Step(MipsOpcode opcode, int a, int b) {
+            this.opcode = opcode;
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    final List<Step> steps;
+    final double cost;
+
+    private MultiplyChain(List<Step> steps, double cost) {
+        this.steps = steps;
+        this.cost = cost;
+    }
+
+    private MultiplyChain then(MipsOpcode opcode, int a, int b, CostTable costs) {
+        List<Step> extended = new ArrayList<>(steps);
+        extended.add(new Step(opcode, a, b));
+        return new MultiplyChain(extended, cost + costs.get(opcode));
+    }
+
+    /**
+     * 最后一个值的序号
+     */
+    private int last() {
+        return steps.size();
+    }
+
+    /**
+     * 求x*c的最便宜的序列
+     * @return 代价低于budget的序列，没有时返回null
+     */
+    static MultiplyChain find(int c, CostTable costs, double budget) {
+        if (c >= 0) {
+            return search(c, costs, budget, MAX_STEPS);
+        }
+        long m = -(long) c;
+        double neg = costs.get(MipsOpcode.SUBU);
+        MultiplyChain best = null;
+        MultiplyChain positive = search(m, costs, budget - neg, MAX_STEPS - 1);
+        if (positive != null) {
+            best = positive.then(MipsOpcode.SUBU, -1, positive.last(), costs);
+        }
+        // x * -m = x - x * (m + 1)
+        MultiplyChain above = search(m + 1, costs, (best != null ? best.cost : budget) - neg, MAX_STEPS - 1);
+        if (above != null) {
+            best = above.then(MipsOpcode.SUBU, 0, above.last(), costs);
+        }
+        return best;
+    }
+
+    private static MultiplyChain search(long c, CostTable costs, double budget, int steps) {
+        if (c == 1) {
+            return budget > 0 ? new MultiplyChain(Collections.emptyList(), 0) : null;
+        }
+        if (budget <= 0 || steps <= 0 || c == 0) {
+            return null;
+        }
+        double shift = costs.get(MipsOpcode.SLL);
+        double add = costs.get(MipsOpcode.ADDU);
+        double sub = costs.get(MipsOpcode.SUBU);
+        MultiplyChain best = null;
+        if ((c & 1) == 0) {
+            int k = Long.numberOfTrailingZeros(c);
+            MultiplyChain p = search(c >>> k, costs, budget - shift, steps - 1);
+            return p != null ? p.then(MipsOpcode.SLL, p.last(), k, costs) : null;
+        }
+        MultiplyChain p = search(c - 1, costs, budget - add, steps - 1);
+        if (p != null) {
+            best = p.then(MipsOpcode.ADDU, p.last(), 0, costs);
+            budget = best.cost;
+        }
+        p = search(c + 1, costs, budget - sub, steps - 1);
+        if (p != null) {
+            best = p.then(MipsOpcode.SUBU, p.last(), 0, costs);
+            budget = best.cost;
+        }
+        for (int k = 2; k < 32; k++) {
+            long plus = (1L << k) + 1;
+            long minus = (1L << k) - 1;
+            if (minus > c) {
+                break;
+            }
+            if (c % plus == 0) {
+                p = search(c / plus, costs, budget - shift - add, steps - 2);
+                if (p != null) {
+                    int factor = p.last();
+                    p = p.then(MipsOpcode.SLL, factor, k, costs);
+                    best = p.then(MipsOpcode.ADDU, p.last(), factor, costs);
+                    budget = best.cost;
+                }
+            }
+            if (c % minus == 0) {
+                p = search(c / minus, costs, budget - shift - sub, steps - 2);
+                if (p != null) {
+                    int factor = p.last();
+                    p = p.then(MipsOpcode.SLL, factor, k, costs);
+                    best = p.then(MipsOpcode.SUBU, p.last(), factor, costs);
+                    budget = best.cost;
+                }
+            }
+        }
+        return best;
+    }
+}
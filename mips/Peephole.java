@@ -0,0 +1,165 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 窥孔优化：栈帧布局之后在每个块的指令列表上滑动窗口，按顺序尝试各条规则，直到不再变化
+ *
+ * 规则只在块内匹配，需要时可以查询寄存器在窗口中某条指令之后是否不再使用（依据块出口的活跃集合），
+ * 以及块之后顺序落入的标签。每条规则成功改写的次数分别计数。
+ */
+public class Peephole {
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, Integer> hits = new LinkedHashMap<>();
+
+    /**
+     * 一条窥孔规则
+     */
+    public interface Rule {
+        String getName();
+
+        /**
+         * 尝试在窗口起点匹配并改写
+         * @return 是否改写
+         */
+        boolean apply(Window window);
+    }
+
+    /**
+     * 规则看到的窗口：当前块中从某条指令开始的部分
+     */
+    public static class Window {
+        private final List<MipsBlock> blocks;
+        private final int blockIndex;
+        private final Liveness liveness;
+        private int start;
+
+        private Window(List<MipsBlock> blocks, int blockIndex, Liveness liveness) {
+            this.blocks = blocks;
+            this.blockIndex = blockIndex;
+            this.liveness = liveness;
+        }
+
+        private List<MipsInstruction> instructions() {
+            return blocks.get(blockIndex).getInstructions();
+        }
+
+        /**
+         * 窗口中第offset条指令，超出块末尾时返回null
+         */
+        public MipsInstruction get(int offset) {
+            int index = start + offset;
+            return index < instructions().size() ? instructions().get(index) : null;
+        }
+
+        public void remove(int offset) {
+            instructions().remove(start + offset);
+        }
+
+        public void replace(int offset, MipsInstruction inst) {
+            instructions().set(start + offset, inst);
+        }
+
+        /**
+         * 寄存器在窗口第offset条指令之后是否不再被使用；不参与分配的寄存器总是视为活跃
+         */
+        public boolean isDeadAfter(Register register, int offset) {
+            if (!Liveness.isTracked(register)) {
+                return false;
+            }
+            List<MipsInstruction> instructions = instructions();
+            for (int i = start + offset + 1; i < instructions.size(); i++) {
+                MipsInstruction inst = instructions.get(i);
+                if (inst.getUses().contains(register)) {
+                    return false;
+                }
+                if (inst.getDefs().contains(register)) {
+                    return true;
+                }
+            }
+            BitSet liveOut = liveness.getLiveOut(blocks.get(blockIndex));
+            return !liveOut.get(Liveness.node(register));
+        }
+
+        /**
+         * 块执行完顺序落入的位置是否是label：紧随其后的空块也会继续落入下一块
+         */
+        public boolean fallsThroughTo(Label label) {
+            for (int i = blockIndex + 1; i < blocks.size(); i++) {
+                MipsBlock next = blocks.get(i);
+                if (next.getLabel() == label) {
+                    return true;
+                }
+                if (!next.getInstructions().isEmpty()) {
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 按优化级别构造窥孔优化器，-O0不做窥孔优化
+     * @param level 优化级别
+     * @return 窥孔优化器
+     */
+    public static Peephole forLevel(int level) {
+        Peephole peephole = new Peephole();
+        if (level >= 1) {
+            PeepholeRules.addStandardRules(peephole);
+        }
+        return peephole;
+    }
+
+    public Peephole add(Rule rule) {
+        rules.add(rule);
+        hits.put(rule.getName(), 0);
+        return this;
+    }
+
+    /**
+     * 每条规则成功改写的次数，按规则加入的顺序排列
+     */
+    public Map<String, Integer> getHits() {
+        return Collections.unmodifiableMap(hits);
+    }
+
+    public void run(MipsFunction function) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        List<MipsBlock> blocks = function.getBlocks();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Liveness liveness = new Liveness(function);
+            for (int b = 0; b < blocks.size(); b++) {
+                Window window = new Window(blocks, b, liveness);
+                List<MipsInstruction> instructions = blocks.get(b).getInstructions();
+                while (window.start < instructions.size()) {
+                    if (applyAny(window)) {
+                        changed = true;
+                        window.start = Math.max(0, window.start - 1); // 改写后前一条指令可能形成新的匹配
+                    } else {
+                        window.start++;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean applyAny(Window window) {
+        for (Rule rule : rules) {
+            if (rule.apply(window)) {
+                hits.merge(rule.getName(), 1, Integer::sum);
+                return true;
+            }
+        }
+        return false;
+    }
+}
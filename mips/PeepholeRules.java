@@ -0,0 +1,222 @@
+package mips;
+
+import java.util.function.Predicate;
+
+/**
+ * 标准的窥孔规则
+ */
+final class PeepholeRules {
+    private PeepholeRules() {
+    }
+
+    static void addStandardRules(Peephole peephole) {
+        peephole.add(rule("self-move", PeepholeRules::selfMove))
+                .add(rule("add-zero", PeepholeRules::addZero))
+                .add(rule("store-load", PeepholeRules::storeLoad))
+                .add(rule("load-store", PeepholeRules::loadStore))
+                .add(rule("move-back", PeepholeRules::moveBack))
+                .add(rule("copy-forward", PeepholeRules::copyForward))
+                .add(rule("dead-def", PeepholeRules::deadDef))
+                .add(rule("jump-next", PeepholeRules::jumpNext))
+                .add(rule("branch-over-jump", PeepholeRules::branchOverJump));
+    }
+
+    private static Peephole.Rule rule(String name, Predicate<Peephole.Window> body) {
+        return new Peephole.Rule() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean apply(Peephole.Window window) {
+                return body.test(window);
+            }
+        };
+    }
+
+    private static boolean is(MipsInstruction inst, MipsOpcode opcode) {
+        return inst != null && inst.getOpcode() == opcode;
+    }
+
+    /**
+     * 访存指令的偏移，不是常量时返回null
+     */
+    private static Integer offsetOf(MipsInstruction inst) {
+        MipsOperand offset = inst.getOperand(1);
+        if (offset instanceof Immediate) {
+            return ((Immediate) offset).getValue();
+        }
+        if (offset instanceof StackOffset) {
+            return ((StackOffset) offset).getValue();
+        }
+        return null;
+    }
+
+    private static boolean sameAddress(MipsInstruction a, MipsInstruction b) {
+        Integer offset = offsetOf(a);
+        return offset != null && offset.equals(offsetOf(b)) && a.getOperand(2) == b.getOperand(2);
+    }
+
+    /**
+     * move x, x
+     */
+    private static boolean selfMove(Peephole.Window window) {
+        MipsInstruction inst = window.get(0);
+        if (is(inst, MipsOpcode.MOVE) && inst.getOperand(0) == inst.getOperand(1)) {
+            window.remove(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * addiu x, y, 0 改为 move x, y；x与y相同时删除
+     */
+    private static boolean addZero(Peephole.Window window) {
+        MipsInstruction inst = window.get(0);
+        if (!is(inst, MipsOpcode.ADDIU) || !(inst.getOperand(2) instanceof Immediate)
+                || ((Immediate) inst.getOperand(2)).getValue() != 0) {
+            return false;
+        }
+        if (inst.getOperand(0) == inst.getOperand(1)) {
+            window.remove(0);
+        } else {
+            window.replace(0, new MipsInstruction(MipsOpcode.MOVE, inst.getOperand(0), inst.getOperand(1)));
+        }
+        return true;
+    }
+
+    /**
+     * sw r, o(b); lw r2, o(b) 中的读取改为复制
+     */
+    private static boolean storeLoad(Peephole.Window window) {
+        MipsInstruction store = window.get(0);
+        MipsInstruction load = window.get(1);
+        if (!is(store, MipsOpcode.SW) || !is(load, MipsOpcode.LW) || !sameAddress(store, load)) {
+            return false;
+        }
+        if (load.getOperand(0) == store.getOperand(0)) {
+            window.remove(1);
+        } else {
+            window.replace(1, new MipsInstruction(MipsOpcode.MOVE, load.getOperand(0), store.getOperand(0)));
+        }
+        return true;
+    }
+
+    /**
+     * lw r, o(b); sw r, o(b) 写回刚读出的值
+     */
+    private static boolean loadStore(Peephole.Window window) {
+        MipsInstruction load = window.get(0);
+        MipsInstruction store = window.get(1);
+        if (is(load, MipsOpcode.LW) && is(store, MipsOpcode.SW) && load.getOperand(0) == store.getOperand(0)
+                && load.getOperand(0) != load.getOperand(2) && sameAddress(load, store)) {
+            window.remove(1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * move a, b; move b, a 中的第二条
+     */
+    private static boolean moveBack(Peephole.Window window) {
+        MipsInstruction first = window.get(0);
+        MipsInstruction second = window.get(1);
+        if (is(first, MipsOpcode.MOVE) && is(second, MipsOpcode.MOVE)
+                && first.getOperand(0) == second.getOperand(1) && first.getOperand(1) == second.getOperand(0)) {
+            window.remove(1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * op d, ...; move y, d 且d之后不再使用时，op直接写y
+     */
+    private static boolean copyForward(Peephole.Window window) {
+        MipsInstruction inst = window.get(0);
+        MipsInstruction move = window.get(1);
+        if (inst == null || !is(move, MipsOpcode.MOVE) || !inst.getImplicitDefs().isEmpty()
+                || inst.defIndices().length != 1) {
+            return false;
+        }
+        MipsOperand def = inst.getOperand(inst.defIndices()[0]);
+        if (move.getOperand(1) != def || !window.isDeadAfter((Register) def, 1)) {
+            return false;
+        }
+        inst.replaceDef((Register) def, (Register) move.getOperand(0));
+        window.remove(1);
+        return true;
+    }
+
+    /**
+     * 结果不再使用的计算
+     */
+    private static boolean deadDef(Peephole.Window window) {
+        MipsInstruction inst = window.get(0);
+        if (inst == null || !inst.getImplicitDefs().isEmpty() || !inst.getImplicitUses().isEmpty()) {
+            return false;
+        }
+        switch (inst.getOpcode().getFormat()) {
+            case RRR:
+            case RRI:
+            case RI:
+            case RL:
+            case RR:
+            case MF:
+                break;
+            default:
+                return false; // 访存、跳转、系统调用和写HI/LO的指令有其他作用
+        }
+        if (window.isDeadAfter((Register) inst.getOperand(0), 0)) {
+            window.remove(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 跳到顺序落入的位置
+     */
+    private static boolean jumpNext(Peephole.Window window) {
+        MipsInstruction inst = window.get(0);
+        if (is(inst, MipsOpcode.J) && window.get(1) == null && window.fallsThroughTo(inst.getTarget())) {
+            window.remove(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * b L1; j L2; L1: 改为反向条件跳到L2
+     */
+    private static boolean branchOverJump(Peephole.Window window) {
+        MipsInstruction branch = window.get(0);
+        MipsInstruction jump = window.get(1);
+        if (branch == null || !branch.getOpcode().isBranch() || !is(jump, MipsOpcode.J) || window.get(2) != null
+                || !window.fallsThroughTo(branch.getTarget())) {
+            return false;
+        }
+        MipsOpcode inverse = inverse(branch.getOpcode());
+        if (branch.getOpcode().getFormat() == MipsOpcode.Format.BR2) {
+            window.replace(0, new MipsInstruction(inverse, branch.getOperand(0), branch.getOperand(1), jump.getTarget()));
+        } else {
+            window.replace(0, new MipsInstruction(inverse, branch.getOperand(0), jump.getTarget()));
+        }
+        window.remove(1);
+        return true;
+    }
+
+    private static MipsOpcode inverse(MipsOpcode opcode) {
+        switch (opcode) {
+            case BEQ: return MipsOpcode.BNE;
+            case BNE: return MipsOpcode.BEQ;
+            case BLEZ: return MipsOpcode.BGTZ;
+            case BGTZ: return MipsOpcode.BLEZ;
+            case BLTZ: return MipsOpcode.BGEZ;
+            default: return MipsOpcode.BLTZ;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 寄存器，可以是物理寄存器或寄存器分配前使用的虚拟寄存器
+ */
+public class Register extends MipsOperand {
+    private static final String[] NAMES = {
+            "zero", "at", "v0", "v1", "a0", "a1", "a2", "a3",
+            "t0", "t1", "t2", "t3", "t4", "t5", "t6", "t7",
+            "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
+            "t8", "t9", "k0", "k1", "gp", "sp", "fp", "ra"
+    };
+    private static final Register[] PHYSICAL = new Register[32];
+
+    static {
+        for (int i = 0; i < 32; i++) {
+            PHYSICAL[i] = new Register(i, false);
+        }
+    }
+
+    public static final Register ZERO = PHYSICAL[0];
+    public static final Register AT = PHYSICAL[1];
+    public static final Register V0 = PHYSICAL[2];
+    public static final Register V1 = PHYSICAL[3];
+    public static final Register A0 = PHYSICAL[4];
+    public static final Register SP = PHYSICAL[29];
+    public static final Register RA = PHYSICAL[31];
+
+    private final int number;      // 物理寄存器编号，或虚拟寄存器序号
+    private final boolean virtual;
+
+    private Register(int number, boolean virtual) {
+        this.number = number;
+        this.virtual = virtual;
+    }
+
+    public static Register physical(int number) {
+        return PHYSICAL[number];
+    }
+
+    static Register newVirtual(int id) {
+        return new Register(id, true);
+    }
+
+    public static Register argument(int index) {
+        return PHYSICAL[4 + index];
+    }
+
+    public static Register temporary(int index) {
+        return PHYSICAL[index < 8 ? 8 + index : 24 + index - 8];
+    }
+
+    public static Register saved(int index) {
+        return PHYSICAL[16 + index];
+    }
+
+    /**
+     * 调用者保存的寄存器，函数调用后其值不再有效
+     */
+    public static List<Register> callerSaved() {
+        List<Register> registers = new ArrayList<>();
+        registers.add(V0);
+        registers.add(V1);
+        for (int i = 0; i < 4; i++) {
+            registers.add(argument(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            registers.add(temporary(i));
+        }
+        registers.add(RA);
+        return Collections.unmodifiableList(registers);
+    }
+
+    /**
+     * 寄存器分配可以使用的寄存器，调用者保存的$t在前，使用$s需要在序言和尾声中保存恢复
+     */
+    public static List<Register> allocatable() {
+        List<Register> registers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            registers.add(temporary(i));
+        }
+        for (int i = 0; i < 8; i++) {
+            registers.add(saved(i));
+        }
+        return Collections.unmodifiableList(registers);
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public boolean isCalleeSaved() {
+        return !virtual && number >= 16 && number <= 23;
+    }
+
+    @Override
+    public String toString() {
+        return virtual ? "%vr" + number : "$" + NAMES[number];
+    }
+}
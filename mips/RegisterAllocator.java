@@ -0,0 +1,18 @@
+package mips;
+
+/**
+ * 寄存器分配器：把函数中的虚拟寄存器全部替换为物理寄存器，
+ * 需要溢出的虚拟寄存器放到栈帧中，并记录用到的被调用者保存寄存器
+ */
+public interface RegisterAllocator {
+    void allocate(MipsFunction function);
+
+    /**
+     * 按优化级别选择分配器：-O0注重编译速度使用线性扫描，其余使用图着色
+     * @param level 优化级别
+     * @return 寄存器分配器
+     */
+    static RegisterAllocator forLevel(int level) {
+        return level >= 1 ? new GraphColoringAllocator() : new LinearScanAllocator();
+    }
+}
@@ -0,0 +1,93 @@
+package mips;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 寄存器分配器共用的改写：插入溢出代码，把虚拟寄存器换成分配结果
+ */
+final class RegisterRewriter {
+    private RegisterRewriter() {
+    }
+
+    /**
+     * 为溢出的寄存器分配栈槽，在每次使用前读入、定义后写回
+     * 读写使用新的短生存期虚拟寄存器，这些寄存器加入temps
+     */
+    static void spill(MipsFunction function, Collection<Register> spilled, Set<Register> temps) {
+        Map<Register, StackSlot> slots = new HashMap<>();
+        for (Register register : spilled) {
+            slots.put(register, function.newStackSlot(4));
+        }
+        for (MipsBlock block : function.getBlocks()) {
+            ListIterator<MipsInstruction> it = block.getInstructions().listIterator();
+            while (it.hasNext()) {
+                MipsInstruction inst = it.next();
+                Map<Register, Register> replaced = new HashMap<>();
+                it.previous();
+                for (Register use : inst.getUses()) {
+                    StackSlot slot = slots.get(use);
+                    if (slot != null && !replaced.containsKey(use)) {
+                        Register temp = newTemp(function, temps);
+                        replaced.put(use, temp);
+                        it.add(new MipsInstruction(MipsOpcode.LW, temp, new StackOffset(slot, 0), Register.SP));
+                        inst.replaceUse(use, temp);
+                    }
+                }
+                it.next();
+                for (Register def : inst.getDefs()) {
+                    StackSlot slot = slots.get(def);
+                    if (slot != null) {
+                        Register temp = replaced.computeIfAbsent(def, r -> newTemp(function, temps));
+                        inst.replaceDef(def, temp);
+                        it.add(new MipsInstruction(MipsOpcode.SW, temp, new StackOffset(slot, 0), Register.SP));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Register newTemp(MipsFunction function, Set<Register> temps) {
+        Register temp = function.newVirtualRegister();
+        temps.add(temp);
+        return temp;
+    }
+
+    /**
+     * 把虚拟寄存器换成分配到的物理寄存器，删除两端相同的move，并记录用到的$s寄存器
+     * @param colors 按结点编号索引的物理寄存器编号
+     */
+    static void assign(MipsFunction function, int[] colors) {
+        for (MipsBlock block : function.getBlocks()) {
+            Iterator<MipsInstruction> it = block.getInstructions().iterator();
+            while (it.hasNext()) {
+                MipsInstruction inst = it.next();
+                for (Register use : inst.getUses()) {
+                    if (use.isVirtual()) {
+                        inst.replaceUse(use, physical(function, colors, use));
+                    }
+                }
+                for (Register def : inst.getDefs()) {
+                    if (def.isVirtual()) {
+                        inst.replaceDef(def, physical(function, colors, def));
+                    }
+                }
+                if (inst.isMove() && inst.getOperand(0) == inst.getOperand(1)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static Register physical(MipsFunction function, int[] colors, Register virtual) {
+        Register physical = Register.physical(colors[Liveness.node(virtual)]);
+        if (physical.isCalleeSaved()) {
+            function.getUsedCalleeSaved().add(physical);
+        }
+        return physical;
+    }
+}
@@ -0,0 +1,51 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最简单的寄存器分配：每个虚拟寄存器都放在栈上，
+ * 使用前读入$t0/$t1，定义写入$t2后立即存回
+ */
+public class SpillAllocator implements RegisterAllocator {
+    private static final Register[] USE_SCRATCH = {Register.temporary(0), Register.temporary(1)};
+    private static final Register DEF_SCRATCH = Register.temporary(2);
+
+    @Override
+    public void allocate(MipsFunction function) {
+        Map<Register, StackSlot> slots = new HashMap<>();
+        for (MipsBlock block : function.getBlocks()) {
+            List<MipsInstruction> rewritten = new ArrayList<>();
+            for (MipsInstruction inst : block.getInstructions()) {
+                int scratch = 0;
+                for (Register use : new LinkedHashSet<>(inst.getUses())) {
+                    if (!use.isVirtual()) {
+                        continue;
+                    }
+                    Register physical = USE_SCRATCH[scratch++];
+                    StackSlot slot = slots.computeIfAbsent(use, r -> function.newStackSlot(4));
+                    rewritten.add(new MipsInstruction(MipsOpcode.LW, physical, new StackOffset(slot, 0), Register.SP));
+                    inst.replaceUse(use, physical);
+                }
+                MipsInstruction store = null;
+                for (Register def : inst.getDefs()) {
+                    if (!def.isVirtual()) {
+                        continue;
+                    }
+                    StackSlot slot = slots.computeIfAbsent(def, r -> function.newStackSlot(4));
+                    inst.replaceDef(def, DEF_SCRATCH);
+                    store = new MipsInstruction(MipsOpcode.SW, DEF_SCRATCH, new StackOffset(slot, 0), Register.SP);
+                }
+                rewritten.add(inst);
+                if (store != null) {
+                    rewritten.add(store);
+                }
+            }
+            block.getInstructions().clear();
+            block.getInstructions().addAll(rewritten);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package mips;
+
+/**
+ * 以栈帧存储为基准的偏移量操作数，输出时换算成相对于$sp的立即数
+ */
+public class StackOffset extends MipsOperand {
+    private final StackSlot slot;
+    private final int addend;
+
+    public StackOffset(StackSlot slot, int addend) {
+        this.slot = slot;
+        this.addend = addend;
+    }
+
+    public StackSlot getSlot() {
+        return slot;
+    }
+
+    public int getAddend() {
+        return addend;
+    }
+
+    public int getValue() {
+        return slot.getOffset() + addend;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getValue());
+    }
+}
@@ -0,0 +1,39 @@
+package mips;
+
+/**
+ * 栈帧中的一块存储（局部变量、数组或溢出的虚拟寄存器）
+ * 偏移在寄存器分配之后布局栈帧时才确定；传入的栈上实参的偏移相对于调用者的栈顶
+ */
+public class StackSlot {
+    private final int size;
+    private final int incomingArgIndex; // 栈上传入的第几个实参，普通存储为-1
+    private int offset = -1;
+
+    StackSlot(int size, int incomingArgIndex) {
+        this.size = (size + 3) & ~3;
+        this.incomingArgIndex = incomingArgIndex;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isIncomingArg() {
+        return incomingArgIndex >= 0;
+    }
+
+    public int getIncomingArgIndex() {
+        return incomingArgIndex;
+    }
+
+    /**
+     * 相对于$sp的偏移
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    void setOffset(int offset) {
+        this.offset = offset;
+    }
+}
@@ -0,0 +1,184 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.BasicBlock;
+import ir.BranchInst;
+import ir.CallInst;
+import ir.Function;
+import ir.GepInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.LoadInst;
+import ir.PhiInst;
+import ir.ReturnInst;
+import ir.StoreInst;
+import ir.User;
+import ir.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 激进的死代码删除（标记-清除）
+ *
+ * 先假定所有指令都无用，从ret、调用和写到会被读取的内存的store出发，
+ * 沿操作数和控制依赖（后支配边界）标记有用的指令；未被标记的指令全部删除，
+ * 无用的条件分支改为跳到直接后支配者，因此不影响结果的整段分支和循环也会被删除。
+ * 有块到达不了ret（死循环）时保留所有分支。
+ */
+public class ADCE extends FunctionPass {
+    private final Set<Instruction> live = new HashSet<>();
+    private final Set<BasicBlock> liveBlocks = new HashSet<>();
+    private final Deque<Instruction> worklist = new ArrayDeque<>();
+    private PostDominatorTree postDomTree;
+
+    @Override
+    public void run(Function function) {
+        Cfg.removeUnreachableBlocks(function);
+        postDomTree = new PostDominatorTree(function);
+        live.clear();
+        liveBlocks.clear();
+        boolean keepBranches = false;
+        for (BasicBlock block : function.getBlocks()) {
+            if (!postDomTree.contains(block)) {
+                keepBranches = true;
+                break;
+            }
+        }
+
+        Set<AllocaInst> readAllocas = findReadAllocas(function);
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (inst instanceof ReturnInst || inst instanceof CallInst
+                        || (inst instanceof BranchInst && keepBranches)
+                        || (inst instanceof StoreInst && !writesDeadMemory((StoreInst) inst, readAllocas))) {
+                    markLive(inst);
+                }
+            }
+        }
+        while (!worklist.isEmpty()) {
+            propagate(worklist.poll());
+        }
+        sweep(function);
+        postDomTree = null;
+    }
+
+    private void markLive(Instruction inst) {
+        if (live.add(inst)) {
+            worklist.add(inst);
+        }
+    }
+
+    private void markBlockLive(BasicBlock block) {
+        if (!liveBlocks.add(block)) {
+            return;
+        }
+        // block是否执行取决于其后支配边界上的条件分支
+        for (BasicBlock controller : postDomTree.getPostDominanceFrontier(block)) {
+            markLive(controller.getTerminator());
+        }
+    }
+
+    private void propagate(Instruction inst) {
+        markBlockLive(inst.getParent());
+        for (Value operand : inst.getOperands()) {
+            if (operand instanceof Instruction) {
+                markLive((Instruction) operand);
+            }
+        }
+        if (inst instanceof PhiInst) {
+            // phi取哪个值由到达它的边决定
+            PhiInst phi = (PhiInst) inst;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                BasicBlock incoming = phi.getIncomingBlock(i);
+                markBlockLive(incoming);
+                if (incoming.getTerminator() instanceof BranchInst) {
+                    markLive(incoming.getTerminator());
+                }
+            }
+        }
+    }
+
+    private void sweep(Function function) {
+        List<Instruction> dead = new ArrayList<>();
+        List<BranchInst> deadBranches = new ArrayList<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (live.contains(inst) || inst instanceof JumpInst) {
+                    continue;
+                }
+                if (inst instanceof BranchInst) {
+                    deadBranches.add((BranchInst) inst);
+                } else {
+                    dead.add(inst);
+                }
+            }
+        }
+        // 无用指令的使用者也都无用，先全部解除操作数再删除
+        for (Instruction inst : dead) {
+            inst.dropOperands();
+        }
+        for (Instruction inst : dead) {
+            inst.eraseFromParent();
+        }
+        for (BranchInst br : deadBranches) {
+            BasicBlock block = br.getParent();
+            BasicBlock target = postDomTree.getImmediatePostDominator(block);
+            if (target == null) {
+                continue;
+            }
+            for (BasicBlock successor : block.getSuccessors()) {
+                for (PhiInst phi : successor.getPhis()) {
+                    phi.removeIncomingBlock(block);
+                }
+            }
+            br.eraseFromParent();
+            block.add(new JumpInst(target));
+        }
+        Cfg.removeUnreachableBlocks(function);
+    }
+
+    /**
+     * 地址可能被读取的局部数组和变量：有load经由它读取，或者地址作为实参传出
+     */
+    private static Set<AllocaInst> findReadAllocas(Function function) {
+        Set<AllocaInst> result = new HashSet<>();
+        for (Instruction inst : function.getEntryBlock().getInstructions()) {
+            if (inst instanceof AllocaInst && isRead(inst, new HashSet<>())) {
+                result.add((AllocaInst) inst);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 地址沿getelementptr和强度削弱产生的指针phi传递
+     */
+    private static boolean isRead(Value address, Set<Value> visited) {
+        if (!visited.add(address)) {
+            return false;
+        }
+        for (User user : address.getUsers()) {
+            if (user instanceof LoadInst || user instanceof CallInst
+                    || ((user instanceof GepInst || user instanceof PhiInst) && isRead(user, visited))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * store是否写到从不被读取的局部内存
+     */
+    private static boolean writesDeadMemory(StoreInst store, Set<AllocaInst> readAllocas) {
+        Value base = store.getPointer();
+        while (base instanceof GepInst) {
+            base = ((GepInst) base).getPointer();
+        }
+        return base instanceof AllocaInst && !readAllocas.contains(base);
+    }
+}
@@ -0,0 +1,129 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.Argument;
+import ir.CallInst;
+import ir.ConstantInt;
+import ir.GepInst;
+import ir.GlobalVariable;
+import ir.IRType;
+import ir.Instruction;
+import ir.StoreInst;
+import ir.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于基址对象和常量偏移的别名分析，供GVN和LICM判断store和调用是否可能改写某个地址
+ * 地址剥去getelementptr后得到基址：局部数组、全局变量或指针形参。
+ * SysY中指针不能存入内存，因此局部数组只会经由调用实参被其他函数访问。
+ */
+final class AliasAnalysis {
+    private final Map<Value, Location> locations = new HashMap<>();
+
+    /**
+     * 一个内存访问位置：基址对象和相对它的字节偏移，偏移未知时为null
+     */
+    static final class Location {
+        final Value base;
+        final Integer offset;
+        final int size;
+
+        Location(Value base, Integer offset, int size) {
+            this.base = base;
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 剥去地址计算得到基址对象，下标都是常量时同时求出字节偏移
+     */
+    Location locate(Value pointer) {
+        Location location = locations.get(pointer);
+        if (location != null) {
+            return location;
+        }
+        Value base = pointer;
+        Integer offset = 0;
+        while (base instanceof GepInst) {
+            GepInst gep = (GepInst) base;
+            IRType type = gep.getPointer().getType().getElementType();
+            for (int i = 0; i < gep.getNumIndices(); i++) {
+                Value index = gep.getIndex(i);
+                if (offset != null && index instanceof ConstantInt) {
+                    offset += ((ConstantInt) index).getValue() * type.getSize();
+                } else {
+                    offset = null;
+                }
+                type = type.getElementType();
+            }
+            base = gep.getPointer();
+        }
+        location = new Location(base, offset, pointer.getType().getElementType().getSize());
+        locations.put(pointer, location);
+        return location;
+    }
+
+    /**
+     * 两个地址是否一定相同
+     */
+    boolean mustAlias(Value a, Value b) {
+        if (a == b) {
+            return true;
+        }
+        Location x = locate(a);
+        Location y = locate(b);
+        return x.base == y.base && x.offset != null && x.offset.equals(y.offset) && x.size == y.size;
+    }
+
+    static boolean mayAlias(Location x, Location y) {
+        if (x.base != y.base) {
+            // 不同的局部数组、全局变量互不重叠；形参指向调用者的数组，不会是本函数的局部数组
+            boolean xLocal = x.base instanceof AllocaInst;
+            boolean yLocal = y.base instanceof AllocaInst;
+            boolean xIdentified = xLocal || x.base instanceof GlobalVariable;
+            boolean yIdentified = yLocal || y.base instanceof GlobalVariable;
+            if (xIdentified && yIdentified) {
+                return false;
+            }
+            return !(xLocal && y.base instanceof Argument) && !(yLocal && x.base instanceof Argument);
+        }
+        if (x.offset == null || y.offset == null) {
+            return true;
+        }
+        return x.offset < y.offset + y.size && y.offset < x.offset + x.size;
+    }
+
+    /**
+     * 指令是否会写内存：store和非内建函数的调用
+     */
+    static boolean writesMemory(Instruction inst) {
+        return inst instanceof StoreInst
+                || (inst instanceof CallInst && !((CallInst) inst).getCallee().isBuiltin());
+    }
+
+    /**
+     * 写内存的指令是否可能改写location
+     */
+    boolean mayClobber(Instruction inst, Location location) {
+        if (inst instanceof StoreInst) {
+            return mayAlias(locate(((StoreInst) inst).getPointer()), location);
+        }
+        // 调用可能写非常量的全局变量、形参指向的数组，以及作为实参传入的局部数组
+        Value base = location.base;
+        if (base instanceof GlobalVariable) {
+            return !((GlobalVariable) base).isConstant();
+        }
+        if (base instanceof AllocaInst) {
+            for (Value arg : ((CallInst) inst).getArgs()) {
+                if (arg.getType().isPointer() && locate(arg).base == base) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+}
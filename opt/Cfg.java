@@ -0,0 +1,77 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.Function;
+import ir.PhiInst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 控制流图的公共操作
+ */
+public final class Cfg {
+    private Cfg() {
+    }
+
+    /**
+     * 从入口可达的基本块的逆后序
+     */
+    public static List<BasicBlock> reversePostOrder(Function function) {
+        List<BasicBlock> postOrder = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        // 显式栈模拟深度优先搜索，避免深层控制流导致栈溢出
+        Deque<BasicBlock> blocks = new ArrayDeque<>();
+        Deque<Iterator<BasicBlock>> successors = new ArrayDeque<>();
+        BasicBlock entry = function.getEntryBlock();
+        visited.add(entry);
+        blocks.push(entry);
+        successors.push(entry.getSuccessors().iterator());
+        while (!blocks.isEmpty()) {
+            Iterator<BasicBlock> it = successors.peek();
+            if (it.hasNext()) {
+                BasicBlock next = it.next();
+                if (visited.add(next)) {
+                    blocks.push(next);
+                    successors.push(next.getSuccessors().iterator());
+                }
+            } else {
+                postOrder.add(blocks.pop());
+                successors.pop();
+            }
+        }
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    /**
+     * 删除从入口不可达的基本块，并去掉后继phi中来自这些块的入边
+     * @return 是否删除了基本块
+     */
+    public static boolean removeUnreachableBlocks(Function function) {
+        Set<BasicBlock> reachable = new HashSet<>(reversePostOrder(function));
+        List<BasicBlock> unreachable = new ArrayList<>();
+        for (BasicBlock block : function.getBlocks()) {
+            if (!reachable.contains(block)) {
+                unreachable.add(block);
+            }
+        }
+        for (BasicBlock block : unreachable) {
+            for (BasicBlock successor : block.getSuccessors()) {
+                for (PhiInst phi : successor.getPhis()) {
+                    phi.removeIncomingBlock(block);
+                }
+            }
+        }
+        for (BasicBlock block : unreachable) {
+            function.removeBlock(block);
+        }
+        return !unreachable.isEmpty();
+    }
+}
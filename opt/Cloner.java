@@ -0,0 +1,97 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.BranchInst;
+import ir.CallInst;
+import ir.CastInst;
+import ir.GepInst;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.LoadInst;
+import ir.PhiInst;
+import ir.ReturnInst;
+import ir.StoreInst;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 复制指令，同时按映射表替换操作数；复制内联的函数体和展开的循环体时使用
+ * 映射表中没有的值（常量、全局变量、复制范围以外的指令）保持不变。
+ * phi的入边可能引用尚未复制的值，因此复制时先建立空的phi，全部复制完后再用fillPhi补上。
+ */
+final class Cloner {
+    private final Map<Value, Value> map = new HashMap<>();
+
+    void put(Value original, Value copy) {
+        map.put(original, copy);
+    }
+
+    Value get(Value value) {
+        Value mapped = map.get(value);
+        return mapped != null ? mapped : value;
+    }
+
+    /**
+     * 复制一条指令并记录映射，新指令尚未插入任何基本块
+     */
+    Instruction copy(Instruction inst) {
+        Instruction copy;
+        if (inst instanceof BinaryInst) {
+            copy = new BinaryInst(inst.getOpcode(), get(inst.getOperand(0)), get(inst.getOperand(1)));
+        } else if (inst instanceof IcmpInst) {
+            copy = new IcmpInst(((IcmpInst) inst).getPredicate(), get(inst.getOperand(0)), get(inst.getOperand(1)));
+        } else if (inst instanceof CastInst) {
+            copy = new CastInst(inst.getOpcode(), get(inst.getOperand(0)), inst.getType());
+        } else if (inst instanceof GepInst) {
+            GepInst gep = (GepInst) inst;
+            List<Value> indices = new ArrayList<>();
+            for (int i = 0; i < gep.getNumIndices(); i++) {
+                indices.add(get(gep.getIndex(i)));
+            }
+            copy = new GepInst(get(gep.getPointer()), indices);
+        } else if (inst instanceof LoadInst) {
+            copy = new LoadInst(get(((LoadInst) inst).getPointer()));
+        } else if (inst instanceof StoreInst) {
+            copy = new StoreInst(get(((StoreInst) inst).getValue()), get(((StoreInst) inst).getPointer()));
+        } else if (inst instanceof CallInst) {
+            List<Value> args = new ArrayList<>();
+            for (Value arg : ((CallInst) inst).getArgs()) {
+                args.add(get(arg));
+            }
+            copy = new CallInst(((CallInst) inst).getCallee(), args);
+        } else if (inst instanceof AllocaInst) {
+            copy = new AllocaInst(((AllocaInst) inst).getAllocatedType());
+        } else if (inst instanceof PhiInst) {
+            copy = new PhiInst(inst.getType());
+        } else if (inst instanceof BranchInst) {
+            BranchInst br = (BranchInst) inst;
+            copy = new BranchInst(get(br.getCondition()),
+                    (BasicBlock) get(br.getTrueBlock()), (BasicBlock) get(br.getFalseBlock()));
+        } else if (inst instanceof JumpInst) {
+            copy = new JumpInst((BasicBlock) get(((JumpInst) inst).getTarget()));
+        } else if (inst instanceof ReturnInst) {
+            Value value = ((ReturnInst) inst).getValue();
+            copy = new ReturnInst(value != null ? get(value) : null);
+        } else {
+            throw new IllegalStateException("Cannot clone " + inst.getOpcode());
+        }
+        map.put(inst, copy);
+        return copy;
+    }
+
+    /**
+     * 按映射表为复制出的phi补上入边
+     */
+    void fillPhi(PhiInst original, PhiInst copy) {
+        for (int i = 0; i < original.getNumIncoming(); i++) {
+            copy.addIncoming(get(original.getIncomingValue(i)), (BasicBlock) get(original.getIncomingBlock(i)));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.Function;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 支配树，用Cooper-Harvey-Kennedy的迭代算法按逆后序求直接支配者
+ * 只包含从入口可达的基本块；修改控制流后需要重新构建
+ */
+public class DominatorTree {
+    private final List<BasicBlock> order;                    // 逆后序
+    private final Map<BasicBlock, Integer> index = new HashMap<>();
+    private final int[] idom;
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> frontiers = new HashMap<>();
+    private final int[] enter;                               // 支配树先序编号，用于常数时间判断支配关系
+    private final int[] exit;
+    private final List<BasicBlock> preOrder = new ArrayList<>();
+
+    public DominatorTree(Function function) {
+        order = Cfg.reversePostOrder(function);
+        int n = order.size();
+        for (int i = 0; i < n; i++) {
+            index.put(order.get(i), i);
+            children.put(order.get(i), new ArrayList<>());
+        }
+        idom = new int[n];
+        computeIdoms();
+        for (int i = 1; i < n; i++) {
+            children.get(order.get(idom[i])).add(order.get(i));
+        }
+        enter = new int[n];
+        exit = new int[n];
+        number();
+        computeFrontiers();
+    }
+
+    private void computeIdoms() {
+        int n = order.size();
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < n; i++) {
+                int newIdom = -1;
+                for (BasicBlock pred : order.get(i).getPredecessors()) {
+                    Integer p = index.get(pred);
+                    if (p == null || idom[p] < 0) {
+                        continue;
+                    }
+                    newIdom = newIdom < 0 ? p : intersect(p, newIdom);
+                }
+                if (idom[i] != newIdom) {
+                    idom[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = idom[a];
+            }
+            while (b > a) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    private void number() {
+        int counter = 0;
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Integer> childIndex = new ArrayDeque<>();
+        stack.push(order.get(0));
+        childIndex.push(0);
+        enter[0] = counter++;
+        preOrder.add(order.get(0));
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.peek();
+            int next = childIndex.pop();
+            List<BasicBlock> kids = children.get(block);
+            if (next < kids.size()) {
+                childIndex.push(next + 1);
+                BasicBlock child = kids.get(next);
+                enter[index.get(child)] = counter++;
+                preOrder.add(child);
+                stack.push(child);
+                childIndex.push(0);
+            } else {
+                exit[index.get(block)] = counter++;
+                stack.pop();
+            }
+        }
+    }
+
+    private void computeFrontiers() {
+        for (BasicBlock block : order) {
+            frontiers.put(block, new LinkedHashSet<>());
+        }
+        for (int i = 0; i < order.size(); i++) {
+            BasicBlock block = order.get(i);
+            List<BasicBlock> preds = block.getPredecessors();
+            if (preds.size() < 2) {
+                continue;
+            }
+            for (BasicBlock pred : preds) {
+                Integer runner = index.get(pred);
+                if (runner == null) {
+                    continue;
+                }
+                while (runner != idom[i]) {
+                    frontiers.get(order.get(runner)).add(block);
+                    runner = idom[runner];
+                }
+            }
+        }
+    }
+
+    /**
+     * 基本块是否从入口可达（是否在支配树中）
+     */
+    public boolean contains(BasicBlock block) {
+        return index.containsKey(block);
+    }
+
+    /**
+     * 直接支配者，入口块返回null
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        int i = index.get(block);
+        return i == 0 ? null : order.get(idom[i]);
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return Collections.unmodifiableList(children.get(block));
+    }
+
+    /**
+     * a是否支配b（包括a == b）
+     */
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        int i = index.get(a);
+        int j = index.get(b);
+        return enter[i] <= enter[j] && exit[j] <= exit[i];
+    }
+
+    public Set<BasicBlock> getDominanceFrontier(BasicBlock block) {
+        return Collections.unmodifiableSet(frontiers.get(block));
+    }
+
+    /**
+     * 迭代支配边界：在这些块中定义的变量需要在返回的块中放置phi
+     */
+    public Set<BasicBlock> getIteratedFrontier(Set<BasicBlock> defBlocks) {
+        Set<BasicBlock> result = new LinkedHashSet<>();
+        Deque<BasicBlock> worklist = new ArrayDeque<>(defBlocks);
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.poll();
+            if (!contains(block)) {
+                continue;
+            }
+            for (BasicBlock frontier : frontiers.get(block)) {
+                if (result.add(frontier) && !defBlocks.contains(frontier)) {
+                    worklist.add(frontier);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 可达基本块的逆后序
+     */
+    public List<BasicBlock> getReversePostOrder() {
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * 支配树的先序遍历，父节点总在子节点之前
+     */
+    public List<BasicBlock> getPreOrder() {
+        return Collections.unmodifiableList(preOrder);
+    }
+}
@@ -0,0 +1,22 @@
+package opt;
+
+import ir.Function;
+import ir.Module;
+
+/**
+ * 逐个函数进行的优化遍
+ */
+public abstract class FunctionPass implements Pass {
+    @Override
+    public void run(Module module) {
+        for (Function function : module.getDefinedFunctions()) {
+            run(function);
+        }
+    }
+
+    /**
+     * 对单个函数进行变换
+     * @param function 有函数体的函数
+     */
+    public abstract void run(Function function);
+}
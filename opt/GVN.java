@@ -0,0 +1,242 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.CallInst;
+import ir.CastInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.LoadInst;
+import ir.StoreInst;
+import ir.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于哈希的全局值编号，删除冗余的纯计算和load
+ *
+ * 按支配树先序遍历，用随作用域撤销的哈希表记录已有的表达式：
+ * 运算、比较、类型转换和地址计算只要被一条相同的指令支配，就替换为那条指令。
+ * load另外要求从那条指令到这里的任何路径上都没有可能写同一位置的store或调用；
+ * 先前store的值也可以直接转发给之后的load。
+ */
+public class GVN extends FunctionPass {
+    private static final int MAX_SCAN = 256; // 查找可用load时最多回看的内存事件数
+
+    private final Map<List<Object>, Value> table = new HashMap<>();
+    private final List<MemoryEvent> memory = new ArrayList<>();
+    private DominatorTree domTree;
+    private AliasAnalysis aliases;
+
+    /**
+     * 支配树路径上依次发生的内存事件：某地址上的值已知，或一组可能写内存的指令
+     */
+    private static class MemoryEvent {
+        final Value pointer;              // 值已知的地址，写内存的事件为null
+        final Value value;
+        final List<Instruction> clobbers; // 可能写内存的store和调用
+
+        MemoryEvent(Value pointer, Value value) {
+            this.pointer = pointer;
+            this.value = value;
+            this.clobbers = null;
+        }
+
+        MemoryEvent(List<Instruction> clobbers) {
+            this.pointer = null;
+            this.value = null;
+            this.clobbers = clobbers;
+        }
+    }
+
+    @Override
+    public void run(Function function) {
+        Cfg.removeUnreachableBlocks(function);
+        domTree = new DominatorTree(function);
+        table.clear();
+        memory.clear();
+        aliases = new AliasAnalysis();
+
+        // 显式栈模拟支配树上的深度优先遍历，离开一个块时撤销它加入的表项和内存事件
+        Deque<Iterator<BasicBlock>> children = new ArrayDeque<>();
+        Deque<List<List<Object>>> added = new ArrayDeque<>();
+        Deque<Integer> memorySizes = new ArrayDeque<>();
+        BasicBlock entry = function.getEntryBlock();
+        memorySizes.push(memory.size());
+        added.push(visit(entry));
+        children.push(domTree.getChildren(entry).iterator());
+        while (!children.isEmpty()) {
+            if (children.peek().hasNext()) {
+                BasicBlock block = children.peek().next();
+                memorySizes.push(memory.size());
+                added.push(visit(block));
+                children.push(domTree.getChildren(block).iterator());
+            } else {
+                children.pop();
+                for (List<Object> key : added.pop()) {
+                    table.remove(key);
+                }
+                memory.subList(memorySizes.pop(), memory.size()).clear();
+            }
+        }
+        domTree = null;
+        aliases = null;
+    }
+
+    /**
+     * 处理一个块中的指令
+     * @return 新加入哈希表的键
+     */
+    private List<List<Object>> visit(BasicBlock block) {
+        List<List<Object>> added = new ArrayList<>();
+        if (block.getPredecessors().size() > 1) {
+            // 汇合点：从直接支配者到这里的其他路径上的写内存指令都可能已经执行
+            memory.add(new MemoryEvent(clobbersBetween(domTree.getImmediateDominator(block), block)));
+        }
+        for (Instruction inst : new ArrayList<>(block.getInstructions())) {
+            if (inst instanceof LoadInst) {
+                Value pointer = ((LoadInst) inst).getPointer();
+                Value available = findAvailable(pointer, inst);
+                if (available != null) {
+                    inst.replaceAllUsesWith(available);
+                    inst.eraseFromParent();
+                } else {
+                    memory.add(new MemoryEvent(pointer, inst));
+                }
+            } else if (inst instanceof StoreInst) {
+                StoreInst store = (StoreInst) inst;
+                memory.add(new MemoryEvent(Collections.singletonList(inst)));
+                memory.add(new MemoryEvent(store.getPointer(), store.getValue()));
+            } else if (inst instanceof CallInst) {
+                if (!((CallInst) inst).getCallee().isBuiltin()) {
+                    memory.add(new MemoryEvent(Collections.singletonList(inst)));
+                }
+            } else {
+                List<Object> key = key(inst, false);
+                if (key == null) {
+                    continue;
+                }
+                Value leader = table.get(key);
+                if (leader == null) {
+                    List<Object> swapped = key(inst, true);
+                    leader = swapped != null ? table.get(swapped) : null;
+                }
+                if (leader != null) {
+                    inst.replaceAllUsesWith(leader);
+                    inst.eraseFromParent();
+                } else {
+                    table.put(key, inst);
+                    added.add(key);
+                }
+            }
+        }
+        return added;
+    }
+
+    // ==================== 纯计算 ====================
+
+    /**
+     * 纯计算指令的哈希键，可交换的运算和比较可以交换操作数得到另一个等价的键
+     * @param swapped 是否交换两个操作数
+     * @return 键；不参与编号的指令或不能交换时返回null
+     */
+    private static List<Object> key(Instruction inst, boolean swapped) {
+        if (inst instanceof BinaryInst) {
+            if (swapped && !((BinaryInst) inst).isCommutative()) {
+                return null;
+            }
+            return Arrays.asList(inst.getOpcode(), inst.getType(),
+                    operandKey(inst.getOperand(swapped ? 1 : 0)), operandKey(inst.getOperand(swapped ? 0 : 1)));
+        }
+        if (inst instanceof IcmpInst) {
+            IcmpInst.Predicate predicate = ((IcmpInst) inst).getPredicate();
+            return Arrays.asList(inst.getOpcode(), swapped ? predicate.swapped() : predicate,
+                    operandKey(inst.getOperand(swapped ? 1 : 0)), operandKey(inst.getOperand(swapped ? 0 : 1)));
+        }
+        if (swapped) {
+            return null;
+        }
+        if (inst instanceof CastInst || inst instanceof GepInst) {
+            List<Object> key = new ArrayList<>();
+            key.add(inst.getOpcode());
+            key.add(inst.getType());
+            for (Value operand : inst.getOperands()) {
+                key.add(operandKey(operand));
+            }
+            return key;
+        }
+        return null;
+    }
+
+    /**
+     * 常量每次使用都是新的对象，按类型和值比较；其他值按对象本身比较
+     */
+    private static Object operandKey(Value value) {
+        if (value instanceof ConstantInt) {
+            return Arrays.asList(value.getType(), ((ConstantInt) value).getValue());
+        }
+        return value;
+    }
+
+    // ==================== load ====================
+
+    /**
+     * 沿支配树路径往回找pointer处已知的值
+     * @return 可以代替load的值，找不到时返回null
+     */
+    private Value findAvailable(Value pointer, Instruction load) {
+        AliasAnalysis.Location location = aliases.locate(pointer);
+        for (int i = memory.size() - 1, scanned = 0; i >= 0 && scanned < MAX_SCAN; i--, scanned++) {
+            MemoryEvent event = memory.get(i);
+            if (event.clobbers == null) {
+                if (aliases.mustAlias(event.pointer, pointer) && event.value.getType().equals(load.getType())) {
+                    return event.value;
+                }
+                continue;
+            }
+            for (Instruction clobber : event.clobbers) {
+                if (aliases.mayClobber(clobber, location)) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从dominator出口到block入口的所有路径上可能写内存的指令
+     * 即沿前驱往回、不越过dominator能到达的块中的store和非内建函数调用
+     */
+    private List<Instruction> clobbersBetween(BasicBlock dominator, BasicBlock block) {
+        List<Instruction> clobbers = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<BasicBlock> worklist = new ArrayDeque<>(block.getPredecessors());
+        visited.add(dominator);
+        while (!worklist.isEmpty()) {
+            BasicBlock current = worklist.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            for (Instruction inst : current.getInstructions()) {
+                if (AliasAnalysis.writesMemory(inst)) {
+                    clobbers.add(inst);
+                }
+            }
+            worklist.addAll(current.getPredecessors());
+        }
+        return clobbers;
+    }
+}
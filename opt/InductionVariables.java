@@ -0,0 +1,207 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.ConstantInt;
+import ir.Instruction;
+import ir.PhiInst;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 循环的归纳变量分析
+ *
+ * 基本归纳变量是循环头中的phi，从前置块进入时取初值，从回边进入时是自身加减若干常量（展开后是一串）。
+ * 其他值如果能写成 iv * scale + inv + c（scale、c是常量，inv是循环不变量）就是关于iv的仿射表达式，
+ * 由加减常量或不变量、乘常量和左移常量逐步得到。要求循环有前置块并且只有一条回边。
+ */
+final class InductionVariables {
+    /**
+     * 基本归纳变量：每次迭代 phi = phi + step，自增可以是展开后的一串加减常量
+     */
+    static final class Basic {
+        final PhiInst phi;
+        final List<BinaryInst> updates; // 从phi开始依次加减常量，最后一个是回边上的值
+        final Value init;
+        final int step;
+
+        Basic(PhiInst phi, List<BinaryInst> updates, Value init, int step) {
+            this.phi = phi;
+            this.updates = updates;
+            this.init = init;
+            this.step = step;
+        }
+    }
+
+    /**
+     * 仿射表达式 iv * scale + invariant + constant，invariant可以为null
+     */
+    static final class Affine {
+        final Basic iv;
+        final int scale;
+        final Value invariant;
+        final int constant;
+
+        Affine(Basic iv, int scale, Value invariant, int constant) {
+            this.iv = iv;
+            this.scale = scale;
+            this.invariant = invariant;
+            this.constant = constant;
+        }
+    }
+
+    private static final int MAX_SCALE = 1 << 16;
+    private static final int MAX_CHAIN = 16;
+
+    private final LoopInfo.Loop loop;
+    private final Map<PhiInst, Basic> basics = new LinkedHashMap<>();
+    private final Map<Value, Affine> affines = new HashMap<>();
+
+    InductionVariables(LoopInfo.Loop loop) {
+        this.loop = loop;
+        BasicBlock preheader = loop.getPreheader();
+        if (preheader == null || loop.getLatches().size() != 1) {
+            return;
+        }
+        BasicBlock latch = loop.getLatches().get(0);
+        for (PhiInst phi : loop.getHeader().getPhis()) {
+            List<BinaryInst> updates = new ArrayList<>();
+            long step = 0;
+            Value value = phi.getIncomingValueFor(latch);
+            while (value != phi && value instanceof BinaryInst && isDefinedIn(value) && updates.size() < MAX_CHAIN) {
+                BinaryInst inst = (BinaryInst) value;
+                Integer c = null;
+                if (inst.getOpcode() == Instruction.Opcode.ADD) {
+                    c = constant(inst.getRhs());
+                    value = inst.getLhs();
+                    if (c == null) {
+                        c = constant(inst.getLhs());
+                        value = inst.getRhs();
+                    }
+                } else if (inst.getOpcode() == Instruction.Opcode.SUB) {
+                    Integer r = constant(inst.getRhs());
+                    c = r == null || r == Integer.MIN_VALUE ? null : -r;
+                    value = inst.getLhs();
+                }
+                if (c == null) {
+                    break;
+                }
+                step += c;
+                updates.add(0, inst);
+            }
+            if (value == phi && !updates.isEmpty() && step != 0 && step == (int) step) {
+                basics.put(phi, new Basic(phi, updates, phi.getIncomingValueFor(preheader), (int) step));
+            }
+        }
+    }
+
+    LoopInfo.Loop getLoop() {
+        return loop;
+    }
+
+    List<Basic> getBasics() {
+        return new ArrayList<>(basics.values());
+    }
+
+    /**
+     * @return value是基本归纳变量时返回它的描述，否则返回null
+     */
+    Basic getBasic(Value value) {
+        return basics.get(value);
+    }
+
+    /**
+     * 值在循环中不变：常量、形参、全局变量或者循环外定义的指令
+     */
+    boolean isInvariant(Value value) {
+        return !isDefinedIn(value);
+    }
+
+    private boolean isDefinedIn(Value value) {
+        return value instanceof Instruction && loop.contains(((Instruction) value).getParent());
+    }
+
+    /**
+     * 把循环中的值写成关于某个基本归纳变量的仿射表达式
+     * @return 不是仿射表达式时返回null
+     */
+    Affine affine(Value value) {
+        if (affines.containsKey(value)) {
+            return affines.get(value);
+        }
+        Affine result = compute(value);
+        affines.put(value, result);
+        return result;
+    }
+
+    private Affine compute(Value value) {
+        Basic basic = basics.get(value);
+        if (basic != null) {
+            return new Affine(basic, 1, null, 0);
+        }
+        if (!(value instanceof BinaryInst) || !isDefinedIn(value)) {
+            return null;
+        }
+        BinaryInst inst = (BinaryInst) value;
+        switch (inst.getOpcode()) {
+            case ADD: {
+                Affine lhs = affine(inst.getLhs());
+                if (lhs != null && isInvariant(inst.getRhs())) {
+                    return plus(lhs, inst.getRhs());
+                }
+                Affine rhs = affine(inst.getRhs());
+                return rhs != null && isInvariant(inst.getLhs()) ? plus(rhs, inst.getLhs()) : null;
+            }
+            case SUB: {
+                Affine lhs = affine(inst.getLhs());
+                Integer c = constant(inst.getRhs());
+                return lhs == null || c == null ? null
+                        : new Affine(lhs.iv, lhs.scale, lhs.invariant, lhs.constant - c);
+            }
+            case MUL: {
+                Affine lhs = affine(inst.getLhs());
+                Integer c = constant(inst.getRhs());
+                if (lhs == null || c == null) {
+                    lhs = affine(inst.getRhs());
+                    c = constant(inst.getLhs());
+                }
+                return lhs == null || c == null ? null : times(lhs, c);
+            }
+            case SHL: {
+                Affine lhs = affine(inst.getLhs());
+                Integer c = constant(inst.getRhs());
+                return lhs == null || c == null || c < 0 || c > 16 ? null : times(lhs, 1 << c);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static Affine plus(Affine affine, Value invariant) {
+        Integer c = constant(invariant);
+        if (c != null) {
+            return new Affine(affine.iv, affine.scale, affine.invariant, affine.constant + c);
+        }
+        if (affine.invariant != null) {
+            return null;
+        }
+        return new Affine(affine.iv, affine.scale, invariant, affine.constant);
+    }
+
+    private static Affine times(Affine affine, int c) {
+        long scale = (long) affine.scale * c;
+        if (affine.invariant != null || scale == 0 || Math.abs(scale) >= MAX_SCALE) {
+            return null;
+        }
+        return new Affine(affine.iv, (int) scale, null, affine.constant * c);
+    }
+
+    private static Integer constant(Value value) {
+        return value instanceof ConstantInt ? ((ConstantInt) value).getValue() : null;
+    }
+}
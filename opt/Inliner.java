@@ -0,0 +1,272 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.BasicBlock;
+import ir.CallInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.Module;
+import ir.PhiInst;
+import ir.ReturnInst;
+import ir.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 函数内联
+ *
+ * 按调用图自底向上（被调函数先于调用者）处理，内联时被调函数已经完成了自身的内联。
+ * 代价模型：被调函数的指令数不超过阈值时内联；常量实参之后可以被折叠，每个常量实参提高阈值；
+ * 只有一处调用的函数内联后可以删除，阈值更高。递归函数（调用图中的环）不内联。
+ * 内联使整个模块增加的指令数不超过原大小的一定百分比，单个函数也不超过上限。
+ */
+public class Inliner implements Pass {
+    public static final int DEFAULT_GROWTH_PERCENT = 100;
+
+    private static final int BASE_THRESHOLD = 30;        // 被调函数指令数的基本阈值
+    private static final int CONSTANT_ARG_BONUS = 15;    // 每个常量实参增加的阈值
+    private static final int SINGLE_CALL_THRESHOLD = 300; // 只有一处调用时的阈值
+    private static final int MAX_FUNCTION_SIZE = 3000;   // 内联后调用者的指令数上限
+
+    private final int growthPercent;
+    private int budget; // 剩余可增加的指令数
+
+    /**
+     * @param growthPercent 内联允许整个模块增长的百分比
+     */
+    public Inliner(int growthPercent) {
+        this.growthPercent = growthPercent;
+    }
+
+    @Override
+    public void run(Module module) {
+        List<Function> functions = module.getDefinedFunctions();
+        Map<Function, Set<Function>> callees = new HashMap<>();
+        int total = 0;
+        for (Function function : functions) {
+            callees.put(function, collectCallees(function));
+            total += function.instructionCount();
+        }
+        budget = total * growthPercent / 100;
+
+        List<List<Function>> sccs = new CallGraphSccs(functions, callees).result;
+        Set<Function> recursive = new HashSet<>();
+        for (List<Function> scc : sccs) {
+            if (scc.size() > 1 || callees.get(scc.get(0)).contains(scc.get(0))) {
+                recursive.addAll(scc);
+            }
+        }
+        for (List<Function> scc : sccs) {
+            for (Function caller : scc) {
+                inlineCalls(caller, recursive);
+            }
+        }
+
+        // 删除内联后不再被调用的函数，删除一个函数可能使它调用的函数也不再被调用
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Function function : module.getDefinedFunctions()) {
+                if (!function.getName().equals("main") && !function.hasUses()) {
+                    for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+                        function.removeBlock(block);
+                    }
+                    module.removeFunction(function);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private static Set<Function> collectCallees(Function function) {
+        Set<Function> result = new LinkedHashSet<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (inst instanceof CallInst && !((CallInst) inst).getCallee().isBuiltin()) {
+                    result.add(((CallInst) inst).getCallee());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tarjan算法求调用图的强连通分量，结果按逆拓扑序排列（被调函数所在的分量在前）
+     */
+    private static class CallGraphSccs {
+        final List<List<Function>> result = new ArrayList<>();
+        private final Map<Function, Set<Function>> callees;
+        private final Map<Function, Integer> index = new HashMap<>();
+        private final Map<Function, Integer> lowLink = new HashMap<>();
+        private final Deque<Function> stack = new ArrayDeque<>();
+        private final Set<Function> onStack = new HashSet<>();
+
+        CallGraphSccs(List<Function> functions, Map<Function, Set<Function>> callees) {
+            this.callees = callees;
+            for (Function function : functions) {
+                if (!index.containsKey(function)) {
+                    visit(function);
+                }
+            }
+        }
+
+        private void visit(Function function) {
+            index.put(function, index.size());
+            lowLink.put(function, index.get(function));
+            stack.push(function);
+            onStack.add(function);
+            for (Function callee : callees.get(function)) {
+                if (!index.containsKey(callee)) {
+                    visit(callee);
+                    lowLink.put(function, Math.min(lowLink.get(function), lowLink.get(callee)));
+                } else if (onStack.contains(callee)) {
+                    lowLink.put(function, Math.min(lowLink.get(function), index.get(callee)));
+                }
+            }
+            if (lowLink.get(function).equals(index.get(function))) {
+                List<Function> scc = new ArrayList<>();
+                Function member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    scc.add(member);
+                } while (member != function);
+                result.add(scc);
+            }
+        }
+    }
+
+    private void inlineCalls(Function caller, Set<Function> recursive) {
+        List<CallInst> calls = new ArrayList<>();
+        for (BasicBlock block : caller.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (inst instanceof CallInst) {
+                    calls.add((CallInst) inst);
+                }
+            }
+        }
+        for (CallInst call : calls) {
+            Function callee = call.getCallee();
+            if (callee.isBuiltin() || recursive.contains(callee)) {
+                continue;
+            }
+            int size = callee.instructionCount();
+            if (size > threshold(call) || size > budget || caller.instructionCount() + size > MAX_FUNCTION_SIZE) {
+                continue;
+            }
+            inline(call);
+            budget -= size;
+        }
+    }
+
+    private static int threshold(CallInst call) {
+        if (call.getCallee().getUses().size() == 1) {
+            return SINGLE_CALL_THRESHOLD;
+        }
+        int threshold = BASE_THRESHOLD;
+        for (Value arg : call.getArgs()) {
+            if (arg instanceof ConstantInt) {
+                threshold += CONSTANT_ARG_BONUS;
+            }
+        }
+        return threshold;
+    }
+
+    /**
+     * 把调用所在的块在调用处拆开，中间插入被调函数体的副本
+     */
+    private static void inline(CallInst call) {
+        BasicBlock block = call.getParent();
+        Function caller = block.getParent();
+        Function callee = call.getCallee();
+
+        // 调用之后的指令移到新块，原块后继中phi的入边随之改为新块
+        BasicBlock after = new BasicBlock(caller);
+        caller.insertBlockAfter(after, block);
+        List<Instruction> instructions = block.getInstructions();
+        for (Instruction inst : new ArrayList<>(instructions.subList(block.indexOf(call) + 1, instructions.size()))) {
+            block.remove(inst);
+            after.add(inst);
+        }
+        for (BasicBlock successor : after.getSuccessors()) {
+            for (PhiInst phi : successor.getPhis()) {
+                for (int i = 0; i < phi.getNumIncoming(); i++) {
+                    if (phi.getIncomingBlock(i) == block) {
+                        phi.setIncomingBlock(i, after);
+                    }
+                }
+            }
+        }
+
+        Cloner cloner = new Cloner();
+        for (int i = 0; i < call.getNumArgs(); i++) {
+            cloner.put(callee.getArguments().get(i), call.getArg(i));
+        }
+        BasicBlock insertPoint = block;
+        for (BasicBlock original : callee.getBlocks()) {
+            BasicBlock copy = new BasicBlock(caller);
+            caller.insertBlockAfter(copy, insertPoint);
+            cloner.put(original, copy);
+            insertPoint = copy;
+        }
+        BasicBlock callerEntry = caller.getEntryBlock();
+        List<PhiInst> phis = new ArrayList<>();
+        List<Value> returnValues = new ArrayList<>();
+        List<BasicBlock> returnBlocks = new ArrayList<>();
+        for (BasicBlock original : callee.getBlocks()) {
+            BasicBlock copy = (BasicBlock) cloner.get(original);
+            for (Instruction inst : original.getInstructions()) {
+                if (inst instanceof ReturnInst) {
+                    Value value = ((ReturnInst) inst).getValue();
+                    if (value != null) {
+                        returnValues.add(cloner.get(value));
+                        returnBlocks.add(copy);
+                    }
+                    copy.add(new JumpInst(after));
+                    continue;
+                }
+                Instruction cloned = cloner.copy(inst);
+                if (cloned instanceof AllocaInst) {
+                    callerEntry.insert(0, cloned); // 局部数组仍分配在调用者的入口块
+                } else {
+                    copy.add(cloned);
+                }
+                if (inst instanceof PhiInst) {
+                    phis.add((PhiInst) inst);
+                }
+            }
+        }
+        for (PhiInst phi : phis) {
+            cloner.fillPhi(phi, (PhiInst) cloner.get(phi));
+        }
+
+        if (!call.getType().isVoid()) {
+            Value result;
+            if (returnValues.isEmpty()) {
+                result = new ConstantInt(call.getType(), 0); // 被调函数不会返回，调用之后的代码不可达
+            } else if (returnValues.size() == 1) {
+                result = returnValues.get(0);
+            } else {
+                PhiInst phi = new PhiInst(call.getType());
+                for (int i = 0; i < returnValues.size(); i++) {
+                    phi.addIncoming(returnValues.get(i), returnBlocks.get(i));
+                }
+                after.insert(0, phi);
+                result = phi;
+            }
+            call.replaceAllUsesWith(result);
+        }
+        call.eraseFromParent();
+        block.add(new JumpInst((BasicBlock) cloner.get(callee.getEntryBlock())));
+    }
+}
@@ -0,0 +1,138 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.CastInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.GlobalVariable;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.LoadInst;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 循环不变量外提
+ *
+ * 先为每个循环插入前置块，再从内层到外层处理：按支配树先序遍历循环中的块，
+ * 操作数都在循环外定义（或已经外提）的纯计算移到前置块末尾；外提到内层循环前置块的指令
+ * 处理外层循环时还可以继续外提。
+ * 外提后的指令即使循环一次也不执行也会执行，因此除法只在除数是非零常量时外提；
+ * load还要求循环中没有可能改写该地址的store或调用，并且load每次进入循环都一定执行，
+ * 或者地址是全局变量、局部数组中下标确定的合法元素。
+ */
+public class LICM extends FunctionPass {
+    private DominatorTree domTree;
+    private AliasAnalysis aliases;
+
+    @Override
+    public void run(Function function) {
+        Cfg.removeUnreachableBlocks(function);
+        domTree = new DominatorTree(function);
+        LoopInfo loopInfo = new LoopInfo(domTree);
+        boolean inserted = false;
+        for (LoopInfo.Loop loop : loopInfo.getLoopsInnermostFirst()) {
+            inserted |= LoopInfo.insertPreheader(loop);
+        }
+        if (inserted) {
+            domTree = new DominatorTree(function);
+            loopInfo = new LoopInfo(domTree);
+        }
+        aliases = new AliasAnalysis();
+        for (LoopInfo.Loop loop : loopInfo.getLoopsInnermostFirst()) {
+            if (loop.getPreheader() != null) {
+                hoist(loop);
+            }
+        }
+        domTree = null;
+        aliases = null;
+    }
+
+    private void hoist(LoopInfo.Loop loop) {
+        BasicBlock preheader = loop.getPreheader();
+        List<Instruction> writes = new ArrayList<>();
+        for (BasicBlock block : loop.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (AliasAnalysis.writesMemory(inst)) {
+                    writes.add(inst);
+                }
+            }
+        }
+        List<BasicBlock> exiting = loop.getExitingBlocks();
+        for (BasicBlock block : domTree.getPreOrder()) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            boolean alwaysExecuted = !exiting.isEmpty(); // 不会退出的循环中无法保证
+            for (BasicBlock exit : exiting) {
+                alwaysExecuted &= domTree.dominates(block, exit);
+            }
+            for (Instruction inst : new ArrayList<>(block.getInstructions())) {
+                if (isInvariant(loop, inst) && canHoist(inst, writes, alwaysExecuted)) {
+                    block.remove(inst);
+                    preheader.insertBeforeTerminator(inst);
+                }
+            }
+        }
+    }
+
+    private static boolean isInvariant(LoopInfo.Loop loop, Instruction inst) {
+        for (Value operand : inst.getOperands()) {
+            if (operand instanceof Instruction && loop.contains(((Instruction) operand).getParent())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean canHoist(Instruction inst, List<Instruction> writes, boolean alwaysExecuted) {
+        if (inst instanceof BinaryInst) {
+            switch (inst.getOpcode()) {
+                case SDIV:
+                case SREM:
+                    Value divisor = inst.getOperand(1);
+                    return divisor instanceof ConstantInt && ((ConstantInt) divisor).getValue() != 0;
+                default:
+                    return true;
+            }
+        }
+        if (inst instanceof IcmpInst || inst instanceof CastInst || inst instanceof GepInst) {
+            return true;
+        }
+        if (!(inst instanceof LoadInst)) {
+            return false;
+        }
+        Value pointer = ((LoadInst) inst).getPointer();
+        if (!alwaysExecuted && !isDereferenceable(pointer)) {
+            return false;
+        }
+        AliasAnalysis.Location location = aliases.locate(pointer);
+        for (Instruction write : writes) {
+            if (aliases.mayClobber(write, location)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 地址是否一定可以读取：全局变量或局部数组中偏移确定且不越界的元素
+     */
+    private boolean isDereferenceable(Value pointer) {
+        AliasAnalysis.Location location = aliases.locate(pointer);
+        int size;
+        if (location.base instanceof GlobalVariable) {
+            size = ((GlobalVariable) location.base).getValueType().getSize();
+        } else if (location.base instanceof AllocaInst) {
+            size = ((AllocaInst) location.base).getAllocatedType().getSize();
+        } else {
+            return false;
+        }
+        return location.offset != null && location.offset >= 0 && location.offset + location.size <= size;
+    }
+}
@@ -0,0 +1,250 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.Function;
+import ir.JumpInst;
+import ir.PhiInst;
+import ir.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 自然循环和循环嵌套森林
+ *
+ * 目标支配源的边是回边，回边的目标是循环头；同一个循环头的所有回边构成一个循环，
+ * 循环体是不经过循环头能逆向到达回边源的块。一个循环包含于含有它的头的最小的其他循环中。
+ * 修改控制流后需要重新构建。
+ */
+public class LoopInfo {
+    private final List<Loop> topLevel = new ArrayList<>();
+    private final List<Loop> postOrder = new ArrayList<>(); // 内层循环在外层之前
+    private final Map<BasicBlock, Loop> innermost = new HashMap<>();
+
+    /**
+     * 一个自然循环
+     */
+    public static class Loop {
+        private final BasicBlock header;
+        private final Set<BasicBlock> blocks = new LinkedHashSet<>();
+        private final List<BasicBlock> latches = new ArrayList<>();
+        private final List<Loop> children = new ArrayList<>();
+        private Loop parent;
+        private int depth = 1;
+
+        Loop(BasicBlock header) {
+            this.header = header;
+        }
+
+        public BasicBlock getHeader() {
+            return header;
+        }
+
+        /**
+         * 循环中的块，包括内层循环的块
+         */
+        public Set<BasicBlock> getBlocks() {
+            return Collections.unmodifiableSet(blocks);
+        }
+
+        public boolean contains(BasicBlock block) {
+            return blocks.contains(block);
+        }
+
+        /**
+         * 回边的源
+         */
+        public List<BasicBlock> getLatches() {
+            return Collections.unmodifiableList(latches);
+        }
+
+        public Loop getParent() {
+            return parent;
+        }
+
+        public List<Loop> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * 嵌套深度，最外层循环为1
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * 循环外唯一的前驱，且它只跳到循环头；没有时返回null
+         */
+        public BasicBlock getPreheader() {
+            BasicBlock preheader = null;
+            for (BasicBlock pred : header.getPredecessors()) {
+                if (blocks.contains(pred)) {
+                    continue;
+                }
+                if (preheader != null) {
+                    return null;
+                }
+                preheader = pred;
+            }
+            return preheader != null && preheader.getSuccessors().size() == 1 ? preheader : null;
+        }
+
+        /**
+         * 有后继在循环外的块
+         */
+        public List<BasicBlock> getExitingBlocks() {
+            List<BasicBlock> exiting = new ArrayList<>();
+            for (BasicBlock block : blocks) {
+                for (BasicBlock successor : block.getSuccessors()) {
+                    if (!blocks.contains(successor)) {
+                        exiting.add(block);
+                        break;
+                    }
+                }
+            }
+            return exiting;
+        }
+    }
+
+    public LoopInfo(DominatorTree domTree) {
+        // 按支配树先序发现循环头，外层循环的头先于内层出现
+        List<Loop> loops = new ArrayList<>();
+        for (BasicBlock header : domTree.getPreOrder()) {
+            Loop loop = null;
+            for (BasicBlock pred : header.getPredecessors()) {
+                if (domTree.contains(pred) && domTree.dominates(header, pred)) {
+                    if (loop == null) {
+                        loop = new Loop(header);
+                    }
+                    loop.latches.add(pred);
+                }
+            }
+            if (loop == null) {
+                continue;
+            }
+            collectBody(loop);
+            loops.add(loop);
+        }
+        // 外层循环先处理：处理到一个循环时，其头所在的已知最内层循环就是它的父循环，
+        // 每个块最后记录的是包含它的最内层循环
+        for (Loop loop : loops) {
+            loop.parent = innermost.get(loop.header);
+            for (BasicBlock block : loop.blocks) {
+                innermost.put(block, loop);
+            }
+        }
+        for (Loop loop : loops) {
+            if (loop.parent == null) {
+                topLevel.add(loop);
+            } else {
+                loop.parent.children.add(loop);
+            }
+        }
+        for (Loop loop : topLevel) {
+            number(loop, 1);
+        }
+    }
+
+    private static void collectBody(Loop loop) {
+        loop.blocks.add(loop.header);
+        Deque<BasicBlock> worklist = new ArrayDeque<>(loop.latches);
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.poll();
+            if (loop.blocks.add(block)) {
+                worklist.addAll(block.getPredecessors());
+            }
+        }
+    }
+
+    private void number(Loop loop, int depth) {
+        loop.depth = depth;
+        for (Loop child : loop.children) {
+            number(child, depth + 1);
+        }
+        postOrder.add(loop);
+    }
+
+    /**
+     * 最外层的循环
+     */
+    public List<Loop> getTopLevelLoops() {
+        return Collections.unmodifiableList(topLevel);
+    }
+
+    /**
+     * 所有循环，内层循环排在包含它的循环之前
+     */
+    public List<Loop> getLoopsInnermostFirst() {
+        return Collections.unmodifiableList(postOrder);
+    }
+
+    /**
+     * 包含block的最内层循环，不在循环中时返回null
+     */
+    public Loop getLoopFor(BasicBlock block) {
+        return innermost.get(block);
+    }
+
+    /**
+     * block所在循环的嵌套深度，不在循环中为0
+     */
+    public int getLoopDepth(BasicBlock block) {
+        Loop loop = innermost.get(block);
+        return loop != null ? loop.depth : 0;
+    }
+
+    /**
+     * 为没有前置块的循环插入一个：循环外的前驱都改为跳到前置块，前置块再跳到循环头
+     * 循环头phi中来自这些前驱的入边合并到前置块中的phi。插入后需要重新构建支配树和循环信息。
+     * @return 是否插入了前置块
+     */
+    public static boolean insertPreheader(Loop loop) {
+        if (loop.getPreheader() != null) {
+            return false;
+        }
+        BasicBlock header = loop.header;
+        Function function = header.getParent();
+        List<BasicBlock> outside = new ArrayList<>();
+        for (BasicBlock pred : header.getPredecessors()) {
+            if (!loop.blocks.contains(pred)) {
+                outside.add(pred);
+            }
+        }
+        if (outside.isEmpty()) {
+            return false; // 入口块本身是循环头
+        }
+        BasicBlock preheader = new BasicBlock(function);
+        // 放在循环头之前，前置块可以直接落入循环头
+        function.insertBlockAfter(preheader, function.getBlocks().get(function.getBlocks().indexOf(header) - 1));
+        for (PhiInst phi : header.getPhis()) {
+            Value merged;
+            if (outside.size() == 1) {
+                merged = phi.getIncomingValueFor(outside.get(0));
+            } else {
+                PhiInst outer = new PhiInst(phi.getType());
+                for (BasicBlock pred : outside) {
+                    outer.addIncoming(phi.getIncomingValueFor(pred), pred);
+                }
+                preheader.add(outer);
+                merged = outer;
+            }
+            for (BasicBlock pred : outside) {
+                phi.removeIncomingBlock(pred);
+            }
+            phi.addIncoming(merged, preheader);
+        }
+        for (BasicBlock pred : outside) {
+            pred.replaceSuccessor(header, preheader);
+        }
+        preheader.add(new JumpInst(header));
+        return true;
+    }
+}
@@ -0,0 +1,411 @@
+package opt;
+
+import ir.Argument;
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.BranchInst;
+import ir.CallInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GlobalVariable;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.PhiInst;
+import ir.Use;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 循环展开
+ *
+ * 只处理计数循环：最内层、只有一条回边、只从循环头退出，循环头按 i pred bound 判断是否继续，
+ * i是每次加常量步长的phi，bound在循环外定义。
+ * 迭代次数是小常量时完全展开：前置块之后依次放入各次迭代的副本，原循环只剩零次迭代，
+ * 由之后的常量传播删除。否则按因子U部分展开：新循环每次检查剩余迭代不少于U次后执行U个副本，
+ * 余下的迭代由原循环完成；bound不是常量时在前置块检查 bound - (U-1)*step 不会溢出。
+ * 含有调用的循环只做完全展开。展开后的大小有上限；估计的寄存器压力（循环携带的值、循环中使用的外部值和循环体内同时活跃的临时值）
+ * 超过可分配的寄存器数时不展开，避免引入溢出。
+ */
+public class LoopUnroller extends FunctionPass {
+    public static final int DEFAULT_FACTOR = 4;
+
+    private static final int FULL_MAX_TRIPS = 16;    // 完全展开的最大迭代次数
+    private static final int FULL_MAX_SIZE = 200;    // 完全展开后的最大指令数
+    private static final int PARTIAL_MAX_SIZE = 120; // 部分展开后循环体的最大指令数
+    private static final int REGISTER_BUDGET = 18;   // 后端可分配的寄存器数
+
+    private final int factor;
+
+    /**
+     * @param factor 部分展开的因子，小于2时只做完全展开
+     */
+    public LoopUnroller(int factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * 计数循环的组成部分
+     */
+    private static class CountedLoop {
+        LoopInfo.Loop loop;
+        BasicBlock preheader;
+        BasicBlock latch;
+        BasicBlock body;     // 循环头在循环内的后继
+        PhiInst counter;
+        int step;
+        IcmpInst.Predicate predicate; // 继续循环的条件 counter pred bound
+        Value bound;
+        List<BasicBlock> blocks;      // 按函数中的顺序排列
+        int size;
+        boolean hasCalls;
+    }
+
+    @Override
+    public void run(Function function) {
+        Cfg.removeUnreachableBlocks(function);
+        LoopInfo loopInfo = new LoopInfo(new DominatorTree(function));
+        boolean inserted = false;
+        for (LoopInfo.Loop loop : loopInfo.getLoopsInnermostFirst()) {
+            if (loop.getChildren().isEmpty()) {
+                inserted |= LoopInfo.insertPreheader(loop);
+            }
+        }
+        if (inserted) {
+            loopInfo = new LoopInfo(new DominatorTree(function));
+        }
+        for (LoopInfo.Loop loop : loopInfo.getLoopsInnermostFirst()) {
+            CountedLoop counted = analyze(function, loop);
+            if (counted == null || estimatePressure(counted) > REGISTER_BUDGET) {
+                continue;
+            }
+            Integer trips = constantTripCount(counted);
+            if (trips != null && trips > 0 && trips <= FULL_MAX_TRIPS && trips * counted.size <= FULL_MAX_SIZE) {
+                unrollFully(function, counted, trips);
+                continue;
+            }
+            if (trips != null && trips < 2 || counted.hasCalls) {
+                continue; // 调用的开销远大于循环控制，部分展开得不偿失
+            }
+            int u = factor;
+            while (u >= 2 && u * counted.size > PARTIAL_MAX_SIZE) {
+                u--;
+            }
+            if (u >= 2 && (trips == null || trips >= u)) {
+                unrollPartially(function, counted, u);
+            }
+        }
+    }
+
+    private static CountedLoop analyze(Function function, LoopInfo.Loop loop) {
+        if (!loop.getChildren().isEmpty() || loop.getLatches().size() != 1 || loop.getPreheader() == null) {
+            return null;
+        }
+        BasicBlock header = loop.getHeader();
+        List<BasicBlock> exiting = loop.getExitingBlocks();
+        if (exiting.size() != 1 || exiting.get(0) != header || !(header.getTerminator() instanceof BranchInst)) {
+            return null;
+        }
+        CountedLoop counted = new CountedLoop();
+        counted.loop = loop;
+        counted.preheader = loop.getPreheader();
+        counted.latch = loop.getLatches().get(0);
+        BranchInst br = (BranchInst) header.getTerminator();
+        boolean continueOnTrue = loop.contains(br.getTrueBlock());
+        counted.body = continueOnTrue ? br.getTrueBlock() : br.getFalseBlock();
+        if (counted.body == header || counted.body.getPredecessors().size() != 1
+                || !(br.getCondition() instanceof IcmpInst)) {
+            return null;
+        }
+        IcmpInst cmp = (IcmpInst) br.getCondition();
+        IcmpInst.Predicate predicate = continueOnTrue ? cmp.getPredicate() : cmp.getPredicate().inverse();
+        Value lhs = cmp.getLhs();
+        Value rhs = cmp.getRhs();
+        if (!(lhs instanceof PhiInst && ((PhiInst) lhs).getParent() == header)) {
+            Value t = lhs;
+            lhs = rhs;
+            rhs = t;
+            predicate = predicate.swapped();
+        }
+        if (!(lhs instanceof PhiInst) || ((PhiInst) lhs).getParent() != header || isDefinedIn(loop, rhs)) {
+            return null;
+        }
+        InductionVariables.Basic counter = new InductionVariables(loop).getBasic(lhs);
+        if (counter == null) {
+            return null;
+        }
+        int step = counter.step;
+        boolean increasing = predicate == IcmpInst.Predicate.SLT || predicate == IcmpInst.Predicate.SLE;
+        boolean decreasing = predicate == IcmpInst.Predicate.SGT || predicate == IcmpInst.Predicate.SGE;
+        if (!(increasing && step > 0 && step < 1 << 16) && !(decreasing && step < 0 && step > -(1 << 16))) {
+            return null;
+        }
+        counted.counter = counter.phi;
+        counted.step = step;
+        counted.predicate = predicate;
+        counted.bound = rhs;
+        counted.blocks = new ArrayList<>();
+        for (BasicBlock block : function.getBlocks()) {
+            if (loop.contains(block)) {
+                counted.blocks.add(block);
+                counted.size += block.size();
+                for (Instruction inst : block.getInstructions()) {
+                    counted.hasCalls |= inst instanceof CallInst;
+                }
+            }
+        }
+        return counted;
+    }
+
+    private static boolean isDefinedIn(LoopInfo.Loop loop, Value value) {
+        return value instanceof Instruction && loop.contains(((Instruction) value).getParent());
+    }
+
+    /**
+     * 初值和bound都是常量时模拟求迭代次数，超过完全展开的上限时返回上限加一
+     * @return 迭代次数，不是常量或计数器溢出时返回null
+     */
+    private static Integer constantTripCount(CountedLoop counted) {
+        Value init = counted.counter.getIncomingValueFor(counted.preheader);
+        if (!(init instanceof ConstantInt) || !(counted.bound instanceof ConstantInt)) {
+            return null;
+        }
+        long i = ((ConstantInt) init).getValue();
+        int bound = ((ConstantInt) counted.bound).getValue();
+        int trips = 0;
+        while (counted.predicate.evaluate((int) i, bound)) {
+            trips++;
+            i += counted.step;
+            if (trips > FULL_MAX_TRIPS) {
+                return trips;
+            }
+            if (i != (int) i) {
+                return null;
+            }
+        }
+        return trips;
+    }
+
+    /**
+     * 估计循环中的寄存器压力：循环头的phi、循环中使用的外部值，加上一次迭代中同时活跃的临时值的最大数目
+     */
+    private static int estimatePressure(CountedLoop counted) {
+        Set<Value> invariants = new HashSet<>();
+        List<Instruction> order = new ArrayList<>();
+        for (BasicBlock block : counted.blocks) {
+            for (Instruction inst : block.getInstructions()) {
+                for (Value operand : inst.getOperands()) {
+                    if (operand instanceof Instruction && !isDefinedIn(counted.loop, operand)
+                            || operand instanceof Argument || operand instanceof GlobalVariable) {
+                        invariants.add(operand);
+                    }
+                }
+                if (!(inst instanceof PhiInst)) {
+                    order.add(inst);
+                }
+            }
+        }
+        Map<Instruction, Integer> position = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            position.put(order.get(i), i);
+        }
+        int[] delta = new int[order.size() + 1];
+        for (int i = 0; i < order.size(); i++) {
+            Instruction inst = order.get(i);
+            if (!inst.hasUses()) {
+                continue;
+            }
+            int last = i;
+            for (Use use : inst.getUses()) {
+                Integer at = position.get(use.getUser());
+                last = at == null ? order.size() : Math.max(last, at); // 被phi或循环外使用时活跃到迭代结束
+            }
+            delta[i + 1]++;
+            delta[Math.min(last, order.size())]--;
+        }
+        int live = 0;
+        int temps = 0;
+        for (int d : delta) {
+            live += d;
+            temps = Math.max(temps, live);
+        }
+        return counted.counter.getParent().getPhis().size() + invariants.size() + temps;
+    }
+
+    /**
+     * 在after之后放入循环的一个副本，循环头的phi由values给出，回边跳到next
+     * @return 副本中各个值的映射
+     */
+    private static Cloner cloneIteration(Function function, CountedLoop counted, BasicBlock after,
+                                         Map<PhiInst, Value> values, BasicBlock next, List<BasicBlock> copies) {
+        BasicBlock header = counted.loop.getHeader();
+        Cloner cloner = new Cloner();
+        for (Map.Entry<PhiInst, Value> entry : values.entrySet()) {
+            cloner.put(entry.getKey(), entry.getValue());
+        }
+        BasicBlock insertPoint = after;
+        for (BasicBlock block : counted.blocks) {
+            BasicBlock copy = new BasicBlock(function);
+            function.insertBlockAfter(copy, insertPoint);
+            insertPoint = copy;
+            cloner.put(block, copy);
+            copies.add(copy);
+        }
+        List<PhiInst> phis = new ArrayList<>();
+        for (BasicBlock block : counted.blocks) {
+            BasicBlock copy = (BasicBlock) cloner.get(block);
+            if (block == header) {
+                for (Instruction inst : block.getInstructions()) {
+                    if (!(inst instanceof PhiInst) && !inst.isTerminator()) {
+                        copy.add(cloner.copy(inst));
+                    }
+                }
+                copy.add(new JumpInst((BasicBlock) cloner.get(counted.body)));
+                continue;
+            }
+            for (Instruction inst : block.getInstructions()) {
+                if (block == counted.latch && inst.isTerminator()) {
+                    copy.add(new JumpInst(next));
+                    continue;
+                }
+                copy.add(cloner.copy(inst));
+                if (inst instanceof PhiInst) {
+                    phis.add((PhiInst) inst);
+                }
+            }
+        }
+        for (PhiInst phi : phis) {
+            cloner.fillPhi(phi, (PhiInst) cloner.get(phi));
+        }
+        return cloner;
+    }
+
+    /**
+     * 循环头的phi在下一次迭代开始时的值
+     */
+    private static Map<PhiInst, Value> nextValues(CountedLoop counted, Cloner cloner) {
+        Map<PhiInst, Value> values = new HashMap<>();
+        for (PhiInst phi : counted.loop.getHeader().getPhis()) {
+            values.put(phi, cloner.get(phi.getIncomingValueFor(counted.latch)));
+        }
+        return values;
+    }
+
+    private static Map<PhiInst, Value> initialValues(CountedLoop counted, BasicBlock from) {
+        Map<PhiInst, Value> values = new HashMap<>();
+        for (PhiInst phi : counted.loop.getHeader().getPhis()) {
+            values.put(phi, phi.getIncomingValueFor(from));
+        }
+        return values;
+    }
+
+    private static void unrollFully(Function function, CountedLoop counted, int trips) {
+        BasicBlock header = counted.loop.getHeader();
+        Map<PhiInst, Value> values = initialValues(counted, counted.preheader);
+        BasicBlock insertPoint = counted.preheader;
+        BasicBlock first = null;
+        BasicBlock lastLatch = null;
+        for (int k = 0; k < trips; k++) {
+            List<BasicBlock> blocks = new ArrayList<>();
+            Cloner cloner = cloneIteration(function, counted, insertPoint, values, header, blocks);
+            BasicBlock copyHeader = blocks.get(counted.blocks.indexOf(header));
+            if (k == 0) {
+                first = copyHeader;
+            } else {
+                lastLatch.getTerminator().eraseFromParent();
+                lastLatch.add(new JumpInst(copyHeader));
+            }
+            lastLatch = (BasicBlock) cloner.get(counted.latch);
+            values = nextValues(counted, cloner);
+            insertPoint = blocks.get(blocks.size() - 1);
+        }
+        // 原循环从最后一个副本之后开始，不再执行任何迭代
+        for (PhiInst phi : header.getPhis()) {
+            phi.removeIncomingBlock(counted.preheader);
+            phi.addIncoming(values.get(phi), lastLatch);
+        }
+        counted.preheader.replaceSuccessor(header, first);
+    }
+
+    private static void unrollPartially(Function function, CountedLoop counted, int u) {
+        BasicBlock header = counted.loop.getHeader();
+        BasicBlock preheader = counted.preheader;
+        long span = (long) (u - 1) * counted.step;
+        boolean increasing = counted.step > 0;
+        Value limit;
+        Value safe = null; // 需要在运行时检查limit不溢出时为检查结果
+        if (counted.bound instanceof ConstantInt) {
+            long bound = ((ConstantInt) counted.bound).getValue();
+            if (bound - span != (int) (bound - span)) {
+                return;
+            }
+            limit = ConstantInt.i32((int) (bound - span));
+        } else {
+            int edge = (int) (increasing ? Integer.MIN_VALUE + span : Integer.MAX_VALUE + span);
+            Instruction check = new IcmpInst(increasing ? IcmpInst.Predicate.SGE : IcmpInst.Predicate.SLE,
+                    counted.bound, ConstantInt.i32(edge));
+            preheader.insertBeforeTerminator(check);
+            Instruction sub = new BinaryInst(Instruction.Opcode.SUB, counted.bound, ConstantInt.i32((int) span));
+            preheader.insertBeforeTerminator(sub);
+            limit = sub;
+            safe = check;
+        }
+
+        // 展开后的循环头：剩余迭代不少于u次时执行u个副本
+        BasicBlock unrolledHeader = new BasicBlock(function);
+        function.insertBlockAfter(unrolledHeader, preheader);
+        Map<PhiInst, Value> values = new HashMap<>();
+        Map<PhiInst, PhiInst> unrolledPhis = new HashMap<>();
+        for (PhiInst phi : header.getPhis()) {
+            PhiInst copy = new PhiInst(phi.getType());
+            copy.addIncoming(phi.getIncomingValueFor(preheader), preheader);
+            unrolledHeader.add(copy);
+            unrolledPhis.put(phi, copy);
+            values.put(phi, copy);
+        }
+        IcmpInst enough = new IcmpInst(counted.predicate, unrolledPhis.get(counted.counter), limit);
+        unrolledHeader.add(enough);
+
+        BasicBlock insertPoint = unrolledHeader;
+        BasicBlock first = null;
+        BasicBlock lastLatch = null;
+        for (int k = 0; k < u; k++) {
+            List<BasicBlock> blocks = new ArrayList<>();
+            Cloner cloner = cloneIteration(function, counted, insertPoint, values, unrolledHeader, blocks);
+            BasicBlock copyHeader = blocks.get(counted.blocks.indexOf(header));
+            if (k == 0) {
+                first = copyHeader;
+            } else {
+                lastLatch.getTerminator().eraseFromParent();
+                lastLatch.add(new JumpInst(copyHeader));
+            }
+            lastLatch = (BasicBlock) cloner.get(counted.latch);
+            values = nextValues(counted, cloner);
+            insertPoint = blocks.get(blocks.size() - 1);
+        }
+        for (PhiInst phi : header.getPhis()) {
+            unrolledPhis.get(phi).addIncoming(values.get(phi), lastLatch);
+        }
+        unrolledHeader.add(new BranchInst(enough, first, header));
+
+        // 原循环完成剩余的迭代；前置块的检查失败时直接进入原循环
+        for (PhiInst phi : header.getPhis()) {
+            if (safe == null) {
+                phi.removeIncomingBlock(preheader);
+            }
+            phi.addIncoming(unrolledPhis.get(phi), unrolledHeader);
+        }
+        preheader.getTerminator().eraseFromParent();
+        if (safe != null) {
+            preheader.add(new BranchInst(safe, unrolledHeader, header));
+        } else {
+            preheader.add(new JumpInst(unrolledHeader));
+        }
+    }
+}
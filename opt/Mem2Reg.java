@@ -0,0 +1,189 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.BasicBlock;
+import ir.ConstantInt;
+import ir.Function;
+import ir.Instruction;
+import ir.LoadInst;
+import ir.PhiInst;
+import ir.StoreInst;
+import ir.Use;
+import ir.User;
+import ir.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把只被load/store访问的标量局部变量提升为SSA值
+ *
+ * 在定义所在块的迭代支配边界上放置phi，再按支配树先序重命名：
+ * 一个块入口处变量的当前值就是其直接支配者出口处的值。
+ * 最后删除无用的phi和只有单一取值的phi。
+ */
+public class Mem2Reg extends FunctionPass {
+    @Override
+    public void run(Function function) {
+        Cfg.removeUnreachableBlocks(function);
+        List<AllocaInst> allocas = new ArrayList<>();
+        Map<AllocaInst, Integer> slots = new HashMap<>();
+        for (Instruction inst : function.getEntryBlock().getInstructions()) {
+            if (inst instanceof AllocaInst && isPromotable((AllocaInst) inst)) {
+                slots.put((AllocaInst) inst, allocas.size());
+                allocas.add((AllocaInst) inst);
+            }
+        }
+        if (allocas.isEmpty()) {
+            return;
+        }
+        DominatorTree domTree = new DominatorTree(function);
+
+        // 放置phi
+        Map<PhiInst, Integer> phiSlots = new HashMap<>();
+        for (int k = 0; k < allocas.size(); k++) {
+            AllocaInst alloca = allocas.get(k);
+            Set<BasicBlock> defBlocks = new HashSet<>();
+            for (User user : alloca.getUsers()) {
+                if (user instanceof StoreInst) {
+                    defBlocks.add(((StoreInst) user).getParent());
+                }
+            }
+            for (BasicBlock block : domTree.getIteratedFrontier(defBlocks)) {
+                PhiInst phi = new PhiInst(alloca.getAllocatedType());
+                block.insert(0, phi);
+                phiSlots.put(phi, k);
+            }
+        }
+
+        // 重命名
+        Map<BasicBlock, Value[]> exitValues = new HashMap<>();
+        List<Instruction> dead = new ArrayList<>();
+        for (BasicBlock block : domTree.getPreOrder()) {
+            BasicBlock idom = domTree.getImmediateDominator(block);
+            Value[] current;
+            if (idom == null) {
+                current = new Value[allocas.size()];
+                for (int k = 0; k < current.length; k++) {
+                    current[k] = new ConstantInt(allocas.get(k).getAllocatedType(), 0); // 未初始化的局部变量读作0
+                }
+            } else {
+                current = exitValues.get(idom).clone();
+            }
+            for (Instruction inst : block.getInstructions()) {
+                if (inst instanceof PhiInst) {
+                    Integer k = phiSlots.get(inst);
+                    if (k != null) {
+                        current[k] = inst;
+                    }
+                } else if (inst instanceof LoadInst) {
+                    Integer k = slots.get(((LoadInst) inst).getPointer());
+                    if (k != null) {
+                        inst.replaceAllUsesWith(current[k]);
+                        dead.add(inst);
+                    }
+                } else if (inst instanceof StoreInst) {
+                    Integer k = slots.get(((StoreInst) inst).getPointer());
+                    if (k != null) {
+                        current[k] = ((StoreInst) inst).getValue();
+                        dead.add(inst);
+                    }
+                }
+            }
+            exitValues.put(block, current);
+        }
+        for (BasicBlock block : domTree.getReversePostOrder()) {
+            Value[] values = exitValues.get(block);
+            for (BasicBlock successor : block.getSuccessors()) {
+                for (PhiInst phi : successor.getPhis()) {
+                    Integer k = phiSlots.get(phi);
+                    if (k != null) {
+                        phi.addIncoming(values[k], block);
+                    }
+                }
+            }
+        }
+        for (Instruction inst : dead) {
+            inst.eraseFromParent();
+        }
+        for (AllocaInst alloca : allocas) {
+            alloca.eraseFromParent();
+        }
+        simplifyPhis(phiSlots.keySet());
+    }
+
+    private static boolean isPromotable(AllocaInst alloca) {
+        if (alloca.getAllocatedType().isArray()) {
+            return false;
+        }
+        for (Use use : alloca.getUses()) {
+            User user = use.getUser();
+            boolean isAddress = user instanceof LoadInst || (user instanceof StoreInst && use.getIndex() == 1);
+            if (!isAddress) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除没有使用的phi，并把所有入边取同一个值（或自身）的phi替换为该值
+     */
+    static void simplifyPhis(Set<PhiInst> phis) {
+        Deque<PhiInst> worklist = new ArrayDeque<>(phis);
+        Set<PhiInst> removed = new HashSet<>();
+        while (!worklist.isEmpty()) {
+            PhiInst phi = worklist.poll();
+            if (removed.contains(phi)) {
+                continue;
+            }
+            Value unique = null;
+            boolean trivial = true;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                Value value = phi.getIncomingValue(i);
+                if (value == phi || value == unique) {
+                    continue;
+                }
+                if (unique != null && !sameConstant(value, unique)) {
+                    trivial = false;
+                    break;
+                }
+                unique = value;
+            }
+            boolean unused = true;
+            for (User user : phi.getUsers()) {
+                if (user != phi) {
+                    unused = false;
+                    break;
+                }
+            }
+            if (!unused && !(trivial && unique != null)) {
+                continue;
+            }
+            // 使用该phi的phi和被它使用的phi可能因此变得可以化简
+            List<Value> related = new ArrayList<>(phi.getOperands());
+            related.addAll(phi.getUsers());
+            if (!unused) {
+                phi.replaceAllUsesWith(unique);
+            }
+            phi.eraseFromParent();
+            removed.add(phi);
+            for (Value value : related) {
+                if (value instanceof PhiInst && value != phi) {
+                    worklist.add((PhiInst) value);
+                }
+            }
+        }
+    }
+
+    private static boolean sameConstant(Value a, Value b) {
+        return a instanceof ConstantInt && b instanceof ConstantInt
+                && ((ConstantInt) a).getValue() == ((ConstantInt) b).getValue();
+    }
+}
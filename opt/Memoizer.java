@@ -0,0 +1,148 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.Argument;
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.BranchInst;
+import ir.CallInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.GlobalVariable;
+import ir.IRType;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.LoadInst;
+import ir.Module;
+import ir.PhiInst;
+import ir.ReturnInst;
+import ir.StoreInst;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 纯递归函数的记忆化（需要显式开启）
+ *
+ * 对有一个或两个int形参、返回int并且直接调用自身的纯函数，在.data中加入结果表和标记表：
+ * 一个形参时覆盖[0, 1024)，两个形参时覆盖[0, 64) x [0, 64)。
+ * 入口先检查实参是否在表的范围内并且已经算过，是则直接返回表中的值；
+ * 所有返回汇合到新的出口块，实参在范围内时把结果写入表中。范围外的调用照常计算。
+ */
+public class Memoizer implements Pass {
+    private static final int SINGLE_TABLE_SIZE = 1024;
+    private static final int PAIR_TABLE_SIDE = 64;
+
+    @Override
+    public void run(Module module) {
+        PurityAnalysis purity = new PurityAnalysis(module);
+        for (Function function : module.getDefinedFunctions()) {
+            if (isCandidate(function) && purity.isPure(function)) {
+                memoize(module, function);
+            }
+        }
+    }
+
+    private static boolean isCandidate(Function function) {
+        int params = function.getArguments().size();
+        if (function.getName().equals("main") || !function.getReturnType().equals(IRType.I32)
+                || params < 1 || params > 2) {
+            return false;
+        }
+        for (Argument arg : function.getArguments()) {
+            if (!arg.getType().equals(IRType.I32)) {
+                return false;
+            }
+        }
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (inst instanceof CallInst && ((CallInst) inst).getCallee() == function) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void memoize(Module module, Function function) {
+        List<Argument> args = function.getArguments();
+        int size = args.size() == 1 ? SINGLE_TABLE_SIZE : PAIR_TABLE_SIDE * PAIR_TABLE_SIDE;
+        IRType tableType = IRType.arrayOf(IRType.I32, size);
+        GlobalVariable values = new GlobalVariable(".memo." + function.getName() + ".value", tableType, false, null);
+        GlobalVariable known = new GlobalVariable(".memo." + function.getName() + ".known", tableType, false, null);
+        module.addGlobal(values);
+        module.addGlobal(known);
+
+        BasicBlock body = function.getEntryBlock();
+        BasicBlock entry = new BasicBlock(function);
+        BasicBlock check = new BasicBlock(function);
+        BasicBlock hit = new BasicBlock(function);
+        BasicBlock exit = new BasicBlock(function);
+        BasicBlock save = new BasicBlock(function);
+        BasicBlock done = new BasicBlock(function);
+        List<BasicBlock> order = new ArrayList<>(Arrays.asList(entry, check, hit));
+        order.addAll(function.getBlocks());
+        order.addAll(Arrays.asList(exit, save, done));
+        for (BasicBlock block : Arrays.asList(entry, check, hit, exit, save, done)) {
+            function.addBlock(block);
+        }
+        function.reorderBlocks(order);
+
+        // 返回汇合到出口块
+        PhiInst result = new PhiInst(IRType.I32);
+        exit.add(result);
+        for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+            Instruction term = block.getTerminator();
+            if (term instanceof ReturnInst && block != hit && block != done) {
+                result.addIncoming(((ReturnInst) term).getValue(), block);
+                term.eraseFromParent();
+                block.add(new JumpInst(exit));
+            }
+        }
+
+        // 实参都在[0, side)中时 (a | b) & ~(side - 1) 为0，下标为 a * side + b
+        for (Instruction inst : new ArrayList<>(body.getInstructions())) {
+            if (inst instanceof AllocaInst) {
+                body.remove(inst);
+                entry.add(inst);
+            }
+        }
+        Value bits = args.get(0);
+        Value index = args.get(0);
+        if (args.size() == 2) {
+            bits = add(entry, new BinaryInst(Instruction.Opcode.OR, args.get(0), args.get(1)));
+            Value row = add(entry, new BinaryInst(Instruction.Opcode.SHL, args.get(0),
+                    ConstantInt.i32(Integer.numberOfTrailingZeros(PAIR_TABLE_SIDE))));
+            index = add(entry, new BinaryInst(Instruction.Opcode.ADD, row, args.get(1)));
+        }
+        int side = args.size() == 1 ? SINGLE_TABLE_SIZE : PAIR_TABLE_SIDE;
+        Value outside = add(entry, new BinaryInst(Instruction.Opcode.AND, bits, ConstantInt.i32(-side)));
+        Value inRange = add(entry, new IcmpInst(IcmpInst.Predicate.EQ, outside, ConstantInt.i32(0)));
+        entry.add(new BranchInst(inRange, check, body));
+
+        Value knownFlag = add(check, new LoadInst(element(check, known, index)));
+        Value isKnown = add(check, new IcmpInst(IcmpInst.Predicate.NE, knownFlag, ConstantInt.i32(0)));
+        check.add(new BranchInst(isKnown, hit, body));
+
+        hit.add(new ReturnInst(add(hit, new LoadInst(element(hit, values, index)))));
+
+        exit.add(new BranchInst(inRange, save, done));
+        save.add(new StoreInst(result, element(save, values, index)));
+        save.add(new StoreInst(ConstantInt.i32(1), element(save, known, index)));
+        save.add(new JumpInst(done));
+        done.add(new ReturnInst(result));
+    }
+
+    private static Value element(BasicBlock block, GlobalVariable table, Value index) {
+        return add(block, new GepInst(table, Arrays.asList(ConstantInt.i32(0), index)));
+    }
+
+    private static Instruction add(BasicBlock block, Instruction inst) {
+        block.add(inst);
+        return inst;
+    }
+}
@@ -0,0 +1,91 @@
+package opt;
+
+import ir.Module;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 按优化级别组织的优化遍序列
+ */
+public class Optimizer {
+    private final List<Pass> passes = new ArrayList<>();
+
+    /**
+     * 构造指定优化级别的优化遍序列，0表示不优化
+     * @param level 优化级别
+     * @param inlineGrowthPercent 内联允许模块增长的百分比，0关闭内联
+     * @param memoize 是否记忆化纯递归函数，只在优化级别不低于1时生效
+     * @param unrollFactor 循环部分展开的因子，小于2时只完全展开常量次数的小循环，0关闭循环展开
+     * @return 优化器
+     */
+    public static Optimizer forLevel(int level, int inlineGrowthPercent, boolean memoize, int unrollFactor) {
+        Optimizer optimizer = new Optimizer();
+        if (level >= 1) {
+            optimizer.add(new Mem2Reg());
+            optimizer.add(new SCCP());
+        }
+        if (level >= 1 && memoize) {
+            // 在尾递归消除之前进行，保留递归调用以便命中表
+            optimizer.add(new Memoizer());
+        }
+        if (level >= 2) {
+            optimizer.add(new TailRecursion());
+            optimizer.add(new GVN());
+            optimizer.add(new LICM());
+        }
+        if (level >= 1) {
+            optimizer.add(new ADCE());
+            optimizer.add(new SimplifyCfg());
+        }
+        if (level >= 2 && inlineGrowthPercent > 0) {
+            // 内联之后常量实参和合并的控制流带来新的化简机会
+            optimizer.add(new Inliner(inlineGrowthPercent));
+            optimizer.add(new SCCP());
+            optimizer.add(new GVN());
+            optimizer.add(new LICM());
+            optimizer.add(new ADCE());
+            optimizer.add(new SimplifyCfg());
+        }
+        if (level >= 2 && unrollFactor > 0) {
+            // 展开后各副本中的计数器成为常量或公共子表达式
+            optimizer.add(new LoopUnroller(unrollFactor));
+            optimizer.add(new SCCP());
+            optimizer.add(new GVN());
+            optimizer.add(new ADCE());
+            optimizer.add(new SimplifyCfg());
+        }
+        if (level >= 2) {
+            // 放在最后：之前的遍按基址和下标分析地址，指针phi会让别名分析失去精度
+            optimizer.add(new StrengthReduction());
+            optimizer.add(new ADCE());
+        }
+        return optimizer;
+    }
+
+    public Optimizer add(Pass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    /**
+     * 依次运行所有优化遍
+     * @param module IR模块
+     */
+    public void run(Module module) {
+        run(module, pass -> { });
+    }
+
+    /**
+     * 依次运行所有优化遍，每个遍之后回调，用于观察各个遍的效果
+     * @param module IR模块
+     * @param afterEach 每个遍运行之后调用
+     */
+    public void run(Module module, Consumer<Pass> afterEach) {
+        for (Pass pass : passes) {
+            pass.run(module);
+            afterEach.accept(pass);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package opt;
+
+import ir.Module;
+
+/**
+ * 作用于整个模块的优化遍
+ */
+public interface Pass {
+    /**
+     * 对模块进行变换
+     * @param module IR模块
+     */
+    void run(Module module);
+}
@@ -0,0 +1,169 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.Function;
+import ir.ReturnInst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 后支配树，在反向控制流图上用与DominatorTree相同的算法求直接后支配者
+ * 所有以ret结束的块汇合到一个虚拟出口；到达不了ret的块（死循环）不在树中
+ */
+public class PostDominatorTree {
+    private final List<BasicBlock> order = new ArrayList<>(); // 反向图的逆后序，第0个为虚拟出口（null）
+    private final Map<BasicBlock, Integer> index = new HashMap<>();
+    private final int[] ipdom;
+    private final Map<BasicBlock, Set<BasicBlock>> frontiers = new HashMap<>();
+
+    public PostDominatorTree(Function function) {
+        computeOrder(function);
+        ipdom = new int[order.size()];
+        computeIpdoms();
+        computeFrontiers();
+    }
+
+    /**
+     * 从虚拟出口出发沿前驱做深度优先搜索，得到反向图的逆后序
+     */
+    private void computeOrder(Function function) {
+        List<BasicBlock> exits = new ArrayList<>();
+        for (BasicBlock block : function.getBlocks()) {
+            if (block.getTerminator() instanceof ReturnInst) {
+                exits.add(block);
+            }
+        }
+        List<BasicBlock> postOrder = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<BasicBlock> blocks = new ArrayDeque<>();
+        Deque<Iterator<BasicBlock>> predecessors = new ArrayDeque<>();
+        for (BasicBlock exit : exits) {
+            if (!visited.add(exit)) {
+                continue;
+            }
+            blocks.push(exit);
+            predecessors.push(exit.getPredecessors().iterator());
+            while (!blocks.isEmpty()) {
+                Iterator<BasicBlock> it = predecessors.peek();
+                if (it.hasNext()) {
+                    BasicBlock next = it.next();
+                    if (visited.add(next)) {
+                        blocks.push(next);
+                        predecessors.push(next.getPredecessors().iterator());
+                    }
+                } else {
+                    postOrder.add(blocks.pop());
+                    predecessors.pop();
+                }
+            }
+        }
+        Collections.reverse(postOrder);
+        order.add(null);
+        order.addAll(postOrder);
+        for (int i = 1; i < order.size(); i++) {
+            index.put(order.get(i), i);
+        }
+    }
+
+    /**
+     * 反向图中的前驱，即原图中的后继；ret块的后继是虚拟出口
+     */
+    private List<Integer> reversePredecessors(BasicBlock block) {
+        List<Integer> result = new ArrayList<>(2);
+        if (block.getTerminator() instanceof ReturnInst) {
+            result.add(0);
+        }
+        for (BasicBlock successor : block.getSuccessors()) {
+            Integer s = index.get(successor);
+            if (s != null) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    private void computeIpdoms() {
+        int n = order.size();
+        Arrays.fill(ipdom, -1);
+        ipdom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < n; i++) {
+                int newIpdom = -1;
+                for (int p : reversePredecessors(order.get(i))) {
+                    if (ipdom[p] < 0) {
+                        continue;
+                    }
+                    newIpdom = newIpdom < 0 ? p : intersect(p, newIpdom);
+                }
+                if (ipdom[i] != newIpdom) {
+                    ipdom[i] = newIpdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = ipdom[a];
+            }
+            while (b > a) {
+                b = ipdom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * 后支配边界：block控制依赖于边界中各块的条件分支
+     */
+    private void computeFrontiers() {
+        for (int i = 1; i < order.size(); i++) {
+            frontiers.put(order.get(i), new LinkedHashSet<>());
+        }
+        for (int i = 1; i < order.size(); i++) {
+            List<Integer> succs = reversePredecessors(order.get(i));
+            if (succs.size() < 2) {
+                continue;
+            }
+            for (int runner : succs) {
+                while (runner != ipdom[i]) {
+                    frontiers.get(order.get(runner)).add(order.get(i));
+                    runner = ipdom[runner];
+                }
+            }
+        }
+    }
+
+    /**
+     * 基本块是否能到达ret（是否在后支配树中）
+     */
+    public boolean contains(BasicBlock block) {
+        return index.containsKey(block);
+    }
+
+    /**
+     * 直接后支配者，直接后支配者是虚拟出口时返回null
+     */
+    public BasicBlock getImmediatePostDominator(BasicBlock block) {
+        return order.get(ipdom[index.get(block)]);
+    }
+
+    public Set<BasicBlock> getPostDominanceFrontier(BasicBlock block) {
+        return Collections.unmodifiableSet(frontiers.get(block));
+    }
+}
@@ -0,0 +1,93 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.BasicBlock;
+import ir.CallInst;
+import ir.Function;
+import ir.GlobalVariable;
+import ir.Instruction;
+import ir.LoadInst;
+import ir.Module;
+import ir.StoreInst;
+import ir.Value;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 过程间纯函数分析：纯函数的结果只由整数实参决定，调用它没有可观察的作用
+ *
+ * 纯函数没有数组形参，不调用运行库（输入输出），只写局部数组，只读不会被改写的全局变量，
+ * 并且只调用纯函数。从假设所有函数都纯开始，反复去掉不满足条件的函数直到不再变化，
+ * 因此互相递归的纯函数也能识别。
+ */
+final class PurityAnalysis {
+    private final AliasAnalysis aliases = new AliasAnalysis();
+    private final Set<GlobalVariable> written = new HashSet<>();
+    private final Set<Function> pure = new HashSet<>();
+
+    PurityAnalysis(Module module) {
+        for (Function function : module.getDefinedFunctions()) {
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction inst : block.getInstructions()) {
+                    noteWrites(inst);
+                }
+            }
+        }
+        pure.addAll(module.getDefinedFunctions());
+        boolean changed = true;
+        while (changed) {
+            changed = pure.removeIf(function -> !isPureBody(function));
+        }
+    }
+
+    /**
+     * 记录可能被改写的全局变量：被store写入或者作为数组实参传出
+     */
+    private void noteWrites(Instruction inst) {
+        if (inst instanceof StoreInst) {
+            Value base = aliases.locate(((StoreInst) inst).getPointer()).base;
+            if (base instanceof GlobalVariable) {
+                written.add((GlobalVariable) base);
+            }
+        } else if (inst instanceof CallInst) {
+            for (Value arg : ((CallInst) inst).getArgs()) {
+                if (arg.getType().isPointer() && aliases.locate(arg).base instanceof GlobalVariable) {
+                    written.add((GlobalVariable) aliases.locate(arg).base);
+                }
+            }
+        }
+    }
+
+    private boolean isPureBody(Function function) {
+        for (Value arg : function.getArguments()) {
+            if (arg.getType().isPointer()) {
+                return false;
+            }
+        }
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction inst : block.getInstructions()) {
+                if (inst instanceof CallInst) {
+                    Function callee = ((CallInst) inst).getCallee();
+                    if (callee.isBuiltin() || !pure.contains(callee)) {
+                        return false;
+                    }
+                } else if (inst instanceof StoreInst) {
+                    if (!(aliases.locate(((StoreInst) inst).getPointer()).base instanceof AllocaInst)) {
+                        return false;
+                    }
+                } else if (inst instanceof LoadInst) {
+                    Value base = aliases.locate(((LoadInst) inst).getPointer()).base;
+                    if (base instanceof GlobalVariable && written.contains(base)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    boolean isPure(Function function) {
+        return pure.contains(function);
+    }
+}
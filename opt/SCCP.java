@@ -0,0 +1,268 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.BranchInst;
+import ir.CastInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.GlobalVariable;
+import ir.IRType;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.LoadInst;
+import ir.PhiInst;
+import ir.User;
+import ir.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 稀疏条件常量传播（Wegman-Zadeck）
+ *
+ * 格值：未确定（尚无值到达，用null表示）、常量（Integer）、非常量（OVERDEFINED）。
+ * 只沿可能执行的控制流边传播，phi只合并来自可执行边的值；
+ * 结束后把常量结果替换为立即数，条件确定的分支改为无条件跳转，并删除不可达的块。
+ * 常量全局数组中下标确定的元素读取也会被折叠。
+ */
+public class SCCP extends FunctionPass {
+    private static final Object OVERDEFINED = new Object();
+
+    private final Map<Value, Object> lattice = new HashMap<>();
+    private final Set<BasicBlock> executable = new HashSet<>();
+    private final Map<BasicBlock, Set<BasicBlock>> executableEdges = new HashMap<>();
+    private final Deque<BasicBlock> blockWorklist = new ArrayDeque<>();
+    private final Deque<Instruction> instWorklist = new ArrayDeque<>();
+
+    @Override
+    public void run(Function function) {
+        lattice.clear();
+        executable.clear();
+        executableEdges.clear();
+        markExecutable(function.getEntryBlock());
+        while (!blockWorklist.isEmpty() || !instWorklist.isEmpty()) {
+            while (!instWorklist.isEmpty()) {
+                Instruction inst = instWorklist.poll();
+                if (executable.contains(inst.getParent())) {
+                    visit(inst);
+                }
+            }
+            while (!blockWorklist.isEmpty()) {
+                for (Instruction inst : blockWorklist.poll().getInstructions()) {
+                    visit(inst);
+                }
+            }
+        }
+        rewrite(function);
+    }
+
+    // ==================== 求解 ====================
+
+    private void markExecutable(BasicBlock block) {
+        if (executable.add(block)) {
+            blockWorklist.add(block);
+        }
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        if (!executableEdges.computeIfAbsent(from, b -> new HashSet<>()).add(to)) {
+            return;
+        }
+        if (executable.contains(to)) {
+            // 新的可执行入边只影响phi
+            instWorklist.addAll(to.getPhis());
+        } else {
+            markExecutable(to);
+        }
+    }
+
+    private boolean isEdgeExecutable(BasicBlock from, BasicBlock to) {
+        Set<BasicBlock> targets = executableEdges.get(from);
+        return targets != null && targets.contains(to);
+    }
+
+    private Object get(Value value) {
+        if (value instanceof ConstantInt) {
+            return ((ConstantInt) value).getValue();
+        }
+        if (value instanceof Instruction) {
+            return lattice.get(value);
+        }
+        return OVERDEFINED; // 参数、全局变量地址等
+    }
+
+    private void set(Instruction inst, Object value) {
+        Object old = lattice.get(inst);
+        if (old == OVERDEFINED || value == null || value.equals(old)) {
+            return;
+        }
+        lattice.put(inst, value);
+        for (User user : inst.getUsers()) {
+            instWorklist.add((Instruction) user);
+        }
+    }
+
+    private static Object meet(Object a, Object b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null || a.equals(b)) {
+            return a;
+        }
+        return OVERDEFINED;
+    }
+
+    private void visit(Instruction inst) {
+        if (inst instanceof PhiInst) {
+            PhiInst phi = (PhiInst) inst;
+            Object value = null;
+            for (int i = 0; i < phi.getNumIncoming() && value != OVERDEFINED; i++) {
+                if (isEdgeExecutable(phi.getIncomingBlock(i), phi.getParent())) {
+                    value = meet(value, get(phi.getIncomingValue(i)));
+                }
+            }
+            set(inst, value);
+        } else if (inst instanceof BinaryInst) {
+            Object a = get(inst.getOperand(0));
+            Object b = get(inst.getOperand(1));
+            if (a == OVERDEFINED || b == OVERDEFINED) {
+                set(inst, OVERDEFINED);
+            } else if (a != null && b != null) {
+                Integer result = BinaryInst.evaluate(inst.getOpcode(), (Integer) a, (Integer) b);
+                set(inst, result != null ? result : OVERDEFINED);
+            }
+        } else if (inst instanceof IcmpInst) {
+            Object a = get(inst.getOperand(0));
+            Object b = get(inst.getOperand(1));
+            if (a == OVERDEFINED || b == OVERDEFINED) {
+                set(inst, OVERDEFINED);
+            } else if (a != null && b != null) {
+                set(inst, ((IcmpInst) inst).getPredicate().evaluate((Integer) a, (Integer) b) ? 1 : 0);
+            }
+        } else if (inst instanceof CastInst) {
+            Object a = get(inst.getOperand(0));
+            if (a instanceof Integer) {
+                set(inst, inst.getOpcode() == Instruction.Opcode.TRUNC ? (Integer) a & 0xFF : a);
+            } else {
+                set(inst, a);
+            }
+        } else if (inst instanceof GepInst) {
+            // 地址本身不是常量，但下标的变化会影响从它读取的值
+            set(inst, OVERDEFINED);
+            for (User user : inst.getUsers()) {
+                if (user instanceof LoadInst) {
+                    instWorklist.add((LoadInst) user);
+                }
+            }
+        } else if (inst instanceof LoadInst) {
+            set(inst, loadConstant((LoadInst) inst));
+        } else if (inst instanceof BranchInst) {
+            BranchInst br = (BranchInst) inst;
+            Object condition = get(br.getCondition());
+            if (condition == OVERDEFINED) {
+                markEdge(br.getParent(), br.getTrueBlock());
+                markEdge(br.getParent(), br.getFalseBlock());
+            } else if (condition != null) {
+                markEdge(br.getParent(), (Integer) condition != 0 ? br.getTrueBlock() : br.getFalseBlock());
+            }
+        } else if (inst instanceof JumpInst) {
+            markEdge(inst.getParent(), ((JumpInst) inst).getTarget());
+        } else if (!inst.getType().isVoid()) {
+            set(inst, OVERDEFINED);
+        }
+    }
+
+    /**
+     * 从常量全局变量中读取下标确定的元素
+     */
+    private Object loadConstant(LoadInst load) {
+        Value pointer = load.getPointer();
+        int offset = 0;
+        if (pointer instanceof GepInst) {
+            GepInst gep = (GepInst) pointer;
+            IRType type = gep.getPointer().getType().getElementType();
+            for (int i = 0; i < gep.getNumIndices(); i++) {
+                Object index = get(gep.getIndex(i));
+                if (!(index instanceof Integer)) {
+                    return index;
+                }
+                offset += (Integer) index * type.getSize();
+                type = type.getElementType();
+            }
+            pointer = gep.getPointer();
+        }
+        if (!(pointer instanceof GlobalVariable) || !((GlobalVariable) pointer).isConstant()) {
+            return OVERDEFINED;
+        }
+        GlobalVariable global = (GlobalVariable) pointer;
+        IRType type = global.getValueType();
+        int length = 1;
+        while (type.isArray()) {
+            length *= type.getLength();
+            type = type.getElementType();
+        }
+        int element = offset / type.getSize();
+        if (offset % type.getSize() != 0 || element < 0 || element >= length) {
+            return OVERDEFINED;
+        }
+        return global.getInitialElement(element);
+    }
+
+    // ==================== 改写 ====================
+
+    private void rewrite(Function function) {
+        List<Instruction> dead = new ArrayList<>();
+        for (BasicBlock block : function.getBlocks()) {
+            if (!executable.contains(block)) {
+                continue;
+            }
+            for (Instruction inst : block.getInstructions()) {
+                Object value = lattice.get(inst);
+                if (value instanceof Integer && !inst.hasSideEffects()) {
+                    inst.replaceAllUsesWith(new ConstantInt(inst.getType(), (Integer) value));
+                    dead.add(inst);
+                }
+            }
+        }
+        for (Instruction inst : dead) {
+            inst.eraseFromParent();
+        }
+
+        // 只有一个可执行出边的条件分支改为无条件跳转
+        for (BasicBlock block : function.getBlocks()) {
+            if (!(block.getTerminator() instanceof BranchInst) || !executable.contains(block)) {
+                continue;
+            }
+            BranchInst br = (BranchInst) block.getTerminator();
+            boolean toTrue = isEdgeExecutable(block, br.getTrueBlock());
+            boolean toFalse = isEdgeExecutable(block, br.getFalseBlock());
+            if (toTrue == toFalse) {
+                continue;
+            }
+            BasicBlock target = toTrue ? br.getTrueBlock() : br.getFalseBlock();
+            BasicBlock other = toTrue ? br.getFalseBlock() : br.getTrueBlock();
+            for (PhiInst phi : other.getPhis()) {
+                phi.removeIncomingBlock(block);
+            }
+            br.eraseFromParent();
+            block.add(new JumpInst(target));
+        }
+
+        Set<PhiInst> phis = new HashSet<>();
+        for (BasicBlock block : function.getBlocks()) {
+            phis.addAll(block.getPhis());
+        }
+        Cfg.removeUnreachableBlocks(function);
+        phis.removeIf(phi -> phi.getParent() == null);
+        Mem2Reg.simplifyPhis(phis);
+    }
+}
@@ -0,0 +1,143 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.BranchInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.PhiInst;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 控制流图整理，反复进行直到不再变化：
+ * 条件确定或两个目标相同的分支改为无条件跳转；
+ * 删除只有一条跳转指令的转发块；
+ * 把唯一后继只有它一个前驱的块与后继合并；最后删除不可达的块。
+ */
+public class SimplifyCfg extends FunctionPass {
+    @Override
+    public void run(Function function) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+                if (block.getParent() == null) {
+                    continue; // 已被合并
+                }
+                changed |= foldBranch(block);
+                changed |= removeForwarding(function, block);
+                changed |= mergeIntoPredecessor(function, block);
+            }
+            changed |= Cfg.removeUnreachableBlocks(function);
+        }
+        Set<PhiInst> phis = new HashSet<>();
+        for (BasicBlock block : function.getBlocks()) {
+            phis.addAll(block.getPhis());
+        }
+        Mem2Reg.simplifyPhis(phis);
+    }
+
+    /**
+     * 条件为常量或两个目标相同的条件分支改为无条件跳转
+     */
+    private static boolean foldBranch(BasicBlock block) {
+        if (!(block.getTerminator() instanceof BranchInst)) {
+            return false;
+        }
+        BranchInst br = (BranchInst) block.getTerminator();
+        BasicBlock target;
+        if (br.getTrueBlock() == br.getFalseBlock()) {
+            target = br.getTrueBlock();
+        } else if (br.getCondition() instanceof ConstantInt) {
+            boolean taken = ((ConstantInt) br.getCondition()).getValue() != 0;
+            target = taken ? br.getTrueBlock() : br.getFalseBlock();
+            BasicBlock other = taken ? br.getFalseBlock() : br.getTrueBlock();
+            for (PhiInst phi : other.getPhis()) {
+                phi.removeIncomingBlock(block);
+            }
+        } else {
+            return false;
+        }
+        br.eraseFromParent();
+        block.add(new JumpInst(target));
+        return true;
+    }
+
+    /**
+     * 删除只有一条跳转的块，让它的前驱直接跳到它的后继
+     * 后继的phi中已有某个前驱的入边且取值不同时不能删除
+     */
+    private static boolean removeForwarding(Function function, BasicBlock block) {
+        if (block == function.getEntryBlock() || block.size() != 1 || !(block.getTerminator() instanceof JumpInst)) {
+            return false;
+        }
+        BasicBlock target = ((JumpInst) block.getTerminator()).getTarget();
+        if (target == block) {
+            return false;
+        }
+        List<BasicBlock> preds = block.getPredecessors();
+        for (PhiInst phi : target.getPhis()) {
+            Value value = phi.getIncomingValueFor(block);
+            for (BasicBlock pred : preds) {
+                Value existing = phi.getIncomingValueFor(pred);
+                if (existing != null && existing != value) {
+                    return false;
+                }
+            }
+        }
+        for (PhiInst phi : target.getPhis()) {
+            Value value = phi.getIncomingValueFor(block);
+            phi.removeIncomingBlock(block);
+            for (BasicBlock pred : preds) {
+                if (phi.getIncomingValueFor(pred) == null) {
+                    phi.addIncoming(value, pred);
+                }
+            }
+        }
+        for (BasicBlock pred : preds) {
+            pred.replaceSuccessor(block, target);
+        }
+        function.removeBlock(block);
+        return true;
+    }
+
+    /**
+     * 块是前驱的唯一后继、前驱也是它的唯一前驱时，把它并入前驱
+     */
+    private static boolean mergeIntoPredecessor(Function function, BasicBlock block) {
+        if (block == function.getEntryBlock()) {
+            return false;
+        }
+        List<BasicBlock> preds = block.getPredecessors();
+        if (preds.size() != 1 || preds.get(0) == block || !(preds.get(0).getTerminator() instanceof JumpInst)) {
+            return false;
+        }
+        BasicBlock pred = preds.get(0);
+        for (PhiInst phi : block.getPhis()) {
+            phi.replaceAllUsesWith(phi.getIncomingValue(0));
+            phi.eraseFromParent();
+        }
+        pred.getTerminator().eraseFromParent();
+        for (Instruction inst : new ArrayList<>(block.getInstructions())) {
+            block.remove(inst);
+            pred.add(inst);
+        }
+        for (BasicBlock successor : pred.getSuccessors()) {
+            for (PhiInst phi : successor.getPhis()) {
+                for (int i = 0; i < phi.getNumIncoming(); i++) {
+                    if (phi.getIncomingBlock(i) == block) {
+                        phi.setIncomingBlock(i, pred);
+                    }
+                }
+            }
+        }
+        function.removeBlock(block);
+        return true;
+    }
+}
@@ -0,0 +1,329 @@
+package opt;
+
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.BranchInst;
+import ir.CastInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.IRType;
+import ir.IcmpInst;
+import ir.Instruction;
+import ir.LoadInst;
+import ir.PhiInst;
+import ir.StoreInst;
+import ir.Use;
+import ir.User;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 归纳变量强度削弱和线性函数判断替换
+ *
+ * 循环中 a[iv * scale + inv + c] 这样的地址每次迭代都要乘以元素大小再加到基址上。
+ * 基址、inv相同的一组地址改用循环头中的指针phi：前置块算出第一次迭代的地址，回边上加 step * scale 个元素，
+ * 组内各地址是这个指针加常量偏移，由后端并入load和store的偏移。
+ * 之后如果计数器只剩自增和循环头的退出判断两处使用，并且某个指针在每次迭代都被访问，
+ * 就把 i < bound 换成指针与前置块中算出的末地址比较，计数器成为死代码由ADCE删除。
+ */
+public class StrengthReduction extends FunctionPass {
+    private static final int MAX_POINTERS = 4; // 每个循环新增的指针phi上限，避免寄存器压力过大
+
+    /**
+     * 一组可以共用指针phi的地址：基址和前面的下标相同，最后的下标是同一个仿射表达式加不同的常量
+     */
+    private static class Group {
+        final Value pointer;
+        final List<Value> prefix;
+        final InductionVariables.Affine affine;
+        final List<GepInst> members = new ArrayList<>();
+        final List<Integer> constants = new ArrayList<>();
+        PhiInst phi;
+        Value start;
+        boolean accessedEveryIteration;
+
+        Group(Value pointer, List<Value> prefix, InductionVariables.Affine affine) {
+            this.pointer = pointer;
+            this.prefix = prefix;
+            this.affine = affine;
+        }
+
+        boolean accepts(Value pointer, List<Value> prefix, InductionVariables.Affine affine) {
+            return this.pointer == pointer && this.prefix.equals(prefix) && this.affine.iv == affine.iv
+                    && this.affine.scale == affine.scale && Objects.equals(this.affine.invariant, affine.invariant);
+        }
+    }
+
+    @Override
+    public void run(Function function) {
+        Cfg.removeUnreachableBlocks(function);
+        LoopInfo loopInfo = new LoopInfo(new DominatorTree(function));
+        boolean inserted = false;
+        for (LoopInfo.Loop loop : loopInfo.getLoopsInnermostFirst()) {
+            inserted |= LoopInfo.insertPreheader(loop);
+        }
+        DominatorTree domTree = new DominatorTree(function);
+        if (inserted) {
+            loopInfo = new LoopInfo(domTree);
+        }
+        // 内层循环前置块中的起始地址在外层循环中又是仿射的，可以继续削弱
+        for (LoopInfo.Loop loop : loopInfo.getLoopsInnermostFirst()) {
+            if (loop.getPreheader() == null || loop.getLatches().size() != 1) {
+                continue;
+            }
+            InductionVariables ivs = new InductionVariables(loop);
+            List<Group> groups = collectGroups(function, ivs, domTree);
+            for (Group group : groups) {
+                reduce(ivs, group);
+            }
+            replaceExitTest(ivs, groups);
+        }
+    }
+
+    private static List<Group> collectGroups(Function function, InductionVariables ivs, DominatorTree domTree) {
+        LoopInfo.Loop loop = ivs.getLoop();
+        BasicBlock latch = loop.getLatches().get(0);
+        List<Group> groups = new ArrayList<>();
+        for (BasicBlock block : function.getBlocks()) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            for (Instruction inst : block.getInstructions()) {
+                if (!(inst instanceof GepInst) || !inst.hasUses()) {
+                    continue;
+                }
+                GepInst gep = (GepInst) inst;
+                int last = gep.getNumIndices() - 1;
+                List<Value> prefix = new ArrayList<>();
+                boolean invariant = ivs.isInvariant(gep.getPointer());
+                for (int i = 0; i < last && invariant; i++) {
+                    prefix.add(gep.getIndex(i));
+                    invariant = ivs.isInvariant(gep.getIndex(i));
+                }
+                InductionVariables.Affine affine = invariant ? ivs.affine(gep.getIndex(last)) : null;
+                if (affine == null) {
+                    continue;
+                }
+                Group group = null;
+                for (Group candidate : groups) {
+                    if (candidate.accepts(gep.getPointer(), prefix, affine)) {
+                        group = candidate;
+                    }
+                }
+                if (group == null) {
+                    if (groups.size() == MAX_POINTERS) {
+                        continue;
+                    }
+                    group = new Group(gep.getPointer(), prefix, affine);
+                    groups.add(group);
+                }
+                group.members.add(gep);
+                group.constants.add(affine.constant);
+                group.accessedEveryIteration |= isAccessedIn(gep, block) && domTree.dominates(block, latch);
+            }
+        }
+        return groups;
+    }
+
+    private static boolean isAccessedIn(GepInst gep, BasicBlock block) {
+        for (Use use : gep.getUses()) {
+            User user = use.getUser();
+            boolean isAddress = user instanceof LoadInst || user instanceof StoreInst && use.getIndex() == 1;
+            if (isAddress && ((Instruction) user).getParent() == block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 为一组地址建立指针phi，组内的地址改为相对它的常量偏移
+     */
+    private static void reduce(InductionVariables ivs, Group group) {
+        LoopInfo.Loop loop = ivs.getLoop();
+        BasicBlock preheader = loop.getPreheader();
+        BasicBlock latch = loop.getLatches().get(0);
+        InductionVariables.Affine affine = group.affine;
+        int base = group.constants.get(0);
+
+        // 第一次迭代的下标 init * scale + inv + c
+        Value index;
+        if (affine.iv.init instanceof ConstantInt) {
+            index = ConstantInt.i32(((ConstantInt) affine.iv.init).getValue() * affine.scale + base);
+            if (affine.invariant != null) {
+                index = add(preheader, new BinaryInst(Instruction.Opcode.ADD, affine.invariant, index));
+            }
+        } else {
+            index = affine.iv.init;
+            if (affine.scale != 1) {
+                index = add(preheader, new BinaryInst(Instruction.Opcode.MUL, index, ConstantInt.i32(affine.scale)));
+            }
+            if (affine.invariant != null) {
+                index = add(preheader, new BinaryInst(Instruction.Opcode.ADD, index, affine.invariant));
+            }
+            if (base != 0) {
+                index = add(preheader, new BinaryInst(Instruction.Opcode.ADD, index, ConstantInt.i32(base)));
+            }
+        }
+        if (group.prefix.isEmpty() && index instanceof ConstantInt && ((ConstantInt) index).getValue() == 0) {
+            group.start = group.pointer;
+        } else {
+            List<Value> indices = new ArrayList<>(group.prefix);
+            indices.add(index);
+            group.start = add(preheader, new GepInst(group.pointer, indices));
+        }
+
+        PhiInst phi = new PhiInst(group.start.getType());
+        loop.getHeader().insert(0, phi);
+        Instruction next = new GepInst(phi, Arrays.asList(ConstantInt.i32(affine.iv.step * affine.scale)));
+        latch.insertBeforeTerminator(next);
+        phi.addIncoming(group.start, preheader);
+        phi.addIncoming(next, latch);
+        group.phi = phi;
+
+        for (int i = 0; i < group.members.size(); i++) {
+            GepInst gep = group.members.get(i);
+            int delta = group.constants.get(i) - base;
+            Value address = phi;
+            if (delta != 0) {
+                Instruction offset = new GepInst(phi, Arrays.asList(ConstantInt.i32(delta)));
+                gep.getParent().insertBefore(offset, gep);
+                address = offset;
+            }
+            gep.replaceAllUsesWith(address);
+            eraseDead(gep);
+        }
+    }
+
+    /**
+     * 删除不再使用的地址计算，以及因此不再使用的下标计算
+     */
+    private static void eraseDead(Instruction inst) {
+        if (inst.hasUses() || !(inst instanceof GepInst || inst instanceof BinaryInst)) {
+            return;
+        }
+        List<Value> operands = new ArrayList<>(inst.getOperands());
+        inst.eraseFromParent();
+        for (Value operand : operands) {
+            if (operand instanceof Instruction && ((Instruction) operand).getParent() != null) {
+                eraseDead((Instruction) operand);
+            }
+        }
+    }
+
+    /**
+     * 线性函数判断替换：计数器只用于自增和退出判断时改为比较指针
+     *
+     * i pred bound 换成 p pred end，end = start + (bound - init) * scale。前置块检查不进入循环时
+     * 把 bound - init 清零，使得 p pred end 第一次就不成立，避免不进入循环时的差值越界。
+     * 要求指针在每次迭代都被访问，于是进入循环后 p 和 end 都在被访问的数组附近，比较不会溢出。
+     */
+    private static void replaceExitTest(InductionVariables ivs, List<Group> groups) {
+        LoopInfo.Loop loop = ivs.getLoop();
+        BasicBlock header = loop.getHeader();
+        List<BasicBlock> exiting = loop.getExitingBlocks();
+        if (exiting.size() != 1 || exiting.get(0) != header || !(header.getTerminator() instanceof BranchInst)) {
+            return;
+        }
+        BranchInst br = (BranchInst) header.getTerminator();
+        if (!(br.getCondition() instanceof IcmpInst) || br.getCondition().getUses().size() != 1) {
+            return;
+        }
+        IcmpInst cmp = (IcmpInst) br.getCondition();
+        boolean continueOnTrue = loop.contains(br.getTrueBlock());
+        IcmpInst.Predicate predicate = continueOnTrue ? cmp.getPredicate() : cmp.getPredicate().inverse();
+        InductionVariables.Basic iv = ivs.getBasic(cmp.getLhs());
+        Value bound = cmp.getRhs();
+        if (iv == null) {
+            iv = ivs.getBasic(cmp.getRhs());
+            bound = cmp.getLhs();
+            predicate = predicate.swapped();
+        }
+        if (iv == null || !ivs.isInvariant(bound) || !isOnlyCounter(iv, cmp)) {
+            return;
+        }
+
+        // 把 <= 和 >= 化为严格比较，只在常量bound加减一不溢出时进行
+        if (predicate == IcmpInst.Predicate.SLE || predicate == IcmpInst.Predicate.SGE) {
+            boolean le = predicate == IcmpInst.Predicate.SLE;
+            if (!(bound instanceof ConstantInt)
+                    || ((ConstantInt) bound).getValue() == (le ? Integer.MAX_VALUE : Integer.MIN_VALUE)) {
+                return;
+            }
+            bound = ConstantInt.i32(((ConstantInt) bound).getValue() + (le ? 1 : -1));
+            predicate = le ? IcmpInst.Predicate.SLT : IcmpInst.Predicate.SGT;
+        }
+        boolean increasing = predicate == IcmpInst.Predicate.SLT && iv.step > 0;
+        boolean decreasing = predicate == IcmpInst.Predicate.SGT && iv.step < 0;
+        if (!increasing && !decreasing) {
+            return;
+        }
+        Group group = null;
+        for (Group candidate : groups) {
+            if (candidate.affine.iv == iv && candidate.affine.scale > 0 && candidate.accessedEveryIteration) {
+                group = candidate;
+                break;
+            }
+        }
+        if (group == null) {
+            return;
+        }
+
+        BasicBlock preheader = loop.getPreheader();
+        Value init = iv.init;
+        Value distance;
+        if (init instanceof ConstantInt && bound instanceof ConstantInt) {
+            int first = ((ConstantInt) init).getValue();
+            int last = ((ConstantInt) bound).getValue();
+            long d = predicate.evaluate(first, last) ? ((long) last - first) * group.affine.scale : 0;
+            if (d != (int) d) {
+                return;
+            }
+            distance = ConstantInt.i32((int) d);
+        } else {
+            Value enters = add(preheader, new IcmpInst(predicate, init, bound));
+            Value flag = add(preheader, new CastInst(Instruction.Opcode.ZEXT, enters, IRType.I32));
+            Value mask = add(preheader, new BinaryInst(Instruction.Opcode.SUB, ConstantInt.i32(0), flag));
+            Value d = add(preheader, new BinaryInst(Instruction.Opcode.SUB, bound, init));
+            distance = add(preheader, new BinaryInst(Instruction.Opcode.AND, d, mask));
+            if (group.affine.scale != 1) {
+                distance = add(preheader, new BinaryInst(Instruction.Opcode.MUL, distance,
+                        ConstantInt.i32(group.affine.scale)));
+            }
+        }
+        Value end = add(preheader, new GepInst(group.start, Arrays.asList(distance)));
+        IcmpInst.Predicate test = continueOnTrue ? predicate : predicate.inverse();
+        Instruction replacement = new IcmpInst(test, group.phi, end);
+        header.insertBefore(replacement, cmp);
+        cmp.replaceAllUsesWith(replacement);
+        cmp.eraseFromParent();
+    }
+
+    /**
+     * 计数器除了自增和退出判断之外没有其他使用
+     */
+    private static boolean isOnlyCounter(InductionVariables.Basic iv, IcmpInst cmp) {
+        List<Instruction> chain = new ArrayList<>();
+        chain.add(iv.phi);
+        chain.addAll(iv.updates);
+        for (int i = 0; i < chain.size(); i++) {
+            Instruction next = i + 1 < chain.size() ? chain.get(i + 1) : iv.phi;
+            for (User user : chain.get(i).getUsers()) {
+                if (user != next && !(i == 0 && user == cmp)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Instruction add(BasicBlock block, Instruction inst) {
+        block.insertBeforeTerminator(inst);
+        return inst;
+    }
+}
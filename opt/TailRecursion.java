@@ -0,0 +1,259 @@
+package opt;
+
+import ir.AllocaInst;
+import ir.Argument;
+import ir.BasicBlock;
+import ir.BinaryInst;
+import ir.CallInst;
+import ir.ConstantInt;
+import ir.Function;
+import ir.GepInst;
+import ir.Instruction;
+import ir.JumpInst;
+import ir.PhiInst;
+import ir.ReturnInst;
+import ir.User;
+import ir.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 尾递归消除：把函数对自身的尾调用改为跳回函数开头的循环
+ *
+ * 原入口块成为循环头，每个形参在循环头有一个phi，取值为初次进入时的实参或尾调用的实参。
+ * 形如 return f(...) op a 的递归（op为加法或乘法）引入累加器：尾调用处把a并入累加器，
+ * 其余的返回值与累加器合并后返回。返回值经过共享的返回块的phi时，先把return复制到前驱中。
+ * 局部数组的地址可能作为实参传给递归调用，这样的函数不做变换。
+ */
+public class TailRecursion extends FunctionPass {
+    /**
+     * 一处可以改为跳转的尾调用：块末尾的 call [; op] ; ret
+     */
+    private static class TailSite {
+        final CallInst call;
+        final BinaryInst accumulate; // 没有累加时为null
+
+        TailSite(CallInst call, BinaryInst accumulate) {
+            this.call = call;
+            this.accumulate = accumulate;
+        }
+
+        /**
+         * 并入累加器的另一个操作数
+         */
+        Value operand() {
+            return accumulate.getLhs() == call ? accumulate.getRhs() : accumulate.getLhs();
+        }
+    }
+
+    @Override
+    public void run(Function function) {
+        if (hasEscapingAlloca(function)) {
+            return;
+        }
+        foldReturnsIntoPredecessors(function);
+        List<TailSite> sites = new ArrayList<>();
+        Instruction.Opcode op = null;
+        for (BasicBlock block : function.getBlocks()) {
+            if (!(block.getTerminator() instanceof ReturnInst)) {
+                continue;
+            }
+            TailSite site = match(function, block, ((ReturnInst) block.getTerminator()).getValue());
+            if (site == null) {
+                continue;
+            }
+            if (site.accumulate != null) {
+                if (op == null) {
+                    op = site.accumulate.getOpcode();
+                } else if (op != site.accumulate.getOpcode()) {
+                    continue; // 只使用一种累加运算
+                }
+            }
+            sites.add(site);
+        }
+        if (!sites.isEmpty()) {
+            eliminate(function, sites, op);
+        }
+    }
+
+    /**
+     * 局部数组的地址是否可能传给调用；改成循环后各层递归会共用同一个数组
+     */
+    private static boolean hasEscapingAlloca(Function function) {
+        for (Instruction inst : function.getEntryBlock().getInstructions()) {
+            if (inst instanceof AllocaInst && reachesCall(inst)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean reachesCall(Value pointer) {
+        for (User user : pointer.getUsers()) {
+            if (user instanceof CallInst || user instanceof GepInst && reachesCall(user)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 块末尾返回returned（void函数为null）之前是否是尾调用
+     */
+    private static TailSite match(Function function, BasicBlock block, Value returned) {
+        int n = block.size();
+        if (returned == null) {
+            if (!function.getReturnType().isVoid() || n < 2) {
+                return null;
+            }
+            Instruction last = block.get(n - 2);
+            return isSelfCall(function, last) ? new TailSite((CallInst) last, null) : null;
+        }
+        if (n < 2 || block.get(n - 2) != returned || returned.getUses().size() != 1) {
+            return null;
+        }
+        if (isSelfCall(function, returned)) {
+            return new TailSite((CallInst) returned, null);
+        }
+        if (!(returned instanceof BinaryInst) || n < 3) {
+            return null;
+        }
+        BinaryInst binary = (BinaryInst) returned;
+        if (binary.getOpcode() != Instruction.Opcode.ADD && binary.getOpcode() != Instruction.Opcode.MUL) {
+            return null;
+        }
+        Instruction call = block.get(n - 3);
+        if (!isSelfCall(function, call) || call.getUses().size() != 1) {
+            return null;
+        }
+        if ((binary.getLhs() == call) == (binary.getRhs() == call)) {
+            return null;
+        }
+        return new TailSite((CallInst) call, binary);
+    }
+
+    private static boolean isSelfCall(Function function, Value value) {
+        return value instanceof CallInst && ((CallInst) value).getCallee() == function;
+    }
+
+    /**
+     * 只有return void或者只有phi和return的共享返回块：把返回复制到以尾调用结束的前驱中
+     */
+    private static void foldReturnsIntoPredecessors(Function function) {
+        for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+            if (!(block.getTerminator() instanceof ReturnInst) || block.size() > 2) {
+                continue;
+            }
+            Value returned = ((ReturnInst) block.getTerminator()).getValue();
+            PhiInst phi = null;
+            if (block.size() == 2 && block.get(0) instanceof PhiInst && block.get(0) == returned) {
+                phi = (PhiInst) returned;
+            } else if (block.size() != 1 || returned != null) {
+                continue;
+            }
+            for (BasicBlock pred : block.getPredecessors()) {
+                if (!(pred.getTerminator() instanceof JumpInst)) {
+                    continue;
+                }
+                Value value = phi != null ? phi.getIncomingValueFor(pred) : null;
+                if (phi != null && (!(value instanceof Instruction) || ((Instruction) value).getParent() != pred
+                        || value.getUses().size() != 1)) {
+                    continue;
+                }
+                pred.getTerminator().eraseFromParent();
+                if (phi != null) {
+                    phi.removeIncomingBlock(pred);
+                }
+                pred.add(new ReturnInst(value));
+                if (match(function, pred, value) == null) {
+                    // 不是尾调用，恢复原来的跳转
+                    pred.getTerminator().eraseFromParent();
+                    pred.add(new JumpInst(block));
+                    if (phi != null) {
+                        phi.addIncoming(value, pred);
+                    }
+                }
+            }
+        }
+        Cfg.removeUnreachableBlocks(function);
+    }
+
+    private static void eliminate(Function function, List<TailSite> sites, Instruction.Opcode op) {
+        BasicBlock header = function.getEntryBlock();
+        BasicBlock entry = new BasicBlock(function);
+        function.addBlock(entry);
+        List<BasicBlock> order = new ArrayList<>(function.getBlocks());
+        order.remove(entry);
+        order.add(0, entry);
+        function.reorderBlocks(order);
+        for (Instruction inst : new ArrayList<>(header.getInstructions())) {
+            if (inst instanceof AllocaInst) {
+                header.remove(inst);
+                entry.add(inst);
+            }
+        }
+        entry.add(new JumpInst(header));
+
+        List<PhiInst> params = new ArrayList<>();
+        for (Argument arg : function.getArguments()) {
+            PhiInst phi = new PhiInst(arg.getType());
+            header.insert(params.size(), phi);
+            arg.replaceAllUsesWith(phi);
+            phi.addIncoming(arg, entry);
+            params.add(phi);
+        }
+        PhiInst acc = null;
+        if (op != null) {
+            acc = new PhiInst(function.getReturnType());
+            header.insert(params.size(), acc);
+            int identity = op == Instruction.Opcode.ADD ? 0 : 1;
+            acc.addIncoming(ConstantInt.i32(identity), entry);
+            for (BasicBlock block : function.getBlocks()) {
+                Instruction term = block.getTerminator();
+                if (!(term instanceof ReturnInst) || isSite(sites, block)) {
+                    continue;
+                }
+                Value value = ((ReturnInst) term).getValue();
+                if (value instanceof ConstantInt && ((ConstantInt) value).getValue() == identity) {
+                    term.setOperand(0, acc);
+                } else {
+                    BinaryInst combined = new BinaryInst(op, acc, value);
+                    block.insertBeforeTerminator(combined);
+                    term.setOperand(0, combined);
+                }
+            }
+        }
+
+        for (TailSite site : sites) {
+            BasicBlock block = site.call.getParent();
+            for (int i = 0; i < params.size(); i++) {
+                params.get(i).addIncoming(site.call.getArg(i), block);
+            }
+            if (acc != null) {
+                Value next = acc;
+                if (site.accumulate != null) {
+                    BinaryInst combined = new BinaryInst(op, acc, site.operand());
+                    block.insertBefore(combined, site.call);
+                    next = combined;
+                }
+                acc.addIncoming(next, block);
+            }
+            block.getTerminator().eraseFromParent();
+            if (site.accumulate != null) {
+                site.accumulate.eraseFromParent();
+            }
+            site.call.eraseFromParent();
+            block.add(new JumpInst(header));
+        }
+    }
+
+    private static boolean isSite(List<TailSite> sites, BasicBlock block) {
+        for (TailSite site : sites) {
+            if (site.call.getParent() == block) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
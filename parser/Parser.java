@@ -5,6 +5,9 @@ import utils.SimpleErrorHandler;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 /**
  * 语法分析器，使用递归下降分析法实现
@@ -16,6 +19,20 @@ public class Parser {
     private List<String> output;         // 输出结果
     private int recursionDepth = 0;
     private static final int MAX_RECURSION_DEPTH = 1000; // 设置合理的最大递归深度
+    private List<SimpleErrorHandler.ErrorRecord> errorBuffer; // 错误缓冲区，为null时直接写入SimpleErrorHandler
+    private TokenSource tokenSource;     // 流式输入时尚未取完的Token来源
+    private Consumer<String> outputListener; // 每产生一行输出时通知，用于流式写出
+
+    /**
+     * 流式输入的Token来源，语法分析需要更多Token时从中按批取出
+     */
+    public interface TokenSource {
+        /**
+         * 取下一批Token，没有可用的Token时阻塞等待
+         * @return 下一批Token，输入结束时返回null
+         */
+        List<Token> nextBatch();
+    }
 
     public Parser(List<Token> tokens) {
         this.tokens = tokens;
@@ -26,6 +43,71 @@ public class Parser {
         }
     }
 
+    /**
+     * 创建从流中读取Token的语法分析器，词法分析可以与语法分析同时进行
+     * @param tokenSource Token来源
+     */
+    public Parser(TokenSource tokenSource) {
+        this.tokens = new ArrayList<>();
+        this.tokenSource = tokenSource;
+        this.position = 0;
+        this.output = new ArrayList<>();
+    }
+
+    /**
+     * 判断给定位置是否有Token；流式输入时会等待直到该位置的Token到达或输入结束
+     */
+    private boolean hasToken(int index) {
+        while (index >= tokens.size() && tokenSource != null) {
+            List<Token> batch = tokenSource.nextBatch();
+            if (batch == null) {
+                tokenSource = null;
+            } else {
+                tokens.addAll(batch);
+            }
+        }
+        return index < tokens.size();
+    }
+
+    /**
+     * 获取分析过的全部Token；流式输入时在分析结束后才完整
+     */
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * 设置错误缓冲区，错误不再直接写入SimpleErrorHandler
+     */
+    public void setErrorBuffer(List<SimpleErrorHandler.ErrorRecord> errorBuffer) {
+        this.errorBuffer = errorBuffer;
+    }
+
+    /**
+     * 设置输出监听器，每产生一行输出时调用
+     */
+    public void setOutputListener(Consumer<String> outputListener) {
+        this.outputListener = outputListener;
+    }
+
+    private void emitOutput(String line) {
+        output.add(line);
+        if (outputListener != null) {
+            outputListener.accept(line);
+        }
+    }
+
+    /**
+     * 报告一个语法错误，写入当前的错误缓冲区或全局错误表
+     */
+    private void reportError(int line, String code) {
+        if (errorBuffer != null) {
+            errorBuffer.add(new SimpleErrorHandler.ErrorRecord(line, code));
+        } else {
+            SimpleErrorHandler.addError(line, code);
+        }
+    }
+
     /**
      * 获取语法分析的输出结果
      */
@@ -39,6 +121,9 @@ public class Parser {
     public void parse() {
         try {
             recursionDepth = 0; // 重置递归深度
+            if (currentToken == null && hasToken(0)) {
+                currentToken = tokens.get(0);
+            }
             // 开始递归下降分析
             compUnit();
         } catch (Exception e) {
@@ -47,11 +132,155 @@ public class Parser {
             
             // 尝试恢复到分析结束
             System.err.println("Attempting to recover from error...");
+            hasToken(Integer.MAX_VALUE); // 流式输入时先取完剩余的Token
             position = tokens.size() - 1; // 设置到最后一个token
             if (position >= 0) {
                 currentToken = tokens.get(position);
             }
         }
+        hasToken(Integer.MAX_VALUE); // 流式输入时取完剩余的Token，供后续阶段使用
+    }
+
+    /**
+     * 并行语法分析：按大括号匹配把Token流切分为全局声明、各FuncDef和MainFuncDef几段，
+     * 每段由独立的Parser在自己的Token子序列上分析，输出按顺序拼接，与顺序分析的结果相同。
+     * 切分失败、某段没有恰好分析到段尾或者出现语法错误时，退回顺序分析，
+     * 以保证错误输出与顺序分析一致。
+     * @param pool 执行各段分析的线程池
+     */
+    public void parseParallel(ForkJoinPool pool) {
+        List<RangeTask> ranges = splitTopLevel();
+        boolean consistent = ranges != null;
+        if (consistent) {
+            for (RangeTask range : ranges) {
+                pool.execute(range);
+            }
+            for (RangeTask range : ranges) {
+                range.join();
+                consistent &= range.consistent;
+            }
+        }
+        if (!consistent) {
+            parse();
+            return;
+        }
+        for (RangeTask range : ranges) {
+            output.addAll(range.output);
+        }
+        addSyntaxComponent("CompUnit");
+        position = tokens.size();
+        currentToken = tokens.isEmpty() ? null : tokens.get(tokens.size() - 1);
+    }
+
+    // 顶层成分的种类
+    private enum RangeKind {
+        DECLS, FUNC_DEF, MAIN_FUNC_DEF
+    }
+
+    /**
+     * 分析一段顶层成分的任务
+     */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RangeKind kind;
+        private final List<Token> rangeTokens;
+        private List<String> output;
+        private boolean consistent; // 是否恰好分析到段尾且没有错误
+
+        RangeTask(RangeKind kind, List<Token> rangeTokens) {
+            this.kind = kind;
+            this.rangeTokens = rangeTokens;
+        }
+
+        @Override
+        protected void compute() {
+            Parser parser = new Parser(rangeTokens);
+            parser.errorBuffer = new ArrayList<>();
+            try {
+                if (kind == RangeKind.DECLS) {
+                    while (parser.isDecl()) {
+                        parser.decl();
+                    }
+                } else if (kind == RangeKind.FUNC_DEF) {
+                    parser.parseFuncDef();
+                } else {
+                    parser.mainFuncDef();
+                }
+                consistent = parser.position == rangeTokens.size() && parser.errorBuffer.isEmpty();
+            } catch (RuntimeException e) {
+                consistent = false;
+            }
+            output = parser.output;
+        }
+    }
+
+    /**
+     * 用大括号匹配找出顶层各成分的Token范围
+     * @return 按顺序排列的各段任务；结构不符合 {Decl} {FuncDef} MainFuncDef 时返回null
+     */
+    private List<RangeTask> splitTopLevel() {
+        List<RangeTask> ranges = new ArrayList<>();
+        int start = 0;
+        while (start < tokens.size() && !isFuncDefStart(start)) {
+            start++;
+        }
+        if (start > 0) {
+            ranges.add(new RangeTask(RangeKind.DECLS, tokens.subList(0, start)));
+        }
+        while (start < tokens.size()) {
+            if (!isFuncDefStart(start)) {
+                return null;
+            }
+            boolean isMain = tokens.get(start).getType() == Token.Type.INTTK &&
+                             tokens.get(start + 1).getType() == Token.Type.MAINTK;
+            int end = start;
+            while (end < tokens.size() && tokens.get(end).getType() != Token.Type.LBRACE) {
+                end++;
+            }
+            int depth = 0;
+            for (; end < tokens.size(); end++) {
+                Token.Type type = tokens.get(end).getType();
+                if (type == Token.Type.LBRACE) {
+                    depth++;
+                } else if (type == Token.Type.RBRACE && --depth == 0) {
+                    break;
+                }
+            }
+            if (end >= tokens.size()) {
+                return null;
+            }
+            ranges.add(new RangeTask(isMain ? RangeKind.MAIN_FUNC_DEF : RangeKind.FUNC_DEF,
+                                     tokens.subList(start, end + 1)));
+            start = end + 1;
+            if (isMain) {
+                break;
+            }
+        }
+        // 必须以MainFuncDef结束且之后没有其他Token
+        if (ranges.isEmpty() || ranges.get(ranges.size() - 1).kind != RangeKind.MAIN_FUNC_DEF
+                || start != tokens.size()) {
+            return null;
+        }
+        return ranges;
+    }
+
+    /**
+     * 判断给定位置是否是FuncDef或MainFuncDef的开始
+     */
+    private boolean isFuncDefStart(int index) {
+        Token.Type type = tokens.get(index).getType();
+        if (index + 1 >= tokens.size()) {
+            return false;
+        }
+        if (type == Token.Type.VOIDTK) {
+            return true;
+        }
+        Token.Type next = tokens.get(index + 1).getType();
+        if (type == Token.Type.INTTK && next == Token.Type.MAINTK) {
+            return true;
+        }
+        return (type == Token.Type.INTTK || type == Token.Type.CHARTK) && next == Token.Type.IDENFR &&
+               index + 2 < tokens.size() && tokens.get(index + 2).getType() == Token.Type.LPARENT;
     }
 
     /**
@@ -59,7 +288,7 @@ public class Parser {
      */
     private void advance() {
         position++;
-        if (position < tokens.size()) {
+        if (hasToken(position)) {
             currentToken = tokens.get(position);
         }
     }
@@ -92,7 +321,7 @@ public class Parser {
     private boolean match(Token.Type type) {
         if (currentToken.getType() == type) {
             // 先输出Token信息
-            output.add(currentToken.toString());
+            emitOutput(currentToken.toString());
             advance();
             return true;
         } else {
@@ -114,12 +343,12 @@ public class Parser {
         }
         
         // 检查当前Token是否为null
-        if (currentToken == null && position >= tokens.size()) {
+        if (currentToken == null && !hasToken(position)) {
             // 已经到达Token流末尾，仍然添加语法成分，但记录警告
             System.err.println("Warning: Adding syntax component with no more tokens: " + syntaxComponent);
         }
         
-        output.add("<" + syntaxComponent + ">");
+        emitOutput("<" + syntaxComponent + ">");
     }
 
     /**
@@ -171,12 +400,12 @@ public class Parser {
         }
         if (check(Token.Type.INTTK) || check(Token.Type.CHARTK)) {
             // 向前看一个Token，排除函数定义的情况
-            if (position + 1 < tokens.size()) {
+            if (hasToken(position + 1)) {
                 Token nextToken = tokens.get(position + 1);
                 if (nextToken.getType() == Token.Type.MAINTK) {
                     return false; // 主函数定义
                 }
-                if (position + 2 < tokens.size() && nextToken.getType() == Token.Type.IDENFR) {
+                if (hasToken(position + 2) && nextToken.getType() == Token.Type.IDENFR) {
                     Token nextNextToken = tokens.get(position + 2);
                     if (nextNextToken.getType() == Token.Type.LPARENT) {
                         return false; // 函数定义
@@ -195,10 +424,10 @@ public class Parser {
         if (check(Token.Type.VOIDTK)) {
             return true;
         }
-        if ((check(Token.Type.INTTK) || check(Token.Type.CHARTK)) && position + 1 < tokens.size()) {
+        if ((check(Token.Type.INTTK) || check(Token.Type.CHARTK)) && hasToken(position + 1)) {
             Token nextToken = tokens.get(position + 1);
             if (nextToken.getType() == Token.Type.IDENFR && 
-                position + 2 < tokens.size() && 
+                hasToken(position + 2) && 
                 tokens.get(position + 2).getType() == Token.Type.LPARENT) {
                 return true;
             }
@@ -242,7 +471,7 @@ public class Parser {
         if (currentToken.getType() != Token.Type.SEMICN) {
             // 错误：缺少分号，错误类型i
             // 对于第一个常量定义使用const关键字行号，其他情况使用declLineNumber
-            SimpleErrorHandler.addError(constLineNumber, "i");
+            reportError(constLineNumber, "i");
         } else {
             match(Token.Type.SEMICN);
         }
@@ -276,7 +505,7 @@ public class Parser {
                 // 检查括号是否配对 - 如果下一个token是等号，说明缺少右中括号
                 if (check(Token.Type.ASSIGN)) {
                     // 错误：缺少右中括号，错误类型k
-                    SimpleErrorHandler.addError(constExpLineNumber, "k");
+                    reportError(constExpLineNumber, "k");
                 } else {
                     try {
                         constExp();
@@ -284,7 +513,7 @@ public class Parser {
                         // 捕获可能的递归深度异常，继续处理
                         System.err.println("Error in constExp: " + e.getMessage());
                         // 跳过直到遇到右中括号或等号
-                        while (position < tokens.size() && 
+                        while (hasToken(position) && 
                               !check(Token.Type.RBRACK) && 
                               !check(Token.Type.ASSIGN) &&
                               !check(Token.Type.SEMICN)) {
@@ -295,7 +524,7 @@ public class Parser {
                     // 检查右中括号
                     if (!check(Token.Type.RBRACK)) {
                         // 错误：缺少右中括号，错误类型k
-                        SimpleErrorHandler.addError(constExpLineNumber, "k");
+                        reportError(constExpLineNumber, "k");
                     } else {
                         match(Token.Type.RBRACK);
                     }
@@ -317,7 +546,7 @@ public class Parser {
                 // 捕获可能的递归深度异常，继续处理
                 System.err.println("Error in constInitVal: " + e.getMessage());
                 // 跳过直到分号
-                while (position < tokens.size() && !check(Token.Type.SEMICN)) {
+                while (hasToken(position) && !check(Token.Type.SEMICN)) {
                     advance();
                 }
             }
@@ -377,7 +606,7 @@ public class Parser {
         if (currentToken.getType() != Token.Type.SEMICN) {
             // 错误：缺少分号，错误类型i
             // 对变量声明使用类型关键字行号
-            SimpleErrorHandler.addError(typeLineNumber, "i");
+            reportError(typeLineNumber, "i");
         } else {
             match(Token.Type.SEMICN);
         }
@@ -400,7 +629,7 @@ public class Parser {
                 // 检查括号是否配对 - 如果下一个token是等号，说明缺少右中括号
                 if (check(Token.Type.ASSIGN)) {
                     // 错误：缺少右中括号，错误类型k
-                    SimpleErrorHandler.addError(constExpLineNumber, "k");
+                    reportError(constExpLineNumber, "k");
                 } else {
                     try {
                         constExp();
@@ -408,7 +637,7 @@ public class Parser {
                         // 捕获可能的递归深度异常，继续处理
                         System.err.println("Error in constExp within varDef: " + e.getMessage());
                         // 跳过直到遇到右中括号或等号
-                        while (position < tokens.size() && 
+                        while (hasToken(position) && 
                               !check(Token.Type.RBRACK) && 
                               !check(Token.Type.ASSIGN) &&
                               !check(Token.Type.SEMICN)) {
@@ -419,7 +648,7 @@ public class Parser {
                     // 检查右中括号
                     if (!check(Token.Type.RBRACK)) {
                         // 错误：缺少右中括号，错误类型k
-                        SimpleErrorHandler.addError(constExpLineNumber, "k");
+                        reportError(constExpLineNumber, "k");
                     } else {
                         match(Token.Type.RBRACK);
                     }
@@ -434,7 +663,7 @@ public class Parser {
                     // 捕获可能的递归深度异常，继续处理
                     System.err.println("Error in initVal: " + e.getMessage());
                     // 跳过直到分号
-                    while (position < tokens.size() && !check(Token.Type.SEMICN)) {
+                    while (hasToken(position) && !check(Token.Type.SEMICN)) {
                         advance();
                     }
                 }
@@ -494,7 +723,7 @@ public class Parser {
             // 检查右括号
             if (currentToken == null || currentToken.getType() != Token.Type.RPARENT) {
                 // 错误：缺少右括号，错误类型j
-                SimpleErrorHandler.addError(leftParenLine, "j");
+                reportError(leftParenLine, "j");
             } else {
                 match(Token.Type.RPARENT);
             }
@@ -600,7 +829,7 @@ public class Parser {
             // 检查右括号，如果找不到右括号则报告错误
             if (currentToken == null || currentToken.getType() != Token.Type.RPARENT) {
                 // 错误：缺少右括号，错误类型j
-                SimpleErrorHandler.addError(lineNumber, "j");
+                reportError(lineNumber, "j");
             } else {
                 match(Token.Type.RPARENT);
             }
@@ -651,7 +880,7 @@ public class Parser {
                 // 检查右中括号
                 if (currentToken == null || currentToken.getType() != Token.Type.RBRACK) {
                     // 错误：缺少右中括号，错误类型k
-                    SimpleErrorHandler.addError(lineNumber, "k");
+                    reportError(lineNumber, "k");
                 } else {
                     match(Token.Type.RBRACK);
                 }
@@ -714,7 +943,7 @@ public class Parser {
      */
     private boolean isArrayAccess() {
         // 已经确认当前是标识符，检查后面是否是 '['
-        return position + 1 < tokens.size() && tokens.get(position + 1).getType() == Token.Type.LBRACK;
+        return hasToken(position + 1) && tokens.get(position + 1).getType() == Token.Type.LBRACK;
     }
 
     /**
@@ -733,12 +962,12 @@ public class Parser {
             int pos = position + 1;
             
             // 如果是数组访问，跳过 [ Exp ]
-            if (pos < tokens.size() && tokens.get(pos).getType() == Token.Type.LBRACK) {
+            if (hasToken(pos) && tokens.get(pos).getType() == Token.Type.LBRACK) {
                 pos++; // 跳过 '['
                 
                 // 跳过表达式，直到找到 ']' 或 '=' 或 ';'
                 // 注意：这里处理了缺少右中括号的情况
-                while (pos < tokens.size()) {
+                while (hasToken(pos)) {
                     Token.Type tokenType = tokens.get(pos).getType();
                     if (tokenType == Token.Type.RBRACK) {
                         pos++; // 找到了右中括号，前进一位
@@ -752,7 +981,7 @@ public class Parser {
             }
             
             // 检查下一个token是否是赋值符号
-            return pos < tokens.size() && tokens.get(pos).getType() == Token.Type.ASSIGN;
+            return hasToken(pos) && tokens.get(pos).getType() == Token.Type.ASSIGN;
         } finally {
             // 确保不修改原始位置
             position = startPosition;
@@ -786,7 +1015,7 @@ public class Parser {
             // 检查右括号
             if (currentToken.getType() != Token.Type.RPARENT) {
                 // 错误：缺少右括号，错误类型j
-                SimpleErrorHandler.addError(condLineNumber, "j");
+                reportError(condLineNumber, "j");
             } else {
                 match(Token.Type.RPARENT);
             }
@@ -826,7 +1055,7 @@ public class Parser {
             // 检查分号
             if (currentToken.getType() != Token.Type.SEMICN) {
                 // 错误：缺少分号，错误类型i
-                SimpleErrorHandler.addError(breakLineNumber, "i");
+                reportError(breakLineNumber, "i");
             } else {
                 match(Token.Type.SEMICN);
             }
@@ -839,7 +1068,7 @@ public class Parser {
             // 检查分号
             if (currentToken.getType() != Token.Type.SEMICN) {
                 // 错误：缺少分号，错误类型i
-                SimpleErrorHandler.addError(continueLineNumber, "i");
+                reportError(continueLineNumber, "i");
             } else {
                 match(Token.Type.SEMICN);
             }
@@ -856,7 +1085,7 @@ public class Parser {
             // 检查分号
             if (currentToken.getType() != Token.Type.SEMICN) {
                 // 错误：缺少分号，错误类型i
-                SimpleErrorHandler.addError(returnLineNumber, "i");
+                reportError(returnLineNumber, "i");
             } else {
                 match(Token.Type.SEMICN);
             }
@@ -876,7 +1105,7 @@ public class Parser {
             // 检查右括号
             if (currentToken.getType() != Token.Type.RPARENT) {
                 // 错误：缺少右括号，错误类型j
-                SimpleErrorHandler.addError(printfLineNumber, "j");
+                reportError(printfLineNumber, "j");
             } else {
                 match(Token.Type.RPARENT);
             }
@@ -884,7 +1113,7 @@ public class Parser {
             // 处理分号 ';'
             if (currentToken.getType() != Token.Type.SEMICN) {
                 // 错误：缺少分号，错误类型i
-                SimpleErrorHandler.addError(printfLineNumber, "i");
+                reportError(printfLineNumber, "i");
             } else {
                 match(Token.Type.SEMICN);
             }
@@ -906,7 +1135,7 @@ public class Parser {
                 // 检查右括号
                 if (currentToken.getType() != Token.Type.RPARENT) {
                     // 错误：缺少右括号，错误类型j
-                    SimpleErrorHandler.addError(lvalLineNumber, "j");
+                    reportError(lvalLineNumber, "j");
                 } else {
                     match(Token.Type.RPARENT);
                 }
@@ -914,7 +1143,7 @@ public class Parser {
                 // 检查分号
                 if (currentToken.getType() != Token.Type.SEMICN) {
                     // 错误：缺少分号，错误类型i
-                    SimpleErrorHandler.addError(lvalLineNumber, "i");
+                    reportError(lvalLineNumber, "i");
                 } else {
                     match(Token.Type.SEMICN);
                 }
@@ -926,7 +1155,7 @@ public class Parser {
                 // 检查右括号
                 if (currentToken.getType() != Token.Type.RPARENT) {
                     // 错误：缺少右括号，错误类型j
-                    SimpleErrorHandler.addError(lvalLineNumber, "j");
+                    reportError(lvalLineNumber, "j");
                 } else {
                     match(Token.Type.RPARENT);
                 }
@@ -934,7 +1163,7 @@ public class Parser {
                 // 检查分号
                 if (currentToken.getType() != Token.Type.SEMICN) {
                     // 错误：缺少分号，错误类型i
-                    SimpleErrorHandler.addError(lvalLineNumber, "i");
+                    reportError(lvalLineNumber, "i");
                 } else {
                     match(Token.Type.SEMICN);
                 }
@@ -945,7 +1174,7 @@ public class Parser {
                 // 检查分号
                 if (currentToken.getType() != Token.Type.SEMICN) {
                     // 错误：缺少分号，错误类型i
-                    SimpleErrorHandler.addError(lvalLineNumber, "i");
+                    reportError(lvalLineNumber, "i");
                 } else {
                     match(Token.Type.SEMICN);
                 }
@@ -960,7 +1189,7 @@ public class Parser {
                 // 检查分号
                 if (currentToken.getType() != Token.Type.SEMICN) {
                     // 错误：缺少分号，错误类型i
-                    SimpleErrorHandler.addError(expLineNumber, "i");
+                    reportError(expLineNumber, "i");
                 } else {
                     match(Token.Type.SEMICN);
                 }
@@ -1015,7 +1244,7 @@ public class Parser {
     private boolean isLVal() {
         // Check if it's an identifier that's not followed by a left parenthesis (to exclude function calls)
         return check(Token.Type.IDENFR) && 
-               (position + 1 >= tokens.size() || 
+               (!hasToken(position + 1) || 
                 tokens.get(position + 1).getType() != Token.Type.LPARENT);
     }
 
@@ -1034,7 +1263,7 @@ public class Parser {
                 // 检查赋值情况 - 如果直接遇到赋值符号，说明缺少右中括号和表达式
                 if (check(Token.Type.ASSIGN)) {
                     // 直接报告错误，跳过表达式解析
-                    SimpleErrorHandler.addError(expLineNumber, "k");
+                    reportError(expLineNumber, "k");
                 } else if (isValidExpStart()) {
                     // 正常解析表达式
                     try {
@@ -1043,7 +1272,7 @@ public class Parser {
                         // 防止递归解析异常导致崩溃
                         System.err.println("Error parsing expression in lVal: " + e.getMessage());
                         // 跳过直到找到右中括号或分号或赋值符号
-                        while (position < tokens.size() && 
+                        while (hasToken(position) && 
                               !check(Token.Type.RBRACK) && 
                               !check(Token.Type.SEMICN) && 
                               !check(Token.Type.ASSIGN) &&
@@ -1055,7 +1284,7 @@ public class Parser {
                     // 表达式无效，可能是错误的语法，尝试恢复
                     System.err.println("Invalid expression start in array access");
                     // 跳过直到找到右中括号或分号或赋值符号
-                    while (position < tokens.size() && 
+                    while (hasToken(position) && 
                           !check(Token.Type.RBRACK) && 
                           !check(Token.Type.SEMICN) && 
                           !check(Token.Type.ASSIGN) &&
@@ -1067,7 +1296,7 @@ public class Parser {
                 // 检查右中括号
                 if (!check(Token.Type.RBRACK)) {
                     // 错误：缺少右中括号，错误类型k
-                    SimpleErrorHandler.addError(expLineNumber, "k");
+                    reportError(expLineNumber, "k");
                     // 不尝试匹配缺失的右中括号，继续解析
                 } else {
                     match(Token.Type.RBRACK);
@@ -1083,7 +1312,7 @@ public class Parser {
      * 检查当前是否是有效的表达式开始
      */
     private boolean isValidExpStart() {
-        if (position >= tokens.size()) return false;
+        if (!hasToken(position)) return false;
         
         Token.Type type = currentToken.getType();
         return type == Token.Type.PLUS || type == Token.Type.MINU || 
@@ -1104,7 +1333,7 @@ public class Parser {
             // 检查右括号
             if (currentToken.getType() != Token.Type.RPARENT) {
                 // 错误：缺少右括号，错误类型j
-                SimpleErrorHandler.addError(expLineNumber, "j");
+                reportError(expLineNumber, "j");
             } else {
                 match(Token.Type.RPARENT);
             }
@@ -1139,7 +1368,7 @@ public class Parser {
      * UnaryExp -> PrimaryExp | Ident '(' [FuncRParams] ')' | UnaryOp UnaryExp
      */
     private void unaryExp() {
-        if (check(Token.Type.IDENFR) && position + 1 < tokens.size() && 
+        if (check(Token.Type.IDENFR) && hasToken(position + 1) && 
             tokens.get(position + 1).getType() == Token.Type.LPARENT) {
             // This is a function call - do not create an LVal
             match(Token.Type.IDENFR);
@@ -1153,7 +1382,7 @@ public class Parser {
             // 检查右括号
             if (currentToken.getType() != Token.Type.RPARENT) {
                 // 错误：缺少右括号，错误类型j
-                SimpleErrorHandler.addError(paramsLineNumber, "j");
+                reportError(paramsLineNumber, "j");
             } else {
                 match(Token.Type.RPARENT);
             }
@@ -1302,7 +1531,7 @@ public class Parser {
                           (currentToken != null ? currentToken.toString() : "null"));
         
         int startPosition = position;
-        while (position < tokens.size() && 
+        while (hasToken(position) && 
                !check(Token.Type.SEMICN) && 
                !check(Token.Type.RPARENT) && 
                !check(Token.Type.RBRACK) && 
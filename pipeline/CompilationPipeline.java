@@ -0,0 +1,170 @@
+package pipeline;
+
+import lexer.Lexer;
+import lexer.Token;
+import parser.Parser;
+import utils.SimpleErrorHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 流水线方式执行词法分析和语法分析
+ * 词法分析线程把Token按批放入环形缓冲区，语法分析在当前线程中边取边分析；
+ * lexer.txt和parser.txt分别由独立的输出线程写出，文件写入不再阻塞分析。
+ * 输出文件和错误记录与依次执行各阶段时相同。
+ */
+public class CompilationPipeline {
+    private static final int TOKEN_BATCH_SIZE = 256;   // 每批Token的数量
+    private static final int OUTPUT_BATCH_SIZE = 512;  // 每批语法分析输出的行数
+    private static final int QUEUE_CAPACITY = 64;      // 环形缓冲区容纳的批数
+
+    private final String source;
+
+    public CompilationPipeline(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 把元素攒成批再交给下游
+     */
+    private static class Batcher<T> implements Consumer<T> {
+        private final int batchSize;
+        private final Consumer<List<T>> sink;
+        private List<T> batch;
+
+        Batcher(int batchSize, Consumer<List<T>> sink) {
+            this.batchSize = batchSize;
+            this.sink = sink;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        @Override
+        public void accept(T item) {
+            batch.add(item);
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    /**
+     * 运行流水线
+     * @param lexerOutputFile 词法分析输出文件，没有词法错误时写出
+     * @param parserOutputFile 语法分析输出文件，没有错误时写出
+     * @return 全部Token，供语义分析使用
+     * @throws IOException 如果输出文件写入错误
+     */
+    public List<Token> run(String lexerOutputFile, String parserOutputFile) throws IOException {
+        SpscRingBuffer<List<Token>> tokenQueue = new SpscRingBuffer<>(QUEUE_CAPACITY);
+        SpscRingBuffer<List<Token>> lexerRecords = new SpscRingBuffer<>(QUEUE_CAPACITY);
+        SpscRingBuffer<List<String>> parserRecords = new SpscRingBuffer<>(QUEUE_CAPACITY);
+        List<SimpleErrorHandler.ErrorRecord> lexerErrors = new ArrayList<>();
+        List<SimpleErrorHandler.ErrorRecord> parserErrors = new ArrayList<>();
+        Throwable[] lexerFailure = new Throwable[1];
+
+        RecordWriter<Token> lexerWriter = new RecordWriter<>(lexerRecords, lexerOutputFile);
+        RecordWriter<String> parserWriter = new RecordWriter<>(parserRecords, parserOutputFile);
+        Thread lexerWriterThread = new Thread(lexerWriter, "lexer-writer");
+        Thread parserWriterThread = new Thread(parserWriter, "parser-writer");
+        // 后台线程：某个阶段失败时不会让进程无法退出
+        lexerWriterThread.setDaemon(true);
+        parserWriterThread.setDaemon(true);
+        lexerWriterThread.start();
+        parserWriterThread.start();
+
+        // 词法分析线程：同一批Token同时交给语法分析和lexer.txt的输出线程
+        Thread lexerThread = new Thread(() -> {
+            Batcher<Token> batcher = new Batcher<>(TOKEN_BATCH_SIZE, batch -> {
+                tokenQueue.put(batch);
+                lexerRecords.put(batch);
+            });
+            try {
+                Lexer lexer = new Lexer(source);
+                lexer.setErrorBuffer(lexerErrors);
+                lexer.setTokenListener(batcher);
+                lexer.tokenize();
+                batcher.flush();
+            } catch (Throwable e) {
+                lexerFailure[0] = e;
+            } finally {
+                tokenQueue.close();
+                lexerRecords.close();
+            }
+        }, "lexer");
+        lexerThread.setDaemon(true);
+        lexerThread.start();
+
+        Parser parser = new Parser(tokenQueue::take);
+        parser.setErrorBuffer(parserErrors);
+        Batcher<String> outputBatcher = new Batcher<>(OUTPUT_BATCH_SIZE, parserRecords::put);
+        parser.setOutputListener(outputBatcher);
+        try {
+            parser.parse();
+            outputBatcher.flush();
+        } catch (Throwable e) {
+            // 语法分析异常终止后不再取Token，取消缓冲区让词法分析线程退出
+            tokenQueue.cancel();
+            parserRecords.close();
+            join(lexerThread);
+            join(lexerWriterThread);
+            join(parserWriterThread);
+            discard(lexerWriter, e);
+            discard(parserWriter, e);
+            throw e;
+        }
+        parserRecords.close();
+
+        join(lexerThread);
+        join(lexerWriterThread);
+        join(parserWriterThread);
+        if (lexerFailure[0] != null) {
+            RuntimeException failure = new RuntimeException("Lexer thread failed", lexerFailure[0]);
+            discard(lexerWriter, failure);
+            discard(parserWriter, failure);
+            throw failure;
+        }
+
+        // 错误按依次执行时的顺序记录：先词法错误，后语法错误
+        SimpleErrorHandler.addErrors(lexerErrors);
+        lexerWriter.finish(!SimpleErrorHandler.hasErrors());
+        SimpleErrorHandler.addErrors(parserErrors);
+        parserWriter.finish(!SimpleErrorHandler.hasErrors());
+        return parser.getTokens();
+    }
+
+    /**
+     * 某个阶段失败后丢弃输出；输出线程自身的异常附加到原来的异常上，不替换它
+     */
+    private static void discard(RecordWriter<?> writer, Throwable cause) {
+        try {
+            writer.finish(false);
+        } catch (IOException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
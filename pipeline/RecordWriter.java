@@ -0,0 +1,72 @@
+package pipeline;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * 输出线程：从环形缓冲区中取出一批批记录，每条记录写成一行
+ * 先写入临时文件，由调用者在知道是否有错误后决定提交为目标文件还是丢弃
+ * @param <T> 记录类型，按toString()输出
+ */
+public class RecordWriter<T> implements Runnable {
+    private final SpscRingBuffer<List<T>> queue;
+    private final Path target;
+    private final Path temporary;
+    private Throwable failure; // 输出线程异常终止的原因
+
+    /**
+     * @param queue 记录批次的来源
+     * @param filePath 目标文件路径
+     */
+    public RecordWriter(SpscRingBuffer<List<T>> queue, String filePath) {
+        this.queue = queue;
+        this.target = Paths.get(filePath);
+        this.temporary = Paths.get(filePath + ".part");
+    }
+
+    @Override
+    public void run() {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temporary.toFile()))) {
+            List<T> batch;
+            while ((batch = queue.take()) != null) {
+                for (T record : batch) {
+                    writer.write(record.toString());
+                    writer.newLine();
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+            // 任何异常之后都继续取完队列，避免生产者因缓冲区满而阻塞
+            while (queue.take() != null) {
+                // 丢弃
+            }
+        }
+    }
+
+    /**
+     * 在输出线程结束后调用：把临时文件提交为目标文件，或者删除临时文件
+     * @param keep 是否保留输出
+     * @throws IOException 如果写入或移动文件出错
+     * @throws RuntimeException 如果输出线程因其他异常终止，原因为该异常
+     */
+    public void finish(boolean keep) throws IOException {
+        if (failure != null) {
+            Files.deleteIfExists(temporary);
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw new RuntimeException("Writer thread failed", failure);
+        }
+        if (keep) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package pipeline;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 有界的单生产者单消费者环形缓冲区
+ * 生产者只写tail，消费者只写head，不需要加锁；缓冲区满或空时先自旋再短暂挂起
+ * 消费者异常退出时取消缓冲区，正在等待空位的生产者随即抛出异常，不会永远等下去
+ * @param <T> 元素类型
+ */
+public class SpscRingBuffer<T> {
+    private static final int SPIN_LIMIT = 100; // 挂起前的自旋次数
+
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // 下一个要读的位置，只由消费者推进
+    private final AtomicLong tail = new AtomicLong(); // 下一个要写的位置，只由生产者推进
+    private volatile boolean closed = false;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public SpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 放入一个元素，缓冲区满时等待。只能由生产者线程调用
+     * @throws CancellationException 如果缓冲区已被消费者取消
+     */
+    public void put(T item) {
+        long t = tail.get();
+        int idle = 0;
+        while (t - head.get() == slots.length) {
+            if (cancelled) {
+                throw new CancellationException("Consumer stopped");
+            }
+            idle = backOff(idle);
+        }
+        slots[(int) (t & mask)] = item;
+        tail.lazySet(t + 1);
+    }
+
+    /**
+     * 取出一个元素，缓冲区空时等待。只能由消费者线程调用
+     * @return 取出的元素；生产者已关闭且缓冲区为空时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        long h = head.get();
+        int idle = 0;
+        while (h == tail.get()) {
+            if (closed && h == tail.get()) {
+                return null;
+            }
+            idle = backOff(idle);
+        }
+        int index = (int) (h & mask);
+        T item = (T) slots[index];
+        slots[index] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    /**
+     * 生产者结束，消费者取完剩余元素后take返回null
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * 消费者不再取元素，之后生产者在缓冲区满时不再等待而是抛出异常
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private static int backOff(int idle) {
+        if (idle < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(10_000);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,195 @@
+package semantic;
+
+import lexer.Escapes;
+import lexer.Token;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 常量表达式求值：计算ConstExp和ConstInitVal的值
+ * 在语义分析解析完一个定义之后，对其中的Token区间重新求值；
+ * 标识符在给定作用域中查找，只能引用已经求出值的常量，否则视为不是常量
+ */
+class ConstEvaluator {
+    private final List<Token> tokens;
+    private final int end;
+    private final SymbolTable scope;
+    private int position;
+
+    /**
+     * 表达式不是编译期常量（引用变量、调用函数、除以0或下标越界）
+     */
+    private static class NotConstantException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotConstantException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * @param tokens Token流
+     * @param start 区间起点（包含）
+     * @param end 区间终点（不包含）
+     * @param scope 查找标识符的作用域
+     */
+    ConstEvaluator(List<Token> tokens, int start, int end, SymbolTable scope) {
+        this.tokens = tokens;
+        this.position = start;
+        this.end = end;
+        this.scope = scope;
+    }
+
+    /**
+     * ConstExp -> AddExp
+     * @return 表达式的值，不是常量时返回null
+     */
+    Integer evaluateExp() {
+        try {
+            int value = addExp();
+            return position == end ? value : null;
+        } catch (NotConstantException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ConstInitVal -> ConstExp | '{' [ ConstExp { ',' ConstExp } ] '}' | StringConst
+     * @param length 元素个数，标量为1
+     * @param isChar 是否为char，是则每个值截断为8位
+     * @return 按元素顺序的值，未给出的元素为0；不是常量时返回null
+     */
+    int[] evaluateInitVal(int length, boolean isChar) {
+        List<Integer> values = new ArrayList<>();
+        try {
+            if (check(Token.Type.STRCON)) {
+                for (int c : Escapes.unescape(tokens.get(position++).getValue())) {
+                    values.add(c);
+                }
+            } else if (accept(Token.Type.LBRACE)) {
+                if (!check(Token.Type.RBRACE)) {
+                    do {
+                        values.add(addExp());
+                    } while (accept(Token.Type.COMMA));
+                }
+                expect(Token.Type.RBRACE);
+            } else {
+                values.add(addExp());
+            }
+        } catch (NotConstantException | IndexOutOfBoundsException e) {
+            return null;
+        }
+        if (position != end) {
+            return null;
+        }
+        int[] result = new int[Math.max(length, 0)];
+        for (int i = 0; i < result.length && i < values.size(); i++) {
+            result[i] = isChar ? values.get(i) & 0xFF : values.get(i);
+        }
+        return result;
+    }
+
+    private boolean check(Token.Type type) {
+        return position < end && tokens.get(position).getType() == type;
+    }
+
+    private boolean accept(Token.Type type) {
+        if (check(type)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(Token.Type type) {
+        if (!check(type)) {
+            throw new NotConstantException();
+        }
+        return tokens.get(position++);
+    }
+
+    private int addExp() {
+        // AddExp -> MulExp { ('+' | '-') MulExp }
+        int value = mulExp();
+        while (true) {
+            if (accept(Token.Type.PLUS)) {
+                value += mulExp();
+            } else if (accept(Token.Type.MINU)) {
+                value -= mulExp();
+            } else {
+                return value;
+            }
+        }
+    }
+
+    private int mulExp() {
+        // MulExp -> UnaryExp { ('*' | '/' | '%') UnaryExp }
+        int value = unaryExp();
+        while (true) {
+            if (accept(Token.Type.MULT)) {
+                value *= unaryExp();
+            } else if (check(Token.Type.DIV) || check(Token.Type.MOD)) {
+                boolean div = tokens.get(position++).getType() == Token.Type.DIV;
+                int rhs = unaryExp();
+                if (rhs == 0) {
+                    throw new NotConstantException();
+                }
+                value = div ? value / rhs : value % rhs;
+            } else {
+                return value;
+            }
+        }
+    }
+
+    private int unaryExp() {
+        // UnaryExp -> PrimaryExp | UnaryOp UnaryExp，函数调用不是常量
+        if (accept(Token.Type.PLUS)) {
+            return unaryExp();
+        }
+        if (accept(Token.Type.MINU)) {
+            return -unaryExp();
+        }
+        if (accept(Token.Type.NOT)) {
+            return unaryExp() == 0 ? 1 : 0;
+        }
+        return primaryExp();
+    }
+
+    private int primaryExp() {
+        // PrimaryExp -> '(' Exp ')' | LVal | Number | Character
+        if (accept(Token.Type.LPARENT)) {
+            int value = addExp();
+            expect(Token.Type.RPARENT);
+            return value;
+        }
+        if (check(Token.Type.INTCON)) {
+            // 超出int范围的字面量按32位回绕，超出long范围也不会出错
+            return new BigInteger(tokens.get(position++).getValue()).intValue();
+        }
+        if (check(Token.Type.CHRCON)) {
+            int[] chars = Escapes.unescape(tokens.get(position++).getValue());
+            return chars.length > 0 ? chars[0] : 0;
+        }
+        // LVal -> Ident ['[' Exp ']']
+        String name = expect(Token.Type.IDENFR).getValue();
+        Symbol symbol = scope.lookup(name);
+        if (!(symbol instanceof VariableSymbol) || !((VariableSymbol) symbol).hasConstValue()) {
+            throw new NotConstantException();
+        }
+        VariableSymbol variable = (VariableSymbol) symbol;
+        if (!accept(Token.Type.LBRACK)) {
+            if (variable.isArray()) {
+                throw new NotConstantException();
+            }
+            return variable.getConstValue(0);
+        }
+        int index = addExp();
+        expect(Token.Type.RBRACK);
+        if (!variable.isArray() || index < 0 || index >= variable.getConstValues().length) {
+            throw new NotConstantException();
+        }
+        return variable.getConstValue(index);
+    }
+}
@@ -13,6 +13,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class SemanticAnalyzer {
     private List<Token> tokens; // 词法分析器产生的Token流
@@ -48,6 +51,18 @@ public class SemanticAnalyzer {
     // 是否在条件分支（如if语句）内部
     private boolean insideConditionalBranch = false;
 
+    // 错误缓冲区，为null时直接写入SimpleErrorHandler；并行分析时每个任务各自缓冲
+    private List<SimpleErrorHandler.ErrorRecord> errorBuffer;
+
+    // 符号表输出文件
+    private String symbolOutputFile = "symbol.txt";
+
+    // 定义处的标识符Token到其符号的映射，供中间代码生成读取常量的值和数组长度；并行分析时各任务共用
+    private Map<Token, VariableSymbol> definitions;
+
+    // 是否在标准输出打印调试信息
+    private boolean debugOutput = true;
+
     // 进入循环
     private void enterLoop() {
         loopDepth++;
@@ -78,15 +93,80 @@ public class SemanticAnalyzer {
 
     public SemanticAnalyzer(List<Token> tokens) {
         this.tokens = tokens;
-        this.currentTokenIndex = 0;
-        if (tokens != null && !tokens.isEmpty()) {
-            this.currentToken = tokens.get(0);
+        this.definitions = new ConcurrentHashMap<>();
+        reset();
+    }
+
+    /**
+     * 并行分析用的构造方法：从函数体的左大括号开始，在已建立的函数作用域中分析
+     * @param tokens Token流
+     * @param startIndex 函数体左大括号的位置
+     * @param functionScope 预扫描时建立的函数作用域（含形参）
+     * @param errorBuffer 该函数的错误缓冲区
+     * @param definitions 共用的定义表
+     */
+    private SemanticAnalyzer(List<Token> tokens, int startIndex, SymbolTable functionScope,
+                             List<SimpleErrorHandler.ErrorRecord> errorBuffer,
+                             Map<Token, VariableSymbol> definitions) {
+        this.tokens = tokens;
+        this.definitions = definitions;
+        this.currentTokenIndex = startIndex;
+        this.currentToken = startIndex < tokens.size() ? tokens.get(startIndex) : null;
+        this.scopeStack = new Stack<>();
+        this.allScopes = new ArrayList<>(); // 只记录函数体内新建的作用域
+        this.currentScope = functionScope;
+        this.scopeStack.push(functionScope);
+        this.errorBuffer = errorBuffer;
+    }
+
+    public void setSymbolOutputFile(String symbolOutputFile) {
+        this.symbolOutputFile = symbolOutputFile;
+    }
+
+    public void setDebugOutput(boolean debugOutput) {
+        this.debugOutput = debugOutput;
+    }
+
+    /**
+     * 获取变量和常量定义处的标识符Token到符号的映射。
+     * 常量的值、数组的长度在分析时已经求出，中间代码生成可以直接使用。
+     */
+    public Map<Token, VariableSymbol> getDefinitions() {
+        return definitions;
+    }
+
+    private void debug(String message) {
+        if (debugOutput) {
+            System.out.println(message);
         }
+    }
+
+    /**
+     * 回到Token流开头，重建全局作用域
+     */
+    private void reset() {
+        this.currentTokenIndex = 0;
+        this.currentToken = (tokens != null && !tokens.isEmpty()) ? tokens.get(0) : null;
+        this.currentScope = null;
+        this.nextScopeId = 1;
         this.scopeStack = new Stack<>();
         this.allScopes = new ArrayList<>();
+        this.errorBuffer = null;
+        this.definitions.clear();
         enterScope(); // 进入全局作用域
     }
 
+    /**
+     * 报告一个语义错误，写入当前的错误缓冲区或全局错误表
+     */
+    private void reportError(int line, String code) {
+        if (errorBuffer != null) {
+            errorBuffer.add(new SimpleErrorHandler.ErrorRecord(line, code));
+        } else {
+            SimpleErrorHandler.addError(line, code);
+        }
+    }
+
     private void advance() {
         currentTokenIndex++;
         if (currentTokenIndex < tokens.size()) {
@@ -105,7 +185,14 @@ public class SemanticAnalyzer {
     }
 
     private void enterScope() {
-        SymbolTable newScope = new SymbolTable(currentScope, nextScopeId++);
+        enterScope(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param visibleParentSymbols 当前作用域中对新作用域可见的符号数
+     */
+    private void enterScope(int visibleParentSymbols) {
+        SymbolTable newScope = new SymbolTable(currentScope, nextScopeId++, visibleParentSymbols);
         currentScope = newScope;
         scopeStack.push(newScope);
         allScopes.add(newScope); // 保存起来，为了最后的有序输出
@@ -129,7 +216,160 @@ public class SemanticAnalyzer {
         parseCompUnit();
         
         // 分析完成后，写入符号表文件
-        writeSymbolTableToFile("symbol.txt");
+        writeSymbolTableToFile(symbolOutputFile);
+    }
+
+    /**
+     * 并行语义分析：先顺序处理全局声明和所有函数头，再在pool上并行分析各函数体。
+     * 输出的symbol.txt和错误顺序与顺序分析完全一致；无法保证一致时（前序阶段已有错误、
+     * 程序结构不完整等）退回顺序分析。
+     * @param pool 执行函数体分析任务的线程池
+     */
+    public void analyzeParallel(ForkJoinPool pool) {
+        if (!parseCompUnitParallel(pool)) {
+            reset();
+            parseCompUnit();
+        }
+        writeSymbolTableToFile(symbolOutputFile);
+    }
+
+    /**
+     * 函数体分析任务，在预扫描建立的函数作用域中分析函数体
+     */
+    private class FunctionBodyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int startIndex;      // 函数体左大括号的位置
+        private final int endIndex;        // 匹配的右大括号之后的位置
+        private final SymbolTable functionScope;
+        private final Type returnType;
+        private final String functionName;
+        private final boolean reportGError;
+        private final List<SimpleErrorHandler.ErrorRecord> errors;
+        private List<SymbolTable> bodyScopes; // 函数体内新建的作用域，按建立顺序
+        private boolean consistent;           // 分析是否恰好结束在匹配的右大括号之后
+
+        FunctionBodyTask(int startIndex, int endIndex, List<SimpleErrorHandler.ErrorRecord> errors) {
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.functionScope = currentScope;
+            this.returnType = currentFunctionReturnType;
+            this.functionName = currentFunctionName;
+            this.reportGError = forceReportGError;
+            this.errors = errors;
+        }
+
+        @Override
+        protected void compute() {
+            SemanticAnalyzer body = new SemanticAnalyzer(tokens, startIndex, functionScope, errors, definitions);
+            body.currentFunctionReturnType = returnType;
+            body.currentFunctionName = functionName;
+            body.forceReportGError = reportGError;
+            body.parseFuncBody();
+            bodyScopes = body.allScopes;
+            consistent = body.currentTokenIndex == endIndex;
+        }
+    }
+
+    /**
+     * 并行版本的CompUnit分析
+     * @return 是否成功完成；返回false时调用者需要重新顺序分析
+     */
+    private boolean parseCompUnitParallel(ForkJoinPool pool) {
+        // 前序阶段有错误时，函数体的边界不一定与大括号匹配一致，直接顺序分析
+        if (SimpleErrorHandler.hasErrors()) {
+            return false;
+        }
+
+        // 每一段按源程序顺序保存错误：全局声明一段，之后每个函数一段（函数头和函数体）
+        List<List<SimpleErrorHandler.ErrorRecord>> errorSegments = new ArrayList<>();
+        List<FunctionBodyTask> tasks = new ArrayList<>();
+        errorBuffer = new ArrayList<>();
+        errorSegments.add(errorBuffer);
+
+        while (currentToken != null && isStartOfDecl()) {
+            parseDecl();
+        }
+        boolean seenMain = false;
+        while (currentToken != null && !seenMain) {
+            seenMain = currentToken.getType() == Token.Type.INTTK &&
+                       peek(1) != null && peek(1).getType() == Token.Type.MAINTK;
+            if (!seenMain && !isStartOfFuncDef()) {
+                break;
+            }
+            errorBuffer = new ArrayList<>();
+            errorSegments.add(errorBuffer);
+            if (seenMain) {
+                parseMainFuncHeader();
+            } else {
+                parseFuncHeader();
+            }
+
+            int bodyEnd = findBlockEnd(currentTokenIndex);
+            if (bodyEnd < 0) {
+                return false;
+            }
+            tasks.add(new FunctionBodyTask(currentTokenIndex, bodyEnd, errorBuffer));
+
+            // 跳过函数体，回到全局作用域
+            currentTokenIndex = bodyEnd;
+            currentToken = bodyEnd < tokens.size() ? tokens.get(bodyEnd) : null;
+            exitScope();
+            resetFunctionState();
+        }
+        errorBuffer = null;
+
+        // 预扫描结束后全局作用域不再改变，各任务并发读取它而不复制
+        boolean wellFormed = seenMain && currentToken == null;
+        if (!wellFormed) {
+            return false;
+        }
+        for (FunctionBodyTask task : tasks) {
+            pool.execute(task);
+        }
+        for (FunctionBodyTask task : tasks) {
+            task.join();
+            wellFormed &= task.consistent;
+        }
+        if (!wellFormed) {
+            return false;
+        }
+
+        // 按顺序分析时的建立次序重新编号作用域：全局、各函数作用域及其内部作用域
+        int nextId = 2;
+        for (FunctionBodyTask task : tasks) {
+            task.functionScope.renumber(nextId++);
+            for (SymbolTable scope : task.bodyScopes) {
+                scope.renumber(nextId++);
+                allScopes.add(scope);
+            }
+        }
+        nextScopeId = nextId;
+
+        for (List<SimpleErrorHandler.ErrorRecord> segment : errorSegments) {
+            SimpleErrorHandler.addErrors(segment);
+        }
+        return true;
+    }
+
+    /**
+     * 从左大括号开始做括号匹配，找到函数体的结束位置
+     * @param startIndex 左大括号的位置
+     * @return 匹配的右大括号之后的位置，不存在时返回-1
+     */
+    private int findBlockEnd(int startIndex) {
+        if (startIndex >= tokens.size() || tokens.get(startIndex).getType() != Token.Type.LBRACE) {
+            return -1;
+        }
+        int depth = 0;
+        for (int i = startIndex; i < tokens.size(); i++) {
+            Token.Type type = tokens.get(i).getType();
+            if (type == Token.Type.LBRACE) {
+                depth++;
+            } else if (type == Token.Type.RBRACE && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
     }
 
     // ----------------------------------------------------------------------
@@ -262,18 +502,24 @@ public class SemanticAnalyzer {
         Symbol existingSymbol = currentScope.lookupCurrentScope(name);
         if (existingSymbol != null) {
             // 错误b：常量名重定义
-            SimpleErrorHandler.addError(lineNumber, "b");
+            reportError(lineNumber, "b");
         }
 
+        int lengthStart = -1;
+        int lengthEnd = -1;
         if (currentToken != null && currentToken.getType() == Token.Type.LBRACK) {
             isArray = true;
             advance(); // '['
-            parseConstExp(); // ConstExp (需要计算其值以确定维度，暂时跳过其内容)
+            lengthStart = currentTokenIndex;
+            parseConstExp(); // ConstExp，维度在定义解析完后求值
+            lengthEnd = currentTokenIndex;
             assertAndAdvance(Token.Type.RBRACK); // ']'
             // 如果需要多维，这里要循环处理
         }
         assertAndAdvance(Token.Type.ASSIGN); // '='
-        parseConstInitVal(); // ConstInitVal (需要计算其值，并检查类型，暂时跳过)
+        int initStart = currentTokenIndex;
+        parseConstInitVal(); // ConstInitVal，同样在解析完后求值
+        int initEnd = currentTokenIndex;
 
         Type symbolType;
         if (isArray) {
@@ -282,6 +528,14 @@ public class SemanticAnalyzer {
             symbolType = (baseBType == Type.INT) ? Type.CONST_INT : Type.CONST_CHAR;
         }
         VariableSymbol symbol = new VariableSymbol(name, symbolType, currentScope.getScopeId(), lineNumber, true);
+        // 先求值再加入作用域，初值中出现的同名标识符引用的是外层的定义
+        int length = isArray ? evaluateLength(lengthStart, lengthEnd) : 1;
+        symbol.setArrayLength(isArray ? length : -1);
+        if (length >= 0) {
+            symbol.setConstValues(new ConstEvaluator(tokens, initStart, initEnd, currentScope)
+                    .evaluateInitVal(length, baseBType == Type.CHAR));
+        }
+        definitions.put(identToken, symbol);
         currentScope.addSymbol(symbol);
         // System.out.println("Added const: " + symbol);
     }
@@ -298,13 +552,16 @@ public class SemanticAnalyzer {
         Symbol existingSymbol = currentScope.lookupCurrentScope(name);
         if (existingSymbol != null) {
             // 错误b：变量名重定义
-            SimpleErrorHandler.addError(lineNumber, "b");
+            reportError(lineNumber, "b");
         }
 
+        int length = -1;
         if (currentToken != null && currentToken.getType() == Token.Type.LBRACK) {
             isArray = true;
             advance(); // '['
+            int lengthStart = currentTokenIndex;
             parseConstExp(); // Array size
+            length = evaluateLength(lengthStart, currentTokenIndex);
             assertAndAdvance(Token.Type.RBRACK); // ']'
         }
 
@@ -315,6 +572,8 @@ public class SemanticAnalyzer {
             symbolType = (baseBType == Type.INT) ? Type.INT : Type.CHAR;
         }
         VariableSymbol symbol = new VariableSymbol(name, symbolType, currentScope.getScopeId(), lineNumber, false);
+        symbol.setArrayLength(length);
+        definitions.put(identToken, symbol);
         currentScope.addSymbol(symbol);
         // System.out.println("Added var: " + symbol);
 
@@ -324,6 +583,15 @@ public class SemanticAnalyzer {
         }
     }
 
+    /**
+     * 求数组维度的值
+     * @return 维度，不是常量或为负数时返回-1
+     */
+    private int evaluateLength(int start, int end) {
+        Integer length = new ConstEvaluator(tokens, start, end, currentScope).evaluateExp();
+        return length != null && length >= 0 ? length : -1;
+    }
+
     private void parseConstInitVal() {
         // ConstInitVal -> ConstExp | '{' [ ConstInitVal { ',' ConstInitVal } ] '}'
         if (currentToken != null && currentToken.getType() == Token.Type.LBRACE) {
@@ -585,10 +853,10 @@ public class SemanticAnalyzer {
                             
                             // 错误c: 未定义的名字 - 函数未定义
                             if (symbol == null) {
-                                SimpleErrorHandler.addError(identLine, "c");
+                                reportError(identLine, "c");
                             } else if (!(symbol instanceof FunctionSymbol)) {
                                 // 标识符存在但不是函数
-                                SimpleErrorHandler.addError(identLine, "c");
+                                reportError(identLine, "c");
                             } else {
                                 // 函数已定义，检查参数
                                 FunctionSymbol funcSymbol = (FunctionSymbol)symbol;
@@ -610,7 +878,7 @@ public class SemanticAnalyzer {
                                 
                                 // 错误d: 函数参数个数不匹配
                                 if (expectedParams.size() != actualParamTypes.size()) {
-                                    SimpleErrorHandler.addError(identLine, "d");
+                                    reportError(identLine, "d");
                                 } else {
                                     // 错误e: 函数参数类型不匹配
                                     for (int i = 0; i < expectedParams.size(); i++) {
@@ -647,7 +915,7 @@ public class SemanticAnalyzer {
                                         }
                                         
                                         if (typeError) {
-                                            SimpleErrorHandler.addError(identLine, "e");
+                                            reportError(identLine, "e");
                                             break; // 一旦发现类型不匹配，就不再检查其他参数
                                         }
                                     }
@@ -688,7 +956,7 @@ public class SemanticAnalyzer {
                         // 错误c: 未定义的名字 - 检查变量是否定义
                         Symbol symbol = currentScope.lookup(identName);
                         if (symbol == null) {
-                            SimpleErrorHandler.addError(identLine, "c");
+                            reportError(identLine, "c");
                         }
                         
                         // 如果有后续的数组访问表达式，处理它们
@@ -1046,7 +1314,7 @@ public class SemanticAnalyzer {
             
             // 错误c: 未定义的名字
             if (symbol == null) {
-                SimpleErrorHandler.addError(identLine, "c");
+                reportError(identLine, "c");
             }
             
             advance(); // Skip identifier
@@ -1129,6 +1397,14 @@ public class SemanticAnalyzer {
 
     private void parseFuncDef() {
         // FuncDef -> FuncType Ident '(' [FuncFParams] ')' Block
+        parseFuncHeader();
+        parseFuncBody();
+    }
+
+    /**
+     * FuncType Ident '(' [FuncFParams] ')'：登记函数符号，进入函数作用域并登记形参
+     */
+    private void parseFuncHeader() {
         Type funcActualReturnType = parseFuncType(); // 这是实际的返回类型 VOID, INT, CHAR
         Token funcNameToken = currentToken;
         assertAndAdvance(Token.Type.IDENFR);
@@ -1158,13 +1434,13 @@ public class SemanticAnalyzer {
         Symbol existingSymbol = currentScope.lookupCurrentScope(funcName);
         if (existingSymbol != null) {
             // 错误b：名字重定义
-            SimpleErrorHandler.addError(funcLineNumber, "b");
+            reportError(funcLineNumber, "b");
         }
 
         FunctionSymbol funcSymbol = new FunctionSymbol(funcName, funcSymbolType, funcActualReturnType, currentScope.getScopeId(), funcLineNumber);
         currentScope.addSymbol(funcSymbol);
 
-        enterScope(); // 函数体和参数进入新的作用域
+        enterFunctionScope(); // 函数体和参数进入新的作用域
 
         // 检查是否有左括号，如果缺少左括号，跳过右括号和参数检查
         boolean hasLeftParen = currentToken != null && currentToken.getType() == Token.Type.LPARENT;
@@ -1198,7 +1474,12 @@ public class SemanticAnalyzer {
                 advance();
             }
         }
-        
+    }
+
+    /**
+     * 函数体：分析Block，检查g错误并退出函数作用域。函数和主函数共用
+     */
+    private void parseFuncBody() {
         // 检查是否有函数体，如果没有函数体，也禁用g错误
         boolean hasBlock = currentToken != null && currentToken.getType() == Token.Type.LBRACE;
         
@@ -1226,14 +1507,25 @@ public class SemanticAnalyzer {
             : (blockStartToken != null ? blockStartToken.getLineNumber() : 0);
         
         // 只有当函数语法完整且未见到return语句时才报告g错误
-        if (funcActualReturnType != Type.VOID && forceReportGError) {
+        if (currentFunctionReturnType != Type.VOID && forceReportGError) {
             // 错误g: 有返回值的函数缺少return语句
-            SimpleErrorHandler.addError(blockEndLine, "g");
+            reportError(blockEndLine, "g");
         }
         
         exitScope(); // 退出函数作用域
-        
-        // 重置函数状态
+        resetFunctionState();
+    }
+
+    /**
+     * 进入函数作用域；函数中只能看到此刻已在全局作用域声明的符号，
+     * 这样并行分析函数体时之后加入的全局符号不会被看到
+     */
+    private void enterFunctionScope() {
+        enterScope(currentScope.size());
+    }
+
+    // 重置函数状态
+    private void resetFunctionState() {
         currentFunctionReturnType = Type.VOID;
         hasReturnStatement = false;
         forceReportGError = false;
@@ -1280,7 +1572,7 @@ public class SemanticAnalyzer {
         Symbol existingSymbol = currentScope.lookupCurrentScope(paramName);
         if (existingSymbol != null) {
             // 错误b：参数名重定义
-            SimpleErrorHandler.addError(paramLine, "b");
+            reportError(paramLine, "b");
         }
 
         Type paramSymbolType;
@@ -1306,6 +1598,14 @@ public class SemanticAnalyzer {
 
     private void parseMainFuncDef() {
         // MainFuncDef -> 'int' 'main' '(' ')' Block
+        parseMainFuncHeader();
+        parseFuncBody();
+    }
+
+    /**
+     * 'int' 'main' '(' ')'：进入main函数作用域
+     */
+    private void parseMainFuncHeader() {
         assertAndAdvance(Token.Type.INTTK); // 'int'
         Token mainToken = currentToken;
         assertAndAdvance(Token.Type.MAINTK); // 'main'
@@ -1321,7 +1621,7 @@ public class SemanticAnalyzer {
         // 对于main函数，启用强制g错误报告
         forceReportGError = true;
 
-        enterScope(); // main函数体进入新的作用域
+        enterFunctionScope(); // main函数体进入新的作用域
         
         // 检查是否有左括号，如果缺少左括号，跳过右括号检查
         boolean hasLeftParen = currentToken != null && currentToken.getType() == Token.Type.LPARENT;
@@ -1350,46 +1650,6 @@ public class SemanticAnalyzer {
                 advance();
             }
         }
-        
-        // 检查是否有函数体，如果没有函数体，也禁用g错误
-        boolean hasBlock = currentToken != null && currentToken.getType() == Token.Type.LBRACE;
-        
-        // 记录函数块开始位置
-        Token blockStartToken = currentToken;
-        
-        if (hasBlock) {
-        parseBlock();
-        } else {
-            // 如果没有函数体，禁用g错误报告
-            forceReportGError = false;
-            // 尝试跳过到下一个函数定义或声明
-            while (currentToken != null && 
-                  !isStartOfDecl() && 
-                  !isStartOfFuncDef() && 
-                  currentToken.getType() != Token.Type.INTTK && 
-                  currentToken.getType() != Token.Type.CHARTK) {
-                advance();
-            }
-        }
-        
-        // 获取函数体结束位置的行号
-        int blockEndLine = (currentTokenIndex > 0 && currentTokenIndex <= tokens.size()) 
-            ? tokens.get(currentTokenIndex - 1).getLineNumber() 
-            : (blockStartToken != null ? blockStartToken.getLineNumber() : 0);
-        
-        // 只有当函数语法完整且未见到return语句时才报告g错误
-        if (forceReportGError) {
-            // 错误g: 有返回值的函数缺少return语句
-            SimpleErrorHandler.addError(blockEndLine, "g");
-        }
-        
-        exitScope(); // 退出main函数作用域
-        
-        // 重置函数状态
-        currentFunctionReturnType = Type.VOID;
-        hasReturnStatement = false;
-        forceReportGError = false;
-        currentFunctionName = ""; // 重置函数名
     }
 
     private void parseBlock() {
@@ -1445,7 +1705,7 @@ public class SemanticAnalyzer {
             
             // 错误m: 在非循环块中使用break和continue语句
             if (loopDepth == 0) {
-                SimpleErrorHandler.addError(lineNumber, "m");
+                reportError(lineNumber, "m");
             }
             
             assertAndAdvance(Token.Type.SEMICN);
@@ -1470,7 +1730,7 @@ public class SemanticAnalyzer {
             
             // 错误f: 无返回值的函数存在不匹配的return语句
             if (currentFunctionReturnType == Type.VOID && hasReturnExp) {
-                SimpleErrorHandler.addError(returnLine, "f");
+                reportError(returnLine, "f");
             }
             
             // 非void函数找到了return语句，根据位置决定是否禁用g错误报告
@@ -1518,7 +1778,7 @@ public class SemanticAnalyzer {
             
             // 错误l: printf中格式字符与表达式个数不匹配
             if (formatSymbolCount != expressionCount) {
-                SimpleErrorHandler.addError(printfLine, "l");
+                reportError(printfLine, "l");
             }
             
             assertAndAdvance(Token.Type.RPARENT); // ')'
@@ -1827,8 +2087,8 @@ public class SemanticAnalyzer {
         // Sort all scopes by their original ID to determine the complete ordering
         allScopes.sort(Comparator.comparingInt(SymbolTable::getScopeId));
 
-        System.out.println("DEBUG: Writing symbol table to " + filePath);
-        System.out.println("DEBUG: Number of scopes: " + allScopes.size());
+        debug("DEBUG: Writing symbol table to " + filePath);
+        debug("DEBUG: Number of scopes: " + allScopes.size());
         
         // First collect all printable symbols
         for (SymbolTable table : allScopes) {
@@ -1840,11 +2100,11 @@ public class SemanticAnalyzer {
                     continue;
                 }
                 allPrintableSymbols.add(new PrintableSymbolInfo(symbol));
-                System.out.println("DEBUG: Original Symbol: " + symbol.getScopeId() + " " + symbol.getName() + " " + symbol.getType());
+                debug("DEBUG: Original Symbol: " + symbol.getScopeId() + " " + symbol.getName() + " " + symbol.getType());
             }
         }
 
-        System.out.println("DEBUG: Number of printable symbols: " + allPrintableSymbols.size());
+        debug("DEBUG: Number of printable symbols: " + allPrintableSymbols.size());
 
         // Find all the unique original scope IDs first, including ones from symbols
         Set<Integer> uniqueOriginalScopeIds = new HashSet<>();
@@ -1859,7 +2119,7 @@ public class SemanticAnalyzer {
         List<Integer> sortedOriginalScopeIds = new ArrayList<>(uniqueOriginalScopeIds);
         Collections.sort(sortedOriginalScopeIds);
         
-        System.out.println("DEBUG: Sorted unique original scope IDs: " + sortedOriginalScopeIds);
+        debug("DEBUG: Sorted unique original scope IDs: " + sortedOriginalScopeIds);
         
         // Create a mapping from original scope IDs to new sequential scope IDs
         Map<Integer, Integer> originalToOutputScopeIdMap = new HashMap<>();
@@ -1867,7 +2127,7 @@ public class SemanticAnalyzer {
         int nextOutputScopeId = 1;
         for (int originalId : sortedOriginalScopeIds) {
             originalToOutputScopeIdMap.put(originalId, nextOutputScopeId++);
-            System.out.println("DEBUG: Mapping original scope " + originalId + " to output scope " + (nextOutputScopeId - 1));
+            debug("DEBUG: Mapping original scope " + originalId + " to output scope " + (nextOutputScopeId - 1));
         }
 
         // Sort printable symbols by their remapped scope IDs and line numbers
@@ -1892,10 +2152,10 @@ public class SemanticAnalyzer {
                 // This check is mostly defensive; all symbols in allPrintableSymbols should have a mapping.
                 if (outputScopeId != null) { 
                     writer.println(outputScopeId + " " + psi.name + " " + psi.getTypeString());
-                    System.out.println("DEBUG: Writing remapped symbol: " + outputScopeId + " " + psi.name + " " + psi.getTypeString());
+                    debug("DEBUG: Writing remapped symbol: " + outputScopeId + " " + psi.name + " " + psi.getTypeString());
                 }
             }
-            System.out.println("DEBUG: Symbol table remapping complete.");
+            debug("DEBUG: Symbol table remapping complete.");
         } catch (IOException e) {
             System.err.println("Error writing symbol table to file: " + e.getMessage());
         }
@@ -1915,7 +2175,7 @@ public class SemanticAnalyzer {
             // 检查是否为常量 - 包括常量变量和常量数组
             if (varSymbol.isConst()) {
                 // 错误h: 不能修改常量值
-                SimpleErrorHandler.addError(identLine, "h");
+                reportError(identLine, "h");
                 return true;
             }
         }
@@ -29,6 +29,10 @@ public abstract class Symbol {
         return scopeId;
     }
 
+    void setScopeId(int scopeId) {
+        this.scopeId = scopeId;
+    }
+
     public int getLineNumber() {
         return lineNumber;
     }
@@ -6,14 +6,23 @@ import java.util.List;
 import java.util.ArrayList;
 
 public class SymbolTable {
-    private final Map<String, Symbol> symbols; // 当前作用域的符号
+    private final Map<String, Integer> symbols; // 当前作用域的符号名到其在orderedSymbols中的位置
     private final SymbolTable parentScope;     // 父作用域
-    private final int scopeId;                 // 当前作用域的ID
+    private final int visibleParentSymbols;    // 父作用域中可见的符号数，之后加入父作用域的符号不可见
+    private int scopeId;                       // 当前作用域的ID
     private final List<Symbol> orderedSymbols; // 按声明顺序存储符号，用于输出
 
     public SymbolTable(SymbolTable parentScope, int scopeId) {
+        this(parentScope, scopeId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param visibleParentSymbols 父作用域中按声明顺序排在前面的这么多个符号对本作用域可见
+     */
+    public SymbolTable(SymbolTable parentScope, int scopeId, int visibleParentSymbols) {
         this.symbols = new HashMap<>();
         this.parentScope = parentScope;
+        this.visibleParentSymbols = visibleParentSymbols;
         this.scopeId = scopeId;
         this.orderedSymbols = new ArrayList<>();
     }
@@ -29,7 +38,7 @@ public class SymbolTable {
             // ErrorHandler.addError(symbol.getLineNumber(), 'b');
             return false; 
         }
-        symbols.put(symbol.getName(), symbol);
+        symbols.put(symbol.getName(), orderedSymbols.size());
         orderedSymbols.add(symbol); // 保持插入顺序
         return true;
     }
@@ -40,7 +49,15 @@ public class SymbolTable {
      * @return 如果找到则返回符号，否则返回null
      */
     public Symbol lookupCurrentScope(String name) {
-        return symbols.get(name);
+        return lookupCurrentScope(name, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 在当前作用域前visible个符号中查找
+     */
+    private Symbol lookupCurrentScope(String name, int visible) {
+        Integer position = symbols.get(name);
+        return position != null && position < visible ? orderedSymbols.get(position) : null;
     }
 
     /**
@@ -49,12 +66,16 @@ public class SymbolTable {
      * @return 如果找到则返回符号，否则返回null
      */
     public Symbol lookup(String name) {
-        Symbol symbol = lookupCurrentScope(name);
+        return lookup(name, Integer.MAX_VALUE);
+    }
+
+    private Symbol lookup(String name, int visible) {
+        Symbol symbol = lookupCurrentScope(name, visible);
         if (symbol != null) {
             return symbol;
         }
         if (parentScope != null) {
-            return parentScope.lookup(name);
+            return parentScope.lookup(name, visibleParentSymbols);
         }
         return null; // 在所有作用域都未找到
     }
@@ -67,6 +88,24 @@ public class SymbolTable {
         return scopeId;
     }
 
+    /**
+     * 当前作用域中已声明的符号数
+     */
+    public int size() {
+        return orderedSymbols.size();
+    }
+
+    /**
+     * 重新编号作用域，同时更新其中符号记录的作用域序号。
+     * 用于把并行分析得到的作用域按顺序分析时的编号合并回来。
+     */
+    void renumber(int newScopeId) {
+        this.scopeId = newScopeId;
+        for (Symbol symbol : orderedSymbols) {
+            symbol.setScopeId(newScopeId);
+        }
+    }
+
     /**
      * 获取当前作用域内按声明顺序排列的符号列表。
      */
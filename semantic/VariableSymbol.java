@@ -4,6 +4,8 @@ public class VariableSymbol extends Symbol {
     private boolean isConst; // 是否是常量
     // 如果需要，可以添加更多变量特有的属性，比如维度信息等
     // private int dimension; // 0 for non-array, 1 for 1D array, etc.
+    private int arrayLength = -1; // 数组长度，不是数组或长度未知（如函数形参）时为-1
+    private int[] constValues;    // 常量的值，数组按元素顺序存放；未能求值时为null
 
     public VariableSymbol(String name, Type type, int scopeId, int lineNumber, boolean isConst) {
         super(name, type, scopeId, lineNumber);
@@ -19,6 +21,36 @@ public class VariableSymbol extends Symbol {
         return isConst;
     }
 
+    public int getArrayLength() {
+        return arrayLength;
+    }
+
+    public void setArrayLength(int arrayLength) {
+        this.arrayLength = arrayLength;
+    }
+
+    /**
+     * 是否已在编译期求出常量的值
+     */
+    public boolean hasConstValue() {
+        return constValues != null;
+    }
+
+    public int[] getConstValues() {
+        return constValues;
+    }
+
+    /**
+     * 常量的第index个元素，标量常量取第0个
+     */
+    public int getConstValue(int index) {
+        return constValues[index];
+    }
+
+    public void setConstValues(int[] constValues) {
+        this.constValues = constValues;
+    }
+
     // 如果添加了 dimension 属性，需要对应的 getter/setter
     // public int getDimension() {
     //     return dimension;
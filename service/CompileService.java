@@ -0,0 +1,361 @@
+package service;
+
+import ir.IRGenerator;
+import ir.Module;
+import lexer.Lexer;
+import lexer.Token;
+import mips.MipsGenerator;
+import mips.Peephole;
+import mips.RegisterAllocator;
+import opt.Optimizer;
+import parser.Parser;
+import semantic.SemanticAnalyzer;
+import utils.CompilerOptions;
+import utils.FileHandler;
+import utils.SimpleErrorHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编译服务：同时处理多个编译请求，每个请求在自己的线程中完成全部阶段
+ * 运行时支持虚拟线程时每个请求使用一个虚拟线程，否则退回与处理器数量相同的固定线程池。
+ * 每个请求的Token、作用域和错误表都只属于该请求；
+ * 同时在处理的源文件总字节数受上限控制，超出时新请求在准入队列中按到达顺序等待。
+ * 准入由单独的线程完成，请求取得许可后才交给执行器，等待中的请求不占用线程。
+ * 这个上限只按源文件大小准入，并不约束内存：出错恢复等情况下单个小请求也可能耗尽堆，
+ * 这时该请求以失败结束，不影响其他请求。
+ */
+public class CompileService implements AutoCloseable {
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final BlockingQueue<Request> pending = new LinkedBlockingQueue<>(); // 等待准入的请求
+    private final Thread admission;
+    private volatile boolean closed = false;
+    private final Semaphore inFlightBytes; // 每个许可代表一个字节的源文件
+    private final int maxInFlightBytes;
+
+    /**
+     * 一个等待准入的编译请求
+     */
+    private static class Request {
+        private final Path sourceFile;
+        private final Path outputDir;
+        private final long submitted;
+        private final int permits;
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+
+        Request(Path sourceFile, Path outputDir, long submitted, int permits) {
+            this.sourceFile = sourceFile;
+            this.outputDir = outputDir;
+            this.submitted = submitted;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * 放入准入队列表示服务关闭，之前提交的请求都已准入
+     */
+    private static final Request SHUTDOWN = new Request(null, null, 0, 0);
+
+    /**
+     * 一个编译请求的结果
+     */
+    public static class Result {
+        private final Path outputDir;
+        private final List<SimpleErrorHandler.ErrorRecord> errors;
+        private final String failure;
+        private final long latencyNanos;
+
+        Result(Path outputDir, List<SimpleErrorHandler.ErrorRecord> errors, String failure, long latencyNanos) {
+            this.outputDir = outputDir;
+            this.errors = errors;
+            this.failure = failure;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public Path getOutputDir() {
+            return outputDir;
+        }
+
+        public List<SimpleErrorHandler.ErrorRecord> getErrors() {
+            return errors;
+        }
+
+        /**
+         * 编译过程本身失败（文件读写错误、崩溃）时的说明，否则为null
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        /**
+         * 从提交到完成的时间，包括等待准入的时间
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            if (failure != null) {
+                return outputDir + ": FAILED " + failure;
+            }
+            return outputDir + ": " + (errors.isEmpty() ? "OK" : errors.size() + " errors");
+        }
+    }
+
+    public CompileService() {
+        this(DEFAULT_MAX_IN_FLIGHT_BYTES);
+    }
+
+    /**
+     * @param maxInFlightBytes 同时在处理的源文件总字节数上限，不是内存上限
+     */
+    public CompileService(long maxInFlightBytes) {
+        this.maxInFlightBytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInFlightBytes));
+        this.inFlightBytes = new Semaphore(this.maxInFlightBytes, true);
+        this.executor = newPerRequestExecutor();
+        this.admission = new Thread(this::admit, "compile-admission");
+        this.admission.setDaemon(true);
+        this.admission.start();
+    }
+
+    /**
+     * 准入线程：按到达顺序为每个请求取得许可，然后交给执行器
+     */
+    private void admit() {
+        while (true) {
+            Request request;
+            try {
+                request = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == SHUTDOWN) {
+                return;
+            }
+            inFlightBytes.acquireUninterruptibly(request.permits);
+            executor.execute(() -> request.future.complete(compile(request)));
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程；运行时不支持虚拟线程时使用与处理器数量相同的固定线程池
+     */
+    private static ExecutorService newPerRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "compile-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 提交一个编译请求
+     * @param sourceFile 源文件
+     * @param outputDir 输出目录，lexer.txt、parser.txt、symbol.txt、llvm_ir.txt、mips.txt和error.txt写在其中
+     * @return 编译结果
+     * @throws IllegalStateException 如果服务已经关闭
+     */
+    public CompletableFuture<Result> submit(Path sourceFile, Path outputDir) {
+        if (closed) {
+            throw new IllegalStateException("CompileService is closed");
+        }
+        long submitted = System.nanoTime();
+        int permits;
+        try {
+            permits = (int) Math.min(Files.size(sourceFile), maxInFlightBytes);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(new Result(outputDir, Collections.emptyList(),
+                    "File I/O Error: " + e.getMessage(), System.nanoTime() - submitted));
+        }
+        Request request = new Request(sourceFile, outputDir, submitted, permits);
+        synchronized (pending) {
+            // 与close()互斥，保证请求不会排在SHUTDOWN之后而永远得不到准入
+            if (closed) {
+                throw new IllegalStateException("CompileService is closed");
+            }
+            pending.add(request);
+        }
+        return request.future;
+    }
+
+    /**
+     * 在执行器的线程中处理一个已准入的请求，完成后归还许可
+     */
+    private Result compile(Request request) {
+        Path outputDir = request.outputDir;
+        List<SimpleErrorHandler.ErrorRecord> errors = new ArrayList<>();
+        SimpleErrorHandler.bind(errors);
+        String failure = null;
+        try {
+            runPhases(request.sourceFile, outputDir);
+        } catch (IOException e) {
+            failure = "File I/O Error: " + e.getMessage();
+        } catch (RuntimeException | Error e) {
+            // 包括OutOfMemoryError：只让这一个请求失败，其他请求照常完成
+            failure = "An unexpected error occurred during compilation: " + e;
+        } finally {
+            SimpleErrorHandler.unbind();
+            inFlightBytes.release(request.permits);
+        }
+        return new Result(outputDir, errors, failure, System.nanoTime() - request.submitted);
+    }
+
+    /**
+     * 依次执行各阶段，输出文件与使用默认选项的命令行编译相同
+     */
+    private static void runPhases(Path sourceFile, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        String sourceCode = FileHandler.readFile(sourceFile.toString());
+
+        List<Token> tokens = new Lexer(sourceCode).tokenize();
+        if (!SimpleErrorHandler.hasErrors()) {
+            FileHandler.writeTokensToFile(tokens, outputDir.resolve("lexer.txt").toString());
+        }
+
+        Parser parser = new Parser(new ArrayList<>(tokens));
+        parser.parse();
+        if (!SimpleErrorHandler.hasErrors() && parser.getOutput() != null) {
+            FileHandler.writeToFile(parser.getOutput(), outputDir.resolve("parser.txt").toString());
+        }
+
+        SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(new ArrayList<>(tokens));
+        semanticAnalyzer.setSymbolOutputFile(outputDir.resolve("symbol.txt").toString());
+        semanticAnalyzer.setDebugOutput(false);
+        semanticAnalyzer.analyze();
+
+        if (!SimpleErrorHandler.hasErrors()) {
+            runBackEnd(new ArrayList<>(tokens), semanticAnalyzer, outputDir);
+        }
+
+        if (SimpleErrorHandler.hasErrors()) {
+            FileHandler.writeErrorsToFile(outputDir.resolve("error.txt").toString());
+        }
+    }
+
+    /**
+     * 等待已提交的请求全部完成后关闭服务；可以重复调用
+     */
+    /**
+     * 生成并优化中间代码，再生成目标代码
+     * 与命令行编译一样，前端未能发现的非法输入只导致不生成对应的文件
+     */
+    private static void runBackEnd(List<Token> tokens, SemanticAnalyzer semanticAnalyzer, Path outputDir)
+            throws IOException {
+        CompilerOptions options = new CompilerOptions();
+        Module module;
+        try {
+            IRGenerator irGenerator = new IRGenerator(tokens);
+            irGenerator.setDefinitions(semanticAnalyzer.getDefinitions());
+            module = irGenerator.generate();
+            Optimizer.forLevel(options.getOptLevel(), options.getInlineBudget(),
+                    options.isMemoize(), options.getUnrollFactor()).run(module);
+        } catch (RuntimeException e) {
+            return;
+        }
+        FileHandler.writeTextToFile(module.toString(), outputDir.resolve("llvm_ir.txt").toString());
+
+        String mips;
+        try {
+            MipsGenerator generator = new MipsGenerator(module,
+                    RegisterAllocator.forLevel(options.getOptLevel()), Peephole.forLevel(options.getOptLevel()));
+            mips = generator.generate().toString();
+        } catch (RuntimeException e) {
+            return;
+        }
+        FileHandler.writeTextToFile(mips, outputDir.resolve("mips.txt").toString());
+    }
+
+    /**
+     * 等待已提交的请求全部完成后关闭服务；可以重复调用
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            if (!closed) {
+                closed = true;
+                pending.add(SHUTDOWN);
+            }
+        }
+        try {
+            admission.join();
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 从标准输入逐行读取请求，每行为"源文件 输出目录"，全部完成后输出结果和延迟统计
+     * 可选参数：--max-inflight-bytes=N
+     */
+    public static void main(String[] args) throws IOException {
+        long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+        for (String arg : args) {
+            if (arg.startsWith("--max-inflight-bytes=")) {
+                try {
+                    maxInFlightBytes = Long.parseLong(arg.substring("--max-inflight-bytes=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid value ignored: " + arg);
+                }
+            } else {
+                System.err.println("Unknown option ignored: " + arg);
+            }
+        }
+
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+        try (CompileService service = new CompileService(maxInFlightBytes)) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length < 2) {
+                    continue;
+                }
+                futures.add(service.submit(Paths.get(parts[0]), Paths.get(parts[1])));
+            }
+
+            List<Long> latencies = new ArrayList<>();
+            for (CompletableFuture<Result> future : futures) {
+                Result result = future.join();
+                System.out.println(result);
+                latencies.add(result.getLatencyNanos());
+            }
+            if (!latencies.isEmpty()) {
+                Collections.sort(latencies);
+                System.out.printf("Requests: %d, p50: %.2f ms, p99: %.2f ms%n", latencies.size(),
+                        percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+            }
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
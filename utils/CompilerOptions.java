@@ -0,0 +1,152 @@
+package utils;
+
+import opt.Inliner;
+import opt.LoopUnroller;
+
+/**
+ * 编译选项，由命令行参数解析得到
+ * 以"-"开头的参数为选项，其余的第一个参数为源文件名
+ */
+public class CompilerOptions {
+    private String sourceFile = "testfile.txt"; // 源文件，默认为 testfile.txt
+    private boolean parallelLex = false;         // 分块并行词法分析
+    private boolean parallelParse = false;       // 按顶层成分并行语法分析
+    private boolean parallelSemantic = false;    // 并行分析函数体
+    private boolean pipeline = false;            // 词法分析、语法分析和输出流水线执行
+    private int threads = Runtime.getRuntime().availableProcessors(); // 并行阶段使用的线程数
+    private int optLevel = 2;                    // 优化级别，-O0关闭中间代码优化
+    private int inlineBudget = Inliner.DEFAULT_GROWTH_PERCENT; // 内联允许代码增长的百分比，0关闭内联
+    private boolean peepholeStats = false;       // 输出各条窥孔规则的命中次数
+    private String mipsCost = "";                // 指令代价的设置，如"mul=4,div=40"
+    private boolean memoize = false;             // 记忆化纯递归函数
+    private int unrollFactor = LoopUnroller.DEFAULT_FACTOR; // 循环部分展开的因子，0关闭循环展开
+    private String simulateInput = null;         // 用内置模拟器运行目标代码时的输入文件
+    private String interpretInput = null;        // 解释执行中间代码时的输入文件
+
+    /**
+     * 解析命令行参数
+     * @param args 命令行参数
+     * @return 编译选项
+     */
+    public static CompilerOptions parse(String[] args) {
+        CompilerOptions options = new CompilerOptions();
+        boolean sourceSeen = false;
+        for (String arg : args) {
+            if (arg.equals("--parallel-lex")) {
+                options.parallelLex = true;
+            } else if (arg.equals("--parallel-parse")) {
+                options.parallelParse = true;
+            } else if (arg.equals("--parallel-semantic")) {
+                options.parallelSemantic = true;
+            } else if (arg.equals("--pipeline")) {
+                options.pipeline = true;
+            } else if (arg.startsWith("--threads=")) {
+                options.threads = intValue(arg, "--threads=", 1, options.threads);
+            } else if (arg.startsWith("--inline-budget=")) {
+                options.inlineBudget = intValue(arg, "--inline-budget=", 0, options.inlineBudget);
+            } else if (arg.equals("--peephole-stats")) {
+                options.peepholeStats = true;
+            } else if (arg.startsWith("--unroll=")) {
+                options.unrollFactor = intValue(arg, "--unroll=", 0, options.unrollFactor);
+            } else if (arg.equals("--memoize")) {
+                options.memoize = true;
+            } else if (arg.startsWith("--mips-cost=")) {
+                options.mipsCost = arg.substring("--mips-cost=".length());
+            } else if (arg.startsWith("--interpret=")) {
+                options.interpretInput = arg.substring("--interpret=".length());
+            } else if (arg.startsWith("--simulate=")) {
+                options.simulateInput = arg.substring("--simulate=".length());
+            } else if (arg.matches("-O[0-9]")) {
+                options.optLevel = arg.charAt(2) - '0';
+            } else if (arg.startsWith("-")) {
+                System.err.println("Unknown option ignored: " + arg);
+            } else if (!sourceSeen) {
+                options.sourceFile = arg;
+                sourceSeen = true;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 解析形如"--name=N"的整数选项，小于下限时取下限
+     * @param current 当前值，选项的值不是整数时保持不变
+     */
+    private static int intValue(String arg, String prefix, int min, int current) {
+        try {
+            return Math.max(min, Integer.parseInt(arg.substring(prefix.length())));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value ignored: " + arg);
+            return current;
+        }
+    }
+
+    public String getSourceFile() {
+        return sourceFile;
+    }
+
+    public boolean isParallelLex() {
+        return parallelLex;
+    }
+
+    public boolean isParallelParse() {
+        return parallelParse;
+    }
+
+    public boolean isParallelSemantic() {
+        return parallelSemantic;
+    }
+
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * 是否有阶段需要并行执行的线程池
+     */
+    public boolean needsForkJoinPool() {
+        return parallelLex || parallelParse || parallelSemantic;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getOptLevel() {
+        return optLevel;
+    }
+
+    public int getInlineBudget() {
+        return inlineBudget;
+    }
+
+    public boolean isPeepholeStats() {
+        return peepholeStats;
+    }
+
+    public String getMipsCost() {
+        return mipsCost;
+    }
+
+    public boolean isMemoize() {
+        return memoize;
+    }
+
+    public int getUnrollFactor() {
+        return unrollFactor;
+    }
+
+    /**
+     * @return 模拟运行的输入文件，不模拟时为null
+     */
+    public String getSimulateInput() {
+        return simulateInput;
+    }
+
+    /**
+     * @return 解释执行中间代码的输入文件，不解释执行时为null
+     */
+    public String getInterpretInput() {
+        return interpretInput;
+    }
+}
@@ -61,6 +61,18 @@ public class FileHandler {
         }
     }
     
+    /**
+     * 将一段文本原样写入文件
+     * @param text 要写入的文本
+     * @param filePath 输出文件路径
+     * @throws IOException 如果文件写入错误
+     */
+    public static void writeTextToFile(String text, String filePath) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
+            writer.write(text);
+        }
+    }
+    
     /**
      * 将错误信息写入文件
      * @param filePath 输出文件路径
@@ -33,19 +33,49 @@ public class SimpleErrorHandler {
     }
     
     // 存储错误的列表
-    private static final List<ErrorRecord> errors = new ArrayList<>();
+    private static final List<ErrorRecord> globalErrors = new ArrayList<>();
+    
+    // 当前线程绑定的错误列表，编译服务中每个请求各用一个
+    private static final ThreadLocal<List<ErrorRecord>> boundErrors = new ThreadLocal<>();
+    
+    private static List<ErrorRecord> errors() {
+        List<ErrorRecord> bound = boundErrors.get();
+        return bound != null ? bound : globalErrors;
+    }
+    
+    /**
+     * 将当前线程的错误记录到指定列表，直到调用unbind
+     */
+    public static void bind(List<ErrorRecord> errors) {
+        boundErrors.set(errors);
+    }
+    
+    /**
+     * 解除当前线程的绑定，恢复使用全局错误列表
+     */
+    public static void unbind() {
+        boundErrors.remove();
+    }
     
     /**
      * 添加一个错误
      */
     public static void addError(int line, String code) {
-        errors.add(new ErrorRecord(line, code));
+        errors().add(new ErrorRecord(line, code));
+    }
+    
+    /**
+     * 按顺序添加一组缓冲的错误
+     */
+    public static void addErrors(List<ErrorRecord> records) {
+        errors().addAll(records);
     }
     
     /**
      * 获取所有错误（按行号排序）
      */
     public static List<ErrorRecord> getErrors() {
+        List<ErrorRecord> errors = errors();
         errors.sort(Comparator.comparingInt(ErrorRecord::getLine));
         return errors;
     }
@@ -54,13 +84,13 @@ public class SimpleErrorHandler {
      * 清空错误列表
      */
     public static void clearErrors() {
-        errors.clear();
+        errors().clear();
     }
     
     /**
      * 检查是否有错误
      */
     public static boolean hasErrors() {
-        return !errors.isEmpty();
+        return !errors().isEmpty();
     }
 } 
\ No newline at end of file